@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitbenchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sensingkit.sensingkitlib.audio.SKImaAdpcmDecoder;
+import org.sensingkit.sensingkitlib.audio.SKImaAdpcmEncoder;
+import org.sensingkit.sensingkitlib.audio.SKMuLawCodec;
+
+import java.util.concurrent.TimeUnit;
+
+/** Time per frame of the audio codecs used to record shared capture audio. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SKAudioCodecBenchmark {
+
+    @Param({"8000", "16000", "44100"})
+    public int sampleRate;
+
+    private short[] mAudio;
+    private int mFrameSize;
+    private int mOffset;
+
+    private byte[] mMuLawAudio;
+    private byte[] mMuLawFrame;
+    private short[] mDecodedFrame;
+
+    private SKImaAdpcmEncoder mAdpcmEncoder;
+    private SKImaAdpcmDecoder mAdpcmDecoder;
+    private byte[] mAdpcmAudio;
+    private byte[] mAdpcmFrame;
+    private int mAdpcmFrameSize;
+    private int mAdpcmOffset;
+
+    @Setup
+    public void setup() {
+
+        mAudio = SKSyntheticAudio.generate(sampleRate);
+        mFrameSize = SKSyntheticAudio.getFrameSize(sampleRate);
+        mOffset = 0;
+
+        mMuLawAudio = new byte[mAudio.length];
+        SKMuLawCodec.encode(mAudio, 0, mAudio.length, mMuLawAudio, 0);
+        mMuLawFrame = new byte[mFrameSize];
+
+        int blockAlign = SKImaAdpcmEncoder.getDefaultBlockAlign(sampleRate);
+        mAdpcmEncoder = new SKImaAdpcmEncoder(blockAlign);
+        mAdpcmDecoder = new SKImaAdpcmDecoder(blockAlign);
+        mAdpcmFrame = new byte[(mFrameSize / mAdpcmEncoder.getSamplesPerBlock() + 1) * blockAlign];
+
+        // Whole blocks of the audio, decoded in frames of the bytes of a frame (4 bits per sample)
+        mAdpcmAudio = new byte[mAudio.length / mAdpcmEncoder.getSamplesPerBlock() * blockAlign];
+        SKImaAdpcmEncoder encoder = new SKImaAdpcmEncoder(blockAlign);
+        encoder.encode(mAudio, 0, mAudio.length, mAdpcmAudio, 0);
+        mAdpcmFrameSize = mFrameSize / 2;
+        mAdpcmOffset = 0;
+
+        mDecodedFrame = new short[mFrameSize + 2 * mAdpcmEncoder.getSamplesPerBlock()];
+    }
+
+    private int nextFrame() {
+
+        int offset = mOffset;
+        mOffset = (offset + mFrameSize) % mAudio.length;
+        return offset;
+    }
+
+    @Benchmark
+    public byte muLawEncode() {
+        SKMuLawCodec.encode(mAudio, nextFrame(), mFrameSize, mMuLawFrame, 0);
+        return mMuLawFrame[0];
+    }
+
+    @Benchmark
+    public short muLawDecode() {
+        SKMuLawCodec.decode(mMuLawAudio, nextFrame(), mFrameSize, mDecodedFrame, 0);
+        return mDecodedFrame[0];
+    }
+
+    @Benchmark
+    public int adpcmEncode() {
+        return mAdpcmEncoder.encode(mAudio, nextFrame(), mFrameSize, mAdpcmFrame, 0);
+    }
+
+    @Benchmark
+    public int adpcmDecode() {
+
+        int offset = mAdpcmOffset;
+        int length = Math.min(mAdpcmFrameSize, mAdpcmAudio.length - offset);
+        mAdpcmOffset = (offset + length) % mAdpcmAudio.length;
+
+        return mAdpcmDecoder.decode(mAdpcmAudio, offset, length, mDecodedFrame, 0);
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitbenchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sensingkit.sensingkitlib.dsp.SKAudioLevelMeter;
+import org.sensingkit.sensingkitlib.dsp.SKOnsetDetector;
+import org.sensingkit.sensingkitlib.dsp.SKVoiceActivityDetector;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per frame of the level stages of the Audio Level capture thread: peak, RMS and dB over
+ * windows, voice activity detection and onset detection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SKAudioLevelBenchmark {
+
+    private static final int WINDOW_SIZE = 100;             // ms, as the Audio Level default
+    private static final int VOICE_ACTIVITY_FRAME_SIZE = 20;  // ms
+    private static final int ONSET_FRAME_SIZE = 10;           // ms
+
+    @Param({"8000", "16000", "44100"})
+    public int sampleRate;
+
+    private short[] mAudio;
+    private int mFrameSize;
+    private int mOffset;
+
+    private SKAudioLevelMeter mLevelMeter;
+    private SKVoiceActivityDetector mVoiceActivityDetector;
+    private SKOnsetDetector mOnsetDetector;
+    private double mDecibels;
+    private float mEnergy;
+    private long mOnsetPosition;
+
+    private final SKAudioLevelMeter.OnLevelListener mLevelListener = new SKAudioLevelMeter.OnLevelListener() {
+        @Override
+        public void onLevel(long position, int peak, double rms) {
+            mDecibels += SKAudioLevelMeter.toDecibelsFullScale(peak) + SKAudioLevelMeter.toDecibelsFullScale(rms);
+        }
+    };
+
+    private final SKVoiceActivityDetector.OnFrameListener mFrameListener = new SKVoiceActivityDetector.OnFrameListener() {
+        @Override
+        public void onFrame(long position, SKVoiceActivityDetector detector) {
+            mEnergy += detector.getEnergy();
+        }
+    };
+
+    private final SKOnsetDetector.OnOnsetListener mOnsetListener = new SKOnsetDetector.OnOnsetListener() {
+        @Override
+        public void onOnset(long position, SKOnsetDetector detector) {
+            mOnsetPosition += position;
+        }
+    };
+
+    @Setup
+    public void setup() {
+
+        mAudio = SKSyntheticAudio.generate(sampleRate);
+        mFrameSize = SKSyntheticAudio.getFrameSize(sampleRate);
+        mOffset = 0;
+
+        int windowSize = sampleRate * WINDOW_SIZE / 1000;
+        mLevelMeter = new SKAudioLevelMeter(windowSize, windowSize);
+        mVoiceActivityDetector = new SKVoiceActivityDetector(sampleRate * VOICE_ACTIVITY_FRAME_SIZE / 1000, sampleRate);
+        mOnsetDetector = new SKOnsetDetector(sampleRate * ONSET_FRAME_SIZE / 1000, sampleRate);
+    }
+
+    /** Offset of the next frame, going through the audio again from its start. */
+    private int nextFrame() {
+
+        int offset = mOffset;
+        mOffset = (offset + mFrameSize) % mAudio.length;
+        return offset;
+    }
+
+    @Benchmark
+    public int getMaxAbs() {
+        return SKAudioLevelMeter.getMaxAbs(mAudio, nextFrame(), mFrameSize);
+    }
+
+    @Benchmark
+    public double levelMeter() {
+        mLevelMeter.process(mAudio, nextFrame(), mFrameSize, mLevelListener);
+        return mDecibels;
+    }
+
+    @Benchmark
+    public float voiceActivityDetector() {
+        mVoiceActivityDetector.process(mAudio, nextFrame(), mFrameSize, mFrameListener);
+        return mEnergy;
+    }
+
+    @Benchmark
+    public long onsetDetector() {
+        mOnsetDetector.process(mAudio, nextFrame(), mFrameSize, mOnsetListener);
+        return mOnsetPosition;
+    }
+
+}
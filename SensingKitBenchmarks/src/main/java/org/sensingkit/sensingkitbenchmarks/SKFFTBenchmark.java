@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitbenchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sensingkit.sensingkitlib.dsp.SKFFT;
+import org.sensingkit.sensingkitlib.dsp.SKRealFFT;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per window of the FFTs: the Hann windowed power spectrum of the real FFT (spectral
+ * analysis) and the complex FFT, at the window sizes used for audio.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SKFFTBenchmark {
+
+    @Param({"256", "512", "1024", "2048"})
+    public int size;
+
+    private float[] mWindow;
+    private float[] mSignal;
+    private float[] mReal;
+    private float[] mImaginary;
+    private float[] mPower;
+
+    private double[] mComplexWindow;
+    private double[] mComplexReal;
+    private double[] mComplexImaginary;
+
+    private SKRealFFT mRealFFT;
+    private SKFFT mFFT;
+
+    @Setup
+    public void setup() {
+
+        short[] audio = SKSyntheticAudio.generate(44100);
+
+        mWindow = new float[size];
+        mComplexWindow = new double[size];
+
+        // From the middle of a syllable
+        for (int i = 0; i < size; i++) {
+            mWindow[i] = audio[2000 + i];
+            mComplexWindow[i] = audio[2000 + i];
+        }
+
+        mRealFFT = new SKRealFFT(size);
+        mSignal = new float[size];
+        mReal = new float[mRealFFT.getBinCount()];
+        mImaginary = new float[mRealFFT.getBinCount()];
+        mPower = new float[mRealFFT.getBinCount()];
+
+        mFFT = new SKFFT(size);
+        mComplexReal = new double[size];
+        mComplexImaginary = new double[size];
+    }
+
+    @Benchmark
+    public float realFFTPowerSpectrum() {
+
+        System.arraycopy(mWindow, 0, mSignal, 0, size);
+        mRealFFT.applyHannWindow(mSignal);
+        mRealFFT.powerSpectrum(mSignal, mReal, mImaginary, mPower);
+        return mPower[1];
+    }
+
+    @Benchmark
+    public double complexFFT() {
+
+        System.arraycopy(mComplexWindow, 0, mComplexReal, 0, size);
+
+        for (int i = 0; i < size; i++) {
+            mComplexImaginary[i] = 0;
+        }
+
+        mFFT.transform(mComplexReal, mComplexImaginary);
+        return mComplexReal[1];
+    }
+
+}
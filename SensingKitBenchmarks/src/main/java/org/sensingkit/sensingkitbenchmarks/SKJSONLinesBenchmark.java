@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitbenchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sensingkit.sensingkitlib.data.SKAccelerometerData;
+import org.sensingkit.sensingkitlib.data.SKAudioLevelData;
+import org.sensingkit.sensingkitlib.data.SKBluetoothData;
+import org.sensingkit.sensingkitlib.data.SKBluetoothDeviceData;
+import org.sensingkit.sensingkitlib.data.SKSensorData;
+import org.sensingkit.sensingkitlib.encoding.SKJSONLinesWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per sample of SKJSONLinesWriter, compared with the CSV path of SKSegmentRecorder
+ * (getDataInCSV() through a buffered UTF-8 Writer). Both write to a stream that discards the bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SKJSONLinesBenchmark {
+
+    private static final int TOTAL_SAMPLES = 1024;
+    private static final int BLUETOOTH_DEVICES = 8;
+
+    @Param({"ACCELEROMETER", "AUDIO_LEVEL", "BLUETOOTH"})
+    public String sensor;
+
+    private SKSensorData[] mData;
+    private int mIndex;
+
+    private Writer mCSVWriter;
+    private SKJSONLinesWriter mJSONWriter;
+
+    private static class DiscardingOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+
+        Random random = new Random(0);
+        mData = new SKSensorData[TOTAL_SAMPLES];
+        mIndex = 0;
+
+        long timestamp = 1420070400000L;
+
+        for (int i = 0; i < TOTAL_SAMPLES; i++) {
+
+            timestamp += 20;
+
+            switch (sensor) {
+
+                case "ACCELEROMETER":
+                    mData[i] = new SKAccelerometerData(timestamp, random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1, 9.81f + random.nextFloat() - 0.5f);
+                    break;
+
+                case "AUDIO_LEVEL":
+                    float rms = random.nextFloat() * 0.1f;
+                    float decibelsFullScale = (float) (20 * Math.log10(rms));
+                    mData[i] = new SKAudioLevelData(timestamp, (int) (rms * 32767), rms, decibelsFullScale, decibelsFullScale + 90, random.nextBoolean());
+                    break;
+
+                case "BLUETOOTH":
+                    ArrayList<SKBluetoothDeviceData> devices = new ArrayList<>();
+
+                    for (int device = 0; device < BLUETOOTH_DEVICES; device++) {
+                        devices.add(new SKBluetoothDeviceData(timestamp, "Device " + device, String.format(Locale.US, "00:11:22:33:44:%02X", device), -40 - random.nextInt(50)));
+                    }
+
+                    mData[i] = new SKBluetoothData(timestamp, devices);
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Unknown sensor '" + sensor + "'.");
+            }
+        }
+
+        mCSVWriter = new BufferedWriter(new OutputStreamWriter(new DiscardingOutputStream(), "UTF-8"));
+        mJSONWriter = new SKJSONLinesWriter(new DiscardingOutputStream());
+    }
+
+    private SKSensorData nextData() {
+
+        SKSensorData data = mData[mIndex];
+        mIndex = (mIndex + 1) % TOTAL_SAMPLES;
+        return data;
+    }
+
+    @Benchmark
+    public void csv() throws IOException {
+        mCSVWriter.write(nextData().getDataInCSV());
+        mCSVWriter.write('\n');
+    }
+
+    @Benchmark
+    public void json() throws IOException {
+        mJSONWriter.write(nextData());
+    }
+
+}
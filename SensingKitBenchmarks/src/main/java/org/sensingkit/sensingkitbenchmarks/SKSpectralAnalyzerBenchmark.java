@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitbenchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sensingkit.sensingkitlib.dsp.SKSpectralAnalyzer;
+
+import java.util.concurrent.TimeUnit;
+
+/** Time per frame of the spectral stage of the Audio Level capture thread. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SKSpectralAnalyzerBenchmark {
+
+    // As the Audio Level defaults
+    private static final int SPECTRAL_FRAME_SIZE = 256;
+    private static final int SPECTRAL_BAND_COUNT = 8;
+
+    @Param({"8000", "16000", "44100"})
+    public int sampleRate;
+
+    private short[] mAudio;
+    private int mFrameSize;
+    private int mOffset;
+
+    private SKSpectralAnalyzer mSpectralAnalyzer;
+    private float mCentroid;
+
+    private final SKSpectralAnalyzer.OnSpectrumListener mSpectrumListener = new SKSpectralAnalyzer.OnSpectrumListener() {
+        @Override
+        public void onSpectrum(long position, SKSpectralAnalyzer analyzer) {
+            mCentroid += analyzer.getCentroid();
+        }
+    };
+
+    @Setup
+    public void setup() {
+
+        mAudio = SKSyntheticAudio.generate(sampleRate);
+        mFrameSize = SKSyntheticAudio.getFrameSize(sampleRate);
+        mOffset = 0;
+
+        mSpectralAnalyzer = new SKSpectralAnalyzer(SPECTRAL_FRAME_SIZE, sampleRate, SPECTRAL_BAND_COUNT);
+    }
+
+    @Benchmark
+    public float spectralAnalyzer() {
+
+        int offset = mOffset;
+        mOffset = (offset + mFrameSize) % mAudio.length;
+
+        mSpectralAnalyzer.process(mAudio, offset, mFrameSize, mSpectrumListener);
+        return mCentroid;
+    }
+
+}
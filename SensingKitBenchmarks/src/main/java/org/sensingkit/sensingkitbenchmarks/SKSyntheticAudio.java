@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitbenchmarks;
+
+import java.util.Random;
+
+/**
+ * Speech-like 16-bit PCM audio for the benchmarks: harmonics of a gliding pitch and noise, in
+ * syllables separated by pauses, so that the level, voice activity and codecs see both sound
+ * and silence. The audio is the same in every run.
+ */
+final class SKSyntheticAudio {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKSyntheticAudio";
+
+    /** Duration of a frame of the capture thread (a read of the minimum AudioRecord buffer), in ms. */
+    static final int FRAME_DURATION = 40;
+
+    /** Duration of the audio that the frames of a benchmark are taken from, in ms. */
+    static final int AUDIO_DURATION = 1000;
+
+    private static final int SYLLABLE_DURATION = 200;  // ms
+    private static final int PAUSE_DURATION = 120;     // ms
+    private static final long SEED = 42;
+
+    private SKSyntheticAudio() {
+    }
+
+    static int getFrameSize(int sampleRate) {
+        return sampleRate * FRAME_DURATION / 1000;
+    }
+
+    /** Returns AUDIO_DURATION of audio at the sample rate, a whole number of frames. */
+    static short[] generate(int sampleRate) {
+
+        int frameSize = getFrameSize(sampleRate);
+        short[] samples = new short[AUDIO_DURATION / FRAME_DURATION * frameSize];
+
+        Random random = new Random(SEED);
+        int syllableLength = sampleRate * SYLLABLE_DURATION / 1000;
+        int period = syllableLength + sampleRate * PAUSE_DURATION / 1000;
+        double phase = 0;
+
+        for (int i = 0; i < samples.length; i++) {
+
+            int inPeriod = i % period;
+            double value = random.nextGaussian() * 30;
+
+            if (inPeriod < syllableLength) {
+
+                // Pitch glides from 120 to 180 Hz, with a raised sine envelope
+                double progress = (double) inPeriod / syllableLength;
+                double pitch = 120 + 60 * progress;
+                double envelope = 0.5 - 0.5 * Math.cos(2 * Math.PI * progress);
+
+                phase += 2 * Math.PI * pitch / sampleRate;
+
+                double voice = 0;
+
+                for (int harmonic = 1; harmonic <= 5; harmonic++) {
+                    voice += Math.sin(harmonic * phase) / harmonic;
+                }
+
+                value += envelope * (6000 * voice + random.nextGaussian() * 500);
+            }
+
+            samples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+        }
+
+        return samples;
+    }
+
+}
@@ -21,10 +21,15 @@
 
 package org.sensingkit.sensingkitlib;
 
+import android.annotation.SuppressLint;
 import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
 import android.util.Log;
 import android.util.SparseArray;
 
+import org.sensingkit.sensingkitlib.audio.SKAudioFrameListener;
+import org.sensingkit.sensingkitlib.configuration.SKConfiguration;
 import org.sensingkit.sensingkitlib.data.SKSensorData;
 import org.sensingkit.sensingkitlib.modules.*;
 
@@ -33,13 +38,15 @@ public class SKSensorModuleManager {
     @SuppressWarnings("unused")
     private static final String TAG = "SKSensorModuleManager";
 
-    private static final int TOTAL_SENSOR_MODULES = 17;
+    private static final int TOTAL_SENSOR_MODULES = 19;
 
     private static SKSensorModuleManager sSensorModuleManager;
     private final Context mApplicationContext;
 
     private final SparseArray<SKAbstractSensorModule> mSensors;
 
+    private boolean mSoftwareMotionSensorModulesPreferred = false;
+
     public static SKSensorModuleManager getSensorManager(final Context context) throws SKException {
 
         if (context == null) {
@@ -95,6 +102,29 @@ public class SKSensorModuleManager {
         mSensors.delete(sensorIndex);
     }
 
+    /**
+     * When set, Gravity and Linear Acceleration modules registered from now on are computed
+     * from one shared Accelerometer registration, even if the device has these sensors.
+     */
+    public void setSoftwareMotionSensorModulesPreferred(boolean preferred) {
+        mSoftwareMotionSensorModulesPreferred = preferred;
+    }
+
+    public void setConfiguration(SKSensorModuleType moduleType, SKConfiguration configuration) throws SKException {
+
+        Log.i(TAG, "Set configuration of sensor: " + SKSensorModuleUtilities.getSensorModuleInString(moduleType) + ".");
+
+        if (configuration == null) {
+            throw new SKException(TAG, "Configuration cannot be null.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        getSensorModule(moduleType).setConfiguration(configuration);
+    }
+
+    public SKConfiguration getConfiguration(SKSensorModuleType moduleType) throws SKException {
+        return getSensorModule(moduleType).getConfiguration();
+    }
+
     public boolean isSensorModuleRegistered(SKSensorModuleType moduleType) throws SKException {
 
         int sensorIndex = moduleType.ordinal();
@@ -131,11 +161,25 @@ public class SKSensorModuleManager {
                 break;
 
             case GRAVITY:
-                sensorModule = new SKGravity(mApplicationContext);
+
+                // Compute from the Accelerometer if preferred or if there is no gravity sensor
+                if (!mSoftwareMotionSensorModulesPreferred && isNativeSensorAvailable(Sensor.TYPE_GRAVITY)) {
+                    sensorModule = new SKGravity(mApplicationContext);
+                }
+                else {
+                    sensorModule = new SKSoftwareGravity(mApplicationContext);
+                }
                 break;
 
             case LINEAR_ACCELERATION:
-                sensorModule = new SKLinearAcceleration(mApplicationContext);
+
+                // Compute from the Accelerometer if preferred or if there is no linear acceleration sensor
+                if (!mSoftwareMotionSensorModulesPreferred && isNativeSensorAvailable(Sensor.TYPE_LINEAR_ACCELERATION)) {
+                    sensorModule = new SKLinearAcceleration(mApplicationContext);
+                }
+                else {
+                    sensorModule = new SKSoftwareLinearAcceleration(mApplicationContext);
+                }
                 break;
 
             case GYROSCOPE:
@@ -155,11 +199,25 @@ public class SKSensorModuleManager {
                 break;
 
             case STEP_DETECTOR:
-                sensorModule = new SKStepDetector(mApplicationContext);
+
+                // Detect steps from the Accelerometer if there is no step detector sensor
+                if (isNativeSensorAvailable(Sensor.TYPE_STEP_DETECTOR)) {
+                    sensorModule = new SKStepDetector(mApplicationContext);
+                }
+                else {
+                    sensorModule = new SKSoftwareStepDetector(mApplicationContext);
+                }
                 break;
 
             case STEP_COUNTER:
-                sensorModule = new SKStepCounter(mApplicationContext);
+
+                // Count steps from the Accelerometer if there is no step counter sensor
+                if (isNativeSensorAvailable(Sensor.TYPE_STEP_COUNTER)) {
+                    sensorModule = new SKStepCounter(mApplicationContext);
+                }
+                else {
+                    sensorModule = new SKSoftwareStepCounter(mApplicationContext);
+                }
                 break;
 
             case LIGHT:
@@ -194,6 +252,14 @@ public class SKSensorModuleManager {
                 sensorModule = new SKBluetooth(mApplicationContext);
                 break;
 
+            case ORIENTATION:
+                sensorModule = new SKOrientation(mApplicationContext);
+                break;
+
+            case FUSED_ORIENTATION:
+                sensorModule = new SKFusedOrientation(mApplicationContext);
+                break;
+
             // Don't forget the break; here
 
             default:
@@ -203,6 +269,13 @@ public class SKSensorModuleManager {
         return sensorModule;
     }
 
+    @SuppressLint("InlinedApi")  // Sensors that are unknown to the platform are not available
+    private boolean isNativeSensorAvailable(int sensorType) {
+
+        SensorManager sensorManager = (SensorManager) mApplicationContext.getSystemService(Context.SENSOR_SERVICE);
+        return sensorManager != null && sensorManager.getDefaultSensor(sensorType) != null;
+    }
+
     public SKSensorData getDataFromSensor(SKSensorModuleType moduleType) throws SKException {
 
         Log.i(TAG, "Get data from sensor: " + SKSensorModuleUtilities.getSensorModuleInString(moduleType) + ".");
@@ -231,6 +304,21 @@ public class SKSensorModuleManager {
         getSensorModule(moduleType).unsubscribeAllSensorDataListeners();
     }
 
+    /** Audio frames are read from the microphone while at least one listener is subscribed. */
+    public void subscribeAudioFrameListener(SKAudioFrameListener frameListener) throws SKException {
+
+        Log.i(TAG, "Subscribe to audio frames.");
+
+        SKAudioCaptureEngine.registerListener(frameListener);
+    }
+
+    public void unsubscribeAudioFrameListener(SKAudioFrameListener frameListener) throws SKException {
+
+        Log.i(TAG, "Unsubscribe from audio frames.");
+
+        SKAudioCaptureEngine.unregisterListener(frameListener);
+    }
+
     public void startContinuousSensingWithSensor(SKSensorModuleType moduleType) throws SKException {
 
         Log.i(TAG, "Start sensing with sensor: " + SKSensorModuleUtilities.getSensorModuleInString(moduleType) + ".");
@@ -38,5 +38,7 @@ public enum SKSensorModuleType {
     SCREEN_STATUS,
     AUDIO_RECORDER,
     AUDIO_LEVEL,
-    BLUETOOTH
+    BLUETOOTH,
+    ORIENTATION,
+    FUSED_ORIENTATION
 }
\ No newline at end of file
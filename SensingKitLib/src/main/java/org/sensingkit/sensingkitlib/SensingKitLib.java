@@ -24,6 +24,8 @@ package org.sensingkit.sensingkitlib;
 import android.content.Context;
 import android.os.PowerManager;
 
+import org.sensingkit.sensingkitlib.audio.SKAudioFrameListener;
+import org.sensingkit.sensingkitlib.configuration.SKConfiguration;
 import org.sensingkit.sensingkitlib.data.SKSensorData;
 
 
@@ -73,6 +75,21 @@ public class SensingKitLib implements SensingKitLibInterface {
         return mSensorModuleManager.isSensorModuleRegistered(moduleType);
     }
 
+    @Override
+    public void setConfiguration(SKSensorModuleType moduleType, SKConfiguration configuration) throws SKException {
+        mSensorModuleManager.setConfiguration(moduleType, configuration);
+    }
+
+    @Override
+    public SKConfiguration getConfiguration(SKSensorModuleType moduleType) throws SKException {
+        return mSensorModuleManager.getConfiguration(moduleType);
+    }
+
+    @Override
+    public void setSoftwareMotionSensorModulesPreferred(boolean preferred) {
+        mSensorModuleManager.setSoftwareMotionSensorModulesPreferred(preferred);
+    }
+
     @Override
     public SKSensorData getDataFromSensor(SKSensorModuleType moduleType) throws SKException {
         return mSensorModuleManager.getDataFromSensor(moduleType);
@@ -108,6 +125,16 @@ public class SensingKitLib implements SensingKitLibInterface {
         return mSensorModuleManager.isSensorModuleSensing(moduleType);
     }
 
+    @Override
+    public void subscribeAudioFrameListener(SKAudioFrameListener frameListener) throws SKException {
+        mSensorModuleManager.subscribeAudioFrameListener(frameListener);
+    }
+
+    @Override
+    public void unsubscribeAudioFrameListener(SKAudioFrameListener frameListener) throws SKException {
+        mSensorModuleManager.unsubscribeAudioFrameListener(frameListener);
+    }
+
     @Override
     public long getCurrentTimeMillis() {
         return SKUtilities.getCurrentTimeMillis();
@@ -21,6 +21,8 @@
 
 package org.sensingkit.sensingkitlib;
 
+import org.sensingkit.sensingkitlib.audio.SKAudioFrameListener;
+import org.sensingkit.sensingkitlib.configuration.SKConfiguration;
 import org.sensingkit.sensingkitlib.data.SKSensorData;
 
 @SuppressWarnings("unused")
@@ -35,7 +37,12 @@ public interface SensingKitLibInterface {
     boolean isSensorModuleRegistered(SKSensorModuleType moduleType) throws SKException;
 
     /** Configuration */
-    // TODO: Add Configuration
+
+    void setConfiguration(SKSensorModuleType moduleType, SKConfiguration configuration) throws SKException;
+
+    SKConfiguration getConfiguration(SKSensorModuleType moduleType) throws SKException;
+
+    void setSoftwareMotionSensorModulesPreferred(boolean preferred);
 
 
     /** One Shot Sensing */
@@ -57,6 +64,12 @@ public interface SensingKitLibInterface {
 
     boolean isSensorModuleSensing(SKSensorModuleType moduleType) throws SKException;
 
+    /** Audio Frames */
+
+    void subscribeAudioFrameListener(SKAudioFrameListener frameListener) throws SKException;
+
+    void unsubscribeAudioFrameListener(SKAudioFrameListener frameListener) throws SKException;
+
     /** Time */
 
     long getCurrentTimeMillis();
@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.audio;
+
+import android.util.Log;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.SKSensorDataListener;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.data.SKAudioLevelData;
+import org.sensingkit.sensingkitlib.data.SKSensorData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Saves the audio around events (e.g. a loud sound) into WAV files, without recording all the
+ * time. The last seconds of audio are kept in a ring buffer in memory; when triggered, the
+ * pre-trigger audio and the post-trigger audio that follows are written into a file named
+ * after the trigger timestamp, in a background thread.
+ *
+ * Events are triggered by trigger(), or by Audio Level data at or above a threshold when the
+ * recorder is subscribed to the Audio Level sensor module. Triggers during the post-trigger
+ * audio of an event are part of that event.
+ *
+ * Capture is never paused: when an event is complete, its audio is copied once from the ring
+ * into a dump buffer that is reused between events. An event that completes while the previous
+ * one is still being written is dropped.
+ */
+public class SKAudioEventRecorder implements SKAudioFrameListener, SKSensorDataListener {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKAudioEventRecorder";
+
+    public static final int DEFAULT_PRE_TRIGGER = 5000;   // ms
+    public static final int DEFAULT_POST_TRIGGER = 5000;  // ms
+
+    private static final long NO_TRIGGER = Long.MIN_VALUE;
+    private static final long TRIGGER_NOW = Long.MAX_VALUE;
+
+    public interface OnEventRecordedListener {
+
+        /** Called from the background thread after the audio of an event has been written to file. */
+        void onEventRecorded(File file, long startTimestamp, long triggerTimestamp);
+    }
+
+    private final File mDirectory;
+    private final ArrayList<OnEventRecordedListener> mOnEventRecordedListeners = new ArrayList<>();
+
+    private int mPreTrigger = DEFAULT_PRE_TRIGGER;
+    private int mPostTrigger = DEFAULT_POST_TRIGGER;
+    private volatile float mThreshold = Float.NaN;
+    private volatile ExecutorService mExecutor;
+
+    // Set by trigger(), handled by the capture thread
+    private volatile long mRequestedTrigger = NO_TRIGGER;
+
+    // Used by the capture thread only
+    private int mSampleRate;
+    private long mStartTimestamp;
+    private short[] mRing;
+    private long mFirstPosition = -1;
+    private long mPosition;
+    private int mPreTriggerLength;
+    private int mPostTriggerLength;
+
+    private boolean mEventPending;
+    private long mEventStart;
+    private long mEventTrigger;
+    private long mEventEnd;
+
+    // Reused between events, busy until the background thread has written it
+    private short[] mDump;
+    private volatile boolean mDumpBusy;
+    private volatile int mDroppedEventCount;
+
+    public SKAudioEventRecorder(File directory) {
+        mDirectory = directory;
+    }
+
+    //region Configuration
+
+    /** Sets the audio (in ms) saved before and after a trigger. Applied from the next capture. */
+    public synchronized void setDuration(int preTrigger, int postTrigger) throws SKException {
+
+        if (preTrigger < 0 || postTrigger < 0 || preTrigger + postTrigger == 0) {
+            throw new SKException(TAG, "Pre-trigger and post-trigger durations cannot be negative or both zero.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mPreTrigger = preTrigger;
+        mPostTrigger = postTrigger;
+    }
+
+    /** Sets the level (in dBFS) of Audio Level data that triggers an event, or NaN to not trigger from data. */
+    public void setThreshold(float threshold) {
+        mThreshold = threshold;
+    }
+
+    public synchronized void addOnEventRecordedListener(OnEventRecordedListener listener) {
+
+        if (!mOnEventRecordedListeners.contains(listener)) {
+            mOnEventRecordedListeners.add(listener);
+        }
+    }
+
+    public synchronized void removeOnEventRecordedListener(OnEventRecordedListener listener) {
+        mOnEventRecordedListeners.remove(listener);
+    }
+
+    /** Returns the number of events that were dropped because the previous one was still being written. */
+    public int getDroppedEventCount() {
+        return mDroppedEventCount;
+    }
+
+    //endregion
+
+    //region Lifecycle
+
+    public synchronized void start() throws SKException {
+
+        if (mExecutor != null) {
+            throw new SKException(TAG, "AudioEventRecorder is already started.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new SKException(TAG, "Directory '" + mDirectory + "' could not be created.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    /** Stops the recorder. An event that is being written is completed. */
+    public synchronized void stop() {
+
+        if (mExecutor != null) {
+            mExecutor.shutdown();
+            mExecutor = null;
+        }
+    }
+
+    //endregion
+
+    //region Triggers
+
+    /** Triggers an event at the latest audio. */
+    public void trigger() {
+        mRequestedTrigger = TRIGGER_NOW;
+    }
+
+    /** Triggers an event at the audio recorded at timestamp (or the oldest or latest audio in the ring). */
+    public void trigger(long timestamp) {
+        mRequestedTrigger = timestamp;
+    }
+
+    @Override
+    public void onDataReceived(SKSensorModuleType moduleType, SKSensorData sensorData) {
+
+        if (!(sensorData instanceof SKAudioLevelData)) {
+            return;
+        }
+
+        SKAudioLevelData data = (SKAudioLevelData) sensorData;
+
+        // Comparison is false while the threshold is NaN
+        if (data.getDecibelsFullScale() >= mThreshold) {
+            trigger(data.getTimestamp());
+        }
+    }
+
+    //endregion
+
+    //region SKAudioFrameListener
+
+    @Override
+    public void onAudioStarted(int sampleRate, long timestamp) {
+
+        int capacity;
+
+        synchronized (this) {
+            mPreTriggerLength = (int) ((long) mPreTrigger * sampleRate / 1000);
+            mPostTriggerLength = (int) ((long) mPostTrigger * sampleRate / 1000);
+            capacity = mPreTriggerLength + mPostTriggerLength;
+        }
+
+        if (mRing == null || mRing.length != capacity) {
+            mRing = new short[capacity];
+        }
+
+        mSampleRate = sampleRate;
+        mStartTimestamp = timestamp;
+        mFirstPosition = -1;
+        mEventPending = false;
+        mRequestedTrigger = NO_TRIGGER;
+    }
+
+    @Override
+    public void onAudioFrame(short[] samples, int offset, int length, long position) {
+
+        if (mRing == null || mExecutor == null) {
+            return;
+        }
+
+        // Start again after frames were missed (e.g. while stopped)
+        if (mFirstPosition < 0 || position != mPosition) {
+
+            if (mEventPending) {
+                mEventEnd = mPosition;
+                completeEvent();
+            }
+
+            mFirstPosition = position;
+            mPosition = position;
+        }
+
+        handleRequestedTrigger();
+
+        while (length > 0) {
+
+            // Stop at the end of the event, before its oldest samples are overwritten
+            int count = length;
+
+            if (mEventPending) {
+                count = (int) Math.min(count, mEventEnd - mPosition);
+            }
+
+            writeRing(samples, offset, count);
+            offset += count;
+            length -= count;
+
+            if (mEventPending && mPosition == mEventEnd) {
+                completeEvent();
+            }
+        }
+    }
+
+    @Override
+    public void onAudioStopped() {
+
+        // Save what has been recorded of the post-trigger audio
+        if (mEventPending) {
+            mEventEnd = mPosition;
+            completeEvent();
+        }
+
+        mRing = null;
+    }
+
+    //endregion
+
+    private void handleRequestedTrigger() {
+
+        long requested = mRequestedTrigger;
+
+        if (requested == NO_TRIGGER) {
+            return;
+        }
+
+        mRequestedTrigger = NO_TRIGGER;
+
+        if (mEventPending) {
+            return;
+        }
+
+        long oldest = Math.max(mFirstPosition, mPosition - mRing.length);
+        long trigger = mPosition;
+
+        if (requested != TRIGGER_NOW) {
+            trigger = (requested - mStartTimestamp) * mSampleRate / 1000;
+            trigger = Math.max(oldest, Math.min(mPosition, trigger));
+        }
+
+        mEventTrigger = trigger;
+        mEventStart = Math.max(oldest, trigger - mPreTriggerLength);
+        mEventEnd = trigger + mPostTriggerLength;
+        mEventPending = true;
+
+        if (mEventEnd == mPosition) {
+            completeEvent();
+        }
+    }
+
+    private void writeRing(short[] samples, int offset, int length) {
+
+        int index = (int) (mPosition % mRing.length);
+        int count = Math.min(length, mRing.length - index);
+
+        System.arraycopy(samples, offset, mRing, index, count);
+        System.arraycopy(samples, offset + count, mRing, 0, length - count);
+
+        mPosition += length;
+    }
+
+    private void completeEvent() {
+
+        mEventPending = false;
+
+        int length = (int) (mEventEnd - mEventStart);
+
+        if (length == 0) {
+            return;
+        }
+
+        if (mDumpBusy) {
+            mDroppedEventCount++;
+            Log.w(TAG, "Event dropped, the previous event is still being written.");
+            return;
+        }
+
+        if (mDump == null || mDump.length < mRing.length) {
+            mDump = new short[mRing.length];
+        }
+
+        // The only copy of the audio of the event
+        int index = (int) (mEventStart % mRing.length);
+        int count = Math.min(length, mRing.length - index);
+
+        System.arraycopy(mRing, index, mDump, 0, count);
+        System.arraycopy(mRing, 0, mDump, count, length - count);
+
+        final short[] dump = mDump;
+        final int dumpLength = length;
+        final int sampleRate = mSampleRate;
+        final long startTimestamp = toTimestamp(mEventStart);
+        final long triggerTimestamp = toTimestamp(mEventTrigger);
+
+        synchronized (this) {
+
+            if (mExecutor == null) {
+                return;
+            }
+
+            mDumpBusy = true;
+
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    writeInBackground(dump, dumpLength, sampleRate, startTimestamp, triggerTimestamp);
+                }
+            });
+        }
+    }
+
+    private void writeInBackground(short[] dump, int length, int sampleRate, long startTimestamp, long triggerTimestamp) {
+
+        File file = new File(mDirectory, String.format(Locale.US, "%013d%s", triggerTimestamp, SKWaveFileWriter.FILE_EXTENSION));
+        OnEventRecordedListener[] listeners;
+
+        try {
+            SKWaveFileWriter writer = new SKWaveFileWriter(file, sampleRate);
+
+            try {
+                writer.write(dump, 0, length);
+            }
+            finally {
+                writer.close();
+            }
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Event '" + file + "' could not be written.", e);
+
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return;
+        }
+        finally {
+            mDumpBusy = false;
+        }
+
+        synchronized (this) {
+            listeners = mOnEventRecordedListeners.toArray(new OnEventRecordedListener[mOnEventRecordedListeners.size()]);
+        }
+
+        for (OnEventRecordedListener listener : listeners) {
+            listener.onEventRecorded(file, startTimestamp, triggerTimestamp);
+        }
+    }
+
+    private long toTimestamp(long position) {
+        return mStartTimestamp + position * 1000 / mSampleRate;
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.audio;
+
+/**
+ * Receives the 16-bit mono PCM samples of the microphone, in the capture thread, as they are
+ * read. The samples are only valid until onAudioFrame returns and must not be modified.
+ *
+ * Positions count samples since capture started: the sample at a position was recorded
+ * position / sampleRate seconds after the timestamp of onAudioStarted. Positions skip the
+ * audio that was lost, so that there can be a gap between two frames.
+ */
+public interface SKAudioFrameListener {
+
+    /** Called before the first frame that the listener receives from a capture. */
+    void onAudioStarted(int sampleRate, long timestamp);
+
+    void onAudioFrame(short[] samples, int offset, int length, long position);
+
+    /** Called after the last frame of a capture. */
+    void onAudioStopped();
+}
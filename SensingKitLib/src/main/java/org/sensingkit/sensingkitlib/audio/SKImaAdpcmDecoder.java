@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.audio;
+
+import static org.sensingkit.sensingkitlib.audio.SKImaAdpcmEncoder.*;
+
+/**
+ * Streaming decoder of the IMA ADPCM blocks written by SKImaAdpcmEncoder (and of the data of
+ * WAV IMA ADPCM mono files). Bytes can be passed in any length: the bytes of an incomplete
+ * block are kept until the next call. No memory is allocated after construction.
+ */
+public class SKImaAdpcmDecoder {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKImaAdpcmDecoder";
+
+    private final int mBlockAlign;
+    private final int mSamplesPerBlock;
+
+    // Bytes of the incomplete block
+    private final byte[] mBlock;
+    private int mBlockLength;
+
+    public SKImaAdpcmDecoder(int blockAlign) {
+
+        if (blockAlign <= BLOCK_HEADER_SIZE) {
+            throw new IllegalArgumentException("Block align must be larger than the block header.");
+        }
+
+        this.mBlockAlign = blockAlign;
+        this.mSamplesPerBlock = SKImaAdpcmEncoder.getSamplesPerBlock(blockAlign);
+        this.mBlock = new byte[blockAlign];
+    }
+
+    public int getBlockAlign() {
+        return mBlockAlign;
+    }
+
+    public int getSamplesPerBlock() {
+        return mSamplesPerBlock;
+    }
+
+    /** Returns the size of the output that decoding length more bytes can need, in samples. */
+    public int getMaxDecodedSize(int length) {
+        return (mBlockLength + length) / mBlockAlign * mSamplesPerBlock;
+    }
+
+    public void reset() {
+        mBlockLength = 0;
+    }
+
+    /**
+     * Decodes length bytes from offset, writing the samples of each block that they complete
+     * into output. Returns the number of samples written.
+     */
+    public int decode(byte[] input, int offset, int length, short[] output, int outputOffset) {
+
+        int end = offset + length;
+        int written = 0;
+
+        while (offset < end) {
+
+            // Complete blocks are decoded from the input, without copying them
+            if (mBlockLength == 0 && end - offset >= mBlockAlign) {
+                decodeBlock(input, offset, output, outputOffset + written);
+                offset += mBlockAlign;
+                written += mSamplesPerBlock;
+                continue;
+            }
+
+            int count = Math.min(end - offset, mBlockAlign - mBlockLength);
+            System.arraycopy(input, offset, mBlock, mBlockLength, count);
+            mBlockLength += count;
+            offset += count;
+
+            if (mBlockLength == mBlockAlign) {
+                decodeBlock(mBlock, 0, output, outputOffset + written);
+                written += mSamplesPerBlock;
+                mBlockLength = 0;
+            }
+        }
+
+        return written;
+    }
+
+    private void decodeBlock(byte[] block, int offset, short[] output, int outputOffset) {
+
+        int predictor = (short) ((block[offset] & 0xFF) | (block[offset + 1] << 8));
+        int index = Math.min(block[offset + 2] & 0xFF, MAX_INDEX);
+
+        output[outputOffset++] = (short) predictor;
+
+        int end = offset + mBlockAlign;
+
+        for (int position = offset + BLOCK_HEADER_SIZE; position < end; position++) {
+
+            int low = block[position] & 0x0F;
+            predictor = decodeSample(low, predictor, index);
+            index = nextIndex(index, low);
+            output[outputOffset++] = (short) predictor;
+
+            int high = (block[position] >> 4) & 0x0F;
+            predictor = decodeSample(high, predictor, index);
+            index = nextIndex(index, high);
+            output[outputOffset++] = (short) predictor;
+        }
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.audio;
+
+/**
+ * Streaming IMA ADPCM encoder of 16-bit mono PCM audio into 4 bits per sample (about 4:1), in
+ * the blocks of the WAV IMA ADPCM format.
+ *
+ * A block starts with a header (the first sample and the step index) and holds
+ * (blockAlign - 4) * 2 + 1 samples, so that each block can be decoded on its own. Samples can
+ * be passed in frames of any length: the samples of an incomplete block are kept until the
+ * next frame. No memory is allocated after construction.
+ */
+public class SKImaAdpcmEncoder {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKImaAdpcmEncoder";
+
+    static final int BLOCK_HEADER_SIZE = 4;
+
+    static final int[] INDEX_TABLE = {
+            -1, -1, -1, -1, 2, 4, 6, 8,
+            -1, -1, -1, -1, 2, 4, 6, 8
+    };
+
+    static final int[] STEP_TABLE = {
+            7, 8, 9, 10, 11, 12, 13, 14, 16, 17,
+            19, 21, 23, 25, 28, 31, 34, 37, 41, 45,
+            50, 55, 60, 66, 73, 80, 88, 97, 107, 118,
+            130, 143, 157, 173, 190, 209, 230, 253, 279, 307,
+            337, 371, 408, 449, 494, 544, 598, 658, 724, 796,
+            876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066,
+            2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358,
+            5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487, 12635, 13899,
+            15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767
+    };
+
+    static final int MAX_INDEX = STEP_TABLE.length - 1;
+
+    private final int mBlockAlign;
+    private final int mSamplesPerBlock;
+
+    // Samples of the incomplete block
+    private final short[] mBlock;
+    private int mBlockLength;
+
+    private int mIndex;
+
+    /** Block size in bytes (see getDefaultBlockAlign()). */
+    public SKImaAdpcmEncoder(int blockAlign) {
+
+        if (blockAlign <= BLOCK_HEADER_SIZE) {
+            throw new IllegalArgumentException("Block align must be larger than the block header.");
+        }
+
+        this.mBlockAlign = blockAlign;
+        this.mSamplesPerBlock = getSamplesPerBlock(blockAlign);
+        this.mBlock = new short[mSamplesPerBlock];
+    }
+
+    /** Block size of WAV files at the sample rate, as written by the common encoders. */
+    public static int getDefaultBlockAlign(int sampleRate) {
+        return 256 * Math.max(1, sampleRate / 11025);
+    }
+
+    public static int getSamplesPerBlock(int blockAlign) {
+        return (blockAlign - BLOCK_HEADER_SIZE) * 2 + 1;
+    }
+
+    public int getBlockAlign() {
+        return mBlockAlign;
+    }
+
+    public int getSamplesPerBlock() {
+        return mSamplesPerBlock;
+    }
+
+    /** Returns the size of the output that encoding length more samples can need, in bytes. */
+    public int getMaxEncodedSize(int length) {
+        return (mBlockLength + length) / mSamplesPerBlock * mBlockAlign;
+    }
+
+    public void reset() {
+        mBlockLength = 0;
+        mIndex = 0;
+    }
+
+    /**
+     * Encodes length samples from offset, writing each block that they complete into output.
+     * Returns the number of bytes written.
+     */
+    public int encode(short[] samples, int offset, int length, byte[] output, int outputOffset) {
+
+        int end = offset + length;
+        int written = 0;
+
+        while (offset < end) {
+
+            int count = Math.min(end - offset, mSamplesPerBlock - mBlockLength);
+            System.arraycopy(samples, offset, mBlock, mBlockLength, count);
+            mBlockLength += count;
+            offset += count;
+
+            if (mBlockLength == mSamplesPerBlock) {
+                encodeBlock(output, outputOffset + written);
+                written += mBlockAlign;
+                mBlockLength = 0;
+            }
+        }
+
+        return written;
+    }
+
+    /**
+     * Completes the incomplete block (repeating its last sample) into output. Returns the number
+     * of bytes written, 0 if there was no incomplete block.
+     */
+    public int flush(byte[] output, int outputOffset) {
+
+        if (mBlockLength == 0) {
+            return 0;
+        }
+
+        short last = mBlock[mBlockLength - 1];
+
+        for (int i = mBlockLength; i < mSamplesPerBlock; i++) {
+            mBlock[i] = last;
+        }
+
+        encodeBlock(output, outputOffset);
+        mBlockLength = 0;
+
+        return mBlockAlign;
+    }
+
+    private void encodeBlock(byte[] output, int offset) {
+
+        short[] block = mBlock;
+        int predictor = block[0];
+        int index = mIndex;
+
+        // Header: first sample (little endian) and step index
+        output[offset] = (byte) predictor;
+        output[offset + 1] = (byte) (predictor >> 8);
+        output[offset + 2] = (byte) index;
+        output[offset + 3] = 0;
+
+        int position = offset + BLOCK_HEADER_SIZE;
+
+        // Two samples per byte, the first one in the low nibble
+        for (int i = 1; i < mSamplesPerBlock; i += 2) {
+
+            int low = encodeSample(block[i], predictor, index);
+            predictor = decodeSample(low, predictor, index);
+            index = nextIndex(index, low);
+
+            int high = encodeSample(block[i + 1], predictor, index);
+            predictor = decodeSample(high, predictor, index);
+            index = nextIndex(index, high);
+
+            output[position++] = (byte) (low | (high << 4));
+        }
+
+        mIndex = index;
+    }
+
+    private static int encodeSample(int sample, int predictor, int index) {
+
+        int step = STEP_TABLE[index];
+        int difference = sample - predictor;
+        int nibble = 0;
+
+        if (difference < 0) {
+            nibble = 8;
+            difference = -difference;
+        }
+
+        if (difference >= step) {
+            nibble |= 4;
+            difference -= step;
+        }
+
+        step >>= 1;
+
+        if (difference >= step) {
+            nibble |= 2;
+            difference -= step;
+        }
+
+        step >>= 1;
+
+        if (difference >= step) {
+            nibble |= 1;
+        }
+
+        return nibble;
+    }
+
+    /** Returns the predictor after a nibble, the same in the encoder and the decoder. */
+    static int decodeSample(int nibble, int predictor, int index) {
+
+        int step = STEP_TABLE[index];
+        int difference = step >> 3;
+
+        if ((nibble & 4) != 0) {
+            difference += step;
+        }
+
+        if ((nibble & 2) != 0) {
+            difference += step >> 1;
+        }
+
+        if ((nibble & 1) != 0) {
+            difference += step >> 2;
+        }
+
+        predictor += ((nibble & 8) != 0) ? -difference : difference;
+
+        if (predictor > Short.MAX_VALUE) {
+            return Short.MAX_VALUE;
+        }
+
+        if (predictor < Short.MIN_VALUE) {
+            return Short.MIN_VALUE;
+        }
+
+        return predictor;
+    }
+
+    static int nextIndex(int index, int nibble) {
+
+        index += INDEX_TABLE[nibble];
+
+        if (index < 0) {
+            return 0;
+        }
+
+        return (index > MAX_INDEX) ? MAX_INDEX : index;
+    }
+
+}
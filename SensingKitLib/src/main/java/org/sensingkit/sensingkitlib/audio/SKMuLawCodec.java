@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.audio;
+
+/**
+ * G.711 mu-law encoding of 16-bit PCM audio into 8 bits per sample (2:1).
+ *
+ * Stateless, so that frames can be encoded and decoded in any order, in any thread. Decoding
+ * uses a table of the 256 codes.
+ */
+public final class SKMuLawCodec {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKMuLawCodec";
+
+    private static final int BIAS = 0x84;
+    private static final int CLIP = 32635;
+
+    private static final short[] DECODE_TABLE = new short[256];
+
+    static {
+        for (int code = 0; code < 256; code++) {
+            DECODE_TABLE[code] = decodeCode(code);
+        }
+    }
+
+    private SKMuLawCodec() {
+    }
+
+    public static byte encode(short sample) {
+
+        int value = sample;
+        int sign = 0;
+
+        if (value < 0) {
+            sign = 0x80;
+            value = -value;
+        }
+
+        if (value > CLIP) {
+            value = CLIP;
+        }
+
+        value += BIAS;
+
+        // Position of the highest bit above the 7 bits of the bias (0 to 7)
+        int exponent = 24 - Integer.numberOfLeadingZeros(value);
+        int mantissa = (value >> (exponent + 3)) & 0x0F;
+
+        return (byte) ~(sign | (exponent << 4) | mantissa);
+    }
+
+    public static short decode(byte code) {
+        return DECODE_TABLE[code & 0xFF];
+    }
+
+    /** Encodes length samples from offset into output, one byte per sample. */
+    public static void encode(short[] samples, int offset, int length, byte[] output, int outputOffset) {
+
+        for (int i = 0; i < length; i++) {
+            output[outputOffset + i] = encode(samples[offset + i]);
+        }
+    }
+
+    /** Decodes length bytes from offset into output, one sample per byte. */
+    public static void decode(byte[] codes, int offset, int length, short[] output, int outputOffset) {
+
+        for (int i = 0; i < length; i++) {
+            output[outputOffset + i] = DECODE_TABLE[codes[offset + i] & 0xFF];
+        }
+    }
+
+    private static short decodeCode(int code) {
+
+        code = ~code;
+
+        int exponent = (code >> 4) & 0x07;
+        int mantissa = code & 0x0F;
+        int value = (((mantissa << 3) + BIAS) << exponent) - BIAS;
+
+        return (short) (((code & 0x80) != 0) ? -value : value);
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.audio;
+
+import org.sensingkit.sensingkitlib.dsp.SKVoiceActivityDetector;
+
+/**
+ * Passes the audio of a capture on to another listener only while there is voice (sound)
+ * activity, from a pre-roll before the first speech frame until the end of the hangover after
+ * the last one. Silent audio is dropped, so that the positions of the audio that is passed on
+ * have gaps.
+ *
+ * The last samples are kept in a history ring, and the audio is passed on from the ring as
+ * the detector completes its frames. Nothing is allocated after the capture has started.
+ */
+public class SKVoiceActivityGate implements SKAudioFrameListener {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKVoiceActivityGate";
+
+    public static final int FRAME_SIZE = 20;  // ms
+
+    // Longest part of a frame that is processed at once, which bounds the size of the history
+    private static final int MAX_PART_LENGTH = 4096;
+
+    private final SKAudioFrameListener mListener;
+    private final float mThreshold;
+    private final int mHangover;
+    private final int mPreRoll;
+
+    // Used by the capture thread only
+    private SKVoiceActivityDetector mVoiceActivityDetector;
+    private short[] mHistory;
+    private int mPreRollLength;
+    private long mDetectorStartPosition;
+    private long mNextPosition = -1;
+    private long mGatePosition;
+    private boolean mOpen;
+
+    private final SKVoiceActivityDetector.OnFrameListener mFrameListener = new SKVoiceActivityDetector.OnFrameListener() {
+        @Override
+        public void onFrame(long position, SKVoiceActivityDetector detector) {
+
+            long end = mDetectorStartPosition + position;
+
+            if (detector.isActive() && !mOpen) {
+
+                // Audio before the pre-roll, or already passed on, is not passed on
+                mGatePosition = Math.max(end - detector.getFrameSize() - mPreRollLength, mGatePosition);
+                mOpen = true;
+            }
+
+            if (mOpen) {
+
+                passOn(end);
+
+                if (!detector.isActive()) {
+                    mOpen = false;
+                }
+            }
+        }
+    };
+
+    /**
+     * Threshold is the margin (in dB) over the noise floor of speech, hangover how long (in ms)
+     * activity continues after speech and pre-roll how much audio (in ms) before it is passed on.
+     */
+    public SKVoiceActivityGate(SKAudioFrameListener listener, float threshold, int hangover, int preRoll) {
+
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive.");
+        }
+
+        if (hangover < 0 || preRoll < 0) {
+            throw new IllegalArgumentException("Hangover and pre-roll cannot be negative.");
+        }
+
+        mListener = listener;
+        mThreshold = threshold;
+        mHangover = hangover;
+        mPreRoll = preRoll;
+    }
+
+    @Override
+    public void onAudioStarted(int sampleRate, long timestamp) {
+
+        int frameSize = FRAME_SIZE * sampleRate / 1000;
+
+        mVoiceActivityDetector = new SKVoiceActivityDetector(frameSize, sampleRate);
+        mVoiceActivityDetector.setThreshold(mThreshold);
+        mVoiceActivityDetector.setHangover(mHangover);
+
+        // A frame can start in the previous part, and the pre-roll is before the frame
+        mPreRollLength = (int) ((long) mPreRoll * sampleRate / 1000);
+        mHistory = new short[mPreRollLength + frameSize + MAX_PART_LENGTH];
+        mNextPosition = -1;
+
+        mListener.onAudioStarted(sampleRate, timestamp);
+    }
+
+    @Override
+    public void onAudioFrame(short[] samples, int offset, int length, long position) {
+
+        // Detection starts again after audio that was lost
+        if (position != mNextPosition) {
+            mVoiceActivityDetector.reset();
+            mDetectorStartPosition = position;
+            mGatePosition = position;
+            mOpen = false;
+        }
+
+        mNextPosition = position + length;
+
+        // In parts, so that the history does not depend on the size of the frames
+        int end = offset + length;
+
+        while (offset < end) {
+
+            int count = Math.min(end - offset, MAX_PART_LENGTH);
+
+            writeHistory(position, samples, offset, count);
+            mVoiceActivityDetector.process(samples, offset, count, mFrameListener);
+
+            // Samples of the incomplete frame, so that the listener does not lag behind
+            if (mOpen) {
+                passOn(position + count);
+            }
+
+            offset += count;
+            position += count;
+        }
+    }
+
+    @Override
+    public void onAudioStopped() {
+        mListener.onAudioStopped();
+    }
+
+    private void writeHistory(long position, short[] samples, int offset, int length) {
+
+        int index = (int) (position % mHistory.length);
+        int count = Math.min(length, mHistory.length - index);
+
+        System.arraycopy(samples, offset, mHistory, index, count);
+        System.arraycopy(samples, offset + count, mHistory, 0, length - count);
+    }
+
+    /** Passes the samples of the history up to (but not including) position on to the listener. */
+    private void passOn(long position) {
+
+        while (mGatePosition < position) {
+
+            int index = (int) (mGatePosition % mHistory.length);
+            int count = (int) Math.min(position - mGatePosition, mHistory.length - index);
+
+            mListener.onAudioFrame(mHistory, index, count, mGatePosition);
+            mGatePosition += count;
+        }
+    }
+
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Writes 16-bit mono PCM audio into a WAV file, as PCM or compressed into mu-law (2:1) or
+ * IMA ADPCM (about 4:1). The sizes in the header are written when the file is closed.
+ */
+public class SKWaveFileWriter {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKWaveFileWriter";
+
+    public static final String FILE_EXTENSION = ".wav";
+
+    public enum Format {
+        PCM,
+        MU_LAW,
+        IMA_ADPCM
+    }
+
+    private static final int BUFFER_SAMPLES = 4096;
+
+    private final RandomAccessFile mFile;
+    private final Format mFormat;
+    private final SKImaAdpcmEncoder mAdpcmEncoder;
+    private final byte[] mBuffer;
+
+    private int mHeaderSize;
+    private long mFactOffset = -1;
+    private long mDataSize;
+    private long mSampleCount;
+
+    public SKWaveFileWriter(File file, int sampleRate) throws IOException {
+        this(file, sampleRate, Format.PCM);
+    }
+
+    public SKWaveFileWriter(File file, int sampleRate, Format format) throws IOException {
+
+        mFormat = format;
+
+        switch (format) {
+
+            case MU_LAW:
+                mAdpcmEncoder = null;
+                mBuffer = new byte[BUFFER_SAMPLES];
+                break;
+
+            case IMA_ADPCM:
+                mAdpcmEncoder = new SKImaAdpcmEncoder(SKImaAdpcmEncoder.getDefaultBlockAlign(sampleRate));
+                mBuffer = new byte[(BUFFER_SAMPLES / mAdpcmEncoder.getSamplesPerBlock() + 1) * mAdpcmEncoder.getBlockAlign()];
+                break;
+
+            default:
+                mAdpcmEncoder = null;
+                mBuffer = new byte[BUFFER_SAMPLES * 2];
+                break;
+        }
+
+        mFile = new RandomAccessFile(file, "rw");
+
+        try {
+            mFile.setLength(0);
+            writeHeader(sampleRate);
+        }
+        catch (IOException e) {
+            mFile.close();
+            throw e;
+        }
+    }
+
+    private void writeHeader(int sampleRate) throws IOException {
+
+        mFile.writeBytes("RIFF");
+        writeIntLittleEndian(0);                // Patched in close()
+        mFile.writeBytes("WAVE");
+
+        mFile.writeBytes("fmt ");
+
+        switch (mFormat) {
+
+            case MU_LAW:
+                writeIntLittleEndian(18);
+                writeShortLittleEndian(7);              // mu-law
+                writeShortLittleEndian(1);              // Mono
+                writeIntLittleEndian(sampleRate);
+                writeIntLittleEndian(sampleRate);       // Byte rate
+                writeShortLittleEndian(1);              // Block align
+                writeShortLittleEndian(8);              // Bits per sample
+                writeShortLittleEndian(0);              // Extra format bytes
+                break;
+
+            case IMA_ADPCM:
+                int blockAlign = mAdpcmEncoder.getBlockAlign();
+                int samplesPerBlock = mAdpcmEncoder.getSamplesPerBlock();
+
+                writeIntLittleEndian(20);
+                writeShortLittleEndian(0x11);           // IMA ADPCM
+                writeShortLittleEndian(1);              // Mono
+                writeIntLittleEndian(sampleRate);
+                writeIntLittleEndian((int) ((long) sampleRate * blockAlign / samplesPerBlock));  // Byte rate
+                writeShortLittleEndian(blockAlign);
+                writeShortLittleEndian(4);              // Bits per sample
+                writeShortLittleEndian(2);              // Extra format bytes
+                writeShortLittleEndian(samplesPerBlock);
+                break;
+
+            default:
+                writeIntLittleEndian(16);
+                writeShortLittleEndian(1);              // PCM
+                writeShortLittleEndian(1);              // Mono
+                writeIntLittleEndian(sampleRate);
+                writeIntLittleEndian(sampleRate * 2);   // Byte rate
+                writeShortLittleEndian(2);              // Block align
+                writeShortLittleEndian(16);             // Bits per sample
+                break;
+        }
+
+        // Compressed formats also have the number of samples
+        if (mFormat != Format.PCM) {
+            mFile.writeBytes("fact");
+            writeIntLittleEndian(4);
+            mFactOffset = mFile.getFilePointer();
+            writeIntLittleEndian(0);            // Patched in close()
+        }
+
+        mFile.writeBytes("data");
+        writeIntLittleEndian(0);                // Patched in close()
+
+        mHeaderSize = (int) mFile.getFilePointer();
+    }
+
+    public Format getFormat() {
+        return mFormat;
+    }
+
+    public void write(short[] samples, int offset, int length) throws IOException {
+
+        while (length > 0) {
+
+            int count = Math.min(length, BUFFER_SAMPLES);
+            int size;
+
+            switch (mFormat) {
+
+                case MU_LAW:
+                    SKMuLawCodec.encode(samples, offset, count, mBuffer, 0);
+                    size = count;
+                    break;
+
+                case IMA_ADPCM:
+                    size = mAdpcmEncoder.encode(samples, offset, count, mBuffer, 0);
+                    break;
+
+                default:
+                    for (int i = 0; i < count; i++) {
+                        short sample = samples[offset + i];
+                        mBuffer[2 * i] = (byte) sample;
+                        mBuffer[2 * i + 1] = (byte) (sample >> 8);
+                    }
+
+                    size = count * 2;
+                    break;
+            }
+
+            mFile.write(mBuffer, 0, size);
+            mDataSize += size;
+            mSampleCount += count;
+
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /** Returns the number of bytes of audio written so far. */
+    public long getDataSize() {
+        return mDataSize;
+    }
+
+    /** Returns the number of samples written so far. */
+    public long getSampleCount() {
+        return mSampleCount;
+    }
+
+    /** Returns the number of samples that can still be written before the file is larger than maxFileSize bytes. */
+    public long getRemainingSampleCount(long maxFileSize) {
+
+        long maxDataSize = maxFileSize - mHeaderSize;
+        long maxSampleCount;
+
+        switch (mFormat) {
+
+            case MU_LAW:
+                maxSampleCount = maxDataSize - 1;   // Pad byte
+                break;
+
+            case IMA_ADPCM:
+                maxSampleCount = maxDataSize / mAdpcmEncoder.getBlockAlign() * mAdpcmEncoder.getSamplesPerBlock();
+                break;
+
+            default:
+                maxSampleCount = maxDataSize / 2;
+                break;
+        }
+
+        return Math.max(0, maxSampleCount - mSampleCount);
+    }
+
+    public void close() throws IOException {
+
+        try {
+            // Last block of IMA ADPCM
+            if (mAdpcmEncoder != null) {
+                int size = mAdpcmEncoder.flush(mBuffer, 0);
+                mFile.write(mBuffer, 0, size);
+                mDataSize += size;
+            }
+
+            // Chunks have an even size
+            if (mDataSize % 2 != 0) {
+                mFile.write(0);
+            }
+
+            mFile.seek(4);
+            writeIntLittleEndian((int) (mHeaderSize - 8 + mDataSize + mDataSize % 2));
+
+            if (mFactOffset >= 0) {
+                mFile.seek(mFactOffset);
+                writeIntLittleEndian((int) mSampleCount);
+            }
+
+            mFile.seek(mHeaderSize - 4);
+            writeIntLittleEndian((int) mDataSize);
+        }
+        finally {
+            mFile.close();
+        }
+    }
+
+    private void writeIntLittleEndian(int value) throws IOException {
+        mFile.write(value);
+        mFile.write(value >> 8);
+        mFile.write(value >> 16);
+        mFile.write(value >> 24);
+    }
+
+    private void writeShortLittleEndian(int value) throws IOException {
+        mFile.write(value);
+        mFile.write(value >> 8);
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.configuration;
+
+/**
+ * Base class of the configurations of the sensor modules that only post significant changes
+ * (see SKChangePolicy).
+ */
+public abstract class SKAbstractChangePolicyConfiguration extends SKConfiguration {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKAbstractChangePolicyConfiguration";
+
+    private SKChangePolicy mChangePolicy = new SKChangePolicy();
+
+    protected SKAbstractChangePolicyConfiguration() {
+    }
+
+    protected SKAbstractChangePolicyConfiguration(SKAbstractChangePolicyConfiguration configuration) {
+        super(configuration);
+
+        this.mChangePolicy = new SKChangePolicy(configuration.mChangePolicy);
+    }
+
+    public SKChangePolicy getChangePolicy() {
+        return mChangePolicy;
+    }
+
+    public void setChangePolicy(SKChangePolicy changePolicy) {
+        mChangePolicy = new SKChangePolicy(changePolicy);
+    }
+
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.configuration;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+
+/**
+ * Configuration of the Audio Level sensor module.
+ *
+ * A level sample is computed over a window of audio and posted every hop (equal to the
+ * window by default, so windows do not overlap). The window is rounded to a multiple of the
+ * hop. The calibration offset converts dBFS into dB SPL for the microphone of the device
+ * (dB SPL = dBFS + offset); dB SPL is not reported (NaN) until it is set.
+ *
+ * Spectral analysis is an optional stage of the capture thread that also posts an
+ * SKAudioSpectrumData for each frame of audio (frame size in samples, a power of two).
+ *
+ * Voice activity detection tags the level data of silent audio as inactive. With a silence
+ * policy other than DELIVER, the level meter and the spectral analysis only run while there
+ * is activity (from the pre-roll before it until the end of the hangover after it), and
+ * silent audio is either summarised once every silence interval (THROTTLE) or not posted at
+ * all (SUPPRESS).
+ *
+ * Onset detection posts an SKAudioOnsetData as soon as a loud or impulsive sound starts (its
+ * energy rises threshold dB above the noise floor), independently of voice activity. Onsets
+ * are at least the minimum interval (in ms) apart.
+ *
+ * The capture parameters (sample rate, AudioRecord buffer size as a multiple of the minimum
+ * size, and samples per read) are shared by all the consumers of the microphone: setting
+ * them restarts a running capture.
+ */
+public class SKAudioLevelConfiguration extends SKConfiguration {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKAudioLevelConfiguration";
+
+    public static final int DEFAULT_WINDOW_SIZE = 100;  // ms
+    public static final int DEFAULT_HOP_SIZE = 100;     // ms
+
+    private int mWindowSize = DEFAULT_WINDOW_SIZE;
+    private int mHopSize = DEFAULT_HOP_SIZE;
+    private float mCalibrationOffset = Float.NaN;
+
+    public static final int DEFAULT_SPECTRAL_FRAME_SIZE = 256;  // samples
+    public static final int DEFAULT_SPECTRAL_BAND_COUNT = 8;
+
+    private boolean mSpectralAnalysisEnabled = false;
+    private int mSpectralFrameSize = DEFAULT_SPECTRAL_FRAME_SIZE;
+    private int mSpectralBandCount = DEFAULT_SPECTRAL_BAND_COUNT;
+
+    public enum SilencePolicy {
+        DELIVER,
+        THROTTLE,
+        SUPPRESS
+    }
+
+    public static final int VOICE_ACTIVITY_FRAME_SIZE = 20;        // ms
+    public static final float DEFAULT_VOICE_ACTIVITY_THRESHOLD = 9;  // dB
+    public static final int DEFAULT_HANGOVER = 300;                 // ms
+    public static final int DEFAULT_PRE_ROLL = 200;                 // ms
+    public static final int DEFAULT_SILENCE_INTERVAL = 1000;        // ms
+
+    private boolean mVoiceActivityDetectionEnabled = false;
+    private float mVoiceActivityThreshold = DEFAULT_VOICE_ACTIVITY_THRESHOLD;
+    private int mHangover = DEFAULT_HANGOVER;
+    private int mPreRoll = DEFAULT_PRE_ROLL;
+    private SilencePolicy mSilencePolicy = SilencePolicy.THROTTLE;
+    private int mSilenceInterval = DEFAULT_SILENCE_INTERVAL;
+
+    public static final int ONSET_FRAME_SIZE = 10;                // ms
+    public static final float DEFAULT_ONSET_THRESHOLD = 15;       // dB
+    public static final int DEFAULT_ONSET_MINIMUM_INTERVAL = 100;  // ms
+
+    private boolean mOnsetDetectionEnabled = false;
+    private float mOnsetThreshold = DEFAULT_ONSET_THRESHOLD;
+    private int mOnsetMinimumInterval = DEFAULT_ONSET_MINIMUM_INTERVAL;
+
+    public static final int DEFAULT_SAMPLE_RATE = 8000;     // Hz
+    public static final int DEFAULT_BUFFER_SIZE_FACTOR = 4;
+    public static final int DEFAULT_READ_SIZE = 0;          // samples, 0 for the minimum buffer size
+
+    private int mSampleRate = DEFAULT_SAMPLE_RATE;
+    private int mBufferSizeFactor = DEFAULT_BUFFER_SIZE_FACTOR;
+    private int mReadSize = DEFAULT_READ_SIZE;
+
+    public SKAudioLevelConfiguration() {
+    }
+
+    public SKAudioLevelConfiguration(SKAudioLevelConfiguration configuration) {
+        super(configuration);
+
+        this.mWindowSize = configuration.mWindowSize;
+        this.mHopSize = configuration.mHopSize;
+        this.mCalibrationOffset = configuration.mCalibrationOffset;
+        this.mSpectralAnalysisEnabled = configuration.mSpectralAnalysisEnabled;
+        this.mSpectralFrameSize = configuration.mSpectralFrameSize;
+        this.mSpectralBandCount = configuration.mSpectralBandCount;
+        this.mVoiceActivityDetectionEnabled = configuration.mVoiceActivityDetectionEnabled;
+        this.mVoiceActivityThreshold = configuration.mVoiceActivityThreshold;
+        this.mHangover = configuration.mHangover;
+        this.mPreRoll = configuration.mPreRoll;
+        this.mSilencePolicy = configuration.mSilencePolicy;
+        this.mSilenceInterval = configuration.mSilenceInterval;
+        this.mOnsetDetectionEnabled = configuration.mOnsetDetectionEnabled;
+        this.mOnsetThreshold = configuration.mOnsetThreshold;
+        this.mOnsetMinimumInterval = configuration.mOnsetMinimumInterval;
+        this.mSampleRate = configuration.mSampleRate;
+        this.mBufferSizeFactor = configuration.mBufferSizeFactor;
+        this.mReadSize = configuration.mReadSize;
+    }
+
+    @Override
+    public SKAudioLevelConfiguration copy() {
+        return new SKAudioLevelConfiguration(this);
+    }
+
+    public int getWindowSize() {
+        return mWindowSize;
+    }
+
+    public int getHopSize() {
+        return mHopSize;
+    }
+
+    /** Sets the window and hop sizes, in ms. */
+    public void setWindow(int windowSize, int hopSize) throws SKException {
+
+        if (hopSize <= 0 || windowSize < hopSize) {
+            throw new SKException(TAG, "Hop size must be positive and not larger than the window size.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mWindowSize = windowSize;
+        mHopSize = hopSize;
+    }
+
+    public float getCalibrationOffset() {
+        return mCalibrationOffset;
+    }
+
+    /** Sets the offset (in dB) from dBFS to dB SPL, or NaN to not report dB SPL. */
+    public void setCalibrationOffset(float calibrationOffset) {
+        mCalibrationOffset = calibrationOffset;
+    }
+
+    public boolean isSpectralAnalysisEnabled() {
+        return mSpectralAnalysisEnabled;
+    }
+
+    public void setSpectralAnalysisEnabled(boolean spectralAnalysisEnabled) {
+        mSpectralAnalysisEnabled = spectralAnalysisEnabled;
+    }
+
+    public int getSpectralFrameSize() {
+        return mSpectralFrameSize;
+    }
+
+    public int getSpectralBandCount() {
+        return mSpectralBandCount;
+    }
+
+    /** Sets the frame size (in samples, a power of two) and the number of bands of the spectral analysis. */
+    public void setSpectralAnalysis(int frameSize, int bandCount) throws SKException {
+
+        if (frameSize < 16 || Integer.bitCount(frameSize) != 1) {
+            throw new SKException(TAG, "Spectral frame size must be a power of two (at least 16).", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        if (bandCount < 1 || bandCount > frameSize / 2) {
+            throw new SKException(TAG, "Spectral band count must be between 1 and half the frame size.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mSpectralFrameSize = frameSize;
+        mSpectralBandCount = bandCount;
+    }
+
+    public boolean isVoiceActivityDetectionEnabled() {
+        return mVoiceActivityDetectionEnabled;
+    }
+
+    public void setVoiceActivityDetectionEnabled(boolean voiceActivityDetectionEnabled) {
+        mVoiceActivityDetectionEnabled = voiceActivityDetectionEnabled;
+    }
+
+    public float getVoiceActivityThreshold() {
+        return mVoiceActivityThreshold;
+    }
+
+    public int getHangover() {
+        return mHangover;
+    }
+
+    public int getPreRoll() {
+        return mPreRoll;
+    }
+
+    /**
+     * Sets the margin (in dB) over the noise floor of speech, how long (in ms) activity
+     * continues after speech and how much audio (in ms) before it is also processed.
+     */
+    public void setVoiceActivityDetection(float threshold, int hangover, int preRoll) throws SKException {
+
+        if (threshold <= 0) {
+            throw new SKException(TAG, "Voice activity threshold must be positive.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        if (hangover < 0 || preRoll < 0) {
+            throw new SKException(TAG, "Hangover and pre-roll cannot be negative.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mVoiceActivityThreshold = threshold;
+        mHangover = hangover;
+        mPreRoll = preRoll;
+    }
+
+    public SilencePolicy getSilencePolicy() {
+        return mSilencePolicy;
+    }
+
+    public void setSilencePolicy(SilencePolicy silencePolicy) {
+        mSilencePolicy = silencePolicy;
+    }
+
+    public int getSilenceInterval() {
+        return mSilenceInterval;
+    }
+
+    /** Sets how often (in ms) silent audio is posted with the THROTTLE policy. */
+    public void setSilenceInterval(int silenceInterval) throws SKException {
+
+        if (silenceInterval <= 0) {
+            throw new SKException(TAG, "Silence interval must be positive.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mSilenceInterval = silenceInterval;
+    }
+
+    public boolean isOnsetDetectionEnabled() {
+        return mOnsetDetectionEnabled;
+    }
+
+    public void setOnsetDetectionEnabled(boolean onsetDetectionEnabled) {
+        mOnsetDetectionEnabled = onsetDetectionEnabled;
+    }
+
+    public float getOnsetThreshold() {
+        return mOnsetThreshold;
+    }
+
+    public int getOnsetMinimumInterval() {
+        return mOnsetMinimumInterval;
+    }
+
+    /** Sets the rise (in dB) over the noise floor of an onset and the minimum time (in ms) between onsets. */
+    public void setOnsetDetection(float threshold, int minimumInterval) throws SKException {
+
+        if (threshold <= 0) {
+            throw new SKException(TAG, "Onset threshold must be positive.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        if (minimumInterval < 0) {
+            throw new SKException(TAG, "Onset minimum interval cannot be negative.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mOnsetThreshold = threshold;
+        mOnsetMinimumInterval = minimumInterval;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getBufferSizeFactor() {
+        return mBufferSizeFactor;
+    }
+
+    public int getReadSize() {
+        return mReadSize;
+    }
+
+    /**
+     * Sets the sample rate (in Hz), the size of the AudioRecord buffer (as a multiple of the
+     * minimum buffer size) and the number of samples of each read (0 for the minimum buffer size).
+     */
+    public void setCapture(int sampleRate, int bufferSizeFactor, int readSize) throws SKException {
+
+        if (sampleRate < 4000 || sampleRate > 48000) {
+            throw new SKException(TAG, "Sample rate must be between 4000 and 48000 Hz.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        if (bufferSizeFactor < 1) {
+            throw new SKException(TAG, "Buffer size factor must be at least 1.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        if (readSize < 0) {
+            throw new SKException(TAG, "Read size cannot be negative.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mSampleRate = sampleRate;
+        mBufferSizeFactor = bufferSizeFactor;
+        mReadSize = readSize;
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.configuration;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+
+import java.io.File;
+
+/**
+ * Configuration of the Audio Recorder sensor module.
+ *
+ * Audio is recorded into chunk files named prefix_timestamp_index.aac (the timestamp of the
+ * start of sensing in ms, and the number of the chunk from 0) in the output directory, or in
+ * the external storage directory if it is not set. A chunk is completed, and the next one started, when it reaches the maximum
+ * duration (in ms) or size (in bytes); 0 means no limit, so that a single chunk is recorded
+ * until sensing stops.
+ *
+ * By default (the SHARED_CAPTURE source), the PCM of the shared audio capture (see
+ * SKAudioCaptureEngine) is encoded, so that the Audio Recorder can run together with the
+ * Audio Level sensor module. Shared capture chunks are split exactly between AAC frames. With
+ * the MEDIA_RECORDER source, audio is recorded by a MediaRecorder that opens the microphone
+ * itself, and no other audio sensor module can run at the same time.
+ *
+ * Shared capture audio can also be recorded into WAV chunks (prefix_timestamp_index.wav) of
+ * PCM, mu-law (half the size of PCM) or IMA ADPCM (about a quarter), encoded in Java without
+ * MediaCodec and split at the exact sample.
+ *
+ * With voice activity gating, shared capture audio is only recorded while there is activity
+ * (from the pre-roll before speech until the end of the hangover after it), and a chunk is
+ * completed at each gap, so that chunks only hold continuous audio.
+ */
+public class SKAudioRecorderConfiguration extends SKConfiguration {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKAudioRecorderConfiguration";
+
+    public enum Source {
+        MEDIA_RECORDER,
+        SHARED_CAPTURE
+    }
+
+    public enum Encoding {
+        AAC,
+        PCM,
+        MU_LAW,
+        IMA_ADPCM
+    }
+
+    public static final String DEFAULT_FILE_NAME_PREFIX = "recording";
+
+    private Source mSource = Source.SHARED_CAPTURE;
+    private Encoding mEncoding = Encoding.AAC;
+
+    private File mOutputDirectory = null;
+    private String mFileNamePrefix = DEFAULT_FILE_NAME_PREFIX;
+    private int mMaxChunkDuration = 0;
+    private long mMaxChunkSize = 0;
+
+    public static final float DEFAULT_VOICE_ACTIVITY_THRESHOLD = 9;  // dB
+    public static final int DEFAULT_HANGOVER = 1000;                // ms
+    public static final int DEFAULT_PRE_ROLL = 300;                 // ms
+
+    private boolean mVoiceActivityGatingEnabled = false;
+    private float mVoiceActivityThreshold = DEFAULT_VOICE_ACTIVITY_THRESHOLD;
+    private int mHangover = DEFAULT_HANGOVER;
+    private int mPreRoll = DEFAULT_PRE_ROLL;
+
+    public SKAudioRecorderConfiguration() {
+    }
+
+    public SKAudioRecorderConfiguration(SKAudioRecorderConfiguration configuration) {
+        super(configuration);
+
+        this.mSource = configuration.mSource;
+        this.mEncoding = configuration.mEncoding;
+        this.mOutputDirectory = configuration.mOutputDirectory;
+        this.mFileNamePrefix = configuration.mFileNamePrefix;
+        this.mMaxChunkDuration = configuration.mMaxChunkDuration;
+        this.mMaxChunkSize = configuration.mMaxChunkSize;
+        this.mVoiceActivityGatingEnabled = configuration.mVoiceActivityGatingEnabled;
+        this.mVoiceActivityThreshold = configuration.mVoiceActivityThreshold;
+        this.mHangover = configuration.mHangover;
+        this.mPreRoll = configuration.mPreRoll;
+    }
+
+    @Override
+    public SKAudioRecorderConfiguration copy() {
+        return new SKAudioRecorderConfiguration(this);
+    }
+
+    public Source getSource() {
+        return mSource;
+    }
+
+    /** Sets how audio is recorded. Applied when sensing starts. */
+    public void setSource(Source source) {
+        mSource = source;
+    }
+
+    public Encoding getEncoding() {
+        return mEncoding;
+    }
+
+    /** Sets the encoding of the SHARED_CAPTURE source (MEDIA_RECORDER always records AAC). Applied when sensing starts. */
+    public void setEncoding(Encoding encoding) {
+        mEncoding = encoding;
+    }
+
+    /** Returns the output directory, or null for the external storage directory. */
+    public File getOutputDirectory() {
+        return mOutputDirectory;
+    }
+
+    public void setOutputDirectory(File outputDirectory) {
+        mOutputDirectory = outputDirectory;
+    }
+
+    public String getFileNamePrefix() {
+        return mFileNamePrefix;
+    }
+
+    public void setFileNamePrefix(String fileNamePrefix) throws SKException {
+
+        if (fileNamePrefix == null || fileNamePrefix.length() == 0 || fileNamePrefix.indexOf(File.separatorChar) >= 0) {
+            throw new SKException(TAG, "File name prefix must be a non-empty file name.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mFileNamePrefix = fileNamePrefix;
+    }
+
+    public int getMaxChunkDuration() {
+        return mMaxChunkDuration;
+    }
+
+    /** Sets the maximum duration of a chunk in ms, or 0 for no limit. */
+    public void setMaxChunkDuration(int maxChunkDuration) throws SKException {
+
+        if (maxChunkDuration < 0) {
+            throw new SKException(TAG, "Maximum chunk duration cannot be negative.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mMaxChunkDuration = maxChunkDuration;
+    }
+
+    public long getMaxChunkSize() {
+        return mMaxChunkSize;
+    }
+
+    /** Sets the maximum size of a chunk in bytes, or 0 for no limit. */
+    public void setMaxChunkSize(long maxChunkSize) throws SKException {
+
+        if (maxChunkSize < 0) {
+            throw new SKException(TAG, "Maximum chunk size cannot be negative.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mMaxChunkSize = maxChunkSize;
+    }
+
+    /** Returns true if chunks are completed by duration or size. */
+    public boolean isChunkRotationEnabled() {
+        return mMaxChunkDuration > 0 || mMaxChunkSize > 0;
+    }
+
+    public boolean isVoiceActivityGatingEnabled() {
+        return mVoiceActivityGatingEnabled;
+    }
+
+    /** Records only while there is voice activity. SHARED_CAPTURE only, applied when sensing starts. */
+    public void setVoiceActivityGatingEnabled(boolean voiceActivityGatingEnabled) {
+        mVoiceActivityGatingEnabled = voiceActivityGatingEnabled;
+    }
+
+    public float getVoiceActivityThreshold() {
+        return mVoiceActivityThreshold;
+    }
+
+    public int getHangover() {
+        return mHangover;
+    }
+
+    public int getPreRoll() {
+        return mPreRoll;
+    }
+
+    /**
+     * Sets the margin (in dB) over the noise floor of speech, how long (in ms) recording
+     * continues after speech and how much audio (in ms) before it is also recorded.
+     */
+    public void setVoiceActivityGating(float threshold, int hangover, int preRoll) throws SKException {
+
+        if (threshold <= 0) {
+            throw new SKException(TAG, "Voice activity threshold must be positive.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        if (hangover < 0 || preRoll < 0) {
+            throw new SKException(TAG, "Hangover and pre-roll cannot be negative.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mVoiceActivityThreshold = threshold;
+        mHangover = hangover;
+        mPreRoll = preRoll;
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.configuration;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+
+/**
+ * Decides which samples of a sensor module are significant enough to be posted.
+ *
+ * A sample is compared with the last posted sample:
+ * - It is never posted sooner than the minimum interval after the last posted sample.
+ * - It is always posted if the heartbeat interval has passed since the last posted sample.
+ * - Otherwise, it is posted if any state (e.g. the battery status) changed, or if any value
+ *   changed by more than the deadband: the larger of the absolute deadband and the relative
+ *   deadband times the last posted value. A change in the opposite direction of the last
+ *   posted change must also exceed the hysteresis, so values that oscillate around a
+ *   threshold are not posted again and again.
+ *
+ * The default policy posts every change, without any time limits.
+ */
+public class SKChangePolicy {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKChangePolicy";
+
+    private float mAbsoluteDeadband = 0;
+    private float mRelativeDeadband = 0;
+    private float mHysteresis = 0;
+    private long mMinimumInterval = 0;
+    private long mHeartbeatInterval = 0;
+
+    public SKChangePolicy() {
+    }
+
+    public SKChangePolicy(SKChangePolicy changePolicy) {
+        this.mAbsoluteDeadband = changePolicy.mAbsoluteDeadband;
+        this.mRelativeDeadband = changePolicy.mRelativeDeadband;
+        this.mHysteresis = changePolicy.mHysteresis;
+        this.mMinimumInterval = changePolicy.mMinimumInterval;
+        this.mHeartbeatInterval = changePolicy.mHeartbeatInterval;
+    }
+
+    public float getAbsoluteDeadband() {
+        return mAbsoluteDeadband;
+    }
+
+    /** Sets the smallest change of a value that is posted, in the units of the value. */
+    public void setAbsoluteDeadband(float absoluteDeadband) throws SKException {
+        checkNotNegative(absoluteDeadband);
+        mAbsoluteDeadband = absoluteDeadband;
+    }
+
+    public float getRelativeDeadband() {
+        return mRelativeDeadband;
+    }
+
+    /** Sets the smallest change of a value that is posted, as a fraction of the last posted value (e.g. 0.1 for 10%). */
+    public void setRelativeDeadband(float relativeDeadband) throws SKException {
+        checkNotNegative(relativeDeadband);
+        mRelativeDeadband = relativeDeadband;
+    }
+
+    public float getHysteresis() {
+        return mHysteresis;
+    }
+
+    /** Sets the extra change that is needed when a value reverses its direction. */
+    public void setHysteresis(float hysteresis) throws SKException {
+        checkNotNegative(hysteresis);
+        mHysteresis = hysteresis;
+    }
+
+    public long getMinimumInterval() {
+        return mMinimumInterval;
+    }
+
+    /** Sets the minimum time between two posted samples, in ms (0 for no limit). */
+    public void setMinimumInterval(long minimumInterval) throws SKException {
+        checkNotNegative(minimumInterval);
+        mMinimumInterval = minimumInterval;
+    }
+
+    public long getHeartbeatInterval() {
+        return mHeartbeatInterval;
+    }
+
+    /**
+     * Sets the time after which a sample is posted even if it did not change, in ms (0 to disable).
+     * It applies to the samples the module receives, so it depends on the module receiving samples.
+     */
+    public void setHeartbeatInterval(long heartbeatInterval) throws SKException {
+        checkNotNegative(heartbeatInterval);
+        mHeartbeatInterval = heartbeatInterval;
+    }
+
+    private static void checkNotNegative(double value) throws SKException {
+
+        if (value < 0 || Double.isNaN(value)) {
+            throw new SKException(TAG, "Change policy values cannot be negative.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.configuration;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.dsp.SKMahonyFilter;
+
+/**
+ * Configuration of the Fused Orientation sensor module.
+ *
+ * The sampling interval sets the rate of the accelerometer, gyroscope and magnetometer and of
+ * the orientation samples. The gain sets how fast the accelerometer and magnetometer correct
+ * the drift of the gyroscope, and bias estimation (with its own gain) compensates for a
+ * constant gyroscope offset. Gains can be changed while sensing.
+ */
+public class SKFusedOrientationConfiguration extends SKConfiguration {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKFusedOrientationConfiguration";
+
+    public static final long DEFAULT_SAMPLING_INTERVAL = 5;  // ms, 200 Hz
+
+    private long mSamplingInterval = DEFAULT_SAMPLING_INTERVAL;
+    private float mGain = SKMahonyFilter.DEFAULT_PROPORTIONAL_GAIN;
+    private boolean mBiasEstimationEnabled = true;
+    private float mBiasEstimationGain = SKMahonyFilter.DEFAULT_INTEGRAL_GAIN;
+
+    public SKFusedOrientationConfiguration() {
+    }
+
+    public SKFusedOrientationConfiguration(SKFusedOrientationConfiguration configuration) {
+        super(configuration);
+
+        this.mSamplingInterval = configuration.mSamplingInterval;
+        this.mGain = configuration.mGain;
+        this.mBiasEstimationEnabled = configuration.mBiasEstimationEnabled;
+        this.mBiasEstimationGain = configuration.mBiasEstimationGain;
+    }
+
+    @Override
+    public SKFusedOrientationConfiguration copy() {
+        return new SKFusedOrientationConfiguration(this);
+    }
+
+    public long getSamplingInterval() {
+        return mSamplingInterval;
+    }
+
+    /** Sets the time between two samples, in ms (0 for the fastest rate of the sensors). */
+    public void setSamplingInterval(long samplingInterval) throws SKException {
+
+        if (samplingInterval < 0) {
+            throw new SKException(TAG, "Sampling interval cannot be negative.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mSamplingInterval = samplingInterval;
+    }
+
+    public float getGain() {
+        return mGain;
+    }
+
+    /** Sets the proportional gain of the filter. */
+    public void setGain(float gain) throws SKException {
+
+        if (!(gain >= 0)) {
+            throw new SKException(TAG, "Gain cannot be negative.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mGain = gain;
+    }
+
+    public boolean isBiasEstimationEnabled() {
+        return mBiasEstimationEnabled;
+    }
+
+    public void setBiasEstimationEnabled(boolean biasEstimationEnabled) {
+        mBiasEstimationEnabled = biasEstimationEnabled;
+    }
+
+    public float getBiasEstimationGain() {
+        return mBiasEstimationGain;
+    }
+
+    /** Sets the integral gain of the filter, used when bias estimation is enabled. */
+    public void setBiasEstimationGain(float biasEstimationGain) throws SKException {
+
+        if (!(biasEstimationGain >= 0)) {
+            throw new SKException(TAG, "Bias estimation gain cannot be negative.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mBiasEstimationGain = biasEstimationGain;
+    }
+
+}
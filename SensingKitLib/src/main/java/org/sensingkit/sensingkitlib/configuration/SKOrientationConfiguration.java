@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.configuration;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+
+/**
+ * Configuration of the Orientation sensor module.
+ *
+ * The sampling interval is the minimum time between two orientation samples. Rotation vector
+ * events that arrive sooner are dropped before any computation, so consumers that only need
+ * a few samples per second do not pay for the full sensor rate.
+ */
+public class SKOrientationConfiguration extends SKConfiguration {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKOrientationConfiguration";
+
+    public static final long DEFAULT_SAMPLING_INTERVAL = 200;  // ms, as SENSOR_DELAY_NORMAL
+
+    private long mSamplingInterval = DEFAULT_SAMPLING_INTERVAL;
+
+    public SKOrientationConfiguration() {
+    }
+
+    public SKOrientationConfiguration(SKOrientationConfiguration configuration) {
+        super(configuration);
+
+        this.mSamplingInterval = configuration.mSamplingInterval;
+    }
+
+    @Override
+    public SKOrientationConfiguration copy() {
+        return new SKOrientationConfiguration(this);
+    }
+
+    public long getSamplingInterval() {
+        return mSamplingInterval;
+    }
+
+    /** Sets the minimum time between two samples, in ms (0 for every sensor event). */
+    public void setSamplingInterval(long samplingInterval) throws SKException {
+
+        if (samplingInterval < 0) {
+            throw new SKException(TAG, "Sampling interval cannot be negative.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mSamplingInterval = samplingInterval;
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.data;
+
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * A chunk of audio completed by the Audio Recorder sensor module: the file and its size in
+ * bytes, with the timestamps of the start and end (timestamp) of the recording.
+ */
+public class SKAudioChunkData extends SKAbstractData {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKAudioChunkData";
+
+    protected final long startTimestamp;
+    protected final long size;
+    protected final File file;
+
+    public SKAudioChunkData(long timestamp, long startTimestamp, long size, File file) {
+
+        super(SKSensorModuleType.AUDIO_RECORDER, timestamp);
+
+        this.startTimestamp = startTimestamp;
+        this.size = size;
+        this.file = file;
+    }
+
+    @Override
+    public String getDataInCSV() {
+
+        // Path is last, as it may contain commas
+        return String.format(Locale.US, "%d,%d,%d,%s", this.timestamp, this.startTimestamp, this.size, this.file.getAbsolutePath());
+    }
+
+    @SuppressWarnings("unused")
+    public long getStartTimestamp() {
+        return this.startTimestamp;
+    }
+
+    /** Returns the size of the chunk file, in bytes. */
+    @SuppressWarnings("unused")
+    public long getSize() {
+        return this.size;
+    }
+
+    @SuppressWarnings("unused")
+    public File getFile() {
+        return this.file;
+    }
+
+}
@@ -25,28 +25,75 @@ import org.sensingkit.sensingkitlib.SKSensorModuleType;
 
 import java.util.Locale;
 
+/**
+ * Audio level of a window of audio: peak (level) and RMS in sample units (0 to 32768),
+ * RMS in dBFS and, with a calibrated microphone, in dB SPL (NaN otherwise).
+ *
+ * With voice activity detection, audio without activity is tagged as inactive.
+ */
 public class SKAudioLevelData extends SKAbstractData {
 
     @SuppressWarnings("unused")
     private static final String TAG = "SKAudioLevelData";
 
     protected final int level;
+    protected final float rms;
+    protected final float decibelsFullScale;
+    protected final float soundPressureLevel;
+    protected final boolean active;
 
-    public SKAudioLevelData(long timestamp, int level) {
+    public SKAudioLevelData(long timestamp, int level, float rms, float decibelsFullScale, float soundPressureLevel, boolean active) {
 
         super(SKSensorModuleType.AUDIO_LEVEL, timestamp);
 
         this.level = level;
+        this.rms = rms;
+        this.decibelsFullScale = decibelsFullScale;
+        this.soundPressureLevel = soundPressureLevel;
+        this.active = active;
+    }
+
+    public SKAudioLevelData(long timestamp, int level, float rms, float decibelsFullScale, float soundPressureLevel) {
+        this(timestamp, level, rms, decibelsFullScale, soundPressureLevel, true);
+    }
+
+    /** Peak level only, as recorded by earlier versions. */
+    public SKAudioLevelData(long timestamp, int level) {
+        this(timestamp, level, Float.NaN, Float.NaN, Float.NaN);
     }
 
     @Override
     public String getDataInCSV() {
-        return String.format(Locale.US, "%d,%d", this.timestamp, this.level);
+        return String.format(Locale.US, "%d,%d,%f,%f,%f,%d", this.timestamp, this.level, this.rms, this.decibelsFullScale, this.soundPressureLevel,
+                this.active ? 1 : 0);
     }
 
+    /** Returns the peak level (largest absolute sample value). */
     @SuppressWarnings("unused")
     public int getLevel() {
         return this.level;
     }
 
+    @SuppressWarnings("unused")
+    public float getRms() {
+        return this.rms;
+    }
+
+    @SuppressWarnings("unused")
+    public float getDecibelsFullScale() {
+        return this.decibelsFullScale;
+    }
+
+    /** Returns the level in dB SPL, or NaN if the microphone is not calibrated. */
+    @SuppressWarnings("unused")
+    public float getSoundPressureLevel() {
+        return this.soundPressureLevel;
+    }
+
+    /** Returns false if voice activity detection found no activity in the audio. */
+    @SuppressWarnings("unused")
+    public boolean isActive() {
+        return this.active;
+    }
+
 }
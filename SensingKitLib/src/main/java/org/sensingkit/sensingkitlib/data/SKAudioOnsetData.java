@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.data;
+
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+
+import java.util.Locale;
+
+/**
+ * Onset of a loud or impulsive sound (see SKOnsetDetector), posted by the Audio Level sensor
+ * module when onset detection is enabled. The position is the one of the first sample of the
+ * onset, in samples since the start of the capture, and the timestamp is derived from it.
+ * Peak is in sample units (0 to 32768), energy and noise floor in dBFS.
+ */
+public class SKAudioOnsetData extends SKAbstractData {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKAudioOnsetData";
+
+    /** Second field of the CSV, which distinguishes onsets from the other Audio Level data. */
+    public static final String CSV_TAG = "onset";
+
+    protected final long position;
+    protected final int peak;
+    protected final float energy;
+    protected final float noiseFloor;
+
+    public SKAudioOnsetData(long timestamp, long position, int peak, float energy, float noiseFloor) {
+
+        super(SKSensorModuleType.AUDIO_LEVEL, timestamp);
+
+        this.position = position;
+        this.peak = peak;
+        this.energy = energy;
+        this.noiseFloor = noiseFloor;
+    }
+
+    @Override
+    public String getDataInCSV() {
+        return String.format(Locale.US, "%d,%s,%d,%d,%f,%f", this.timestamp, CSV_TAG, this.position, this.peak, this.energy, this.noiseFloor);
+    }
+
+    /** Returns the position of the onset, in samples since the start of the capture. */
+    @SuppressWarnings("unused")
+    public long getPosition() {
+        return this.position;
+    }
+
+    @SuppressWarnings("unused")
+    public int getPeak() {
+        return this.peak;
+    }
+
+    @SuppressWarnings("unused")
+    public float getEnergy() {
+        return this.energy;
+    }
+
+    @SuppressWarnings("unused")
+    public float getNoiseFloor() {
+        return this.noiseFloor;
+    }
+
+    /** Returns the energy of the onset above the noise floor, in dB. */
+    @SuppressWarnings("unused")
+    public float getEnergyRatio() {
+        return this.energy - this.noiseFloor;
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.data;
+
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+
+import java.util.Locale;
+
+/**
+ * Spectral summary of a frame of audio (see SKSpectralAnalyzer), posted by the Audio Level
+ * sensor module when spectral analysis is enabled. Energies are in dBFS, on the scale of the
+ * audio level (a full scale sine is -3.01 dB), and frequencies in Hz. The timestamp is the
+ * one of the end of the frame.
+ */
+public class SKAudioSpectrumData extends SKAbstractData {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKAudioSpectrumData";
+
+    /** Second field of the CSV, which distinguishes spectra from the other Audio Level data. */
+    public static final String CSV_TAG = "spectrum";
+
+    protected final float energy;
+    protected final float centroid;
+    protected final float rolloff;
+    protected final float flatness;
+    protected final float dominantFrequency;
+    protected final float[] bandEnergies;
+
+    public SKAudioSpectrumData(long timestamp, float energy, float centroid, float rolloff, float flatness, float dominantFrequency, float[] bandEnergies) {
+
+        super(SKSensorModuleType.AUDIO_LEVEL, timestamp);
+
+        this.energy = energy;
+        this.centroid = centroid;
+        this.rolloff = rolloff;
+        this.flatness = flatness;
+        this.dominantFrequency = dominantFrequency;
+        this.bandEnergies = bandEnergies;
+    }
+
+    @Override
+    public String getDataInCSV() {
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US, "%d,%s,%f,%f,%f,%f,%f", this.timestamp, CSV_TAG, this.energy, this.centroid, this.rolloff, this.flatness, this.dominantFrequency));
+
+        for (float bandEnergy : this.bandEnergies) {
+            builder.append(',').append(String.format(Locale.US, "%f", bandEnergy));
+        }
+
+        return builder.toString();
+    }
+
+    @SuppressWarnings("unused")
+    public float getEnergy() {
+        return this.energy;
+    }
+
+    @SuppressWarnings("unused")
+    public float getCentroid() {
+        return this.centroid;
+    }
+
+    @SuppressWarnings("unused")
+    public float getRolloff() {
+        return this.rolloff;
+    }
+
+    @SuppressWarnings("unused")
+    public float getFlatness() {
+        return this.flatness;
+    }
+
+    @SuppressWarnings("unused")
+    public float getDominantFrequency() {
+        return this.dominantFrequency;
+    }
+
+    /** Returns the energies of the bands, from low to high frequencies. */
+    @SuppressWarnings("unused")
+    public float[] getBandEnergies() {
+        return this.bandEnergies;
+    }
+
+}
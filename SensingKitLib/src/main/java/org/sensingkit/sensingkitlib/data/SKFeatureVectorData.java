@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.data;
+
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+
+import java.util.Locale;
+
+/**
+ * Feature vector of a window of x, y, z samples of a sensor module
+ * (see SKFeatureExtractionOperator). The timestamp is the one of the last sample in the window.
+ */
+public class SKFeatureVectorData extends SKAbstractData {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKFeatureVectorData";
+
+    protected final long startTimestamp;
+    protected final double[] features;
+
+    public SKFeatureVectorData(SKSensorModuleType moduleType, long startTimestamp, long timestamp, double[] features) {
+
+        super(moduleType, timestamp);
+
+        this.startTimestamp = startTimestamp;
+        this.features = features;
+    }
+
+    @Override
+    public String getDataInCSV() {
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(this.timestamp).append(',').append(this.startTimestamp);
+
+        for (double feature : this.features) {
+            builder.append(',').append(String.format(Locale.US, "%f", feature));
+        }
+
+        return builder.toString();
+    }
+
+    @SuppressWarnings("unused")
+    public long getStartTimestamp() {
+        return this.startTimestamp;
+    }
+
+    /** Returns the features, in the order of SKFeatureExtractor.getFeatureNames(). */
+    @SuppressWarnings("unused")
+    public double[] getFeatures() {
+        return this.features;
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.data;
+
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+
+/**
+ * Orientation fused from the accelerometer, gyroscope and magnetometer, in the format of the
+ * rotation vector: x, y and z are the vector part of the quaternion and cos its scalar part.
+ */
+public class SKFusedOrientationData extends SKRotationData {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKFusedOrientationData";
+
+    public SKFusedOrientationData(long timestamp, float x, float y, float z, float cos) {
+        super(SKSensorModuleType.FUSED_ORIENTATION, timestamp, x, y, z, cos, 0);
+    }
+
+}
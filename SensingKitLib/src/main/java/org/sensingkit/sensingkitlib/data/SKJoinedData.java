@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.data;
+
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+
+import java.util.Locale;
+
+/**
+ * Samples of several sensor modules aligned to the timestamp of a sample of the first one
+ * (see SKStreamJoinOperator). Values of a module that had no sample within the tolerance
+ * are NaN.
+ */
+public class SKJoinedData extends SKAbstractData {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKJoinedData";
+
+    protected final SKSensorModuleType[] moduleTypes;
+    protected final float[][] values;
+
+    public SKJoinedData(long timestamp, SKSensorModuleType[] moduleTypes, float[][] values) {
+
+        super(moduleTypes[0], timestamp);
+
+        this.moduleTypes = moduleTypes;
+        this.values = values;
+    }
+
+    /** Returns the timestamp followed by the values of each module, in order. */
+    @Override
+    public String getDataInCSV() {
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(this.timestamp);
+
+        for (float[] moduleValues : this.values) {
+            for (float value : moduleValues) {
+                builder.append(',').append(String.format(Locale.US, "%f", value));
+            }
+        }
+
+        return builder.toString();
+    }
+
+    @SuppressWarnings("unused")
+    public int getSensorModuleCount() {
+        return this.moduleTypes.length;
+    }
+
+    @SuppressWarnings("unused")
+    public SKSensorModuleType getSensorModuleType(int index) {
+        return this.moduleTypes[index];
+    }
+
+    @SuppressWarnings("unused")
+    public float[] getValues(int index) {
+        return this.values[index];
+    }
+
+    /** Returns false if the module had no sample within the tolerance (values are NaN). */
+    @SuppressWarnings("unused")
+    public boolean isAvailable(int index) {
+        return !Float.isNaN(this.values[index][0]);
+    }
+
+}
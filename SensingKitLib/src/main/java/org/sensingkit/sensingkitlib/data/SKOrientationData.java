@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.data;
+
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+
+import java.util.Locale;
+
+public class SKOrientationData extends SKAbstractData {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKOrientationData";
+
+    protected final float qw;
+    protected final float qx;
+    protected final float qy;
+    protected final float qz;
+    protected final float azimuth;
+    protected final float pitch;
+    protected final float roll;
+    protected final float[] rotationMatrix;
+
+    /** Quaternion as {w, x, y, z}, orientation as {azimuth, pitch, roll} in radians and a 3x3 row-major rotation matrix. */
+    public SKOrientationData(long timestamp, float[] quaternion, float[] orientation, float[] rotationMatrix) {
+
+        super(SKSensorModuleType.ORIENTATION, timestamp);
+
+        this.qw = quaternion[0];
+        this.qx = quaternion[1];
+        this.qy = quaternion[2];
+        this.qz = quaternion[3];
+        this.azimuth = orientation[0];
+        this.pitch = orientation[1];
+        this.roll = orientation[2];
+        this.rotationMatrix = rotationMatrix.clone();
+    }
+
+    @Override
+    public String getDataInCSV() {
+        return String.format(Locale.US, "%d,%f,%f,%f,%f,%f,%f,%f,%f,%f,%f,%f,%f,%f,%f,%f,%f",
+                this.timestamp, this.qw, this.qx, this.qy, this.qz, this.azimuth, this.pitch, this.roll,
+                this.rotationMatrix[0], this.rotationMatrix[1], this.rotationMatrix[2],
+                this.rotationMatrix[3], this.rotationMatrix[4], this.rotationMatrix[5],
+                this.rotationMatrix[6], this.rotationMatrix[7], this.rotationMatrix[8]);
+    }
+
+    @SuppressWarnings("unused")
+    public float getQuaternionW() {
+        return this.qw;
+    }
+
+    @SuppressWarnings("unused")
+    public float getQuaternionX() {
+        return this.qx;
+    }
+
+    @SuppressWarnings("unused")
+    public float getQuaternionY() {
+        return this.qy;
+    }
+
+    @SuppressWarnings("unused")
+    public float getQuaternionZ() {
+        return this.qz;
+    }
+
+    /** Rotation around the -z axis, in radians. */
+    @SuppressWarnings("unused")
+    public float getAzimuth() {
+        return this.azimuth;
+    }
+
+    /** Rotation around the -x axis, in radians. */
+    @SuppressWarnings("unused")
+    public float getPitch() {
+        return this.pitch;
+    }
+
+    /** Rotation around the y axis, in radians. */
+    @SuppressWarnings("unused")
+    public float getRoll() {
+        return this.roll;
+    }
+
+    /** Returns the 3x3 rotation matrix, row-major. */
+    @SuppressWarnings("unused")
+    public float[] getRotationMatrix() {
+        return this.rotationMatrix;
+    }
+
+}
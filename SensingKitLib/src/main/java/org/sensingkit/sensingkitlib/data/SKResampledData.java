@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.data;
+
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+
+import java.util.Locale;
+
+/**
+ * Block of samples of a sensor module resampled to a fixed rate (see SKResamplingOperator).
+ * Values are stored by column: one array per channel, holding count samples each. Sample i
+ * was taken at startTimestamp + i * period. The timestamp is the one of the last sample.
+ */
+public class SKResampledData extends SKAbstractData {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKResampledData";
+
+    protected final double startTimestamp;
+    protected final double period;
+    protected final int count;
+    protected final float[][] columns;
+
+    public SKResampledData(SKSensorModuleType moduleType, double startTimestamp, double period, int count, float[][] columns) {
+
+        super(moduleType, Math.round(startTimestamp + (count - 1) * period));
+
+        this.startTimestamp = startTimestamp;
+        this.period = period;
+        this.count = count;
+        this.columns = columns;
+    }
+
+    /** Returns one line per sample: timestamp followed by the value of each channel. */
+    @Override
+    public String getDataInCSV() {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < this.count; i++) {
+
+            if (i > 0) {
+                builder.append('\n');
+            }
+
+            builder.append(getTimestamp(i));
+
+            for (float[] column : this.columns) {
+                builder.append(',').append(String.format(Locale.US, "%f", column[i]));
+            }
+        }
+
+        return builder.toString();
+    }
+
+    @SuppressWarnings("unused")
+    public double getStartTimestamp() {
+        return this.startTimestamp;
+    }
+
+    /** Returns the time between two samples in ms. */
+    @SuppressWarnings("unused")
+    public double getPeriod() {
+        return this.period;
+    }
+
+    @SuppressWarnings("unused")
+    public int getCount() {
+        return this.count;
+    }
+
+    /** Returns the timestamp of sample i, rounded to ms. */
+    @SuppressWarnings("unused")
+    public long getTimestamp(int i) {
+        return Math.round(this.startTimestamp + i * this.period);
+    }
+
+    @SuppressWarnings("unused")
+    public int getChannelCount() {
+        return this.columns.length;
+    }
+
+    /** Returns the samples of a channel. Only the first getCount() values are valid. */
+    @SuppressWarnings("unused")
+    public float[] getColumn(int channel) {
+        return this.columns[channel];
+    }
+
+}
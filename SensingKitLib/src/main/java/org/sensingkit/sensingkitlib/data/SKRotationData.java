@@ -37,8 +37,12 @@ public class SKRotationData extends SKAbstractData {
     protected final float headingAccuracy;
 
     public SKRotationData(long timestamp, float x, float y, float z, float cos, float headingAccuracy) {
+        this(SKSensorModuleType.ROTATION, timestamp, x, y, z, cos, headingAccuracy);
+    }
+
+    protected SKRotationData(SKSensorModuleType moduleType, long timestamp, float x, float y, float z, float cos, float headingAccuracy) {
 
-        super(SKSensorModuleType.ROTATION, timestamp);
+        super(moduleType, timestamp);
 
         this.x = x;
         this.y = y;
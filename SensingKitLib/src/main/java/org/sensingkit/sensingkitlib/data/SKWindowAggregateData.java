@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.data;
+
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+
+import java.util.Locale;
+
+/**
+ * Result of a window operator (see SKWindowAggregator) over the data of a sensor module.
+ * The timestamp is the one of the last sample in the window.
+ */
+public class SKWindowAggregateData extends SKAbstractData {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKWindowAggregateData";
+
+    protected final long startTimestamp;
+    protected final int count;
+    protected final double mean;
+    protected final double variance;
+    protected final double min;
+    protected final double max;
+    protected final double energy;
+
+    public SKWindowAggregateData(SKSensorModuleType moduleType, long startTimestamp, long timestamp, int count, double mean, double variance, double min, double max, double energy) {
+
+        super(moduleType, timestamp);
+
+        this.startTimestamp = startTimestamp;
+        this.count = count;
+        this.mean = mean;
+        this.variance = variance;
+        this.min = min;
+        this.max = max;
+        this.energy = energy;
+    }
+
+    @Override
+    public String getDataInCSV() {
+        return String.format(Locale.US, "%d,%d,%d,%f,%f,%f,%f,%f", this.timestamp, this.startTimestamp, this.count, this.mean, this.variance, this.min, this.max, this.energy);
+    }
+
+    @SuppressWarnings("unused")
+    public long getStartTimestamp() {
+        return this.startTimestamp;
+    }
+
+    @SuppressWarnings("unused")
+    public int getCount() {
+        return this.count;
+    }
+
+    @SuppressWarnings("unused")
+    public double getMean() {
+        return this.mean;
+    }
+
+    /** Population variance of the values in the window. */
+    @SuppressWarnings("unused")
+    public double getVariance() {
+        return this.variance;
+    }
+
+    @SuppressWarnings("unused")
+    public double getStandardDeviation() {
+        return Math.sqrt(this.variance);
+    }
+
+    @SuppressWarnings("unused")
+    public double getMin() {
+        return this.min;
+    }
+
+    @SuppressWarnings("unused")
+    public double getMax() {
+        return this.max;
+    }
+
+    /** Mean of the squared values in the window. */
+    @SuppressWarnings("unused")
+    public double getEnergy() {
+        return this.energy;
+    }
+
+}
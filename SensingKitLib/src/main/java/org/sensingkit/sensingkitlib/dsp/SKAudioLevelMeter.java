@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.dsp;
+
+/**
+ * Peak and RMS level of 16-bit PCM audio over windows that advance by a hop.
+ *
+ * Samples are visited once: each hop accumulates its peak and sum of squares, and a window
+ * is combined from the partial results of its last hops. The window is therefore a multiple
+ * of the hop. Samples can be passed in buffers of any length, and no memory is allocated
+ * after construction.
+ */
+public class SKAudioLevelMeter {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKAudioLevelMeter";
+
+    /** Amplitude of a full scale 16-bit sample. */
+    public static final double FULL_SCALE = 32768;
+
+    /** Level reported for digital silence, in dBFS. */
+    public static final double MIN_DECIBELS = -120;
+
+    public interface OnLevelListener {
+
+        /**
+         * Called when a window is complete. Position is the number of samples processed
+         * since the start (or reset), up to the end of the window.
+         */
+        void onLevel(long position, int peak, double rms);
+    }
+
+    private final int mHopSize;
+    private final int mHopsPerWindow;
+
+    // Partial results of the last hops of the window
+    private final long[] mHopSumsOfSquares;
+    private final int[] mHopPeaks;
+    private int mHopIndex;
+    private int mCompletedHops;
+
+    // Current hop
+    private long mSumOfSquares;
+    private int mPeak;
+    private int mRemaining;
+
+    private long mPosition;
+
+    /** Window size and hop size in samples. The window is rounded to a multiple of the hop. */
+    public SKAudioLevelMeter(int windowSize, int hopSize) {
+
+        if (hopSize <= 0 || windowSize < hopSize) {
+            throw new IllegalArgumentException("Hop size must be positive and not larger than the window size.");
+        }
+
+        this.mHopSize = hopSize;
+        this.mHopsPerWindow = Math.round((float) windowSize / hopSize);
+        this.mHopSumsOfSquares = new long[mHopsPerWindow];
+        this.mHopPeaks = new int[mHopsPerWindow];
+
+        reset();
+    }
+
+    public int getWindowSize() {
+        return mHopSize * mHopsPerWindow;
+    }
+
+    public int getHopSize() {
+        return mHopSize;
+    }
+
+    public void reset() {
+        mHopIndex = 0;
+        mCompletedHops = 0;
+        mSumOfSquares = 0;
+        mPeak = 0;
+        mRemaining = mHopSize;
+        mPosition = 0;
+    }
+
+    /** Processes length samples from offset, calling the listener for each window they complete. */
+    public void process(short[] samples, int offset, int length, OnLevelListener listener) {
+
+        int end = offset + length;
+
+        while (offset < end) {
+
+            int count = Math.min(mRemaining, end - offset);
+            long sumOfSquares = mSumOfSquares;
+            int peak = mPeak;
+
+            for (int i = offset; i < offset + count; i++) {
+
+                int sample = samples[i];
+                sumOfSquares += sample * sample;
+
+                int magnitude = (sample < 0) ? -sample : sample;
+
+                if (magnitude > peak) {
+                    peak = magnitude;
+                }
+            }
+
+            mSumOfSquares = sumOfSquares;
+            mPeak = peak;
+            mRemaining -= count;
+            mPosition += count;
+            offset += count;
+
+            if (mRemaining == 0) {
+                completeHop(listener);
+            }
+        }
+    }
+
+    private void completeHop(OnLevelListener listener) {
+
+        mHopSumsOfSquares[mHopIndex] = mSumOfSquares;
+        mHopPeaks[mHopIndex] = mPeak;
+        mHopIndex = (mHopIndex + 1) % mHopsPerWindow;
+
+        mSumOfSquares = 0;
+        mPeak = 0;
+        mRemaining = mHopSize;
+
+        if (mCompletedHops < mHopsPerWindow) {
+            mCompletedHops++;
+        }
+
+        if (mCompletedHops < mHopsPerWindow) {
+            return;
+        }
+
+        // Combine the hops of the window
+        long sumOfSquares = 0;
+        int peak = 0;
+
+        for (int i = 0; i < mHopsPerWindow; i++) {
+            sumOfSquares += mHopSumsOfSquares[i];
+            peak = Math.max(peak, mHopPeaks[i]);
+        }
+
+        listener.onLevel(mPosition, peak, Math.sqrt((double) sumOfSquares / getWindowSize()));
+    }
+
+    /** Returns the largest absolute value of length samples from offset. */
+    public static int getMaxAbs(short[] samples, int offset, int length) {
+
+        int max = 0;
+
+        for (int i = offset; i < offset + length; i++) {
+
+            int magnitude = (samples[i] < 0) ? -samples[i] : samples[i];
+
+            if (magnitude > max) {
+                max = magnitude;
+            }
+        }
+
+        return max;
+    }
+
+    /** Converts an amplitude (in sample units) to dBFS, with MIN_DECIBELS for silence. */
+    public static double toDecibelsFullScale(double amplitude) {
+
+        if (amplitude <= 0) {
+            return MIN_DECIBELS;
+        }
+
+        return Math.max(MIN_DECIBELS, 20 * Math.log10(amplitude / FULL_SCALE));
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.dsp;
+
+/**
+ * In-place radix-2 FFT of a fixed size.
+ *
+ * Twiddle factors and the bit-reversal permutation are computed once in the constructor,
+ * so a transform does not allocate or call Math.sin / Math.cos. The tables are never
+ * modified, so an instance can be shared between threads.
+ */
+public class SKFFT {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKFFT";
+
+    private final int mSize;
+    private final double[] mCos;
+    private final double[] mSin;
+    private final int[] mBitReversed;
+
+    public SKFFT(int size) {
+
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two.");
+        }
+
+        this.mSize = size;
+        this.mCos = new double[size / 2];
+        this.mSin = new double[size / 2];
+        this.mBitReversed = new int[size];
+
+        for (int i = 0; i < size / 2; i++) {
+            mCos[i] = Math.cos(-2 * Math.PI * i / size);
+            mSin[i] = Math.sin(-2 * Math.PI * i / size);
+        }
+
+        int bits = Integer.numberOfTrailingZeros(size);
+
+        for (int i = 0; i < size; i++) {
+            mBitReversed[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    /** Returns the smallest power of two that is greater than or equal to n (at most 2^30). */
+    public static int nextPowerOfTwo(int n) {
+
+        if (n > 1 << 30) {
+            throw new IllegalArgumentException("Size is too large.");
+        }
+
+        return (n <= 1) ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+    /** Forward transform of the complex signal (real, imaginary), in place. */
+    public void transform(double[] real, double[] imaginary) {
+
+        int n = mSize;
+
+        // Bit-reversal permutation
+        for (int i = 0; i < n; i++) {
+            int j = mBitReversed[i];
+
+            if (j > i) {
+                double temp = real[i];
+                real[i] = real[j];
+                real[j] = temp;
+
+                temp = imaginary[i];
+                imaginary[i] = imaginary[j];
+                imaginary[j] = temp;
+            }
+        }
+
+        // Butterflies
+        for (int length = 2; length <= n; length <<= 1) {
+
+            int half = length >> 1;
+            int step = n / length;
+
+            for (int start = 0; start < n; start += length) {
+                for (int k = 0; k < half; k++) {
+
+                    double cos = mCos[k * step];
+                    double sin = mSin[k * step];
+
+                    int even = start + k;
+                    int odd = even + half;
+
+                    double oddReal = real[odd] * cos - imaginary[odd] * sin;
+                    double oddImaginary = real[odd] * sin + imaginary[odd] * cos;
+
+                    real[odd] = real[even] - oddReal;
+                    imaginary[odd] = imaginary[even] - oddImaginary;
+                    real[even] += oddReal;
+                    imaginary[even] += oddImaginary;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.dsp;
+
+import java.util.Arrays;
+
+/**
+ * Computes the standard activity-recognition features of a window of x, y, z samples.
+ *
+ * For each of the channels x, y, z and magnitude, the features are: mean, standard deviation,
+ * 10th / 25th / 50th / 75th / 90th percentile, zero crossings of the mean-removed signal and
+ * dominant frequency (Hz). They are followed by the signal magnitude area and the Pearson
+ * correlations between the axes (xy, xz, yz). See getFeatureNames() for the exact layout.
+ *
+ * All scratch arrays are allocated in the constructor for the largest window, so extracting
+ * the features of a window does not allocate. An instance must only be used by one thread.
+ */
+public class SKFeatureExtractor {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKFeatureExtractor";
+
+    private static final String[] CHANNELS = {"x", "y", "z", "magnitude"};
+    private static final String[] CHANNEL_FEATURES = {"mean", "std", "p10", "p25", "p50", "p75", "p90", "zero_crossings", "dominant_frequency"};
+    private static final double[] PERCENTILES = {0.10, 0.25, 0.50, 0.75, 0.90};
+
+    private static final int CHANNEL_X = 0;
+    private static final int CHANNEL_Y = 1;
+    private static final int CHANNEL_Z = 2;
+    private static final int CHANNEL_MAGNITUDE = 3;
+    private static final int TOTAL_CHANNELS = 4;
+
+    public static final int FEATURES_PER_CHANNEL = 9;
+    public static final int FEATURE_SMA = TOTAL_CHANNELS * FEATURES_PER_CHANNEL;
+    public static final int FEATURE_CORRELATION_XY = FEATURE_SMA + 1;
+    public static final int FEATURE_CORRELATION_XZ = FEATURE_SMA + 2;
+    public static final int FEATURE_CORRELATION_YZ = FEATURE_SMA + 3;
+    public static final int TOTAL_FEATURES = FEATURE_SMA + 4;
+
+    private final int mMaxWindowSize;
+    private final SKFFT mFFT;
+
+    // Scratch
+    private final double[][] mChannels;
+    private final double[] mMeans = new double[TOTAL_CHANNELS];
+    private final double[] mSorted;
+    private final double[] mReal;
+    private final double[] mImaginary;
+
+    public SKFeatureExtractor(int maxWindowSize) {
+
+        if (maxWindowSize < 2) {
+            throw new IllegalArgumentException("Window size must be at least 2.");
+        }
+
+        this.mMaxWindowSize = maxWindowSize;
+        this.mFFT = new SKFFT(SKFFT.nextPowerOfTwo(maxWindowSize));
+        this.mChannels = new double[TOTAL_CHANNELS][maxWindowSize];
+        this.mSorted = new double[maxWindowSize];
+        this.mReal = new double[mFFT.getSize()];
+        this.mImaginary = new double[mFFT.getSize()];
+    }
+
+    /** Returns the names of the features, in the order they are written by extract(). */
+    public static String[] getFeatureNames() {
+
+        String[] names = new String[TOTAL_FEATURES];
+
+        for (int channel = 0; channel < TOTAL_CHANNELS; channel++) {
+            for (int feature = 0; feature < FEATURES_PER_CHANNEL; feature++) {
+                names[channel * FEATURES_PER_CHANNEL + feature] = CHANNELS[channel] + "_" + CHANNEL_FEATURES[feature];
+            }
+        }
+
+        names[FEATURE_SMA] = "sma";
+        names[FEATURE_CORRELATION_XY] = "correlation_xy";
+        names[FEATURE_CORRELATION_XZ] = "correlation_xz";
+        names[FEATURE_CORRELATION_YZ] = "correlation_yz";
+
+        return names;
+    }
+
+    /**
+     * Extracts the features of the first n samples of x, y and z into features
+     * (TOTAL_FEATURES values). The sampling rate (Hz) is used for the dominant frequency.
+     */
+    public void extract(float[] x, float[] y, float[] z, int n, double samplingRate, double[] features) {
+
+        if (n < 2 || n > mMaxWindowSize) {
+            throw new IllegalArgumentException("Window size must be between 2 and " + mMaxWindowSize + ".");
+        }
+
+        double[] channelX = mChannels[CHANNEL_X];
+        double[] channelY = mChannels[CHANNEL_Y];
+        double[] channelZ = mChannels[CHANNEL_Z];
+        double[] channelMagnitude = mChannels[CHANNEL_MAGNITUDE];
+        double sma = 0;
+
+        for (int i = 0; i < n; i++) {
+            channelX[i] = x[i];
+            channelY[i] = y[i];
+            channelZ[i] = z[i];
+            channelMagnitude[i] = Math.sqrt(channelX[i] * channelX[i] + channelY[i] * channelY[i] + channelZ[i] * channelZ[i]);
+            sma += Math.abs(channelX[i]) + Math.abs(channelY[i]) + Math.abs(channelZ[i]);
+        }
+
+        for (int channel = 0; channel < TOTAL_CHANNELS; channel++) {
+            extractChannel(mChannels[channel], n, samplingRate, features, channel * FEATURES_PER_CHANNEL);
+            mMeans[channel] = features[channel * FEATURES_PER_CHANNEL];
+        }
+
+        features[FEATURE_SMA] = sma / n;
+        features[FEATURE_CORRELATION_XY] = correlation(channelX, mMeans[CHANNEL_X], channelY, mMeans[CHANNEL_Y], n);
+        features[FEATURE_CORRELATION_XZ] = correlation(channelX, mMeans[CHANNEL_X], channelZ, mMeans[CHANNEL_Z], n);
+        features[FEATURE_CORRELATION_YZ] = correlation(channelY, mMeans[CHANNEL_Y], channelZ, mMeans[CHANNEL_Z], n);
+    }
+
+    private void extractChannel(double[] values, int n, double samplingRate, double[] features, int offset) {
+
+        // Mean and standard deviation
+        double sum = 0;
+
+        for (int i = 0; i < n; i++) {
+            sum += values[i];
+        }
+
+        double mean = sum / n;
+        double squares = 0;
+
+        for (int i = 0; i < n; i++) {
+            double deviation = values[i] - mean;
+            squares += deviation * deviation;
+        }
+
+        features[offset] = mean;
+        features[offset + 1] = Math.sqrt(squares / n);
+
+        // Percentiles, with linear interpolation
+        System.arraycopy(values, 0, mSorted, 0, n);
+        Arrays.sort(mSorted, 0, n);
+
+        for (int p = 0; p < PERCENTILES.length; p++) {
+
+            double position = PERCENTILES[p] * (n - 1);
+            int lower = (int) position;
+            int upper = Math.min(lower + 1, n - 1);
+
+            features[offset + 2 + p] = mSorted[lower] + (mSorted[upper] - mSorted[lower]) * (position - lower);
+        }
+
+        // Zero crossings of the mean-removed signal
+        int crossings = 0;
+        boolean positive = values[0] >= mean;
+
+        for (int i = 1; i < n; i++) {
+            boolean current = values[i] >= mean;
+
+            if (current != positive) {
+                crossings++;
+                positive = current;
+            }
+        }
+
+        features[offset + 7] = crossings;
+
+        // Dominant frequency of the mean-removed signal (zero-padded)
+        int size = mFFT.getSize();
+
+        for (int i = 0; i < size; i++) {
+            mReal[i] = (i < n) ? values[i] - mean : 0;
+            mImaginary[i] = 0;
+        }
+
+        mFFT.transform(mReal, mImaginary);
+
+        int dominantBin = 0;
+        double dominantPower = 0;
+
+        for (int bin = 1; bin <= size / 2; bin++) {
+            double power = mReal[bin] * mReal[bin] + mImaginary[bin] * mImaginary[bin];
+
+            if (power > dominantPower) {
+                dominantPower = power;
+                dominantBin = bin;
+            }
+        }
+
+        features[offset + 8] = dominantBin * samplingRate / size;
+    }
+
+    private static double correlation(double[] a, double meanA, double[] b, double meanB, int n) {
+
+        double covariance = 0;
+        double varianceA = 0;
+        double varianceB = 0;
+
+        for (int i = 0; i < n; i++) {
+            double deviationA = a[i] - meanA;
+            double deviationB = b[i] - meanB;
+
+            covariance += deviationA * deviationB;
+            varianceA += deviationA * deviationA;
+            varianceB += deviationB * deviationB;
+        }
+
+        // Constant signals are not correlated
+        if (varianceA == 0 || varianceB == 0) {
+            return 0;
+        }
+
+        return covariance / Math.sqrt(varianceA * varianceB);
+    }
+
+}
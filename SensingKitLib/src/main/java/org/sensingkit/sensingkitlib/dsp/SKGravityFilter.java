@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.dsp;
+
+/**
+ * Splits accelerometer samples into gravity and linear acceleration with a first-order
+ * low-pass filter: gravity is the low-passed acceleration and linear acceleration is what
+ * remains. The filter coefficient is computed from the time between samples, so the cutoff
+ * does not depend on the sampling rate.
+ */
+public class SKGravityFilter {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKGravityFilter";
+
+    public static final float DEFAULT_TIME_CONSTANT = 0.5f;  // seconds
+
+    private static final long MAX_SAMPLE_GAP = 1000000000L;  // ns, filter restarts after a gap
+
+    private final float mTimeConstant;
+    private final float[] mGravity = new float[3];
+    private long mLastTimestamp;
+    private boolean mStarted = false;
+
+    public SKGravityFilter() {
+        this(DEFAULT_TIME_CONSTANT);
+    }
+
+    public SKGravityFilter(float timeConstant) {
+
+        if (timeConstant <= 0) {
+            throw new IllegalArgumentException("Time constant must be positive.");
+        }
+
+        this.mTimeConstant = timeConstant;
+    }
+
+    /**
+     * Processes an acceleration sample (timestamp in ns) and writes the gravity and the linear
+     * acceleration into the given arrays of length 3.
+     */
+    public void process(long timestamp, float x, float y, float z, float[] gravity, float[] linearAcceleration) {
+
+        if (!mStarted || timestamp - mLastTimestamp > MAX_SAMPLE_GAP || timestamp <= mLastTimestamp) {
+
+            // Start from the current sample
+            mStarted = true;
+            mGravity[0] = x;
+            mGravity[1] = y;
+            mGravity[2] = z;
+        }
+        else {
+            float dt = (timestamp - mLastTimestamp) / 1e9f;
+            float alpha = dt / (mTimeConstant + dt);
+
+            mGravity[0] += alpha * (x - mGravity[0]);
+            mGravity[1] += alpha * (y - mGravity[1]);
+            mGravity[2] += alpha * (z - mGravity[2]);
+        }
+
+        mLastTimestamp = timestamp;
+
+        gravity[0] = mGravity[0];
+        gravity[1] = mGravity[1];
+        gravity[2] = mGravity[2];
+
+        linearAcceleration[0] = x - mGravity[0];
+        linearAcceleration[1] = y - mGravity[1];
+        linearAcceleration[2] = z - mGravity[2];
+    }
+
+    public void reset() {
+        mStarted = false;
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.dsp;
+
+/**
+ * Mahony complementary filter that fuses gyroscope, accelerometer and (optionally)
+ * magnetometer samples into an orientation quaternion.
+ *
+ * The gyroscope is integrated, and the error between the measured and the expected
+ * directions of gravity and of the magnetic field is fed back with a proportional gain
+ * (how fast the accelerometer and magnetometer correct the drift) and, when bias estimation
+ * is enabled, an integral gain (which estimates the gyroscope bias).
+ *
+ * The quaternion ({w, x, y, z}) rotates device coordinates into the East-North-Up world
+ * coordinates of the rotation vector sensor, so SKRotationMath can be used on it. Updates
+ * do not allocate.
+ */
+public class SKMahonyFilter {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKMahonyFilter";
+
+    public static final float DEFAULT_PROPORTIONAL_GAIN = 0.5f;
+    public static final float DEFAULT_INTEGRAL_GAIN = 0.1f;
+
+    private float mProportionalGain = DEFAULT_PROPORTIONAL_GAIN;
+    private float mIntegralGain = DEFAULT_INTEGRAL_GAIN;
+    private boolean mBiasEstimationEnabled = true;
+
+    // Orientation
+    private float mQ0 = 1;
+    private float mQ1 = 0;
+    private float mQ2 = 0;
+    private float mQ3 = 0;
+    private boolean mInitialized = false;
+
+    // Integral feedback (the negative of the estimated gyroscope bias)
+    private float mIntegralX = 0;
+    private float mIntegralY = 0;
+    private float mIntegralZ = 0;
+
+    // Scratch
+    private final float[] mVector = new float[3];
+    private final float[] mReference = new float[3];
+    private final float[] mMatrix = new float[9];
+    private final float[] mQuaternion = new float[4];
+
+    public void setProportionalGain(float proportionalGain) {
+        mProportionalGain = proportionalGain;
+    }
+
+    public void setIntegralGain(float integralGain) {
+        mIntegralGain = integralGain;
+    }
+
+    /** Enables the integral feedback. Disabling it clears the estimated bias. */
+    public void setBiasEstimationEnabled(boolean enabled) {
+
+        mBiasEstimationEnabled = enabled;
+
+        if (!enabled) {
+            mIntegralX = mIntegralY = mIntegralZ = 0;
+        }
+    }
+
+    /** Starts again from the next accelerometer (and magnetometer) sample. */
+    public void reset() {
+        mQ0 = 1;
+        mQ1 = mQ2 = mQ3 = 0;
+        mIntegralX = mIntegralY = mIntegralZ = 0;
+        mInitialized = false;
+    }
+
+    public boolean isInitialized() {
+        return mInitialized;
+    }
+
+    /** Writes the orientation quaternion {w, x, y, z}. */
+    public void getQuaternion(float[] quaternion) {
+        quaternion[0] = mQ0;
+        quaternion[1] = mQ1;
+        quaternion[2] = mQ2;
+        quaternion[3] = mQ3;
+    }
+
+    /** Writes the estimated gyroscope bias (rad/s). */
+    public void getGyroscopeBias(float[] bias) {
+        bias[0] = -mIntegralX;
+        bias[1] = -mIntegralY;
+        bias[2] = -mIntegralZ;
+    }
+
+    /**
+     * Updates the orientation with a gyroscope sample (rad/s), the latest accelerometer sample
+     * and the latest magnetometer sample (all zero if there is none), dt seconds after the
+     * previous update.
+     */
+    public void update(float gx, float gy, float gz, float ax, float ay, float az, float mx, float my, float mz, float dt) {
+
+        float accelerationNorm = (float) Math.sqrt(ax * ax + ay * ay + az * az);
+        float magneticNorm = (float) Math.sqrt(mx * mx + my * my + mz * mz);
+
+        // The first orientation comes from gravity and the magnetic field
+        if (!mInitialized) {
+
+            if (accelerationNorm > 0) {
+                initialize(ax, ay, az, mx, my, mz, magneticNorm > 0);
+            }
+
+            return;
+        }
+
+        // Without acceleration (e.g. free fall) the gyroscope is only integrated
+        if (accelerationNorm > 0) {
+
+            ax /= accelerationNorm;
+            ay /= accelerationNorm;
+            az /= accelerationNorm;
+
+            float q0q0 = mQ0 * mQ0;
+            float q0q1 = mQ0 * mQ1;
+            float q0q2 = mQ0 * mQ2;
+            float q0q3 = mQ0 * mQ3;
+            float q1q1 = mQ1 * mQ1;
+            float q1q2 = mQ1 * mQ2;
+            float q1q3 = mQ1 * mQ3;
+            float q2q2 = mQ2 * mQ2;
+            float q2q3 = mQ2 * mQ3;
+            float q3q3 = mQ3 * mQ3;
+
+            // Expected direction of gravity (up) in device coordinates: third row of the rotation matrix
+            float vx = 2 * (q1q3 - q0q2);
+            float vy = 2 * (q2q3 + q0q1);
+            float vz = q0q0 - q1q1 - q2q2 + q3q3;
+
+            // Error between measured and expected directions
+            float ex = ay * vz - az * vy;
+            float ey = az * vx - ax * vz;
+            float ez = ax * vy - ay * vx;
+
+            if (magneticNorm > 0) {
+
+                mx /= magneticNorm;
+                my /= magneticNorm;
+                mz /= magneticNorm;
+
+                // Magnetic field in world coordinates
+                float hx = 2 * (mx * (0.5f - q2q2 - q3q3) + my * (q1q2 - q0q3) + mz * (q1q3 + q0q2));
+                float hy = 2 * (mx * (q1q2 + q0q3) + my * (0.5f - q1q1 - q3q3) + mz * (q2q3 - q0q1));
+                float hz = 2 * (mx * (q1q3 - q0q2) + my * (q2q3 + q0q1) + mz * (0.5f - q1q1 - q2q2));
+
+                // Reference field points North (y) and Up (z)
+                float by = (float) Math.sqrt(hx * hx + hy * hy);
+                float bz = hz;
+
+                // Expected direction of the field in device coordinates
+                float wx = by * 2 * (q1q2 + q0q3) + bz * 2 * (q1q3 - q0q2);
+                float wy = by * 2 * (0.5f - q1q1 - q3q3) + bz * 2 * (q2q3 + q0q1);
+                float wz = by * 2 * (q2q3 - q0q1) + bz * 2 * (0.5f - q1q1 - q2q2);
+
+                ex += my * wz - mz * wy;
+                ey += mz * wx - mx * wz;
+                ez += mx * wy - my * wx;
+            }
+
+            if (mBiasEstimationEnabled && mIntegralGain > 0) {
+                mIntegralX += mIntegralGain * ex * dt;
+                mIntegralY += mIntegralGain * ey * dt;
+                mIntegralZ += mIntegralGain * ez * dt;
+            }
+
+            gx += mProportionalGain * ex + mIntegralX;
+            gy += mProportionalGain * ey + mIntegralY;
+            gz += mProportionalGain * ez + mIntegralZ;
+        }
+        else if (mBiasEstimationEnabled) {
+            gx += mIntegralX;
+            gy += mIntegralY;
+            gz += mIntegralZ;
+        }
+
+        // Integrate the rate of change of the quaternion
+        float halfDt = 0.5f * dt;
+        gx *= halfDt;
+        gy *= halfDt;
+        gz *= halfDt;
+
+        float q0 = mQ0;
+        float q1 = mQ1;
+        float q2 = mQ2;
+        float q3 = mQ3;
+
+        mQ0 = q0 + (-q1 * gx - q2 * gy - q3 * gz);
+        mQ1 = q1 + (q0 * gx + q2 * gz - q3 * gy);
+        mQ2 = q2 + (q0 * gy - q1 * gz + q3 * gx);
+        mQ3 = q3 + (q0 * gz + q1 * gy - q2 * gx);
+
+        float norm = (float) Math.sqrt(mQ0 * mQ0 + mQ1 * mQ1 + mQ2 * mQ2 + mQ3 * mQ3);
+        mQ0 /= norm;
+        mQ1 /= norm;
+        mQ2 /= norm;
+        mQ3 /= norm;
+    }
+
+    private void initialize(float ax, float ay, float az, float mx, float my, float mz, boolean hasMagneticField) {
+
+        mVector[0] = ax;
+        mVector[1] = ay;
+        mVector[2] = az;
+
+        // Without a magnetic field, the azimuth starts from the device y axis
+        mReference[0] = hasMagneticField ? mx : 0;
+        mReference[1] = hasMagneticField ? my : 1;
+        mReference[2] = hasMagneticField ? mz : 0;
+
+        if (!SKRotationMath.rotationMatrixFromGravityAndGeomagnetic(mVector, mReference, mMatrix)) {
+
+            if (hasMagneticField) {
+                return;
+            }
+
+            // Device y axis is vertical
+            mReference[1] = 0;
+            mReference[0] = 1;
+
+            if (!SKRotationMath.rotationMatrixFromGravityAndGeomagnetic(mVector, mReference, mMatrix)) {
+                return;
+            }
+        }
+
+        SKRotationMath.quaternionFromRotationMatrix(mMatrix, mQuaternion);
+
+        mQ0 = mQuaternion[0];
+        mQ1 = mQuaternion[1];
+        mQ2 = mQuaternion[2];
+        mQ3 = mQuaternion[3];
+        mInitialized = true;
+    }
+
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.dsp;
+
+/**
+ * Onset detector of loud and impulsive sounds (e.g. claps, door slams or the start of an
+ * alarm) in 16-bit PCM audio, from the energy ratio of short frames to an adaptive noise floor.
+ *
+ * An onset is detected when the energy of a frame rises threshold dB above the noise floor
+ * (and above the minimum energy). The detector is then disarmed until the energy falls below
+ * half of the threshold, so that a sustained sound has a single onset, and onsets are at
+ * least the minimum interval apart. The noise floor follows the quietest frames immediately
+ * and rises slowly otherwise.
+ *
+ * The position of an onset is the middle of the first 1 ms window whose energy is above the
+ * threshold, searched in the frame and the one before it, so it does not depend on the frame
+ * boundaries. Energy is compared rather than single samples, whose peaks are well above the
+ * RMS of the noise and would place the onset early. Frames are kept in two scratch arrays and
+ * no memory is allocated after construction.
+ */
+public class SKOnsetDetector {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKOnsetDetector";
+
+    public static final float DEFAULT_THRESHOLD = 15;        // dB above the noise floor
+    public static final float DEFAULT_MINIMUM_ENERGY = -50;  // dBFS
+    public static final int DEFAULT_MINIMUM_INTERVAL = 100;  // ms
+
+    private static final float NOISE_FLOOR_RISE = 3;  // dB per second
+    private static final int ONSET_WINDOW = 1;        // ms
+
+    public interface OnOnsetListener {
+
+        /**
+         * Called at the end of the frame where an onset is detected. Position is the number of
+         * samples processed since the start (or reset), up to the first sample of the onset.
+         */
+        void onOnset(long position, SKOnsetDetector detector);
+    }
+
+    private final int mFrameSize;
+    private final int mSampleRate;
+    private final int mWindowSize;  // samples
+    private final float mNoiseFloorRise;  // dB per frame
+
+    private float mThreshold = DEFAULT_THRESHOLD;
+    private float mMinimumEnergy = DEFAULT_MINIMUM_ENERGY;
+    private long mMinimumInterval;  // samples
+
+    // Frame being filled, and the one before it
+    private short[] mFrame;
+    private short[] mPreviousFrame;
+    private long mSumOfSquares;
+    private int mFrameLength;
+    private long mFrameCount;
+    private long mPosition;
+
+    private float mNoiseFloor;
+    private boolean mArmed;
+    private long mLastOnsetPosition;
+
+    // Last onset
+    private float mEnergy;
+    private int mPeak;
+    private float mOnsetNoiseFloor;
+
+    /** Frame size in samples, sample rate in Hz. */
+    public SKOnsetDetector(int frameSize, int sampleRate) {
+
+        if (frameSize <= 0 || sampleRate <= 0) {
+            throw new IllegalArgumentException("Frame size and sample rate must be positive.");
+        }
+
+        this.mFrameSize = frameSize;
+        this.mSampleRate = sampleRate;
+        this.mNoiseFloorRise = NOISE_FLOOR_RISE * frameSize / sampleRate;
+        this.mWindowSize = Math.max(1, Math.min(frameSize, ONSET_WINDOW * sampleRate / 1000));
+        this.mFrame = new short[frameSize];
+        this.mPreviousFrame = new short[frameSize];
+
+        setMinimumInterval(DEFAULT_MINIMUM_INTERVAL);
+        reset();
+    }
+
+    public int getFrameSize() {
+        return mFrameSize;
+    }
+
+    /** Sets the rise (in dB) over the noise floor of an onset. */
+    public void setThreshold(float threshold) {
+
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive.");
+        }
+
+        mThreshold = threshold;
+    }
+
+    /** Sets the energy (in dBFS) below which a frame is never an onset. */
+    public void setMinimumEnergy(float minimumEnergy) {
+        mMinimumEnergy = minimumEnergy;
+    }
+
+    /** Sets the minimum time (in ms) between two onsets. */
+    public void setMinimumInterval(int minimumInterval) {
+
+        if (minimumInterval < 0) {
+            throw new IllegalArgumentException("Minimum interval cannot be negative.");
+        }
+
+        mMinimumInterval = (long) minimumInterval * mSampleRate / 1000;
+    }
+
+    public void reset() {
+        mSumOfSquares = 0;
+        mFrameLength = 0;
+        mFrameCount = 0;
+        mPosition = 0;
+
+        mNoiseFloor = Float.NaN;
+        mArmed = true;
+        mLastOnsetPosition = Long.MIN_VALUE / 2;
+
+        mEnergy = (float) SKAudioLevelMeter.MIN_DECIBELS;
+        mPeak = 0;
+        mOnsetNoiseFloor = Float.NaN;
+    }
+
+    /** Processes length samples from offset, calling the listener for each onset they complete. */
+    public void process(short[] samples, int offset, int length, OnOnsetListener listener) {
+
+        int end = offset + length;
+
+        while (offset < end) {
+
+            int count = Math.min(mFrameSize - mFrameLength, end - offset);
+            long sumOfSquares = mSumOfSquares;
+
+            for (int i = 0; i < count; i++) {
+                int sample = samples[offset + i];
+                sumOfSquares += sample * sample;
+            }
+
+            System.arraycopy(samples, offset, mFrame, mFrameLength, count);
+
+            mSumOfSquares = sumOfSquares;
+            mFrameLength += count;
+            mPosition += count;
+            offset += count;
+
+            if (mFrameLength == mFrameSize) {
+                completeFrame(listener);
+            }
+        }
+    }
+
+    private void completeFrame(OnOnsetListener listener) {
+
+        float energy = (float) SKAudioLevelMeter.toDecibelsFullScale(Math.sqrt((double) mSumOfSquares / mFrameSize));
+
+        mSumOfSquares = 0;
+        mFrameLength = 0;
+        mFrameCount++;
+
+        if (Float.isNaN(mNoiseFloor)) {
+            mNoiseFloor = energy;
+        }
+
+        float margin = energy - mNoiseFloor;
+        long onsetPosition = -1;
+
+        if (mArmed && energy >= mMinimumEnergy && margin >= mThreshold) {
+
+            onsetPosition = findOnset();
+
+            if (onsetPosition - mLastOnsetPosition >= mMinimumInterval) {
+                mArmed = false;
+                mLastOnsetPosition = onsetPosition;
+                mEnergy = energy;
+                mPeak = SKAudioLevelMeter.getMaxAbs(mFrame, 0, mFrameSize);
+                mOnsetNoiseFloor = mNoiseFloor;
+            }
+            else {
+                onsetPosition = -1;
+            }
+        }
+        else if (!mArmed && margin < mThreshold / 2) {
+            mArmed = true;
+        }
+
+        // Follow the quietest frames, rise slowly otherwise
+        mNoiseFloor = Math.min(energy, mNoiseFloor + mNoiseFloorRise);
+
+        // The frame becomes the previous one
+        short[] frame = mPreviousFrame;
+        mPreviousFrame = mFrame;
+        mFrame = frame;
+
+        if (onsetPosition >= 0) {
+            listener.onOnset(onsetPosition, this);
+        }
+    }
+
+    /**
+     * Returns the position of the middle of the first window above the threshold, in the
+     * previous or the current frame, or the start of the current frame if there is none.
+     */
+    private long findOnset() {
+
+        double amplitude = SKAudioLevelMeter.FULL_SCALE * Math.pow(10, (mNoiseFloor + mThreshold) / 20);
+        double threshold = amplitude * amplitude * mWindowSize;
+
+        // Index in the previous frame followed by the current one
+        long previousFrameStart = mPosition - 2 * mFrameSize;
+        int start = (mFrameCount > 1) ? 0 : mFrameSize;
+        long sumOfSquares = 0;
+
+        for (int i = start; i < 2 * mFrameSize; i++) {
+
+            int sample = getSample(i);
+            sumOfSquares += sample * sample;
+
+            if (i - start < mWindowSize - 1) {
+                continue;
+            }
+
+            if (sumOfSquares >= threshold) {
+                return previousFrameStart + i - (mWindowSize - 1) / 2;
+            }
+
+            int oldest = getSample(i - mWindowSize + 1);
+            sumOfSquares -= oldest * oldest;
+        }
+
+        return mPosition - mFrameSize;
+    }
+
+    private int getSample(int index) {
+        return (index < mFrameSize) ? mPreviousFrame[index] : mFrame[index - mFrameSize];
+    }
+
+    //region Features of the last onset
+
+    /** Returns the energy of the frame of the last onset, in dBFS. */
+    public float getEnergy() {
+        return mEnergy;
+    }
+
+    /** Returns the peak of the frame of the last onset, in sample units. */
+    public int getPeak() {
+        return mPeak;
+    }
+
+    /** Returns the noise floor before the last onset, in dBFS. */
+    public float getNoiseFloor() {
+        return mOnsetNoiseFloor;
+    }
+
+    /** Returns the energy of the last onset above the noise floor, in dB. */
+    public float getEnergyRatio() {
+        return mEnergy - mOnsetNoiseFloor;
+    }
+
+    //endregion
+
+}
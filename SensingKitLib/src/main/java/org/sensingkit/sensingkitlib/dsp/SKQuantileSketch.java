@@ -0,0 +1,547 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.dsp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Streaming quantile sketch (KLL) with a memory bound that does not depend on the number of
+ * values added.
+ *
+ * Values are kept in levels of compactors: a value at level h stands for 2^h of the values
+ * added. When a level is full, it is sorted and every second value (starting at a random
+ * offset) is promoted to the next level. Level capacities shrink geometrically (by 2/3) below
+ * the top level, so the sketch keeps about 3k values. The rank error is about 1.65 / k
+ * (1% for k = 200, with high probability).
+ *
+ * Sketches with the same k can be merged (e.g. across sessions or devices) and serialized with
+ * toByteArray() for upload. The class is not thread safe.
+ */
+public class SKQuantileSketch {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKQuantileSketch";
+
+    public static final int DEFAULT_K = 200;
+
+    private static final int MIN_K = 8;
+    private static final int MIN_CAPACITY = 2;
+    private static final double CAPACITY_RATIO = 2.0 / 3.0;
+
+    private static final int MAGIC = 0x534B514B;  // "SKQK"
+    private static final byte VERSION = 1;
+
+    private final int mK;
+    private final Random mRandom = new Random();
+
+    private double[][] mLevels = new double[1][];
+    private int[] mSizes = new int[1];
+    private int mLevelCount = 1;
+    private int mRetainedCount = 0;
+    private int mTotalCapacity;
+
+    private long mCount = 0;
+    private double mMin = Double.NaN;
+    private double mMax = Double.NaN;
+
+    // Sorted view for queries, rebuilt after changes
+    private double[] mSortedValues;
+    private long[] mCumulativeWeights;
+    private int mSortedCount = -1;
+
+    public SKQuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    public SKQuantileSketch(int k) {
+
+        if (k < MIN_K) {
+            throw new IllegalArgumentException("K must be at least " + MIN_K + ".");
+        }
+
+        this.mK = k;
+        this.mLevels[0] = new double[k];
+        this.mTotalCapacity = k;
+    }
+
+    public SKQuantileSketch(SKQuantileSketch sketch) {
+        this(sketch.mK);
+        merge(sketch);
+    }
+
+    public int getK() {
+        return mK;
+    }
+
+    /** Returns the number of values added (including the merged sketches). */
+    public long getCount() {
+        return mCount;
+    }
+
+    public boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    /** Returns the smallest value added, or NaN if the sketch is empty. */
+    public double getMin() {
+        return mMin;
+    }
+
+    /** Returns the largest value added, or NaN if the sketch is empty. */
+    public double getMax() {
+        return mMax;
+    }
+
+    /** Returns the number of values kept by the sketch. */
+    public int getRetainedCount() {
+        return mRetainedCount;
+    }
+
+    public void reset() {
+
+        for (int level = 0; level < mLevelCount; level++) {
+            mSizes[level] = 0;
+        }
+
+        mLevelCount = 1;
+        mRetainedCount = 0;
+        mTotalCapacity = mK;
+        mCount = 0;
+        mMin = Double.NaN;
+        mMax = Double.NaN;
+        mSortedCount = -1;
+    }
+
+    //region Updates
+
+    /** Adds a value. NaN values are ignored. */
+    public void add(double value) {
+
+        if (Double.isNaN(value)) {
+            return;
+        }
+
+        if (mCount == 0) {
+            mMin = value;
+            mMax = value;
+        }
+        else {
+            mMin = Math.min(mMin, value);
+            mMax = Math.max(mMax, value);
+        }
+
+        append(0, value);
+        mCount++;
+        mSortedCount = -1;
+
+        compress();
+    }
+
+    /** Adds the values of another sketch with the same k. The other sketch is not changed. */
+    public void merge(SKQuantileSketch sketch) {
+
+        if (sketch.mK != mK) {
+            throw new IllegalArgumentException("Sketches with different k (" + mK + " and " + sketch.mK + ") cannot be merged.");
+        }
+
+        if (sketch.mCount == 0) {
+            return;
+        }
+
+        // The levels of this sketch grow while they are appended, so merge a copy of them
+        if (sketch == this) {
+            sketch = new SKQuantileSketch(this);
+        }
+
+        if (mCount == 0) {
+            mMin = sketch.mMin;
+            mMax = sketch.mMax;
+        }
+        else {
+            mMin = Math.min(mMin, sketch.mMin);
+            mMax = Math.max(mMax, sketch.mMax);
+        }
+
+        for (int level = 0; level < sketch.mLevelCount; level++) {
+            for (int i = 0; i < sketch.mSizes[level]; i++) {
+                append(level, sketch.mLevels[level][i]);
+            }
+        }
+
+        mCount += sketch.mCount;
+        mSortedCount = -1;
+        compress();
+    }
+
+    private void append(int level, double value) {
+
+        while (level >= mLevelCount) {
+            addLevel();
+        }
+
+        double[] values = mLevels[level];
+        int size = mSizes[level];
+
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(MIN_CAPACITY, size * 2));
+            mLevels[level] = values;
+        }
+
+        values[size] = value;
+        mSizes[level] = size + 1;
+        mRetainedCount++;
+    }
+
+    private void addLevel() {
+
+        if (mLevelCount == mLevels.length) {
+            mLevels = Arrays.copyOf(mLevels, mLevelCount + 1);
+            mSizes = Arrays.copyOf(mSizes, mLevelCount + 1);
+        }
+
+        if (mLevels[mLevelCount] == null) {
+            mLevels[mLevelCount] = new double[MIN_CAPACITY];
+        }
+
+        mSizes[mLevelCount] = 0;
+        mLevelCount++;
+
+        // Adding a level reduces the capacity of the levels below
+        mTotalCapacity = 0;
+
+        for (int level = 0; level < mLevelCount; level++) {
+            mTotalCapacity += capacity(level);
+        }
+    }
+
+    /** Capacity of a level, which depends on its depth below the top level. */
+    private int capacity(int level) {
+        int depth = mLevelCount - 1 - level;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(mK * Math.pow(CAPACITY_RATIO, depth)));
+    }
+
+    /**
+     * Compacts the lowest full level while the sketch holds more values than the sum of the
+     * level capacities. Levels are compacted lazily, so that as many values as possible are kept.
+     */
+    private void compress() {
+
+        while (mRetainedCount >= mTotalCapacity) {
+
+            int level = 0;
+
+            while (mSizes[level] < capacity(level)) {
+                level++;
+            }
+
+            compact(level);
+        }
+    }
+
+    private void compact(int level) {
+
+        if (level + 1 == mLevelCount) {
+            addLevel();
+        }
+
+        double[] values = mLevels[level];
+        int size = mSizes[level];
+
+        // With an odd number of values, the last one stays
+        int compacted = size & ~1;
+        Arrays.sort(values, 0, size);
+
+        // Keep the largest value if odd, since it is at the end after sorting
+        double remaining = values[size - 1];
+
+        for (int i = mRandom.nextBoolean() ? 1 : 0; i < compacted; i += 2) {
+            append(level + 1, values[i]);
+        }
+
+        values = mLevels[level];
+
+        if (compacted < size) {
+            values[0] = remaining;
+            mSizes[level] = 1;
+        }
+        else {
+            mSizes[level] = 0;
+        }
+
+        mRetainedCount -= compacted;
+    }
+
+    //endregion
+
+    //region Queries
+
+    /**
+     * Returns the value at the quantile q (between 0 and 1, e.g. 0.95 for p95),
+     * or NaN if the sketch is empty.
+     */
+    public double getQuantile(double q) {
+
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+        }
+
+        if (mCount == 0) {
+            return Double.NaN;
+        }
+
+        if (q == 0) {
+            return mMin;
+        }
+
+        if (q == 1) {
+            return mMax;
+        }
+
+        prepareSortedView();
+
+        long total = mCumulativeWeights[mSortedCount - 1];
+        long rank = (long) Math.ceil(q * total);
+
+        // First value whose cumulative weight reaches the rank
+        int low = 0;
+        int high = mSortedCount - 1;
+
+        while (low < high) {
+
+            int middle = (low + high) >>> 1;
+
+            if (mCumulativeWeights[middle] < rank) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+
+        return mSortedValues[low];
+    }
+
+    /** Returns the values at the quantiles qs. */
+    public double[] getQuantiles(double... qs) {
+
+        double[] quantiles = new double[qs.length];
+
+        for (int i = 0; i < qs.length; i++) {
+            quantiles[i] = getQuantile(qs[i]);
+        }
+
+        return quantiles;
+    }
+
+    /** Returns the estimated fraction of the values that are smaller than or equal to value. */
+    public double getRank(double value) {
+
+        if (mCount == 0) {
+            return Double.NaN;
+        }
+
+        prepareSortedView();
+
+        // Last value smaller than or equal to value
+        int low = 0;
+        int high = mSortedCount;
+
+        while (low < high) {
+
+            int middle = (low + high) >>> 1;
+
+            if (mSortedValues[middle] <= value) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+
+        long total = mCumulativeWeights[mSortedCount - 1];
+        return (low == 0) ? 0 : (double) mCumulativeWeights[low - 1] / total;
+    }
+
+    private void prepareSortedView() {
+
+        if (mSortedCount >= 0) {
+            return;
+        }
+
+        int count = getRetainedCount();
+
+        if (mSortedValues == null || mSortedValues.length < count) {
+            mSortedValues = new double[count];
+            mCumulativeWeights = new long[count];
+        }
+
+        // Values with their weight (2^level), sorted together by value
+        long[] weights = mCumulativeWeights;
+        int index = 0;
+
+        for (int level = 0; level < mLevelCount; level++) {
+            for (int i = 0; i < mSizes[level]; i++) {
+                mSortedValues[index] = mLevels[level][i];
+                weights[index] = 1L << level;
+                index++;
+            }
+        }
+
+        sortByValue(mSortedValues, weights, count);
+
+        for (int i = 1; i < count; i++) {
+            weights[i] += weights[i - 1];
+        }
+
+        mSortedCount = count;
+    }
+
+    /** Bottom-up merge sort that keeps the weights next to their values. */
+    private static void sortByValue(double[] values, long[] weights, int count) {
+
+        double[] valueBuffer = new double[count];
+        long[] weightBuffer = new long[count];
+
+        for (int width = 1; width < count; width *= 2) {
+
+            for (int start = 0; start < count; start += 2 * width) {
+
+                int middle = Math.min(start + width, count);
+                int end = Math.min(start + 2 * width, count);
+                int left = start;
+                int right = middle;
+
+                for (int i = start; i < end; i++) {
+
+                    if (left < middle && (right >= end || values[left] <= values[right])) {
+                        valueBuffer[i] = values[left];
+                        weightBuffer[i] = weights[left++];
+                    }
+                    else {
+                        valueBuffer[i] = values[right];
+                        weightBuffer[i] = weights[right++];
+                    }
+                }
+            }
+
+            System.arraycopy(valueBuffer, 0, values, 0, count);
+            System.arraycopy(weightBuffer, 0, weights, 0, count);
+        }
+    }
+
+    //endregion
+
+    //region Serialization
+
+    public void writeTo(DataOutput output) throws IOException {
+
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        output.writeInt(mK);
+        output.writeLong(mCount);
+        output.writeDouble(mMin);
+        output.writeDouble(mMax);
+        output.writeInt(mLevelCount);
+
+        for (int level = 0; level < mLevelCount; level++) {
+
+            output.writeInt(mSizes[level]);
+
+            for (int i = 0; i < mSizes[level]; i++) {
+                output.writeDouble(mLevels[level][i]);
+            }
+        }
+    }
+
+    public static SKQuantileSketch readFrom(DataInput input) throws IOException {
+
+        if (input.readInt() != MAGIC || input.readByte() != VERSION) {
+            throw new IOException("Data is not a quantile sketch.");
+        }
+
+        int k = input.readInt();
+
+        if (k < MIN_K) {
+            throw new IOException("Quantile sketch has an invalid k (" + k + ").");
+        }
+
+        SKQuantileSketch sketch = new SKQuantileSketch(k);
+        sketch.mCount = input.readLong();
+        sketch.mMin = input.readDouble();
+        sketch.mMax = input.readDouble();
+
+        int levelCount = input.readInt();
+
+        if (levelCount < 1 || levelCount > Long.SIZE) {
+            throw new IOException("Quantile sketch has an invalid number of levels (" + levelCount + ").");
+        }
+
+        while (sketch.mLevelCount < levelCount) {
+            sketch.addLevel();
+        }
+
+        for (int level = 0; level < levelCount; level++) {
+
+            int size = input.readInt();
+
+            if (size < 0 || sketch.mRetainedCount + size > sketch.mTotalCapacity) {
+                throw new IOException("Quantile sketch has an invalid level size (" + size + ").");
+            }
+
+            for (int i = 0; i < size; i++) {
+                sketch.append(level, input.readDouble());
+            }
+        }
+
+        return sketch;
+    }
+
+    public byte[] toByteArray() {
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        try {
+            writeTo(new DataOutputStream(stream));
+        }
+        catch (IOException e) {
+            // Not thrown by ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+
+        return stream.toByteArray();
+    }
+
+    public static SKQuantileSketch fromByteArray(byte[] bytes) throws IOException {
+        return readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    //endregion
+
+}
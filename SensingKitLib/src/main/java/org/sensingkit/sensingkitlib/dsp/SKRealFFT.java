@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.dsp;
+
+/**
+ * Radix-2 FFT of a real signal of a fixed size, on float arrays.
+ *
+ * The signal is transformed as a complex signal of half the size (even samples as real part,
+ * odd samples as imaginary part), and the spectrum is then separated. Twiddle factors, the
+ * bit-reversal permutation and the Hann window are computed in the constructor, so a
+ * transform does not allocate or call Math.sin / Math.cos. The instance keeps scratch arrays
+ * and must not be shared between threads.
+ */
+public class SKRealFFT {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKRealFFT";
+
+    private final int mSize;
+    private final int mHalfSize;
+
+    // Complex FFT of half the size
+    private final float[] mCos;
+    private final float[] mSin;
+    private final int[] mBitReversed;
+
+    // Twiddles of the separation step, for k = 0 .. size / 2
+    private final float[] mSplitCos;
+    private final float[] mSplitSin;
+
+    private final float[] mHannWindow;
+
+    // Scratch
+    private final float[] mReal;
+    private final float[] mImaginary;
+
+    public SKRealFFT(int size) {
+
+        if (size < 4 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two (at least 4).");
+        }
+
+        this.mSize = size;
+        this.mHalfSize = size / 2;
+
+        int half = mHalfSize;
+
+        this.mCos = new float[half / 2];
+        this.mSin = new float[half / 2];
+        this.mBitReversed = new int[half];
+
+        for (int i = 0; i < half / 2; i++) {
+            mCos[i] = (float) Math.cos(-2 * Math.PI * i / half);
+            mSin[i] = (float) Math.sin(-2 * Math.PI * i / half);
+        }
+
+        int bits = Integer.numberOfTrailingZeros(half);
+
+        for (int i = 0; i < half; i++) {
+            mBitReversed[i] = (bits == 0) ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+
+        this.mSplitCos = new float[half + 1];
+        this.mSplitSin = new float[half + 1];
+
+        for (int k = 0; k <= half; k++) {
+            mSplitCos[k] = (float) Math.cos(-2 * Math.PI * k / size);
+            mSplitSin[k] = (float) Math.sin(-2 * Math.PI * k / size);
+        }
+
+        this.mHannWindow = new float[size];
+
+        for (int i = 0; i < size; i++) {
+            mHannWindow[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / size));
+        }
+
+        this.mReal = new float[half];
+        this.mImaginary = new float[half];
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+    /** Returns the number of bins of the spectrum (size / 2 + 1, from DC to Nyquist). */
+    public int getBinCount() {
+        return mHalfSize + 1;
+    }
+
+    /** Multiplies the signal by a (periodic) Hann window, in place. */
+    public void applyHannWindow(float[] signal) {
+
+        for (int i = 0; i < mSize; i++) {
+            signal[i] *= mHannWindow[i];
+        }
+    }
+
+    /** Transforms the signal into the bins 0 .. size / 2 of its spectrum. */
+    public void transform(float[] signal, float[] real, float[] imaginary) {
+
+        int half = mHalfSize;
+
+        // Pack the even and odd samples into a complex signal, in bit-reversed order
+        for (int i = 0; i < half; i++) {
+            int j = mBitReversed[i];
+            mReal[j] = signal[2 * i];
+            mImaginary[j] = signal[2 * i + 1];
+        }
+
+        // Butterflies
+        for (int length = 2; length <= half; length <<= 1) {
+
+            int halfLength = length >> 1;
+            int step = half / length;
+
+            for (int start = 0; start < half; start += length) {
+                for (int k = 0; k < halfLength; k++) {
+
+                    float cos = mCos[k * step];
+                    float sin = mSin[k * step];
+
+                    int even = start + k;
+                    int odd = even + halfLength;
+
+                    float oddReal = mReal[odd] * cos - mImaginary[odd] * sin;
+                    float oddImaginary = mReal[odd] * sin + mImaginary[odd] * cos;
+
+                    mReal[odd] = mReal[even] - oddReal;
+                    mImaginary[odd] = mImaginary[even] - oddImaginary;
+                    mReal[even] += oddReal;
+                    mImaginary[even] += oddImaginary;
+                }
+            }
+        }
+
+        // Separate the spectra of the even and odd samples
+        for (int k = 0; k <= half; k++) {
+
+            int index = (k == half) ? 0 : k;
+            int mirror = (k == 0) ? 0 : half - k;
+
+            // A = Z[k], B = conj(Z[half - k])
+            float aReal = mReal[index];
+            float aImaginary = mImaginary[index];
+            float bReal = mReal[mirror];
+            float bImaginary = -mImaginary[mirror];
+
+            // Even part (A + B) / 2, odd part (A - B) / 2i
+            float evenReal = (aReal + bReal) / 2;
+            float evenImaginary = (aImaginary + bImaginary) / 2;
+            float oddReal = (aImaginary - bImaginary) / 2;
+            float oddImaginary = -(aReal - bReal) / 2;
+
+            float cos = mSplitCos[k];
+            float sin = mSplitSin[k];
+
+            real[k] = evenReal + oddReal * cos - oddImaginary * sin;
+            imaginary[k] = evenImaginary + oddReal * sin + oddImaginary * cos;
+        }
+    }
+
+    /** Transforms the signal and writes the power (squared magnitude) of the bins 0 .. size / 2. */
+    public void powerSpectrum(float[] signal, float[] real, float[] imaginary, float[] power) {
+
+        transform(signal, real, imaginary);
+
+        for (int k = 0; k <= mHalfSize; k++) {
+            power[k] = real[k] * real[k] + imaginary[k] * imaginary[k];
+        }
+    }
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.dsp;
+
+/**
+ * Resamples an irregularly sampled multi-channel stream to a fixed rate.
+ *
+ * Input samples first go through an anti-aliasing low-pass filter (two cascaded first-order
+ * sections with a cutoff at 0.4 times the output rate, whose coefficients follow the actual
+ * time between samples). The filtered stream is then interpolated, linearly or with a cubic
+ * Hermite spline, at timestamps that are multiples of the output period.
+ *
+ * The filter is a light one: it attenuates by 6 dB at its cutoff, 8 dB at the Nyquist
+ * frequency of the output, 10 dB at 0.6 times the output rate and 20 dB at 1.2 times the
+ * output rate, and 12 dB more per octave above. Each section delays the signal by its time
+ * constant at low frequencies, so filtered samples are placed two time constants (0.16 output
+ * periods) earlier, which keeps the output aligned with slow signals. The delay of the filter
+ * falls towards its cutoff, where the output leads the input by up to a fifth of a period.
+ *
+ * Output samples are produced as soon as the input samples around them have arrived: one
+ * input sample later with linear interpolation and two with cubic interpolation, plus the
+ * filter delay. When the input has a gap longer than the maximum gap, the stream restarts
+ * after it instead of interpolating across it.
+ */
+public class SKResampler {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKResampler";
+
+    public enum Interpolation {
+        LINEAR,
+        CUBIC
+    }
+
+    public interface OnSampleListener {
+
+        /** Called for each output sample. The values array is reused for the next sample. */
+        void onSample(double timestamp, float[] values);
+    }
+
+    public static final long DEFAULT_MAX_GAP = 1000;  // ms
+
+    private static final double CUTOFF_RATIO = 0.4;
+    private static final int HISTORY = 4;
+
+    private final int mChannels;
+    private final double mPeriod;
+    private final Interpolation mInterpolation;
+    private final boolean mAntiAliasing;
+    private final double mFilterTimeConstant;
+    private final double mFilterDelay;  // ms
+    private long mMaxGap = DEFAULT_MAX_GAP;
+
+    // Anti-aliasing filter state
+    private final double[] mFirstStage;
+    private final double[] mSecondStage;
+
+    // Last filtered input samples, oldest first
+    private final double[] mTimes = new double[HISTORY];
+    private final float[][] mHistory;
+    private int mHistoryCount = 0;
+
+    private long mLastTimestamp;
+    private double mNextTimestamp;
+    private final float[] mOutput;
+
+    /** Output rate in Hz. */
+    public SKResampler(int channels, double outputRate, Interpolation interpolation, boolean antiAliasing) {
+
+        if (channels < 1) {
+            throw new IllegalArgumentException("There must be at least one channel.");
+        }
+
+        if (!(outputRate > 0)) {
+            throw new IllegalArgumentException("Output rate must be positive.");
+        }
+
+        this.mChannels = channels;
+        this.mPeriod = 1000.0 / outputRate;
+        this.mInterpolation = interpolation;
+        this.mAntiAliasing = antiAliasing;
+        this.mFilterTimeConstant = 1.0 / (2 * Math.PI * CUTOFF_RATIO * outputRate);
+        this.mFilterDelay = antiAliasing ? 2 * mFilterTimeConstant * 1000 : 0;
+
+        this.mFirstStage = new double[channels];
+        this.mSecondStage = new double[channels];
+        this.mHistory = new float[HISTORY][channels];
+        this.mOutput = new float[channels];
+    }
+
+    /** Returns the output period in ms. */
+    public double getPeriod() {
+        return mPeriod;
+    }
+
+    /** Sets the longest time between two input samples that is interpolated, in ms. */
+    public void setMaxGap(long maxGap) {
+
+        if (maxGap <= 0) {
+            throw new IllegalArgumentException("Maximum gap must be positive.");
+        }
+
+        mMaxGap = maxGap;
+    }
+
+    public void reset() {
+        mHistoryCount = 0;
+    }
+
+    /** Processes an input sample (timestamp in ms) and calls the listener for each output sample it completes. */
+    public void process(long timestamp, float[] values, OnSampleListener listener) {
+
+        if (mHistoryCount > 0) {
+
+            // Samples out of order are dropped
+            if (timestamp <= mLastTimestamp) {
+                return;
+            }
+
+            if (timestamp - mLastTimestamp > mMaxGap) {
+                mHistoryCount = 0;
+            }
+        }
+
+        // Anti-aliasing filter
+        if (mHistoryCount == 0) {
+
+            for (int channel = 0; channel < mChannels; channel++) {
+                mFirstStage[channel] = values[channel];
+                mSecondStage[channel] = values[channel];
+            }
+
+            // Output grid is aligned to multiples of the period
+            mNextTimestamp = Math.ceil((timestamp - mFilterDelay) / mPeriod) * mPeriod;
+        }
+        else if (mAntiAliasing) {
+
+            double dt = (timestamp - mLastTimestamp) / 1000.0;
+            double alpha = dt / (mFilterTimeConstant + dt);
+
+            for (int channel = 0; channel < mChannels; channel++) {
+                mFirstStage[channel] += alpha * (values[channel] - mFirstStage[channel]);
+                mSecondStage[channel] += alpha * (mFirstStage[channel] - mSecondStage[channel]);
+            }
+        }
+        else {
+
+            for (int channel = 0; channel < mChannels; channel++) {
+                mSecondStage[channel] = values[channel];
+            }
+        }
+
+        mLastTimestamp = timestamp;
+
+        // Append to the history
+        if (mHistoryCount == HISTORY) {
+
+            float[] oldest = mHistory[0];
+
+            for (int i = 1; i < HISTORY; i++) {
+                mTimes[i - 1] = mTimes[i];
+                mHistory[i - 1] = mHistory[i];
+            }
+
+            mHistory[HISTORY - 1] = oldest;
+            mHistoryCount--;
+        }
+
+        // Time of the input that the filtered sample corresponds to
+        mTimes[mHistoryCount] = timestamp - mFilterDelay;
+
+        for (int channel = 0; channel < mChannels; channel++) {
+            mHistory[mHistoryCount][channel] = (float) mSecondStage[channel];
+        }
+
+        mHistoryCount++;
+
+        // Interpolate
+        if (mInterpolation == Interpolation.LINEAR) {
+
+            if (mHistoryCount >= 2) {
+                interpolateLinear(mHistoryCount - 2, listener);
+            }
+        }
+        else {
+
+            if (mHistoryCount >= 3) {
+                interpolateCubic(mHistoryCount - 3, listener);
+            }
+        }
+    }
+
+    private void interpolateLinear(int first, OnSampleListener listener) {
+
+        double t1 = mTimes[first];
+        double t2 = mTimes[first + 1];
+        float[] v1 = mHistory[first];
+        float[] v2 = mHistory[first + 1];
+
+        while (mNextTimestamp <= t2) {
+
+            double s = (mNextTimestamp - t1) / (t2 - t1);
+
+            for (int channel = 0; channel < mChannels; channel++) {
+                mOutput[channel] = (float) (v1[channel] + (v2[channel] - v1[channel]) * s);
+            }
+
+            listener.onSample(mNextTimestamp, mOutput);
+            mNextTimestamp += mPeriod;
+        }
+    }
+
+    /** Interpolates between the samples first and first + 1, using their neighbours for the tangents. */
+    private void interpolateCubic(int first, OnSampleListener listener) {
+
+        boolean hasPrevious = (first > 0);
+
+        double t0 = hasPrevious ? mTimes[first - 1] : mTimes[first];
+        double t1 = mTimes[first];
+        double t2 = mTimes[first + 1];
+        double t3 = mTimes[first + 2];
+        float[] v0 = hasPrevious ? mHistory[first - 1] : mHistory[first];
+        float[] v1 = mHistory[first];
+        float[] v2 = mHistory[first + 1];
+        float[] v3 = mHistory[first + 2];
+
+        double h = t2 - t1;
+
+        while (mNextTimestamp <= t2) {
+
+            double s = (mNextTimestamp - t1) / h;
+            double s2 = s * s;
+            double s3 = s2 * s;
+
+            // Hermite basis
+            double h00 = 2 * s3 - 3 * s2 + 1;
+            double h10 = s3 - 2 * s2 + s;
+            double h01 = -2 * s3 + 3 * s2;
+            double h11 = s3 - s2;
+
+            for (int channel = 0; channel < mChannels; channel++) {
+
+                // Tangents from the neighbours, for non-uniform spacing
+                double m1 = (v2[channel] - v0[channel]) / (t2 - t0);
+                double m2 = (v3[channel] - v1[channel]) / (t3 - t1);
+
+                mOutput[channel] = (float) (h00 * v1[channel] + h10 * h * m1 + h01 * v2[channel] + h11 * h * m2);
+            }
+
+            listener.onSample(mNextTimestamp, mOutput);
+            mNextTimestamp += mPeriod;
+        }
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.dsp;
+
+/**
+ * Allocation-free conversions between rotation vectors, quaternions, rotation matrices and
+ * azimuth / pitch / roll. They follow the conventions of SensorManager
+ * (getQuaternionFromVector, getRotationMatrixFromVector and getOrientation), but write into
+ * arrays that the caller reuses.
+ *
+ * Quaternions are stored as {w, x, y, z} and rotation matrices as 3x3, row-major.
+ */
+public final class SKRotationMath {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKRotationMath";
+
+    private SKRotationMath() {
+    }
+
+    /** Converts a rotation vector (x, y, z and optionally cos(theta / 2)) into a unit quaternion. */
+    public static void quaternionFromRotationVector(float[] rotationVector, int length, float[] quaternion) {
+
+        float x = rotationVector[0];
+        float y = rotationVector[1];
+        float z = rotationVector[2];
+        float w;
+
+        if (length >= 4) {
+            w = rotationVector[3];
+        }
+        else {
+            w = 1 - x * x - y * y - z * z;
+            w = (w > 0) ? (float) Math.sqrt(w) : 0;
+        }
+
+        quaternion[0] = w;
+        quaternion[1] = x;
+        quaternion[2] = y;
+        quaternion[3] = z;
+    }
+
+    /** Converts a unit quaternion into a 3x3 rotation matrix. */
+    public static void rotationMatrixFromQuaternion(float[] quaternion, float[] matrix) {
+
+        float w = quaternion[0];
+        float x = quaternion[1];
+        float y = quaternion[2];
+        float z = quaternion[3];
+
+        float xx = 2 * x * x;
+        float yy = 2 * y * y;
+        float zz = 2 * z * z;
+        float xy = 2 * x * y;
+        float zw = 2 * z * w;
+        float xz = 2 * x * z;
+        float yw = 2 * y * w;
+        float yz = 2 * y * z;
+        float xw = 2 * x * w;
+
+        matrix[0] = 1 - yy - zz;
+        matrix[1] = xy - zw;
+        matrix[2] = xz + yw;
+
+        matrix[3] = xy + zw;
+        matrix[4] = 1 - xx - zz;
+        matrix[5] = yz - xw;
+
+        matrix[6] = xz - yw;
+        matrix[7] = yz + xw;
+        matrix[8] = 1 - xx - yy;
+    }
+
+    /** Converts a 3x3 rotation matrix into a unit quaternion with w >= 0. */
+    public static void quaternionFromRotationMatrix(float[] matrix, float[] quaternion) {
+
+        float trace = matrix[0] + matrix[4] + matrix[8];
+
+        // Use the largest of the four terms, for numerical stability
+        if (trace > 0) {
+            float s = (float) Math.sqrt(trace + 1) * 2;
+            quaternion[0] = s / 4;
+            quaternion[1] = (matrix[7] - matrix[5]) / s;
+            quaternion[2] = (matrix[2] - matrix[6]) / s;
+            quaternion[3] = (matrix[3] - matrix[1]) / s;
+        }
+        else if (matrix[0] > matrix[4] && matrix[0] > matrix[8]) {
+            float s = (float) Math.sqrt(1 + matrix[0] - matrix[4] - matrix[8]) * 2;
+            quaternion[0] = (matrix[7] - matrix[5]) / s;
+            quaternion[1] = s / 4;
+            quaternion[2] = (matrix[1] + matrix[3]) / s;
+            quaternion[3] = (matrix[2] + matrix[6]) / s;
+        }
+        else if (matrix[4] > matrix[8]) {
+            float s = (float) Math.sqrt(1 + matrix[4] - matrix[0] - matrix[8]) * 2;
+            quaternion[0] = (matrix[2] - matrix[6]) / s;
+            quaternion[1] = (matrix[1] + matrix[3]) / s;
+            quaternion[2] = s / 4;
+            quaternion[3] = (matrix[5] + matrix[7]) / s;
+        }
+        else {
+            float s = (float) Math.sqrt(1 + matrix[8] - matrix[0] - matrix[4]) * 2;
+            quaternion[0] = (matrix[3] - matrix[1]) / s;
+            quaternion[1] = (matrix[2] + matrix[6]) / s;
+            quaternion[2] = (matrix[5] + matrix[7]) / s;
+            quaternion[3] = s / 4;
+        }
+
+        if (quaternion[0] < 0) {
+            quaternion[0] = -quaternion[0];
+            quaternion[1] = -quaternion[1];
+            quaternion[2] = -quaternion[2];
+            quaternion[3] = -quaternion[3];
+        }
+
+        normalizeQuaternion(quaternion);
+    }
+
+    /**
+     * Computes the 3x3 rotation matrix from gravity (accelerometer) and geomagnetic
+     * (magnetometer) vectors, as SensorManager.getRotationMatrix. Returns false if the
+     * vectors are too close to parallel (e.g. free fall or close to the magnetic pole).
+     */
+    public static boolean rotationMatrixFromGravityAndGeomagnetic(float[] gravity, float[] geomagnetic, float[] matrix) {
+
+        float ax = gravity[0];
+        float ay = gravity[1];
+        float az = gravity[2];
+        float ex = geomagnetic[0];
+        float ey = geomagnetic[1];
+        float ez = geomagnetic[2];
+
+        // East
+        float hx = ey * az - ez * ay;
+        float hy = ez * ax - ex * az;
+        float hz = ex * ay - ey * ax;
+        float normH = (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+        float normA = (float) Math.sqrt(ax * ax + ay * ay + az * az);
+
+        if (normH < 0.1f || normA == 0) {
+            return false;
+        }
+
+        hx /= normH;
+        hy /= normH;
+        hz /= normH;
+        ax /= normA;
+        ay /= normA;
+        az /= normA;
+
+        // North
+        float mx = ay * hz - az * hy;
+        float my = az * hx - ax * hz;
+        float mz = ax * hy - ay * hx;
+
+        matrix[0] = hx;
+        matrix[1] = hy;
+        matrix[2] = hz;
+        matrix[3] = mx;
+        matrix[4] = my;
+        matrix[5] = mz;
+        matrix[6] = ax;
+        matrix[7] = ay;
+        matrix[8] = az;
+
+        return true;
+    }
+
+    /** Computes azimuth, pitch and roll (radians) of a 3x3 rotation matrix. */
+    public static void orientationFromRotationMatrix(float[] matrix, float[] orientation) {
+
+        orientation[0] = (float) Math.atan2(matrix[1], matrix[4]);
+        orientation[1] = (float) Math.asin(Math.max(-1, Math.min(1, -matrix[7])));
+        orientation[2] = (float) Math.atan2(-matrix[6], matrix[8]);
+    }
+
+    /** Normalizes a quaternion in place. A zero quaternion becomes the identity. */
+    public static void normalizeQuaternion(float[] quaternion) {
+
+        float norm = (float) Math.sqrt(quaternion[0] * quaternion[0] + quaternion[1] * quaternion[1] +
+                quaternion[2] * quaternion[2] + quaternion[3] * quaternion[3]);
+
+        if (norm == 0) {
+            quaternion[0] = 1;
+            quaternion[1] = quaternion[2] = quaternion[3] = 0;
+            return;
+        }
+
+        quaternion[0] /= norm;
+        quaternion[1] /= norm;
+        quaternion[2] /= norm;
+        quaternion[3] /= norm;
+    }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.dsp;
+
+/**
+ * Spectral summary of consecutive frames of 16-bit PCM audio: energy, energies of
+ * logarithmically spaced bands, spectral centroid, rolloff, flatness and dominant frequency.
+ *
+ * Each frame is Hann windowed and transformed with SKRealFFT. Energies are in dBFS, on the
+ * scale of SKAudioLevelMeter (a full scale sine is -3.01 dB, at least MIN_DECIBELS), and
+ * frequencies in Hz. All arrays are allocated in the constructor and reused; the features of
+ * the last frame can be read in the listener, until the next frame.
+ */
+public class SKSpectralAnalyzer {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKSpectralAnalyzer";
+
+    public static final float ROLLOFF_FRACTION = 0.85f;
+
+    private static final float MIN_BAND_FREQUENCY = 62.5f;  // Hz
+    private static final float MIN_POWER = 1e-12f;
+
+    public interface OnSpectrumListener {
+
+        /**
+         * Called when a frame is complete. Position is the number of samples processed since
+         * the start (or reset), up to the end of the frame.
+         */
+        void onSpectrum(long position, SKSpectralAnalyzer analyzer);
+    }
+
+    private final int mFrameSize;
+    private final int mSampleRate;
+    private final int mBandCount;
+    private final SKRealFFT mFFT;
+
+    private final int[] mBinBands;
+    private final float mPowerReference;
+
+    // Frame being filled
+    private final float[] mFrame;
+    private int mFrameLength;
+    private long mPosition;
+
+    // Scratch
+    private final float[] mReal;
+    private final float[] mImaginary;
+    private final float[] mPower;
+
+    // Features of the last frame
+    private final float[] mBandEnergies;
+    private float mEnergy;
+    private float mCentroid;
+    private float mRolloff;
+    private float mFlatness;
+    private float mDominantFrequency;
+
+    /** Frame size in samples (a power of two), sample rate in Hz. */
+    public SKSpectralAnalyzer(int frameSize, int sampleRate, int bandCount) {
+
+        if (bandCount < 1) {
+            throw new IllegalArgumentException("There must be at least one band.");
+        }
+
+        this.mFFT = new SKRealFFT(frameSize);
+        this.mFrameSize = frameSize;
+        this.mSampleRate = sampleRate;
+        this.mBandCount = bandCount;
+
+        int binCount = mFFT.getBinCount();
+
+        this.mFrame = new float[frameSize];
+        this.mReal = new float[binCount];
+        this.mImaginary = new float[binCount];
+        this.mPower = new float[binCount];
+        this.mBandEnergies = new float[bandCount];
+
+        // Parseval: a one-sided power sum of P is a mean square of 2P / (N * sum(w^2)), and
+        // sum(w^2) = 3N/8 for the Hann window, so full scale (mean square 1) is 3N^2/16
+        this.mPowerReference = 3f * frameSize * frameSize / 16;
+
+        // Band edges are spaced logarithmically from MIN_BAND_FREQUENCY to Nyquist
+        float nyquist = sampleRate / 2f;
+        float minFrequency = Math.min(MIN_BAND_FREQUENCY, nyquist / 2);
+        this.mBinBands = new int[binCount];
+
+        for (int bin = 1; bin < binCount; bin++) {
+
+            float frequency = getBinFrequency(bin);
+            int band = 0;
+
+            if (frequency > minFrequency) {
+                band = (int) (bandCount * Math.log(frequency / minFrequency) / Math.log(nyquist / minFrequency));
+            }
+
+            mBinBands[bin] = Math.min(bandCount - 1, band);
+        }
+
+        reset();
+    }
+
+    public int getFrameSize() {
+        return mFrameSize;
+    }
+
+    public int getBandCount() {
+        return mBandCount;
+    }
+
+    public void reset() {
+        mFrameLength = 0;
+        mPosition = 0;
+    }
+
+    /** Processes length samples from offset, calling the listener for each frame they complete. */
+    public void process(short[] samples, int offset, int length, OnSpectrumListener listener) {
+
+        int end = offset + length;
+
+        while (offset < end) {
+
+            int count = Math.min(mFrameSize - mFrameLength, end - offset);
+
+            for (int i = 0; i < count; i++) {
+                mFrame[mFrameLength + i] = samples[offset + i] / 32768f;
+            }
+
+            mFrameLength += count;
+            mPosition += count;
+            offset += count;
+
+            if (mFrameLength == mFrameSize) {
+                analyze();
+                mFrameLength = 0;
+                listener.onSpectrum(mPosition, this);
+            }
+        }
+    }
+
+    private void analyze() {
+
+        mFFT.applyHannWindow(mFrame);
+        mFFT.powerSpectrum(mFrame, mReal, mImaginary, mPower);
+
+        int binCount = mFFT.getBinCount();
+
+        for (int band = 0; band < mBandCount; band++) {
+            mBandEnergies[band] = 0;
+        }
+
+        // DC is left out of all features
+        double total = 0;
+        double weighted = 0;
+        double logSum = 0;
+        float maxPower = -1;
+        int maxBin = 1;
+
+        for (int bin = 1; bin < binCount; bin++) {
+
+            float power = mPower[bin];
+
+            total += power;
+            weighted += power * getBinFrequency(bin);
+            logSum += Math.log(power + MIN_POWER);
+            mBandEnergies[mBinBands[bin]] += power;
+
+            if (power > maxPower) {
+                maxPower = power;
+                maxBin = bin;
+            }
+        }
+
+        int bins = binCount - 1;
+
+        mEnergy = toDecibels(total);
+        mDominantFrequency = (total > 0) ? getBinFrequency(maxBin) : 0;
+        mCentroid = (total > 0) ? (float) (weighted / total) : 0;
+        mFlatness = (total > 0) ? (float) (Math.exp(logSum / bins) / (total / bins + MIN_POWER)) : 0;
+
+        // Rolloff: frequency below which ROLLOFF_FRACTION of the energy lies
+        mRolloff = 0;
+
+        if (total > 0) {
+
+            double threshold = total * ROLLOFF_FRACTION;
+            double cumulative = 0;
+
+            for (int bin = 1; bin < binCount; bin++) {
+
+                cumulative += mPower[bin];
+
+                if (cumulative >= threshold) {
+                    mRolloff = getBinFrequency(bin);
+                    break;
+                }
+            }
+        }
+
+        for (int band = 0; band < mBandCount; band++) {
+            mBandEnergies[band] = toDecibels(mBandEnergies[band]);
+        }
+    }
+
+    private float toDecibels(double power) {
+
+        if (power <= 0) {
+            return (float) SKAudioLevelMeter.MIN_DECIBELS;
+        }
+
+        return (float) Math.max(SKAudioLevelMeter.MIN_DECIBELS, 10 * Math.log10(power / mPowerReference));
+    }
+
+    private float getBinFrequency(int bin) {
+        return (float) bin * mSampleRate / mFrameSize;
+    }
+
+    //region Features of the last frame
+
+    /** Returns the energy of the frame, in dB. */
+    public float getEnergy() {
+        return mEnergy;
+    }
+
+    /** Copies the energies of the bands (from low to high frequencies), in dB. */
+    public void getBandEnergies(float[] bandEnergies) {
+        System.arraycopy(mBandEnergies, 0, bandEnergies, 0, mBandCount);
+    }
+
+    public float getCentroid() {
+        return mCentroid;
+    }
+
+    public float getRolloff() {
+        return mRolloff;
+    }
+
+    /** Returns the spectral flatness, from 0 (tonal) to 1 (white noise). */
+    public float getFlatness() {
+        return mFlatness;
+    }
+
+    public float getDominantFrequency() {
+        return mDominantFrequency;
+    }
+
+    //endregion
+
+}
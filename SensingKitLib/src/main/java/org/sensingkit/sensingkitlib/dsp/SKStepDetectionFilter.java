@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.dsp;
+
+/**
+ * Detects steps in a stream of accelerometer samples.
+ *
+ * The magnitude of the acceleration is smoothed with a low-pass filter, and a slow moving
+ * average (the gravity baseline) is subtracted from it. A step is a local maximum of that
+ * signal that is above an adaptive threshold (a fraction of the recent step peaks, but never
+ * below a minimum), that comes at least MIN_STEP_INTERVAL after the previous step, and that
+ * is preceded by a fall below the baseline since the previous step.
+ *
+ * The filters are time based, so samples do not need to arrive at a fixed rate.
+ */
+public class SKStepDetectionFilter {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKStepDetectionFilter";
+
+    private static final double LOW_PASS_TIME_CONSTANT = 1.0 / (2 * Math.PI * 3.0);  // 3 Hz cutoff, in seconds
+    private static final double BASELINE_TIME_CONSTANT = 1.0;                       // seconds
+    private static final double MIN_THRESHOLD = 0.7;                                // m/s^2
+    private static final double THRESHOLD_RATIO = 0.5;                              // of the recent step peaks
+    private static final double PEAK_SMOOTHING = 0.25;
+    private static final long MIN_STEP_INTERVAL = 250;                              // ms, at most 4 steps per second
+    private static final long MAX_SAMPLE_GAP = 500;                                 // ms, filters restart after a gap
+
+    private boolean mStarted = false;
+    private long mLastTimestamp;
+    private double mSmoothed;
+    private double mBaseline;
+
+    // Last two values of the signal, to find local maxima
+    private double mPrevious;
+    private double mBeforePrevious;
+    private long mPreviousTimestamp;
+
+    private double mPeakAverage = 2 * MIN_THRESHOLD;
+    private long mLastStepTimestamp = Long.MIN_VALUE;
+    private boolean mArmed = true;
+
+    /** Processes a sample (timestamp in ms, on any monotonic clock) and returns true if it completed a step. */
+    public boolean process(long timestamp, float x, float y, float z) {
+
+        double magnitude = Math.sqrt(x * x + y * y + z * z);
+
+        if (!mStarted || timestamp - mLastTimestamp > MAX_SAMPLE_GAP || timestamp < mLastTimestamp) {
+            mStarted = true;
+            mLastTimestamp = timestamp;
+            mSmoothed = magnitude;
+            mBaseline = magnitude;
+            mPrevious = 0;
+            mBeforePrevious = 0;
+            mPreviousTimestamp = timestamp;
+            return false;
+        }
+
+        // Filters
+        double dt = (timestamp - mLastTimestamp) / 1000.0;
+        mLastTimestamp = timestamp;
+
+        mSmoothed += (magnitude - mSmoothed) * (dt / (LOW_PASS_TIME_CONSTANT + dt));
+        mBaseline += (magnitude - mBaseline) * (dt / (BASELINE_TIME_CONSTANT + dt));
+
+        double signal = mSmoothed - mBaseline;
+        boolean step = false;
+
+        // The previous sample is a local maximum
+        if (mPrevious > mBeforePrevious && mPrevious >= signal) {
+
+            double threshold = Math.max(MIN_THRESHOLD, THRESHOLD_RATIO * mPeakAverage);
+
+            if (mArmed && mPrevious > threshold &&
+                    (mLastStepTimestamp == Long.MIN_VALUE || mPreviousTimestamp - mLastStepTimestamp >= MIN_STEP_INTERVAL)) {
+
+                mLastStepTimestamp = mPreviousTimestamp;
+                mPeakAverage += (mPrevious - mPeakAverage) * PEAK_SMOOTHING;
+                mArmed = false;
+                step = true;
+            }
+        }
+
+        // Re-arm once the signal falls below the baseline
+        if (signal < 0) {
+            mArmed = true;
+        }
+
+        mBeforePrevious = mPrevious;
+        mPrevious = signal;
+        mPreviousTimestamp = timestamp;
+
+        return step;
+    }
+
+    /** Returns the timestamp of the peak of the last step. */
+    public long getLastStepTimestamp() {
+        return mLastStepTimestamp;
+    }
+
+    public void reset() {
+        mStarted = false;
+        mPeakAverage = 2 * MIN_THRESHOLD;
+        mLastStepTimestamp = Long.MIN_VALUE;
+        mArmed = true;
+    }
+
+}
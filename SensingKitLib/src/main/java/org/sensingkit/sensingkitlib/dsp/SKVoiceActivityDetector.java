@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.dsp;
+
+/**
+ * Voice (sound) activity detector for 16-bit PCM audio, from the energy and zero crossing
+ * rate of consecutive frames.
+ *
+ * A frame is speech when its energy is threshold dB above an adaptive noise floor, or half of
+ * that with the high zero crossing rate of unvoiced sounds (e.g. fricatives). Frames quieter
+ * than the minimum energy are never speech. The noise floor follows the quietest frames
+ * immediately and rises slowly otherwise. Activity continues for a hangover after the last
+ * speech frame, so that short pauses do not end it.
+ *
+ * Each sample is visited once and no memory is allocated after construction.
+ */
+public class SKVoiceActivityDetector {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKVoiceActivityDetector";
+
+    public static final float DEFAULT_THRESHOLD = 9;         // dB above the noise floor
+    public static final float DEFAULT_MINIMUM_ENERGY = -70;  // dBFS
+    public static final int DEFAULT_HANGOVER = 300;          // ms
+
+    /** Zero crossings per sample above which a frame is considered unvoiced. */
+    public static final float UNVOICED_ZERO_CROSSING_RATE = 0.3f;
+
+    private static final float NOISE_FLOOR_RISE = 3;  // dB per second
+
+    public interface OnFrameListener {
+
+        /**
+         * Called when a frame is complete. Position is the number of samples processed since
+         * the start (or reset), up to the end of the frame.
+         */
+        void onFrame(long position, SKVoiceActivityDetector detector);
+    }
+
+    private final int mFrameSize;
+    private final int mSampleRate;
+    private final float mNoiseFloorRise;  // dB per frame
+
+    private float mThreshold = DEFAULT_THRESHOLD;
+    private float mMinimumEnergy = DEFAULT_MINIMUM_ENERGY;
+    private int mHangoverFrames;
+
+    // Frame being processed
+    private long mSumOfSquares;
+    private int mPeak;
+    private int mZeroCrossings;
+    private boolean mPreviousNegative;
+    private int mFrameLength;
+    private long mPosition;
+
+    // Last frame
+    private float mEnergy;
+    private float mRms;
+    private int mFramePeak;
+    private float mZeroCrossingRate;
+    private float mNoiseFloor;
+    private boolean mSpeech;
+    private boolean mActive;
+    private int mHangoverRemaining;
+
+    /** Frame size in samples, sample rate in Hz. */
+    public SKVoiceActivityDetector(int frameSize, int sampleRate) {
+
+        if (frameSize <= 0 || sampleRate <= 0) {
+            throw new IllegalArgumentException("Frame size and sample rate must be positive.");
+        }
+
+        this.mFrameSize = frameSize;
+        this.mSampleRate = sampleRate;
+        this.mNoiseFloorRise = NOISE_FLOOR_RISE * frameSize / sampleRate;
+
+        setHangover(DEFAULT_HANGOVER);
+        reset();
+    }
+
+    public int getFrameSize() {
+        return mFrameSize;
+    }
+
+    /** Sets the margin (in dB) over the noise floor of a speech frame. */
+    public void setThreshold(float threshold) {
+
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive.");
+        }
+
+        mThreshold = threshold;
+    }
+
+    /** Sets the energy (in dBFS) below which a frame is never speech. */
+    public void setMinimumEnergy(float minimumEnergy) {
+        mMinimumEnergy = minimumEnergy;
+    }
+
+    /** Sets how long (in ms) activity continues after the last speech frame. */
+    public void setHangover(int hangover) {
+
+        if (hangover < 0) {
+            throw new IllegalArgumentException("Hangover cannot be negative.");
+        }
+
+        // Rounded up to whole frames
+        long samples = (long) hangover * mSampleRate / 1000;
+        mHangoverFrames = (int) ((samples + mFrameSize - 1) / mFrameSize);
+    }
+
+    public void reset() {
+        mSumOfSquares = 0;
+        mPeak = 0;
+        mZeroCrossings = 0;
+        mPreviousNegative = false;
+        mFrameLength = 0;
+        mPosition = 0;
+
+        mEnergy = (float) SKAudioLevelMeter.MIN_DECIBELS;
+        mRms = 0;
+        mFramePeak = 0;
+        mZeroCrossingRate = 0;
+        mNoiseFloor = Float.NaN;
+        mSpeech = false;
+        mActive = false;
+        mHangoverRemaining = 0;
+    }
+
+    /** Processes length samples from offset, calling the listener for each frame they complete. */
+    public void process(short[] samples, int offset, int length, OnFrameListener listener) {
+
+        int end = offset + length;
+
+        while (offset < end) {
+
+            int count = Math.min(mFrameSize - mFrameLength, end - offset);
+            long sumOfSquares = mSumOfSquares;
+            int peak = mPeak;
+            int zeroCrossings = mZeroCrossings;
+            boolean previousNegative = mPreviousNegative;
+
+            for (int i = offset; i < offset + count; i++) {
+
+                int sample = samples[i];
+                sumOfSquares += sample * sample;
+
+                boolean negative = sample < 0;
+                int magnitude = negative ? -sample : sample;
+
+                if (magnitude > peak) {
+                    peak = magnitude;
+                }
+
+                if (negative != previousNegative) {
+                    zeroCrossings++;
+                    previousNegative = negative;
+                }
+            }
+
+            mSumOfSquares = sumOfSquares;
+            mPeak = peak;
+            mZeroCrossings = zeroCrossings;
+            mPreviousNegative = previousNegative;
+            mFrameLength += count;
+            mPosition += count;
+            offset += count;
+
+            if (mFrameLength == mFrameSize) {
+                classify();
+                listener.onFrame(mPosition, this);
+            }
+        }
+    }
+
+    private void classify() {
+
+        mRms = (float) Math.sqrt((double) mSumOfSquares / mFrameSize);
+        mEnergy = (float) SKAudioLevelMeter.toDecibelsFullScale(mRms);
+        mFramePeak = mPeak;
+        mZeroCrossingRate = (float) mZeroCrossings / mFrameSize;
+
+        mSumOfSquares = 0;
+        mPeak = 0;
+        mZeroCrossings = 0;
+        mFrameLength = 0;
+
+        if (Float.isNaN(mNoiseFloor)) {
+            mNoiseFloor = mEnergy;
+        }
+
+        float margin = mEnergy - mNoiseFloor;
+
+        mSpeech = mEnergy >= mMinimumEnergy && (margin >= mThreshold ||
+                (margin >= mThreshold / 2 && mZeroCrossingRate >= UNVOICED_ZERO_CROSSING_RATE));
+
+        // Follow the quietest frames, rise slowly otherwise
+        mNoiseFloor = Math.min(mEnergy, mNoiseFloor + mNoiseFloorRise);
+
+        if (mSpeech) {
+            mHangoverRemaining = mHangoverFrames;
+            mActive = true;
+        }
+        else if (mHangoverRemaining > 0) {
+            mHangoverRemaining--;
+            mActive = true;
+        }
+        else {
+            mActive = false;
+        }
+    }
+
+    //region Features of the last frame
+
+    /** Returns true if the last frame is speech, or within the hangover after speech. */
+    public boolean isActive() {
+        return mActive;
+    }
+
+    /** Returns true if the last frame itself is speech. */
+    public boolean isSpeech() {
+        return mSpeech;
+    }
+
+    /** Returns the energy of the last frame, in dBFS. */
+    public float getEnergy() {
+        return mEnergy;
+    }
+
+    /** Returns the RMS of the last frame, in sample units. */
+    public float getRms() {
+        return mRms;
+    }
+
+    /** Returns the peak of the last frame, in sample units. */
+    public int getPeak() {
+        return mFramePeak;
+    }
+
+    /** Returns the zero crossings per sample of the last frame. */
+    public float getZeroCrossingRate() {
+        return mZeroCrossingRate;
+    }
+
+    /** Returns the noise floor after the last frame, in dBFS. */
+    public float getNoiseFloor() {
+        return mNoiseFloor;
+    }
+
+    //endregion
+
+}
@@ -0,0 +1,832 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.encoding;
+
+import android.location.Location;
+
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.data.SKAccelerometerData;
+import org.sensingkit.sensingkitlib.data.SKActivityData;
+import org.sensingkit.sensingkitlib.data.SKAmbientTemperatureData;
+import org.sensingkit.sensingkitlib.data.SKAudioChunkData;
+import org.sensingkit.sensingkitlib.data.SKAudioLevelData;
+import org.sensingkit.sensingkitlib.data.SKAudioOnsetData;
+import org.sensingkit.sensingkitlib.data.SKAudioSpectrumData;
+import org.sensingkit.sensingkitlib.data.SKBatteryData;
+import org.sensingkit.sensingkitlib.data.SKBluetoothData;
+import org.sensingkit.sensingkitlib.data.SKBluetoothDeviceData;
+import org.sensingkit.sensingkitlib.data.SKFeatureVectorData;
+import org.sensingkit.sensingkitlib.data.SKGravityData;
+import org.sensingkit.sensingkitlib.data.SKGyroscopeData;
+import org.sensingkit.sensingkitlib.data.SKJoinedData;
+import org.sensingkit.sensingkitlib.data.SKLightData;
+import org.sensingkit.sensingkitlib.data.SKLinearAccelerationData;
+import org.sensingkit.sensingkitlib.data.SKLocationData;
+import org.sensingkit.sensingkitlib.data.SKMagnetometerData;
+import org.sensingkit.sensingkitlib.data.SKOrientationData;
+import org.sensingkit.sensingkitlib.data.SKResampledData;
+import org.sensingkit.sensingkitlib.data.SKRotationData;
+import org.sensingkit.sensingkitlib.data.SKScreenStatusData;
+import org.sensingkit.sensingkitlib.data.SKSensorData;
+import org.sensingkit.sensingkitlib.data.SKStepCounterData;
+import org.sensingkit.sensingkitlib.data.SKStepDetectorData;
+import org.sensingkit.sensingkitlib.data.SKWindowAggregateData;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Streams sensor data as JSON Lines (one JSON object per line) into an OutputStream.
+ *
+ * Every object has a "sensor" and a "timestamp" member, followed by the fields of the data
+ * type. Data are encoded by hand into a reusable byte buffer: field names are encoded once,
+ * and numbers are formatted without intermediate Strings, so writing a sample does not
+ * allocate in the common case. Floats are written with up to six decimals, as in getDataInCSV().
+ */
+public class SKJSONLinesWriter {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKJSONLinesWriter";
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    // Largest magnitude that fits in a long once scaled to six decimals
+    private static final double MAX_FIXED_POINT_VALUE = 9.0e12;
+    private static final long FRACTION_SCALE = 1000000L;
+
+    private static final byte[] SENSOR = ascii("{\"sensor\":\"");
+    private static final byte[] TIMESTAMP = ascii("\",\"timestamp\":");
+    private static final byte[] X = ascii(",\"x\":");
+    private static final byte[] Y = ascii(",\"y\":");
+    private static final byte[] Z = ascii(",\"z\":");
+    private static final byte[] COS = ascii(",\"cos\":");
+    private static final byte[] HEADING_ACCURACY = ascii(",\"heading_accuracy\":");
+    private static final byte[] TEMPERATURE = ascii(",\"temperature\":");
+    private static final byte[] STEPS = ascii(",\"steps\":");
+    private static final byte[] LIGHT = ascii(",\"light\":");
+    private static final byte[] LEVEL = ascii(",\"level\":");
+    private static final byte[] RMS = ascii(",\"rms\":");
+    private static final byte[] DBFS = ascii(",\"dbfs\":");
+    private static final byte[] DB_SPL = ascii(",\"db_spl\":");
+    private static final byte[] ACTIVE = ascii(",\"active\":");
+    private static final byte[] CENTROID = ascii(",\"centroid\":");
+    private static final byte[] ROLLOFF = ascii(",\"rolloff\":");
+    private static final byte[] FLATNESS = ascii(",\"flatness\":");
+    private static final byte[] DOMINANT_FREQUENCY = ascii(",\"dominant_frequency\":");
+    private static final byte[] BAND_ENERGIES = ascii(",\"band_energies\":[");
+    private static final byte[] ONSET_POSITION = ascii(",\"onset_position\":");
+    private static final byte[] PEAK = ascii(",\"peak\":");
+    private static final byte[] NOISE_FLOOR = ascii(",\"noise_floor\":");
+    private static final byte[] SCALE = ascii(",\"scale\":");
+    private static final byte[] VOLTAGE = ascii(",\"voltage\":");
+    private static final byte[] PLUGGED = ascii(",\"plugged\":");
+    private static final byte[] STATUS = ascii(",\"status\":");
+    private static final byte[] HEALTH = ascii(",\"health\":");
+    private static final byte[] ACTIVITY = ascii(",\"activity\":");
+    private static final byte[] CONFIDENCE = ascii(",\"confidence\":");
+    private static final byte[] LATITUDE = ascii(",\"latitude\":");
+    private static final byte[] LONGITUDE = ascii(",\"longitude\":");
+    private static final byte[] ALTITUDE = ascii(",\"altitude\":");
+    private static final byte[] ACCURACY = ascii(",\"accuracy\":");
+    private static final byte[] SPEED = ascii(",\"speed\":");
+    private static final byte[] BEARING = ascii(",\"bearing\":");
+    private static final byte[] PROVIDER = ascii(",\"provider\":");
+    private static final byte[] TIME = ascii(",\"time\":");
+    private static final byte[] DEVICES = ascii(",\"devices\":[");
+    private static final byte[] DEVICE_TIMESTAMP = ascii("{\"timestamp\":");
+    private static final byte[] NAME = ascii(",\"name\":");
+    private static final byte[] FILE = ascii(",\"file\":");
+    private static final byte[] SIZE = ascii(",\"size\":");
+    private static final byte[] ADDRESS = ascii(",\"address\":");
+    private static final byte[] RSSI = ascii(",\"rssi\":");
+    private static final byte[] QUATERNION = ascii(",\"quaternion\":[");
+    private static final byte[] AZIMUTH = ascii(",\"azimuth\":");
+    private static final byte[] PITCH = ascii(",\"pitch\":");
+    private static final byte[] ROLL = ascii(",\"roll\":");
+    private static final byte[] ROTATION_MATRIX = ascii(",\"rotation_matrix\":[");
+    private static final byte[] START_TIMESTAMP = ascii(",\"start_timestamp\":");
+    private static final byte[] COUNT = ascii(",\"count\":");
+    private static final byte[] MEAN = ascii(",\"mean\":");
+    private static final byte[] VARIANCE = ascii(",\"variance\":");
+    private static final byte[] MIN = ascii(",\"min\":");
+    private static final byte[] MAX = ascii(",\"max\":");
+    private static final byte[] ENERGY = ascii(",\"energy\":");
+    private static final byte[] FEATURES = ascii(",\"features\":[");
+    private static final byte[] PERIOD = ascii(",\"period\":");
+    private static final byte[] COLUMNS = ascii(",\"columns\":[");
+    private static final byte[] SENSORS = ascii(",\"sensors\":[");
+    private static final byte[] VALUES = ascii("],\"values\":[");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] END_OF_LINE = ascii("}\n");
+
+    private static final byte[][] SENSOR_NAMES;
+
+    static {
+        SKSensorModuleType[] moduleTypes = SKSensorModuleType.values();
+        SENSOR_NAMES = new byte[moduleTypes.length][];
+
+        for (SKSensorModuleType moduleType : moduleTypes) {
+            SENSOR_NAMES[moduleType.ordinal()] = ascii(moduleType.name().toLowerCase(Locale.US));
+        }
+    }
+
+    private final OutputStream mOutputStream;
+    private final byte[] mBuffer;
+    private int mPosition = 0;
+
+    // Scratch space for formatting numbers right to left
+    private final byte[] mDigits = new byte[20];
+
+    public SKJSONLinesWriter(OutputStream outputStream) {
+        this(outputStream, DEFAULT_BUFFER_SIZE);
+    }
+
+    public SKJSONLinesWriter(OutputStream outputStream, int bufferSize) {
+
+        if (bufferSize < 64) {
+            throw new IllegalArgumentException("Buffer size must be at least 64 bytes.");
+        }
+
+        this.mOutputStream = outputStream;
+        this.mBuffer = new byte[bufferSize];
+    }
+
+    private static byte[] ascii(String string) {
+
+        byte[] bytes = new byte[string.length()];
+
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) string.charAt(i);
+        }
+
+        return bytes;
+    }
+
+    /** Writes the data object as a single line. */
+    public synchronized void write(SKSensorData sensorData) throws IOException {
+
+        SKSensorModuleType moduleType = sensorData.getSensorModuleType();
+
+        // A single device is written in the same way as a scan
+        if (sensorData instanceof SKBluetoothDeviceData) {
+            SKBluetoothDeviceData deviceData = (SKBluetoothDeviceData) sensorData;
+            writeHeader(moduleType, deviceData.getTimestamp());
+            writeBytes(DEVICES);
+            writeBluetoothDevice(deviceData);
+            writeByte((byte) ']');
+            writeBytes(END_OF_LINE);
+            return;
+        }
+
+        // Derived data carry the type of their source module
+        if (sensorData instanceof SKWindowAggregateData) {
+            SKWindowAggregateData data = (SKWindowAggregateData) sensorData;
+            writeHeader(moduleType, data.getTimestamp());
+            writeLongField(START_TIMESTAMP, data.getStartTimestamp());
+            writeLongField(COUNT, data.getCount());
+            writeDoubleField(MEAN, data.getMean());
+            writeDoubleField(VARIANCE, data.getVariance());
+            writeDoubleField(MIN, data.getMin());
+            writeDoubleField(MAX, data.getMax());
+            writeDoubleField(ENERGY, data.getEnergy());
+            writeBytes(END_OF_LINE);
+            return;
+        }
+
+        if (sensorData instanceof SKFeatureVectorData) {
+            SKFeatureVectorData data = (SKFeatureVectorData) sensorData;
+            writeHeader(moduleType, data.getTimestamp());
+            writeLongField(START_TIMESTAMP, data.getStartTimestamp());
+            writeBytes(FEATURES);
+
+            double[] features = data.getFeatures();
+
+            for (int i = 0; i < features.length; i++) {
+
+                if (i > 0) {
+                    writeByte((byte) ',');
+                }
+
+                writeDouble(features[i]);
+            }
+
+            writeByte((byte) ']');
+            writeBytes(END_OF_LINE);
+            return;
+        }
+
+        if (sensorData instanceof SKAudioOnsetData) {
+            SKAudioOnsetData data = (SKAudioOnsetData) sensorData;
+            writeHeader(moduleType, data.getTimestamp());
+            writeLongField(ONSET_POSITION, data.getPosition());
+            writeLongField(PEAK, data.getPeak());
+            writeFloatField(ENERGY, data.getEnergy());
+            writeFloatField(NOISE_FLOOR, data.getNoiseFloor());
+            writeBytes(END_OF_LINE);
+            return;
+        }
+
+        if (sensorData instanceof SKAudioSpectrumData) {
+            SKAudioSpectrumData data = (SKAudioSpectrumData) sensorData;
+            writeHeader(moduleType, data.getTimestamp());
+            writeFloatField(ENERGY, data.getEnergy());
+            writeFloatField(CENTROID, data.getCentroid());
+            writeFloatField(ROLLOFF, data.getRolloff());
+            writeFloatField(FLATNESS, data.getFlatness());
+            writeFloatField(DOMINANT_FREQUENCY, data.getDominantFrequency());
+            writeBytes(BAND_ENERGIES);
+
+            float[] bandEnergies = data.getBandEnergies();
+
+            for (int i = 0; i < bandEnergies.length; i++) {
+
+                if (i > 0) {
+                    writeByte((byte) ',');
+                }
+
+                writeDouble(bandEnergies[i]);
+            }
+
+            writeByte((byte) ']');
+            writeBytes(END_OF_LINE);
+            return;
+        }
+
+        if (sensorData instanceof SKResampledData) {
+            SKResampledData data = (SKResampledData) sensorData;
+            writeHeader(moduleType, data.getTimestamp());
+            writeDoubleField(START_TIMESTAMP, data.getStartTimestamp());
+            writeDoubleField(PERIOD, data.getPeriod());
+            writeLongField(COUNT, data.getCount());
+            writeBytes(COLUMNS);
+
+            for (int channel = 0; channel < data.getChannelCount(); channel++) {
+
+                if (channel > 0) {
+                    writeByte((byte) ',');
+                }
+
+                float[] column = data.getColumn(channel);
+                writeByte((byte) '[');
+
+                for (int i = 0; i < data.getCount(); i++) {
+
+                    if (i > 0) {
+                        writeByte((byte) ',');
+                    }
+
+                    writeDouble(column[i]);
+                }
+
+                writeByte((byte) ']');
+            }
+
+            writeByte((byte) ']');
+            writeBytes(END_OF_LINE);
+            return;
+        }
+
+        if (sensorData instanceof SKJoinedData) {
+            SKJoinedData data = (SKJoinedData) sensorData;
+            writeHeader(moduleType, data.getTimestamp());
+            writeBytes(SENSORS);
+
+            for (int index = 0; index < data.getSensorModuleCount(); index++) {
+
+                if (index > 0) {
+                    writeByte((byte) ',');
+                }
+
+                writeByte((byte) '"');
+                writeBytes(SENSOR_NAMES[data.getSensorModuleType(index).ordinal()]);
+                writeByte((byte) '"');
+            }
+
+            writeBytes(VALUES);
+
+            for (int index = 0; index < data.getSensorModuleCount(); index++) {
+
+                if (index > 0) {
+                    writeByte((byte) ',');
+                }
+
+                float[] values = data.getValues(index);
+                writeByte((byte) '[');
+
+                for (int i = 0; i < values.length; i++) {
+
+                    if (i > 0) {
+                        writeByte((byte) ',');
+                    }
+
+                    writeDouble(values[i]);
+                }
+
+                writeByte((byte) ']');
+            }
+
+            writeByte((byte) ']');
+            writeBytes(END_OF_LINE);
+            return;
+        }
+
+        switch (moduleType) {
+
+            case ACCELEROMETER: {
+                SKAccelerometerData data = (SKAccelerometerData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeXYZ(data.getX(), data.getY(), data.getZ());
+                break;
+            }
+
+            case GRAVITY: {
+                SKGravityData data = (SKGravityData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeXYZ(data.getX(), data.getY(), data.getZ());
+                break;
+            }
+
+            case LINEAR_ACCELERATION: {
+                SKLinearAccelerationData data = (SKLinearAccelerationData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeXYZ(data.getX(), data.getY(), data.getZ());
+                break;
+            }
+
+            case GYROSCOPE: {
+                SKGyroscopeData data = (SKGyroscopeData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeXYZ(data.getX(), data.getY(), data.getZ());
+                break;
+            }
+
+            case MAGNETOMETER: {
+                SKMagnetometerData data = (SKMagnetometerData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeXYZ(data.getX(), data.getY(), data.getZ());
+                break;
+            }
+
+            case ROTATION:
+            case FUSED_ORIENTATION: {
+                SKRotationData data = (SKRotationData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeXYZ(data.getX(), data.getY(), data.getZ());
+                writeFloatField(COS, data.getCos());
+                writeFloatField(HEADING_ACCURACY, data.getHeadingAccuracy());
+                break;
+            }
+
+            case AMBIENT_TEMPERATURE: {
+                SKAmbientTemperatureData data = (SKAmbientTemperatureData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeFloatField(TEMPERATURE, data.getTemperature());
+                break;
+            }
+
+            case STEP_DETECTOR: {
+                SKStepDetectorData data = (SKStepDetectorData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                break;
+            }
+
+            case STEP_COUNTER: {
+                SKStepCounterData data = (SKStepCounterData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeFloatField(STEPS, data.getSteps());
+                break;
+            }
+
+            case LIGHT: {
+                SKLightData data = (SKLightData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeFloatField(LIGHT, data.getLight());
+                break;
+            }
+
+            case LOCATION: {
+                SKLocationData data = (SKLocationData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeLocation(data.getLocation());
+                break;
+            }
+
+            case ACTIVITY: {
+                SKActivityData data = (SKActivityData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeStringField(ACTIVITY, data.getActivityString());
+                writeLongField(CONFIDENCE, data.getConfidence());
+                break;
+            }
+
+            case BATTERY: {
+                SKBatteryData data = (SKBatteryData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeLongField(LEVEL, data.getLevel());
+                writeLongField(SCALE, data.getScale());
+                writeLongField(TEMPERATURE, data.getTemperature());
+                writeLongField(VOLTAGE, data.getVoltage());
+                writeStringField(PLUGGED, data.getPluggedString());
+                writeStringField(STATUS, data.getBatteryStatusString());
+                writeStringField(HEALTH, data.getBatteryHealthString());
+                break;
+            }
+
+            case SCREEN_STATUS: {
+                SKScreenStatusData data = (SKScreenStatusData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeStringField(STATUS, data.getStatusString());
+                break;
+            }
+
+            case AUDIO_LEVEL: {
+                SKAudioLevelData data = (SKAudioLevelData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeLongField(LEVEL, data.getLevel());
+                writeFloatField(RMS, data.getRms());
+                writeFloatField(DBFS, data.getDecibelsFullScale());
+                writeFloatField(DB_SPL, data.getSoundPressureLevel());
+                writeBooleanField(ACTIVE, data.isActive());
+                break;
+            }
+
+            case AUDIO_RECORDER: {
+                SKAudioChunkData data = (SKAudioChunkData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeLongField(START_TIMESTAMP, data.getStartTimestamp());
+                writeLongField(SIZE, data.getSize());
+                writeStringField(FILE, data.getFile().getAbsolutePath());
+                break;
+            }
+
+            case BLUETOOTH: {
+                SKBluetoothData data = (SKBluetoothData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeBytes(DEVICES);
+
+                boolean first = true;
+
+                for (SKBluetoothDeviceData deviceData : data.getBluetoothDevices()) {
+
+                    if (!first) {
+                        writeByte((byte) ',');
+                    }
+
+                    writeBluetoothDevice(deviceData);
+                    first = false;
+                }
+
+                writeByte((byte) ']');
+                break;
+            }
+
+            case ORIENTATION: {
+                SKOrientationData data = (SKOrientationData) sensorData;
+                writeHeader(moduleType, data.getTimestamp());
+                writeBytes(QUATERNION);
+                writeDouble(data.getQuaternionW());
+                writeByte((byte) ',');
+                writeDouble(data.getQuaternionX());
+                writeByte((byte) ',');
+                writeDouble(data.getQuaternionY());
+                writeByte((byte) ',');
+                writeDouble(data.getQuaternionZ());
+                writeByte((byte) ']');
+                writeFloatField(AZIMUTH, data.getAzimuth());
+                writeFloatField(PITCH, data.getPitch());
+                writeFloatField(ROLL, data.getRoll());
+                writeBytes(ROTATION_MATRIX);
+
+                float[] rotationMatrix = data.getRotationMatrix();
+
+                for (int i = 0; i < rotationMatrix.length; i++) {
+
+                    if (i > 0) {
+                        writeByte((byte) ',');
+                    }
+
+                    writeDouble(rotationMatrix[i]);
+                }
+
+                writeByte((byte) ']');
+                break;
+            }
+
+            default:
+                throw new IOException("Unsupported SensorModule '" + moduleType + "'.");
+        }
+
+        writeBytes(END_OF_LINE);
+    }
+
+    public synchronized void flush() throws IOException {
+
+        if (mPosition > 0) {
+            mOutputStream.write(mBuffer, 0, mPosition);
+            mPosition = 0;
+        }
+
+        mOutputStream.flush();
+    }
+
+    public synchronized void close() throws IOException {
+
+        flush();
+        mOutputStream.close();
+    }
+
+    //region Members
+
+    private void writeHeader(SKSensorModuleType moduleType, long timestamp) throws IOException {
+
+        writeBytes(SENSOR);
+        writeBytes(SENSOR_NAMES[moduleType.ordinal()]);
+        writeBytes(TIMESTAMP);
+        writeLong(timestamp);
+    }
+
+    private void writeXYZ(float x, float y, float z) throws IOException {
+
+        writeFloatField(X, x);
+        writeFloatField(Y, y);
+        writeFloatField(Z, z);
+    }
+
+    private void writeLocation(Location location) throws IOException {
+
+        if (location == null) {
+            return;
+        }
+
+        writeDoubleField(LATITUDE, location.getLatitude());
+        writeDoubleField(LONGITUDE, location.getLongitude());
+
+        if (location.hasAltitude()) {
+            writeDoubleField(ALTITUDE, location.getAltitude());
+        }
+
+        if (location.hasAccuracy()) {
+            writeFloatField(ACCURACY, location.getAccuracy());
+        }
+
+        if (location.hasSpeed()) {
+            writeFloatField(SPEED, location.getSpeed());
+        }
+
+        if (location.hasBearing()) {
+            writeFloatField(BEARING, location.getBearing());
+        }
+
+        writeStringField(PROVIDER, location.getProvider());
+        writeLongField(TIME, location.getTime());
+    }
+
+    private void writeBluetoothDevice(SKBluetoothDeviceData deviceData) throws IOException {
+
+        writeBytes(DEVICE_TIMESTAMP);
+        writeLong(deviceData.getTimestamp());
+        writeStringField(NAME, deviceData.getName());
+        writeStringField(ADDRESS, deviceData.getAddress());
+        writeLongField(RSSI, deviceData.getRssi());
+        writeByte((byte) '}');
+    }
+
+    private void writeLongField(byte[] name, long value) throws IOException {
+        writeBytes(name);
+        writeLong(value);
+    }
+
+    private void writeFloatField(byte[] name, float value) throws IOException {
+        writeBytes(name);
+        writeDouble(value);
+    }
+
+    private void writeDoubleField(byte[] name, double value) throws IOException {
+        writeBytes(name);
+        writeDouble(value);
+    }
+
+    private void writeBooleanField(byte[] name, boolean value) throws IOException {
+        writeBytes(name);
+        writeBytes(value ? TRUE : FALSE);
+    }
+
+    private void writeStringField(byte[] name, String value) throws IOException {
+        writeBytes(name);
+        writeString(value);
+    }
+
+    //endregion
+
+    //region Values
+
+    private void writeLong(long value) throws IOException {
+
+        ensureCapacity(20);
+
+        if (value == Long.MIN_VALUE) {
+            writeBytes(ascii(Long.toString(value)));
+            return;
+        }
+
+        if (value < 0) {
+            mBuffer[mPosition++] = '-';
+            value = -value;
+        }
+
+        int count = 0;
+
+        do {
+            mDigits[count++] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        while (value != 0);
+
+        while (count > 0) {
+            mBuffer[mPosition++] = mDigits[--count];
+        }
+    }
+
+    private void writeDouble(double value) throws IOException {
+
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeBytes(NULL);
+            return;
+        }
+
+        // Very large values are rare, use the generic formatting for them
+        if (Math.abs(value) >= MAX_FIXED_POINT_VALUE) {
+            writeBytes(ascii(Double.toString(value)));
+            return;
+        }
+
+        long scaled = Math.round(Math.abs(value) * FRACTION_SCALE);
+        long integer = scaled / FRACTION_SCALE;
+        long fraction = scaled % FRACTION_SCALE;
+
+        if (value < 0 && scaled != 0) {
+            writeByte((byte) '-');
+        }
+
+        writeLong(integer);
+
+        if (fraction != 0) {
+
+            ensureCapacity(7);
+            mBuffer[mPosition++] = '.';
+
+            // Six digits, without the trailing zeros
+            int digits = 6;
+
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+
+            for (int i = digits - 1; i >= 0; i--) {
+                mDigits[i] = (byte) ('0' + (fraction % 10));
+                fraction /= 10;
+            }
+
+            for (int i = 0; i < digits; i++) {
+                mBuffer[mPosition++] = mDigits[i];
+            }
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+
+        if (value == null) {
+            writeBytes(NULL);
+            return;
+        }
+
+        writeByte((byte) '"');
+
+        for (int i = 0; i < value.length(); i++) {
+
+            char c = value.charAt(i);
+            ensureCapacity(6);
+
+            if (c == '"' || c == '\\') {
+                mBuffer[mPosition++] = '\\';
+                mBuffer[mPosition++] = (byte) c;
+            }
+            else if (c < 0x20) {
+                writeControlCharacter(c);
+            }
+            else if (c < 0x80) {
+                mBuffer[mPosition++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                mBuffer[mPosition++] = (byte) (0xC0 | (c >> 6));
+                mBuffer[mPosition++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                mBuffer[mPosition++] = (byte) (0xF0 | (codePoint >> 18));
+                mBuffer[mPosition++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                mBuffer[mPosition++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                mBuffer[mPosition++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                mBuffer[mPosition++] = '?';  // Unpaired surrogate
+            }
+            else {
+                mBuffer[mPosition++] = (byte) (0xE0 | (c >> 12));
+                mBuffer[mPosition++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                mBuffer[mPosition++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        writeByte((byte) '"');
+    }
+
+    private void writeControlCharacter(char c) {
+
+        mBuffer[mPosition++] = '\\';
+
+        switch (c) {
+
+            case '\n':
+                mBuffer[mPosition++] = 'n';
+                break;
+
+            case '\r':
+                mBuffer[mPosition++] = 'r';
+                break;
+
+            case '\t':
+                mBuffer[mPosition++] = 't';
+                break;
+
+            default:
+                mBuffer[mPosition++] = 'u';
+                mBuffer[mPosition++] = '0';
+                mBuffer[mPosition++] = '0';
+                mBuffer[mPosition++] = (byte) ('0' + (c >> 4));
+                mBuffer[mPosition++] = (byte) "0123456789abcdef".charAt(c & 0xF);
+                break;
+        }
+    }
+
+    //endregion
+
+    //region Buffer
+
+    private void writeByte(byte b) throws IOException {
+        ensureCapacity(1);
+        mBuffer[mPosition++] = b;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+
+        if (bytes.length > mBuffer.length) {
+            flushBuffer();
+            mOutputStream.write(bytes);
+            return;
+        }
+
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, mBuffer, mPosition, bytes.length);
+        mPosition += bytes.length;
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+
+        if (mPosition + length > mBuffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+
+        mOutputStream.write(mBuffer, 0, mPosition);
+        mPosition = 0;
+    }
+
+    //endregion
+
+}
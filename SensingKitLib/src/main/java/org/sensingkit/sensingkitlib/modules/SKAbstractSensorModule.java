@@ -27,6 +27,7 @@ import org.sensingkit.sensingkitlib.SKException;
 import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
 import org.sensingkit.sensingkitlib.SKSensorDataListener;
 import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.configuration.SKConfiguration;
 import org.sensingkit.sensingkitlib.data.SKAbstractData;
 
 import java.util.ArrayList;
@@ -59,6 +60,14 @@ public abstract class SKAbstractSensorModule implements SKSensorModuleInterface
         return SKSensorModuleUtilities.getSensorModuleInString(mSensorModuleType);
     }
 
+    public void setConfiguration(SKConfiguration configuration) throws SKException {
+        throw new SKException(TAG, "SensorModule '" + getSensorName() + "' cannot be configured.", SKExceptionErrorCode.UNKNOWN_ERROR);
+    }
+
+    public SKConfiguration getConfiguration() {
+        return null;
+    }
+
     public void subscribeSensorDataListener(SKSensorDataListener callback) throws SKException {
 
         // Init the list
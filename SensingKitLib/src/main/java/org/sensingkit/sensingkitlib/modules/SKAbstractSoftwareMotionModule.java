@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.modules;
+
+import android.content.Context;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.data.SKAbstractData;
+
+/**
+ * Base class of the Gravity and Linear Acceleration modules that are computed in software
+ * from the Accelerometer. All of them share one accelerometer registration and one
+ * filter (see SKAccelerationSplitter).
+ */
+public abstract class SKAbstractSoftwareMotionModule extends SKAbstractSensorModule implements SKAccelerationSplitter.OnAccelerationSplitListener {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKAbstractSoftwareMotionModule";
+
+    protected SKAbstractSoftwareMotionModule(final Context context, final SKSensorModuleType sensorModuleType) {
+        super(context, sensorModuleType);
+    }
+
+    @Override
+    public void startSensing() throws SKException {
+
+        this.isSensing = true;
+
+        if (!SKAccelerationSplitter.registerListener(mApplicationContext, this)) {
+            this.isSensing = false;
+            throw new SKException(TAG, "SensorModule '" + getSensorName() + "' could not be started.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+    }
+
+    @Override
+    public void stopSensing() {
+
+        SKAccelerationSplitter.unregisterListener(this);
+
+        this.isSensing = false;
+    }
+
+    @Override
+    public void onAccelerationSplit(float[] gravity, float[] linearAcceleration) {
+
+        // Build the data object
+        SKAbstractData data = buildData(gravity, linearAcceleration);
+
+        // Submit sensor data object
+        submitSensorData(data);
+    }
+
+    protected abstract SKAbstractData buildData(float[] gravity, float[] linearAcceleration);
+
+    @Override
+    protected boolean shouldPostSensorData(SKAbstractData data) {
+
+        // Always post sensor data
+        return true;
+    }
+
+}
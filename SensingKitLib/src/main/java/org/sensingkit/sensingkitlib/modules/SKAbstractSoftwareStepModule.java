@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.modules;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.dsp.SKStepDetectionFilter;
+
+/**
+ * Base class of the step modules that detect steps from the Accelerometer in software
+ * (see SKStepDetectionFilter), for devices without a step detector sensor.
+ * The accelerometer registration is shared through SKSensorEventHub.
+ *
+ * The filter runs on the event timestamps, so batched or delayed events keep their spacing.
+ * Steps are reported in wall-clock time, relative to the delivery of the event that completed them.
+ */
+public abstract class SKAbstractSoftwareStepModule extends SKAbstractSensorModule {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKAbstractSoftwareStepModule";
+
+    private final SKStepDetectionFilter mStepDetectionFilter = new SKStepDetectionFilter();
+    private final SensorEventListener mSensorEventListener;
+
+    protected SKAbstractSoftwareStepModule(final Context context, final SKSensorModuleType sensorModuleType) {
+        super(context, sensorModuleType);
+
+        mSensorEventListener = new SensorEventListener() {
+
+            @Override
+            public void onAccuracyChanged(Sensor sensor, int accuracy) {
+                // Ignore
+            }
+
+            @Override
+            public void onSensorChanged(SensorEvent event) {
+
+                long eventTimestamp = event.timestamp / 1000000;  // ns to ms
+
+                if (mStepDetectionFilter.process(eventTimestamp, event.values[0], event.values[1], event.values[2])) {
+                    long stepAge = eventTimestamp - mStepDetectionFilter.getLastStepTimestamp();
+                    onStepDetected(System.currentTimeMillis() - stepAge);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void startSensing() throws SKException {
+
+        this.isSensing = true;
+
+        mStepDetectionFilter.reset();
+
+        // Steps need a higher rate than SENSOR_DELAY_NORMAL
+        boolean status = SKSensorEventHub.registerListener(mApplicationContext, Sensor.TYPE_ACCELEROMETER, SensorManager.SENSOR_DELAY_GAME, mSensorEventListener);
+
+        if (!status) {
+            this.isSensing = false;
+            throw new SKException(TAG, "SensorModule '" + getSensorName() + "' could not be started.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+    }
+
+    @Override
+    public void stopSensing() {
+
+        SKSensorEventHub.unregisterListener(Sensor.TYPE_ACCELEROMETER, mSensorEventListener);
+
+        this.isSensing = false;
+    }
+
+    /** Called in the main thread with the timestamp of each detected step. */
+    protected abstract void onStepDetected(long timestamp);
+
+}
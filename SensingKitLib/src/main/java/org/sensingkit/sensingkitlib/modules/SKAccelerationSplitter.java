@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.modules;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+
+import org.sensingkit.sensingkitlib.dsp.SKGravityFilter;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Splits a single Accelerometer registration into gravity and linear acceleration
+ * (see SKGravityFilter) for all the software Gravity and Linear Acceleration modules.
+ * The filter runs once per event, however many modules listen.
+ */
+final class SKAccelerationSplitter {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKAccelerationSplitter";
+
+    interface OnAccelerationSplitListener {
+
+        /** Called in the main thread. The arrays are reused for the next event. */
+        void onAccelerationSplit(float[] gravity, float[] linearAcceleration);
+    }
+
+    private static final CopyOnWriteArrayList<OnAccelerationSplitListener> sListeners = new CopyOnWriteArrayList<>();
+
+    private static final SKGravityFilter sGravityFilter = new SKGravityFilter();
+    private static final float[] sGravity = new float[3];
+    private static final float[] sLinearAcceleration = new float[3];
+
+    private static final SensorEventListener sSensorEventListener = new SensorEventListener() {
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+            // Ignore
+        }
+
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+
+            sGravityFilter.process(event.timestamp, event.values[0], event.values[1], event.values[2], sGravity, sLinearAcceleration);
+
+            for (OnAccelerationSplitListener listener : sListeners) {
+                listener.onAccelerationSplit(sGravity, sLinearAcceleration);
+            }
+        }
+    };
+
+    private SKAccelerationSplitter() {
+    }
+
+    static synchronized boolean registerListener(Context context, OnAccelerationSplitListener listener) {
+
+        if (sListeners.contains(listener)) {
+            return true;
+        }
+
+        // First listener registers the Accelerometer
+        if (sListeners.isEmpty()) {
+
+            sGravityFilter.reset();
+
+            if (!SKSensorEventHub.registerListener(context, Sensor.TYPE_ACCELEROMETER, SensorManager.SENSOR_DELAY_NORMAL, sSensorEventListener)) {
+                return false;
+            }
+        }
+
+        sListeners.add(listener);
+        return true;
+    }
+
+    static synchronized void unregisterListener(OnAccelerationSplitListener listener) {
+
+        if (sListeners.remove(listener) && sListeners.isEmpty()) {
+            SKSensorEventHub.unregisterListener(Sensor.TYPE_ACCELEROMETER, sSensorEventListener);
+        }
+    }
+
+}
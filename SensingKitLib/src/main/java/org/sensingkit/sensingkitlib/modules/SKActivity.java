@@ -36,7 +36,10 @@ import com.google.android.gms.location.DetectedActivity;
 
 
 import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
 import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.configuration.SKActivityConfiguration;
+import org.sensingkit.sensingkitlib.configuration.SKConfiguration;
 import org.sensingkit.sensingkitlib.data.SKAbstractData;
 import org.sensingkit.sensingkitlib.data.SKActivityData;
 
@@ -49,9 +52,12 @@ public class SKActivity extends SKAbstractGoogleServicesSensorModule {
     private PendingIntent mRecognitionPendingIntent;
     private BroadcastReceiver mBroadcastReceiver;
 
-    // Last data sensed
-    private int mLastActivityTypeSensed = Integer.MAX_VALUE;
-    private int mLastConfidenceSensed = Integer.MAX_VALUE;
+    private SKActivityConfiguration mConfiguration = new SKActivityConfiguration();
+
+    // Confidence is a value, activity type is a state
+    private final SKChangeDetector mChangeDetector = new SKChangeDetector(1, 1);
+    private final float[] mValues = new float[1];
+    private final int[] mStates = new int[1];
 
     public SKActivity(final Context context) throws SKException {
         super(context, SKSensorModuleType.ACTIVITY);
@@ -123,6 +129,22 @@ public class SKActivity extends SKAbstractGoogleServicesSensorModule {
         mClient.connect();
     }
 
+    @Override
+    public void setConfiguration(SKConfiguration configuration) throws SKException {
+
+        if (!(configuration instanceof SKActivityConfiguration)) {
+            throw new SKException(TAG, "Configuration is not an SKActivityConfiguration.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mConfiguration = ((SKActivityConfiguration) configuration).copy();
+        mChangeDetector.setChangePolicy(mConfiguration.getChangePolicy());
+    }
+
+    @Override
+    public SKConfiguration getConfiguration() {
+        return mConfiguration.copy();
+    }
+
     @Override
     public void stopSensing() {
 
@@ -134,8 +156,7 @@ public class SKActivity extends SKAbstractGoogleServicesSensorModule {
         this.isSensing = false;
 
         // Clear last sensed values
-        mLastActivityTypeSensed = Integer.MAX_VALUE;
-        mLastConfidenceSensed = Integer.MAX_VALUE;
+        mChangeDetector.reset();
     }
 
     @Override
@@ -177,22 +198,11 @@ public class SKActivity extends SKAbstractGoogleServicesSensorModule {
     @Override
     protected boolean shouldPostSensorData(SKAbstractData data) {
 
-        // Only post when specific values changed
-
-        int activityType = ((SKActivityData)data).getActivityType();
-        int confidence = ((SKActivityData)data).getConfidence();
-
-        // Ignore Temperature and Voltage
-        boolean shouldPost = (mLastActivityTypeSensed != activityType ||
-                              mLastConfidenceSensed != confidence );
-
-        if (shouldPost) {
-
-            this.mLastActivityTypeSensed = activityType;
-            this.mLastConfidenceSensed = confidence;
-        }
+        // Only post significant changes (see SKChangePolicy)
+        mValues[0] = ((SKActivityData)data).getConfidence();
+        mStates[0] = ((SKActivityData)data).getActivityType();
 
-        return shouldPost;
+        return mChangeDetector.shouldPost(data.getTimestamp(), mValues, mStates);
     }
 
 }
@@ -0,0 +1,507 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.modules;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.util.Log;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.audio.SKAudioFrameListener;
+import org.sensingkit.sensingkitlib.configuration.SKAudioLevelConfiguration;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Owns the microphone: one AudioRecord is read by one capture thread, and each buffer that is
+ * read is delivered to all registered listeners (the Audio Level and Audio Recorder sensor
+ * modules, and applications through SensingKitLib), so that they can run together while the
+ * microphone is read once.
+ *
+ * Capture starts with the first listener and stops after the last one. Listeners receive a
+ * view (offset and length) of the shared buffer, not a copy, in the capture thread: they must
+ * not modify it or keep a reference to it after onAudioFrame returns.
+ *
+ * The capture thread is created once and reused. A capture only starts after the previous one
+ * has released its AudioRecord, so that two captures never read at the same time. The sample
+ * rate, the size of the AudioRecord buffer (a multiple of the minimum size) and the number of
+ * samples of each read are applied when capture starts, and restart a running capture.
+ * When they are set from the capture thread (e.g. by a listener), the restart is deferred
+ * until the capture thread has left the current capture.
+ */
+public final class SKAudioCaptureEngine {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKAudioCaptureEngine";
+
+    // Time that a new capture waits for the previous one to stop
+    private static final long STOP_TIMEOUT = 2000;  // ms
+
+    // Audio that can be pending beyond the AudioRecord buffer before it is considered lost
+    private static final int OVERRUN_TOLERANCE = 100;  // ms
+
+    // Copy on write, so that listeners can be changed while a frame is delivered
+    private static volatile SKAudioFrameListener[] sListeners = new SKAudioFrameListener[0];
+
+    private static int sSampleRate = SKAudioLevelConfiguration.DEFAULT_SAMPLE_RATE;
+    private static int sBufferSizeFactor = SKAudioLevelConfiguration.DEFAULT_BUFFER_SIZE_FACTOR;
+    private static int sReadSize = SKAudioLevelConfiguration.DEFAULT_READ_SIZE;
+
+    private static ExecutorService sCaptureExecutor;
+    private static Capture sCapture;
+    private static Future<?> sCaptureFuture;
+    private static volatile Thread sCaptureThread;
+
+    // Written by the capture thread only
+    private static volatile long sOverrunCount;
+    private static volatile long sShortReadCount;
+
+    private SKAudioCaptureEngine() {
+    }
+
+    /** Registers a listener, starting the capture if it is the first one. */
+    public static synchronized void registerListener(SKAudioFrameListener listener) throws SKException {
+
+        if (Arrays.asList(sListeners).contains(listener)) {
+            return;
+        }
+
+        SKAudioFrameListener[] previousListeners = sListeners;
+        SKAudioFrameListener[] listeners = Arrays.copyOf(previousListeners, previousListeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+
+        sListeners = listeners;
+
+        // Registered before the capture starts, so that it receives the first frame
+        if (!isCapturing()) {
+
+            try {
+                startCapture();
+            }
+            catch (SKException e) {
+
+                // Only the listener that was being registered
+                sListeners = previousListeners;
+                throw e;
+            }
+        }
+    }
+
+    /** Unregisters a listener, stopping the capture if it is the last one. */
+    public static synchronized void unregisterListener(SKAudioFrameListener listener) {
+
+        int index = Arrays.asList(sListeners).indexOf(listener);
+
+        if (index < 0) {
+            return;
+        }
+
+        SKAudioFrameListener[] listeners = new SKAudioFrameListener[sListeners.length - 1];
+        System.arraycopy(sListeners, 0, listeners, 0, index);
+        System.arraycopy(sListeners, index + 1, listeners, index, listeners.length - index);
+        sListeners = listeners;
+
+        if (listeners.length == 0) {
+            stopCapture();
+        }
+    }
+
+    public static synchronized boolean isCapturing() {
+        return sCapture != null && !sCapture.ended;
+    }
+
+    //region Configuration
+
+    /**
+     * Sets the sample rate (in Hz), the size of the AudioRecord buffer (as a multiple of the
+     * minimum buffer size) and the number of samples of each read (0 for the minimum buffer
+     * size). A running capture is restarted with the new parameters, or with the previous ones
+     * if it cannot be restarted.
+     *
+     * Called from the capture thread, the capture cannot be restarted before it returns: the
+     * restart runs once the current capture has ended, and a failure is logged instead of thrown.
+     */
+    public static synchronized void setCaptureParameters(int sampleRate, int bufferSizeFactor, int readSize) throws SKException {
+
+        if (sampleRate == sSampleRate && bufferSizeFactor == sBufferSizeFactor && readSize == sReadSize) {
+            return;
+        }
+
+        if (sampleRate <= 0 || AudioRecord.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT) <= 0) {
+            throw new SKException(TAG, "Audio capture at " + sampleRate + " Hz is not supported.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        if (bufferSizeFactor < 1 || readSize < 0) {
+            throw new SKException(TAG, "Buffer size factor must be at least 1 and read size cannot be negative.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        final int previousSampleRate = sSampleRate;
+        final int previousBufferSizeFactor = sBufferSizeFactor;
+        final int previousReadSize = sReadSize;
+
+        sSampleRate = sampleRate;
+        sBufferSizeFactor = bufferSizeFactor;
+        sReadSize = readSize;
+
+        if (!isCapturing()) {
+            return;
+        }
+
+        Log.i(TAG, "Restart audio capture at " + sampleRate + " Hz.");
+        stopCapture();
+
+        // The capture thread would wait for itself to stop: queued behind the current capture
+        if (Thread.currentThread() == sCaptureThread) {
+
+            sCaptureExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    restartDeferredCapture(previousSampleRate, previousBufferSizeFactor, previousReadSize);
+                }
+            });
+            return;
+        }
+
+        restartCapture(previousSampleRate, previousBufferSizeFactor, previousReadSize);
+    }
+
+    public static synchronized int getSampleRate() {
+        return sSampleRate;
+    }
+
+    /**
+     * Returns the estimated number of times that audio was lost because the buffer was not read
+     * in time, since capture started (see capture()).
+     */
+    public static long getOverrunCount() {
+        return sOverrunCount;
+    }
+
+    /** Returns the number of reads that returned fewer samples than requested, since capture started. */
+    public static long getShortReadCount() {
+        return sShortReadCount;
+    }
+
+    //endregion
+
+    //region Capture
+
+    private static class Capture implements Runnable {
+
+        final AudioRecord audioRecord;
+        final int sampleRate;
+        final int readSize;
+        final int bufferSize;
+
+        // Set by the capture thread when it stops reading
+        volatile boolean ended;
+
+        Capture(AudioRecord audioRecord, int sampleRate, int readSize, int bufferSize) {
+            this.audioRecord = audioRecord;
+            this.sampleRate = sampleRate;
+            this.readSize = readSize;
+            this.bufferSize = bufferSize;
+        }
+
+        @Override
+        public void run() {
+            capture(this);
+        }
+    }
+
+    private static void startCapture() throws SKException {
+
+        // Stop handshake: the previous capture must have released its AudioRecord
+        waitForCaptureToStop();
+
+        int sampleRate = sSampleRate;
+        int minBufferSize = AudioRecord.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+
+        if (minBufferSize <= 0) {
+            throw new SKException(TAG, "Audio capture at " + sampleRate + " Hz is not supported.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        // Sizes in samples (16-bit), the AudioRecord buffer holds at least one read
+        int readSize = (sReadSize > 0) ? sReadSize : minBufferSize / 2;
+        int bufferSize = Math.max(minBufferSize * sBufferSizeFactor, readSize * 2);
+
+        AudioRecord audioRecord;
+
+        try {
+            audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, sampleRate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT, bufferSize);
+        }
+        catch (IllegalArgumentException e) {
+            throw new SKException(TAG, "AudioRecord could not be created.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+            audioRecord.release();
+            throw new SKException(TAG, "AudioRecord could not be initialized.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        if (sCaptureExecutor == null) {
+            sCaptureExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+
+                    // Set priority to max for the thread that reads the audio
+                    Thread thread = new Thread(runnable, TAG);
+                    thread.setPriority(Thread.currentThread().getThreadGroup().getMaxPriority());
+                    sCaptureThread = thread;
+                    return thread;
+                }
+            });
+        }
+
+        sOverrunCount = 0;
+        sShortReadCount = 0;
+
+        try {
+            audioRecord.startRecording();
+        }
+        catch (IllegalStateException e) {
+            audioRecord.release();
+            throw new SKException(TAG, "AudioRecord could not be started.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        sCapture = new Capture(audioRecord, sampleRate, readSize, bufferSize / 2);
+        sCaptureFuture = sCaptureExecutor.submit(sCapture);
+    }
+
+    /** Starts the stopped capture, or restarts it with the previous parameters if it cannot be started. */
+    private static void restartCapture(int previousSampleRate, int previousBufferSizeFactor, int previousReadSize) throws SKException {
+
+        try {
+            startCapture();
+        }
+        catch (SKException e) {
+
+            sSampleRate = previousSampleRate;
+            sBufferSizeFactor = previousBufferSizeFactor;
+            sReadSize = previousReadSize;
+
+            try {
+                startCapture();
+            }
+            catch (SKException restartException) {
+                Log.e(TAG, "Audio capture stopped, it could not be restarted.", restartException);
+            }
+
+            throw e;
+        }
+    }
+
+    /** Runs in the capture thread, after the capture that was stopped by setCaptureParameters. */
+    private static synchronized void restartDeferredCapture(int previousSampleRate, int previousBufferSizeFactor, int previousReadSize) {
+
+        // All listeners are gone, or another capture was started in the meantime
+        if (sListeners.length == 0 || isCapturing()) {
+            return;
+        }
+
+        try {
+            restartCapture(previousSampleRate, previousBufferSizeFactor, previousReadSize);
+        }
+        catch (SKException e) {
+            Log.e(TAG, "Audio capture could not be restarted with the new parameters.", e);
+        }
+    }
+
+    private static void stopCapture() {
+
+        // Not started again after a failed restart
+        if (sCapture == null) {
+            return;
+        }
+
+        // The capture thread ends with the current read, and releases the AudioRecord
+        if (!sCapture.ended) {
+
+            try {
+                sCapture.audioRecord.stop();
+            }
+            catch (IllegalStateException e) {
+                // Released by the capture thread in the meantime
+            }
+        }
+
+        sCapture.ended = true;
+    }
+
+    private static void waitForCaptureToStop() throws SKException {
+
+        if (sCaptureFuture == null) {
+            return;
+        }
+
+        try {
+            sCaptureFuture.get(STOP_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SKException(TAG, "Interrupted while the previous audio capture was stopping.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+        catch (ExecutionException e) {
+            Log.e(TAG, "Previous audio capture failed.", e.getCause());
+        }
+        catch (TimeoutException e) {
+            throw new SKException(TAG, "Previous audio capture did not stop.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        sCapture = null;
+        sCaptureFuture = null;
+    }
+
+    /**
+     * Reads the audio and delivers it to the listeners until the AudioRecord is stopped.
+     *
+     * AudioRecord does not report overruns (before API 24), so they are estimated: the audio
+     * recorded since the first read is derived from the elapsed time, and audio that is pending
+     * beyond the AudioRecord buffer by more than a read and the tolerance (for the jitter of the
+     * reads and of the clocks) is counted as lost. Positions delivered to the listeners skip the
+     * lost samples, so that they stay aligned with the time of the capture.
+     *
+     * The timestamp of the capture is the time of its first sample, derived from the end of the
+     * first read, so that the latency of starting the AudioRecord is not part of it.
+     */
+    private static void capture(Capture capture) {
+
+        AudioRecord audioRecord = capture.audioRecord;
+        int sampleRate = capture.sampleRate;
+        int readSize = capture.readSize;
+        long maxPendingSamples = capture.bufferSize + readSize + (long) OVERRUN_TOLERANCE * sampleRate / 1000;
+
+        short[] buffer = new short[readSize];
+        SKAudioFrameListener[] startedListeners = new SKAudioFrameListener[0];
+
+        long captureStartTime = 0;
+        long firstReadNanos = 0;
+        long firstReadPosition = -1;
+        long position = 0;
+        long lostSamples = 0;
+        int bufferReadResult;
+
+        while (audioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
+
+            // read buffer
+            bufferReadResult = audioRecord.read(buffer, 0, readSize);
+
+            if (bufferReadResult < 0) {
+
+                // Stopped while reading
+                if (bufferReadResult != AudioRecord.ERROR_INVALID_OPERATION) {
+                    Log.e(TAG, "Audio capture stopped with error " + bufferReadResult + ".");
+                }
+                break;
+            }
+
+            if (bufferReadResult < readSize) {
+                sShortReadCount++;
+            }
+
+            // Only the samples that were read
+            if (bufferReadResult == 0) {
+                continue;
+            }
+
+            long nanos = System.nanoTime();
+
+            if (firstReadPosition < 0) {
+                captureStartTime = System.currentTimeMillis() - (long) bufferReadResult * 1000 / sampleRate;
+                firstReadNanos = nanos;
+                firstReadPosition = bufferReadResult;
+            }
+
+            startedListeners = dispatch(startedListeners, sampleRate, captureStartTime, buffer, bufferReadResult, position + lostSamples);
+            position += bufferReadResult;
+
+            if (position == firstReadPosition) {
+                continue;
+            }
+
+            // More audio was recorded than read and the buffer could hold: the rest is lost
+            long recordedSamples = firstReadPosition + (nanos - firstReadNanos) / 1000 * sampleRate / 1000000;
+            long pendingSamples = recordedSamples - lostSamples - position;
+
+            if (pendingSamples > maxPendingSamples) {
+                sOverrunCount++;
+
+                // The buffer is full, the audio recorded before it is lost
+                lostSamples += pendingSamples - capture.bufferSize;
+            }
+        }
+
+        // If it ended by itself, the next listener starts a new capture
+        capture.ended = true;
+
+        for (SKAudioFrameListener listener : startedListeners) {
+            listener.onAudioStopped();
+        }
+
+        audioRecord.release();
+    }
+
+    /** Delivers a frame to the listeners, and returns the listeners that have been started. */
+    private static SKAudioFrameListener[] dispatch(SKAudioFrameListener[] startedListeners, int sampleRate, long captureStartTime,
+                                                   short[] buffer, int length, long position) {
+
+        SKAudioFrameListener[] listeners = sListeners;
+
+        // Listeners were registered or unregistered since the last frame
+        if (listeners != startedListeners) {
+
+            List<SKAudioFrameListener> current = Arrays.asList(listeners);
+            List<SKAudioFrameListener> started = Arrays.asList(startedListeners);
+
+            for (SKAudioFrameListener listener : startedListeners) {
+                if (!current.contains(listener)) {
+                    listener.onAudioStopped();
+                }
+            }
+
+            for (SKAudioFrameListener listener : listeners) {
+                if (!started.contains(listener)) {
+                    listener.onAudioStarted(sampleRate, captureStartTime);
+                }
+            }
+        }
+
+        for (SKAudioFrameListener listener : listeners) {
+            listener.onAudioFrame(buffer, 0, length, position);
+        }
+
+        return listeners;
+    }
+
+    //endregion
+
+}
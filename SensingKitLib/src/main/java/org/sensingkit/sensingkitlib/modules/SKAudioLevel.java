@@ -22,32 +22,186 @@
 package org.sensingkit.sensingkitlib.modules;
 
 import android.content.Context;
-import android.media.AudioFormat;
-import android.media.AudioRecord;
-import android.media.MediaRecorder;
 
 import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
 import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.audio.SKAudioFrameListener;
+import org.sensingkit.sensingkitlib.configuration.SKAudioLevelConfiguration;
+import org.sensingkit.sensingkitlib.configuration.SKConfiguration;
 import org.sensingkit.sensingkitlib.data.SKAbstractData;
 import org.sensingkit.sensingkitlib.data.SKAudioLevelData;
+import org.sensingkit.sensingkitlib.data.SKAudioOnsetData;
+import org.sensingkit.sensingkitlib.data.SKAudioSpectrumData;
+import org.sensingkit.sensingkitlib.dsp.SKAudioLevelMeter;
+import org.sensingkit.sensingkitlib.dsp.SKOnsetDetector;
+import org.sensingkit.sensingkitlib.dsp.SKSpectralAnalyzer;
+import org.sensingkit.sensingkitlib.dsp.SKVoiceActivityDetector;
 
 public class SKAudioLevel extends SKAbstractSensorModule {
 
     @SuppressWarnings("unused")
     private static final String TAG = "SKAudioLevel";
 
-    private static final int sampleRate = 8000;
-    private static final int bufferSizeFactor = 1;
+    // Longest part of a frame that is processed at once, which bounds the size of the history
+    private static final int MAX_PART_LENGTH = 4096;
 
-    private final int bufferSize = AudioRecord.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT) * bufferSizeFactor;
+    private volatile SKAudioLevelConfiguration mConfiguration = new SKAudioLevelConfiguration();
 
-    private final AudioRecord audioRecord;
+    // Used by the capture thread only
+    private int mSampleRate;
+    private SKAudioLevelConfiguration mAppliedConfiguration;
+    private SKAudioLevelMeter mLevelMeter;
+    private SKSpectralAnalyzer mSpectralAnalyzer;
+    private SKVoiceActivityDetector mVoiceActivityDetector;
+    private SKOnsetDetector mOnsetDetector;
+    private long mCaptureStartTime;
+    private long mNextPosition;
+    private long mMeterStartPosition;
+    private long mDetectorStartPosition;
+    private long mOnsetStartPosition;
+
+    // With voice activity detection, the meter and spectral analyzer are fed from the history,
+    // which holds the pre-roll in addition to the samples of the last part of a frame
+    private short[] mHistory;
+    private int mPreRollLength;
+    private long mDownstreamPosition;
+    private boolean mDownstreamOpen;
+    private boolean mActive = true;
+    private long mNextSilencePosition;
+
+    private final SKAudioLevelMeter.OnLevelListener mLevelListener = new SKAudioLevelMeter.OnLevelListener() {
+        @Override
+        public void onLevel(long position, int peak, double rms) {
+
+            double decibelsFullScale = SKAudioLevelMeter.toDecibelsFullScale(rms);
+
+            // Timestamp of the end of the window, from the number of samples read
+            long timestamp = toTimestamp(mMeterStartPosition + position);
+
+            // Build the data object
+            SKAbstractData data = new SKAudioLevelData(timestamp, peak, (float) rms, (float) decibelsFullScale,
+                    (float) decibelsFullScale + mAppliedConfiguration.getCalibrationOffset(), mActive);
+
+            // Submit sensor data object
+            submitSensorData(data);
+        }
+    };
+
+    private final SKVoiceActivityDetector.OnFrameListener mVoiceActivityListener = new SKVoiceActivityDetector.OnFrameListener() {
+        @Override
+        public void onFrame(long position, SKVoiceActivityDetector detector) {
+
+            long end = mDetectorStartPosition + position;
+
+            if (detector.isActive() && !mDownstreamOpen) {
+                openDownstream(end - detector.getFrameSize());
+            }
+
+            if (mDownstreamOpen) {
+
+                mActive = detector.isActive();
+                feedDownstream(end);
+
+                if (!mActive && mAppliedConfiguration.getSilencePolicy() != SKAudioLevelConfiguration.SilencePolicy.DELIVER) {
+                    mDownstreamOpen = false;
+                    mNextSilencePosition = end;
+                }
+            }
+
+            if (!mDownstreamOpen && mAppliedConfiguration.getSilencePolicy() == SKAudioLevelConfiguration.SilencePolicy.THROTTLE &&
+                    end >= mNextSilencePosition) {
+
+                mNextSilencePosition = end + (long) mAppliedConfiguration.getSilenceInterval() * mSampleRate / 1000;
+
+                // Summary of the silence from the last frame of the detector
+                SKAbstractData data = new SKAudioLevelData(toTimestamp(end), detector.getPeak(), detector.getRms(),
+                        detector.getEnergy(), detector.getEnergy() + mAppliedConfiguration.getCalibrationOffset(), false);
+
+                // Submit sensor data object
+                submitSensorData(data);
+            }
+        }
+    };
+
+    private final SKSpectralAnalyzer.OnSpectrumListener mSpectrumListener = new SKSpectralAnalyzer.OnSpectrumListener() {
+        @Override
+        public void onSpectrum(long position, SKSpectralAnalyzer analyzer) {
+
+            long timestamp = toTimestamp(mMeterStartPosition + position);
+
+            float[] bandEnergies = new float[analyzer.getBandCount()];
+            analyzer.getBandEnergies(bandEnergies);
+
+            // Build the data object
+            SKAbstractData data = new SKAudioSpectrumData(timestamp, analyzer.getEnergy(), analyzer.getCentroid(),
+                    analyzer.getRolloff(), analyzer.getFlatness(), analyzer.getDominantFrequency(), bandEnergies);
+
+            // Submit sensor data object
+            submitSensorData(data);
+        }
+    };
+
+    private final SKOnsetDetector.OnOnsetListener mOnsetListener = new SKOnsetDetector.OnOnsetListener() {
+        @Override
+        public void onOnset(long position, SKOnsetDetector detector) {
+
+            // Position in the capture, which skips the audio that was lost, and its timestamp
+            long onsetPosition = mOnsetStartPosition + position;
+
+            // Build the data object
+            SKAbstractData data = new SKAudioOnsetData(toTimestamp(onsetPosition), onsetPosition, detector.getPeak(),
+                    detector.getEnergy(), detector.getNoiseFloor());
+
+            // Submit sensor data object
+            submitSensorData(data);
+        }
+    };
+
+    private final SKAudioFrameListener mAudioFrameListener = new SKAudioFrameListener() {
+        @Override
+        public void onAudioStarted(int sampleRate, long timestamp) {
+            mSampleRate = sampleRate;
+            mCaptureStartTime = timestamp;
+            mAppliedConfiguration = null;
+        }
+
+        @Override
+        public void onAudioFrame(short[] samples, int offset, int length, long position) {
+            processAudioFrame(samples, offset, length, position);
+        }
+
+        @Override
+        public void onAudioStopped() {
+        }
+    };
 
     public SKAudioLevel(final Context context) throws SKException {
         super(context, SKSensorModuleType.AUDIO_LEVEL);
+    }
+
+    @Override
+    public void setConfiguration(SKConfiguration configuration) throws SKException {
+
+        if (!(configuration instanceof SKAudioLevelConfiguration)) {
+            throw new SKException(TAG, "Configuration is not an SKAudioLevelConfiguration.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        SKAudioLevelConfiguration audioLevelConfiguration = ((SKAudioLevelConfiguration) configuration).copy();
+
+        // Restarts the capture if the capture parameters have changed (once the current capture
+        // has ended, when called from a listener in the capture thread)
+        if (this.isSensing) {
+            applyCaptureParameters(audioLevelConfiguration);
+        }
+
+        // Picked up by the capture thread with the next buffer
+        mConfiguration = audioLevelConfiguration;
+    }
 
-        // Configure the AudioRecord
-        audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, sampleRate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT, bufferSize);
+    @Override
+    public SKConfiguration getConfiguration() {
+        return mConfiguration.copy();
     }
 
     @Override
@@ -58,65 +212,167 @@ public class SKAudioLevel extends SKAbstractSensorModule {
     }
 
     @Override
-    public void startSensing() {
+    public void startSensing() throws SKException {
+
+        // Microphone is shared with the other audio consumers
+        applyCaptureParameters(mConfiguration);
+        SKAudioCaptureEngine.registerListener(mAudioFrameListener);
 
         this.isSensing = true;
+    }
+
+    @Override
+    public void stopSensing() {
+
+        SKAudioCaptureEngine.unregisterListener(mAudioFrameListener);
+
+        this.isSensing = false;
+    }
+
+    private static void applyCaptureParameters(SKAudioLevelConfiguration configuration) throws SKException {
+        SKAudioCaptureEngine.setCaptureParameters(configuration.getSampleRate(), configuration.getBufferSizeFactor(), configuration.getReadSize());
+    }
+
+    private void processAudioFrame(short[] samples, int offset, int length, long position) {
+
+        // Windows start again when the configuration changes, or after audio that was lost
+        if (mConfiguration != mAppliedConfiguration || position != mNextPosition) {
+            mAppliedConfiguration = mConfiguration;
+            mLevelMeter = new SKAudioLevelMeter(
+                    mAppliedConfiguration.getWindowSize() * mSampleRate / 1000,
+                    mAppliedConfiguration.getHopSize() * mSampleRate / 1000);
+            mMeterStartPosition = position;
+
+            mSpectralAnalyzer = null;
+
+            if (mAppliedConfiguration.isSpectralAnalysisEnabled()) {
+                mSpectralAnalyzer = new SKSpectralAnalyzer(mAppliedConfiguration.getSpectralFrameSize(),
+                        mSampleRate, mAppliedConfiguration.getSpectralBandCount());
+            }
+
+            mOnsetDetector = null;
+
+            if (mAppliedConfiguration.isOnsetDetectionEnabled()) {
+                mOnsetDetector = new SKOnsetDetector(SKAudioLevelConfiguration.ONSET_FRAME_SIZE * mSampleRate / 1000, mSampleRate);
+                mOnsetDetector.setThreshold(mAppliedConfiguration.getOnsetThreshold());
+                mOnsetDetector.setMinimumInterval(mAppliedConfiguration.getOnsetMinimumInterval());
+                mOnsetStartPosition = position;
+            }
+
+            applyVoiceActivityConfiguration(position);
+        }
+
+        mNextPosition = position + length;
+
+        // Onsets are not gated by voice activity, as they often start from silence
+        if (mOnsetDetector != null) {
+            mOnsetDetector.process(samples, offset, length, mOnsetListener);
+        }
+
+        if (mVoiceActivityDetector == null) {
+            processDownstream(samples, offset, length);
+            return;
+        }
 
-        // monitor audio
-        audioRecord.startRecording();
+        // In parts, so that the history does not depend on the size of the frames
+        int end = offset + length;
 
-        // init the thread that read the audio buffer
-        Thread thread = new Thread(new Runnable() {
-            public void run() {
-                readAudioBuffer();
+        while (offset < end) {
+
+            int count = Math.min(end - offset, MAX_PART_LENGTH);
+
+            writeHistory(position, samples, offset, count);
+            mVoiceActivityDetector.process(samples, offset, count, mVoiceActivityListener);
+
+            // Samples of the incomplete frame, so that the meter does not lag behind
+            if (mDownstreamOpen) {
+                feedDownstream(position + count);
             }
-        });
 
-        // Set priority to max and start the thread that reads the audio level
-        thread.setPriority(Thread.currentThread().getThreadGroup().getMaxPriority());
-        thread.start();
+            offset += count;
+            position += count;
+        }
     }
 
-    @Override
-    public void stopSensing() {
+    private void applyVoiceActivityConfiguration(long position) {
 
-        audioRecord.stop();
+        mActive = true;
+        mVoiceActivityDetector = null;
+        mHistory = null;
 
-        this.isSensing = false;
+        if (!mAppliedConfiguration.isVoiceActivityDetectionEnabled()) {
+            return;
+        }
+
+        int frameSize = SKAudioLevelConfiguration.VOICE_ACTIVITY_FRAME_SIZE * mSampleRate / 1000;
+
+        mVoiceActivityDetector = new SKVoiceActivityDetector(frameSize, mSampleRate);
+        mVoiceActivityDetector.setThreshold(mAppliedConfiguration.getVoiceActivityThreshold());
+        mVoiceActivityDetector.setHangover(mAppliedConfiguration.getHangover());
+        mDetectorStartPosition = position;
+
+        // A frame can start in the previous part, and the pre-roll is before the frame
+        mPreRollLength = mAppliedConfiguration.getPreRoll() * mSampleRate / 1000;
+        mHistory = new short[mPreRollLength + frameSize + MAX_PART_LENGTH];
+
+        mDownstreamPosition = position;
+        mDownstreamOpen = (mAppliedConfiguration.getSilencePolicy() == SKAudioLevelConfiguration.SilencePolicy.DELIVER);
+        mNextSilencePosition = position;
     }
 
-    private void readAudioBuffer() {
+    private void writeHistory(long position, short[] samples, int offset, int length) {
 
-        short[] buffer = new short[bufferSize];
+        int index = (int) (position % mHistory.length);
+        int count = Math.min(length, mHistory.length - index);
 
-        int bufferReadResult;
+        System.arraycopy(samples, offset, mHistory, index, count);
+        System.arraycopy(samples, offset + count, mHistory, 0, length - count);
+    }
 
-        do {
-            // read buffer
-            bufferReadResult = audioRecord.read(buffer, 0, bufferSize);
+    private void openDownstream(long framePosition) {
 
-            // get max audio level
-            int level = getMaxAbs(buffer);
+        long start = Math.max(framePosition - mPreRollLength, mDownstreamPosition);
 
-            // Build the data object
-            SKAbstractData data = new SKAudioLevelData(System.currentTimeMillis(), level);
+        // Windows start again after a gap
+        if (start > mDownstreamPosition) {
 
-            // Submit sensor data object
-            submitSensorData(data);
+            mLevelMeter.reset();
+
+            if (mSpectralAnalyzer != null) {
+                mSpectralAnalyzer.reset();
+            }
+
+            mMeterStartPosition = start;
+            mDownstreamPosition = start;
+        }
+
+        mDownstreamOpen = true;
+    }
+
+    /** Feeds the samples of the history up to (but not including) position to the meter and spectral analyzer. */
+    private void feedDownstream(long position) {
+
+        while (mDownstreamPosition < position) {
+
+            int index = (int) (mDownstreamPosition % mHistory.length);
+            int count = (int) Math.min(position - mDownstreamPosition, mHistory.length - index);
+
+            processDownstream(mHistory, index, count);
+            mDownstreamPosition += count;
         }
-        while (bufferReadResult > 0 && audioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING);
     }
 
-    // Get the Max Abs of the raw data
-    private int getMaxAbs(short[] raw) {
+    private void processDownstream(short[] samples, int offset, int length) {
 
-        int max = Math.abs(raw[0]);
+        mLevelMeter.process(samples, offset, length, mLevelListener);
 
-        for (int i = 1 ; i < raw.length; i++)
-        {
-            max = Math.max(max, Math.abs(raw[i]));
+        if (mSpectralAnalyzer != null) {
+            mSpectralAnalyzer.process(samples, offset, length, mSpectrumListener);
         }
+    }
 
-        return max;
+    private long toTimestamp(long position) {
+        return mCaptureStartTime + position * 1000 / mSampleRate;
     }
+
 }
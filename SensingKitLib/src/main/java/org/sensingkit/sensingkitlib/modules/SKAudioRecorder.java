@@ -22,55 +22,209 @@
 package org.sensingkit.sensingkitlib.modules;
 
 import android.content.Context;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
 import android.media.MediaRecorder;
 import android.os.Environment;
+import android.util.Log;
 
 import org.sensingkit.sensingkitlib.SKException;
 import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
 import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.audio.SKAudioFrameListener;
+import org.sensingkit.sensingkitlib.audio.SKVoiceActivityGate;
+import org.sensingkit.sensingkitlib.audio.SKWaveFileWriter;
+import org.sensingkit.sensingkitlib.configuration.SKAudioRecorderConfiguration;
+import org.sensingkit.sensingkitlib.configuration.SKConfiguration;
 import org.sensingkit.sensingkitlib.data.SKAbstractData;
+import org.sensingkit.sensingkitlib.data.SKAudioChunkData;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
 
+/**
+ * Records AAC audio into chunk files (see SKAudioRecorderConfiguration) and posts an
+ * SKAudioChunkData when a chunk is complete, so that chunks can be processed or uploaded
+ * while recording continues.
+ *
+ * With the SHARED_CAPTURE source (the default), the PCM of the shared audio capture is encoded
+ * into AAC (ADTS) with MediaCodec in the capture thread, and chunks are split between frames
+ * without any gap. With voice activity gating, only the audio passed on by an
+ * SKVoiceActivityGate is recorded, and a chunk is completed at each gap in the audio.
+ *
+ * With the MEDIA_RECORDER source and chunk rotation, the MediaRecorder of the next chunk is
+ * prepared in advance and started as soon as the current one reaches its limit, so that the
+ * gap between chunks is as short as possible. A new MediaRecorder is used for each chunk, so
+ * the module can be restarted.
+ */
 public class SKAudioRecorder extends SKAbstractSensorModule {
 
     @SuppressWarnings("unused")
     private static final String TAG = "SKAudioRecorder";
 
-    private static final String outputFile = Environment.getExternalStorageDirectory().getAbsolutePath() + "/recording.aac";
+    private static final String FILE_EXTENSION = ".aac";
+
+    private static final String AAC_MIME_TYPE = "audio/mp4a-latm";
+    private static final int AAC_BIT_RATE = 32000;
+    private static final int AAC_FRAME_SAMPLES = 1024;
+    private static final int ADTS_HEADER_SIZE = 7;
+    private static final int[] ADTS_SAMPLE_RATES = {96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350};
+    private static final long INPUT_TIMEOUT = 10000;        // us
+    private static final long OUTPUT_TIMEOUT = 10000;       // us
+    private static final int MAX_END_OF_STREAM_ATTEMPTS = 50;
+
+    private volatile SKAudioRecorderConfiguration mConfiguration = new SKAudioRecorderConfiguration();
+
+    // Recording from the shared capture
+    private SKAudioFrameListener mSharedCaptureRecording;
+
+    private long mSessionTimestamp;
+    private int mNextChunkIndex;
+
+    // Recording the current chunk
+    private MediaRecorder mRecorder;
+    private File mChunkFile;
+    private long mChunkStartTimestamp;
 
-    private final MediaRecorder recorder;
+    // Prepared for the next chunk
+    private MediaRecorder mStandbyRecorder;
+    private File mStandbyFile;
+
+    private final MediaRecorder.OnInfoListener mInfoListener = new MediaRecorder.OnInfoListener() {
+        @Override
+        public void onInfo(MediaRecorder recorder, int what, int extra) {
+
+            if (recorder == mRecorder && (what == MediaRecorder.MEDIA_RECORDER_INFO_MAX_DURATION_REACHED ||
+                    what == MediaRecorder.MEDIA_RECORDER_INFO_MAX_FILESIZE_REACHED)) {
+                rotateChunk();
+            }
+        }
+    };
+
+    private final MediaRecorder.OnErrorListener mErrorListener = new MediaRecorder.OnErrorListener() {
+        @Override
+        public void onError(MediaRecorder recorder, int what, int extra) {
+            Log.e(TAG, "MediaRecorder error " + what + " (" + extra + ").");
+        }
+    };
 
     public SKAudioRecorder(final Context context) throws SKException {
         super(context, SKSensorModuleType.AUDIO_RECORDER);
+    }
 
-        recorder = new MediaRecorder();
-        recorder.setAudioSource(MediaRecorder.AudioSource.MIC);
-        recorder.setOutputFormat(MediaRecorder.OutputFormat.AAC_ADTS);
-        recorder.setAudioEncoder(MediaRecorder.AudioEncoder.AAC);
-        recorder.setOutputFile(outputFile);
+    @Override
+    public void setConfiguration(SKConfiguration configuration) throws SKException {
+
+        if (!(configuration instanceof SKAudioRecorderConfiguration)) {
+            throw new SKException(TAG, "Configuration is not an SKAudioRecorderConfiguration.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mConfiguration = ((SKAudioRecorderConfiguration) configuration).copy();
+
+        // The current chunk keeps its limits, the next one uses the new configuration
+        if (this.isSensing && mSharedCaptureRecording == null) {
+            releaseStandbyRecorder();
+            prepareStandbyRecorder();
+        }
+    }
+
+    @Override
+    public SKConfiguration getConfiguration() {
+        return mConfiguration.copy();
     }
 
     @Override
     protected boolean shouldPostSensorData(SKAbstractData data) {
 
-        // This sensor does not post data
-        return false;
+        // Always post completed chunks
+        return true;
     }
 
     @Override
     public void startSensing() throws SKException {
 
-        this.isSensing = true;
+        File directory = getOutputDirectory();
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new SKException(TAG, "Output directory '" + directory + "' could not be created.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        long timestamp = System.currentTimeMillis();
+        mSessionTimestamp = timestamp;
+        mNextChunkIndex = 0;
+
+        if (mConfiguration.getSource() == SKAudioRecorderConfiguration.Source.SHARED_CAPTURE) {
+
+            // A new recording for each start, as the previous one may still be completing
+            SKAudioFrameListener recording;
+
+            switch (mConfiguration.getEncoding()) {
+
+                case PCM:
+                    recording = new WaveRecording(SKWaveFileWriter.Format.PCM);
+                    break;
+
+                case MU_LAW:
+                    recording = new WaveRecording(SKWaveFileWriter.Format.MU_LAW);
+                    break;
+
+                case IMA_ADPCM:
+                    recording = new WaveRecording(SKWaveFileWriter.Format.IMA_ADPCM);
+                    break;
+
+                default:
+                    recording = new EncoderRecording();
+                    break;
+            }
+
+            if (mConfiguration.isVoiceActivityGatingEnabled()) {
+                recording = new SKVoiceActivityGate(recording, mConfiguration.getVoiceActivityThreshold(),
+                        mConfiguration.getHangover(), mConfiguration.getPreRoll());
+            }
+
+            SKAudioCaptureEngine.registerListener(recording);
+            mSharedCaptureRecording = recording;
+
+            this.isSensing = true;
+            return;
+        }
+
+        File file = getNextChunkFile();
+        MediaRecorder recorder;
 
         try {
-            recorder.prepare();
-        } catch (IOException e) {
-            e.printStackTrace();
+            recorder = prepareRecorder(file);
+        }
+        catch (IOException e) {
             throw new SKException(TAG, "AudioRecorder sensor could not be prepared.", SKExceptionErrorCode.UNKNOWN_ERROR);
         }
 
-        recorder.start();
+        try {
+            recorder.start();
+        }
+        catch (RuntimeException e) {
+            recorder.release();
+
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+
+            throw new SKException(TAG, "AudioRecorder sensor could not be started.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mRecorder = recorder;
+        mChunkFile = file;
+        mChunkStartTimestamp = timestamp;
+
+        this.isSensing = true;
+
+        prepareStandbyRecorder();
     }
 
     @Override
@@ -78,8 +232,552 @@ public class SKAudioRecorder extends SKAbstractSensorModule {
 
         this.isSensing = false;
 
-        recorder.stop();
-        recorder.reset();
-        recorder.release();
+        // The last chunk is completed in the capture thread
+        if (mSharedCaptureRecording != null) {
+            SKAudioCaptureEngine.unregisterListener(mSharedCaptureRecording);
+            mSharedCaptureRecording = null;
+            return;
+        }
+
+        releaseStandbyRecorder();
+
+        if (mRecorder == null) {
+            return;
+        }
+
+        boolean stopped = true;
+
+        try {
+            mRecorder.stop();
+        }
+        catch (RuntimeException e) {
+            // Stopped before any audio was recorded
+            stopped = false;
+        }
+
+        mRecorder.release();
+        mRecorder = null;
+
+        if (stopped) {
+            completeChunk(mChunkFile, mChunkStartTimestamp);
+        }
+        else {
+            //noinspection ResultOfMethodCallIgnored
+            mChunkFile.delete();
+        }
+
+        mChunkFile = null;
+    }
+
+    //region Chunks
+
+    private void rotateChunk() {
+
+        // MediaRecorder has already stopped at the limit
+        MediaRecorder completedRecorder = mRecorder;
+        File completedFile = mChunkFile;
+        long completedStartTimestamp = mChunkStartTimestamp;
+
+        // Hand over to the standby recorder before anything else
+        if (mStandbyRecorder == null) {
+            prepareStandbyRecorder();
+        }
+
+        long timestamp = System.currentTimeMillis();
+        mRecorder = mStandbyRecorder;
+        mChunkFile = mStandbyFile;
+        mStandbyRecorder = null;
+        mStandbyFile = null;
+
+        if (mRecorder != null) {
+
+            try {
+                mRecorder.start();
+                mChunkStartTimestamp = timestamp;
+            }
+            catch (RuntimeException e) {
+                Log.e(TAG, "Recording stopped, the next chunk could not be started.", e);
+                mRecorder.release();
+                mRecorder = null;
+
+                //noinspection ResultOfMethodCallIgnored
+                mChunkFile.delete();
+                mChunkFile = null;
+            }
+        }
+        else {
+            Log.e(TAG, "Recording stopped, the next chunk could not be prepared.");
+        }
+
+        completedRecorder.reset();
+        completedRecorder.release();
+        completeChunk(completedFile, completedStartTimestamp);
+
+        if (mRecorder != null) {
+            prepareStandbyRecorder();
+        }
+    }
+
+    private void completeChunk(File file, long startTimestamp) {
+        completeChunk(file, startTimestamp, System.currentTimeMillis());
+    }
+
+    private void completeChunk(File file, long startTimestamp, long endTimestamp) {
+
+        // Build the data object
+        SKAbstractData data = new SKAudioChunkData(endTimestamp, startTimestamp, file.length(), file);
+
+        // Submit sensor data object
+        submitSensorData(data);
+    }
+
+    private void prepareStandbyRecorder() {
+
+        if (!mConfiguration.isChunkRotationEnabled()) {
+            return;
+        }
+
+        File file = getNextChunkFile();
+
+        try {
+            mStandbyRecorder = prepareRecorder(file);
+            mStandbyFile = file;
+        }
+        catch (IOException e) {
+            Log.e(TAG, "Next chunk could not be prepared.", e);
+
+            // The index is used again by the next attempt
+            mNextChunkIndex--;
+        }
+    }
+
+    private void releaseStandbyRecorder() {
+
+        if (mStandbyRecorder == null) {
+            return;
+        }
+
+        mStandbyRecorder.release();
+        mStandbyRecorder = null;
+
+        //noinspection ResultOfMethodCallIgnored
+        mStandbyFile.delete();
+        mStandbyFile = null;
+
+        // The standby file has the last index, which is used again by the next chunk
+        mNextChunkIndex--;
+    }
+
+    private MediaRecorder prepareRecorder(File file) throws IOException {
+
+        MediaRecorder recorder = new MediaRecorder();
+
+        try {
+            recorder.setAudioSource(MediaRecorder.AudioSource.MIC);
+            recorder.setOutputFormat(MediaRecorder.OutputFormat.AAC_ADTS);
+            recorder.setAudioEncoder(MediaRecorder.AudioEncoder.AAC);
+            recorder.setOutputFile(file.getAbsolutePath());
+
+            if (mConfiguration.getMaxChunkDuration() > 0) {
+                recorder.setMaxDuration(mConfiguration.getMaxChunkDuration());
+            }
+
+            if (mConfiguration.getMaxChunkSize() > 0) {
+                recorder.setMaxFileSize(mConfiguration.getMaxChunkSize());
+            }
+
+            recorder.setOnInfoListener(mInfoListener);
+            recorder.setOnErrorListener(mErrorListener);
+            recorder.prepare();
+        }
+        catch (IOException | RuntimeException e) {
+            recorder.release();
+            throw (e instanceof IOException) ? (IOException) e : new IOException(e.getMessage());
+        }
+
+        return recorder;
     }
+
+    private File getOutputDirectory() {
+
+        File directory = mConfiguration.getOutputDirectory();
+        return (directory != null) ? directory : Environment.getExternalStorageDirectory();
+    }
+
+    /** Chunks are named after the start of the session and numbered, as the standby recorder is prepared in advance. */
+    private File getNextChunkFile() {
+        return getNextChunkFile(FILE_EXTENSION);
+    }
+
+    private File getNextChunkFile(String extension) {
+
+        String name = String.format(Locale.US, "%s_%013d_%04d%s", mConfiguration.getFileNamePrefix(),
+                mSessionTimestamp, mNextChunkIndex++, extension);
+
+        return new File(getOutputDirectory(), name);
+    }
+
+    //endregion
+
+    //region Shared capture
+
+    /** Encodes the PCM of the shared capture into ADTS chunks, in the capture thread. */
+    private class EncoderRecording implements SKAudioFrameListener {
+
+        private final MediaCodec.BufferInfo mBufferInfo = new MediaCodec.BufferInfo();
+        private byte[] mFrame = new byte[ADTS_HEADER_SIZE + 1024];
+
+        private MediaCodec mEncoder;
+        private ByteBuffer[] mInputBuffers;
+        private ByteBuffer[] mOutputBuffers;
+        private int mSampleRate;
+        private int mSampleRateIndex;
+        private long mFrameDuration;  // us
+        private long mCaptureStartTimestamp;
+
+        // Current chunk, with presentation times in us since the start of the capture
+        private OutputStream mOutput;
+        private File mFile;
+        private long mSize;
+        private long mStartTime;
+        private long mEndTime;
+
+        @Override
+        public void onAudioStarted(int sampleRate, long timestamp) {
+
+            mSampleRate = sampleRate;
+            mSampleRateIndex = getSampleRateIndex(sampleRate);
+            mFrameDuration = AAC_FRAME_SAMPLES * 1000000L / sampleRate;
+            mCaptureStartTimestamp = timestamp;
+
+            if (mSampleRateIndex < 0) {
+                Log.e(TAG, "Sample rate " + sampleRate + " Hz is not supported by AAC.");
+                return;
+            }
+
+            MediaFormat format = MediaFormat.createAudioFormat(AAC_MIME_TYPE, sampleRate, 1);
+            format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+            format.setInteger(MediaFormat.KEY_BIT_RATE, AAC_BIT_RATE);
+
+            try {
+                mEncoder = MediaCodec.createEncoderByType(AAC_MIME_TYPE);
+                mEncoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+                mEncoder.start();
+            }
+            catch (IOException | RuntimeException e) {
+                Log.e(TAG, "AAC encoder could not be started.", e);
+                releaseEncoder();
+                return;
+            }
+
+            mInputBuffers = mEncoder.getInputBuffers();
+            mOutputBuffers = mEncoder.getOutputBuffers();
+        }
+
+        @Override
+        public void onAudioFrame(short[] samples, int offset, int length, long position) {
+
+            if (mEncoder == null) {
+                return;
+            }
+
+            try {
+                while (length > 0) {
+
+                    int index = mEncoder.dequeueInputBuffer(INPUT_TIMEOUT);
+
+                    // Skip the rest of the frame rather than block the capture thread
+                    if (index < 0) {
+                        Log.w(TAG, "AAC encoder is late, " + length + " samples skipped.");
+                        break;
+                    }
+
+                    ByteBuffer input = mInputBuffers[index];
+                    input.clear();
+
+                    int count = Math.min(length, input.remaining() / 2);
+                    input.order(ByteOrder.nativeOrder()).asShortBuffer().put(samples, offset, count);
+                    mEncoder.queueInputBuffer(index, 0, count * 2, toPresentationTime(position), 0);
+
+                    offset += count;
+                    length -= count;
+                    position += count;
+
+                    drain(false);
+                }
+            }
+            catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Recording stopped, audio could not be encoded.", e);
+                closeChunk();
+                releaseEncoder();
+            }
+        }
+
+        @Override
+        public void onAudioStopped() {
+
+            if (mEncoder == null) {
+                return;
+            }
+
+            try {
+                int index = mEncoder.dequeueInputBuffer(INPUT_TIMEOUT);
+
+                if (index >= 0) {
+                    mEncoder.queueInputBuffer(index, 0, 0, mEndTime, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                    drain(true);
+                }
+            }
+            catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Last frames could not be encoded.", e);
+            }
+
+            closeChunk();
+            releaseEncoder();
+        }
+
+        /** Writes the available frames, until the end of the stream if endOfStream is set. */
+        private void drain(boolean endOfStream) throws IOException {
+
+            int attempts = 0;
+
+            while (true) {
+
+                int index = mEncoder.dequeueOutputBuffer(mBufferInfo, endOfStream ? OUTPUT_TIMEOUT : 0);
+
+                if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+
+                    if (!endOfStream || ++attempts >= MAX_END_OF_STREAM_ATTEMPTS) {
+                        return;
+                    }
+                }
+                else if (index == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                    mOutputBuffers = mEncoder.getOutputBuffers();
+                }
+                else if (index >= 0) {
+
+                    if ((mBufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0 && mBufferInfo.size > 0) {
+                        writeFrame(mOutputBuffers[index]);
+                    }
+
+                    mEncoder.releaseOutputBuffer(index, false);
+
+                    if ((mBufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void writeFrame(ByteBuffer buffer) throws IOException {
+
+            int frameLength = ADTS_HEADER_SIZE + mBufferInfo.size;
+            long time = mBufferInfo.presentationTimeUs;
+
+            SKAudioRecorderConfiguration configuration = mConfiguration;
+            long maxDuration = configuration.getMaxChunkDuration() * 1000L;
+            long maxSize = configuration.getMaxChunkSize();
+
+            // Complete the chunk between frames, or at a gap in the audio
+            if (mOutput != null && ((maxDuration > 0 && time - mStartTime >= maxDuration) ||
+                    (maxSize > 0 && mSize + frameLength > maxSize) || time >= mEndTime + mFrameDuration / 2)) {
+                closeChunk();
+            }
+
+            if (mOutput == null) {
+                mFile = getNextChunkFile();
+                mOutput = new BufferedOutputStream(new FileOutputStream(mFile));
+                mSize = 0;
+                mStartTime = time;
+            }
+
+            if (mFrame.length < frameLength) {
+                mFrame = new byte[frameLength];
+            }
+
+            writeHeader(mFrame, frameLength);
+            buffer.position(mBufferInfo.offset);
+            buffer.limit(mBufferInfo.offset + mBufferInfo.size);
+            buffer.get(mFrame, ADTS_HEADER_SIZE, mBufferInfo.size);
+
+            mOutput.write(mFrame, 0, frameLength);
+            mSize += frameLength;
+            mEndTime = time + mFrameDuration;
+        }
+
+        /** ADTS header of an AAC LC mono frame, without CRC. */
+        private void writeHeader(byte[] frame, int frameLength) {
+            frame[0] = (byte) 0xFF;
+            frame[1] = (byte) 0xF1;
+            frame[2] = (byte) (((MediaCodecInfo.CodecProfileLevel.AACObjectLC - 1) << 6) | (mSampleRateIndex << 2));
+            frame[3] = (byte) ((1 << 6) | (frameLength >> 11));
+            frame[4] = (byte) (frameLength >> 3);
+            frame[5] = (byte) (((frameLength & 7) << 5) | 0x1F);
+            frame[6] = (byte) 0xFC;
+        }
+
+        private void closeChunk() {
+
+            if (mOutput == null) {
+                return;
+            }
+
+            try {
+                mOutput.close();
+            }
+            catch (IOException e) {
+                Log.e(TAG, "Chunk '" + mFile + "' could not be closed.", e);
+            }
+
+            mOutput = null;
+            completeChunk(mFile, toTimestamp(mStartTime), toTimestamp(mEndTime));
+        }
+
+        private void releaseEncoder() {
+
+            if (mEncoder == null) {
+                return;
+            }
+
+            try {
+                mEncoder.stop();
+            }
+            catch (RuntimeException e) {
+                // Not started
+            }
+
+            mEncoder.release();
+            mEncoder = null;
+        }
+
+        private long toPresentationTime(long position) {
+            return position * 1000000L / mSampleRate;
+        }
+
+        private long toTimestamp(long presentationTime) {
+            return mCaptureStartTimestamp + presentationTime / 1000;
+        }
+    }
+
+    /** Encodes the PCM of the shared capture into WAV chunks, in the capture thread. */
+    private class WaveRecording implements SKAudioFrameListener {
+
+        private final SKWaveFileWriter.Format mFormat;
+
+        private int mSampleRate;
+        private long mCaptureStartTimestamp;
+
+        // Current chunk, with positions in samples since the start of the capture
+        private SKWaveFileWriter mWriter;
+        private File mFile;
+        private long mStartPosition;
+        private long mEndPosition;
+
+        WaveRecording(SKWaveFileWriter.Format format) {
+            mFormat = format;
+        }
+
+        @Override
+        public void onAudioStarted(int sampleRate, long timestamp) {
+            mSampleRate = sampleRate;
+            mCaptureStartTimestamp = timestamp;
+        }
+
+        @Override
+        public void onAudioFrame(short[] samples, int offset, int length, long position) {
+
+            SKAudioRecorderConfiguration configuration = mConfiguration;
+            long maxSampleCount = (long) configuration.getMaxChunkDuration() * mSampleRate / 1000;
+            long maxSize = configuration.getMaxChunkSize();
+
+            // Complete the chunk at a gap in the audio
+            if (mWriter != null && position != mEndPosition) {
+                closeChunk();
+            }
+
+            try {
+                while (length > 0) {
+
+                    if (mWriter == null) {
+                        mFile = getNextChunkFile(SKWaveFileWriter.FILE_EXTENSION);
+                        mWriter = new SKWaveFileWriter(mFile, mSampleRate, mFormat);
+                        mStartPosition = position;
+                    }
+
+                    // Samples that fit in the chunk
+                    long count = length;
+
+                    if (maxSampleCount > 0) {
+                        count = Math.min(count, maxSampleCount - mWriter.getSampleCount());
+                    }
+
+                    if (maxSize > 0) {
+                        count = Math.min(count, mWriter.getRemainingSampleCount(maxSize));
+                    }
+
+                    if (count <= 0) {
+
+                        if (mWriter.getSampleCount() > 0) {
+                            closeChunk();
+                            continue;
+                        }
+
+                        // At least one sample, even if the maximum size is smaller than the header
+                        count = 1;
+                    }
+
+                    mWriter.write(samples, offset, (int) count);
+
+                    offset += count;
+                    length -= count;
+                    position += count;
+                    mEndPosition = position;
+                }
+            }
+            catch (IOException e) {
+                Log.e(TAG, "Chunk '" + mFile + "' could not be written.", e);
+                closeChunk();
+            }
+        }
+
+        @Override
+        public void onAudioStopped() {
+            closeChunk();
+        }
+
+        private void closeChunk() {
+
+            if (mWriter == null) {
+                return;
+            }
+
+            try {
+                mWriter.close();
+            }
+            catch (IOException e) {
+                Log.e(TAG, "Chunk '" + mFile + "' could not be closed.", e);
+            }
+
+            mWriter = null;
+            completeChunk(mFile, toTimestamp(mStartPosition), toTimestamp(mEndPosition));
+        }
+
+        private long toTimestamp(long position) {
+            return mCaptureStartTimestamp + position * 1000 / mSampleRate;
+        }
+    }
+
+    private static int getSampleRateIndex(int sampleRate) {
+
+        for (int i = 0; i < ADTS_SAMPLE_RATES.length; i++) {
+            if (ADTS_SAMPLE_RATES[i] == sampleRate) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    //endregion
+
 }
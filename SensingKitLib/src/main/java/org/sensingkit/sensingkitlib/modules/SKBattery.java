@@ -27,7 +27,10 @@ import android.content.Intent;
 import android.content.IntentFilter;
 
 import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
 import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.configuration.SKBatteryConfiguration;
+import org.sensingkit.sensingkitlib.configuration.SKConfiguration;
 import org.sensingkit.sensingkitlib.data.SKAbstractData;
 import org.sensingkit.sensingkitlib.data.SKBatteryData;
 
@@ -36,14 +39,12 @@ public class SKBattery extends SKAbstractSensorModule {
     @SuppressWarnings("unused")
     private static final String TAG = "SKBattery";
 
-    // Last data sensed
-    private int mLastLevelSensed = Integer.MAX_VALUE;
-    private int mLastScaleSensed = Integer.MAX_VALUE;
-    private int mLastTemperatureSensed = Integer.MAX_VALUE;
-    private int mLastVoltageSensed = Integer.MAX_VALUE;
-    private int mLastPluggedSensed = Integer.MAX_VALUE;
-    private int mLastStatusSensed = Integer.MAX_VALUE;
-    private int mLastHealthSensed = Integer.MAX_VALUE;
+    private SKBatteryConfiguration mConfiguration = new SKBatteryConfiguration();
+
+    // Level is a value, scale, plugged, status and health are states
+    private final SKChangeDetector mChangeDetector = new SKChangeDetector(1, 4);
+    private final float[] mValues = new float[1];
+    private final int[] mStates = new int[4];
 
     private final BroadcastReceiver mBroadcastReceiver;
 
@@ -72,6 +73,22 @@ public class SKBattery extends SKAbstractSensorModule {
         };
     }
 
+    @Override
+    public void setConfiguration(SKConfiguration configuration) throws SKException {
+
+        if (!(configuration instanceof SKBatteryConfiguration)) {
+            throw new SKException(TAG, "Configuration is not an SKBatteryConfiguration.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mConfiguration = ((SKBatteryConfiguration) configuration).copy();
+        mChangeDetector.setChangePolicy(mConfiguration.getChangePolicy());
+    }
+
+    @Override
+    public SKConfiguration getConfiguration() {
+        return mConfiguration.copy();
+    }
+
     @Override
     public void startSensing() {
 
@@ -88,13 +105,7 @@ public class SKBattery extends SKAbstractSensorModule {
         this.isSensing = false;
 
         // Clear last sensed values
-        mLastLevelSensed = Integer.MAX_VALUE;
-        mLastScaleSensed = Integer.MAX_VALUE;
-        mLastTemperatureSensed = Integer.MAX_VALUE;
-        mLastVoltageSensed = Integer.MAX_VALUE;
-        mLastPluggedSensed = Integer.MAX_VALUE;
-        mLastStatusSensed = Integer.MAX_VALUE;
-        mLastHealthSensed = Integer.MAX_VALUE;
+        mChangeDetector.reset();
     }
 
     private void registerLocalBroadcastManager() {
@@ -109,34 +120,18 @@ public class SKBattery extends SKAbstractSensorModule {
     @Override
     protected boolean shouldPostSensorData(SKAbstractData data) {
 
-        // Only post when specific values changed
+        // Only post significant changes (see SKChangePolicy)
+        SKBatteryData batteryData = (SKBatteryData)data;
 
-        int level = ((SKBatteryData)data).getLevel();
-        int scale = ((SKBatteryData)data).getScale();
-        int temperature = ((SKBatteryData)data).getTemperature();
-        int voltage = ((SKBatteryData)data).getVoltage();
-        int plugged = ((SKBatteryData)data).getPlugged();
-        int status = ((SKBatteryData)data).getBatteryStatus();
-        int health = ((SKBatteryData)data).getBatteryHealth();
+        mValues[0] = batteryData.getLevel();
 
         // Ignore Temperature and Voltage
-        boolean shouldPost = (mLastLevelSensed != level ||
-                              mLastScaleSensed != scale ||
-                              mLastPluggedSensed != plugged ||
-                              mLastStatusSensed != status ||
-                              mLastHealthSensed != health );
-
-        if (shouldPost) {
-            this.mLastLevelSensed = level;
-            this.mLastScaleSensed = scale;
-            this.mLastTemperatureSensed = temperature;
-            this.mLastVoltageSensed = voltage;
-            this.mLastPluggedSensed = plugged;
-            this.mLastStatusSensed = status;
-            this.mLastHealthSensed = health;
-        }
+        mStates[0] = batteryData.getScale();
+        mStates[1] = batteryData.getPlugged();
+        mStates[2] = batteryData.getBatteryStatus();
+        mStates[3] = batteryData.getBatteryHealth();
 
-        return shouldPost;
+        return mChangeDetector.shouldPost(data.getTimestamp(), mValues, mStates);
     }
 
 }
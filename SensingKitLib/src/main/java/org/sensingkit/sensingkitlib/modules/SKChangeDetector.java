@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.modules;
+
+import org.sensingkit.sensingkitlib.configuration.SKChangePolicy;
+
+/**
+ * Applies an SKChangePolicy to the primitive fields of the samples of a sensor module.
+ *
+ * The module writes the fields of each sample into arrays that it reuses: values are
+ * compared with the deadbands and the hysteresis of the policy, and states (e.g. a status
+ * code) are compared for equality. Nothing is allocated per sample.
+ */
+final class SKChangeDetector {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKChangeDetector";
+
+    private SKChangePolicy mChangePolicy = new SKChangePolicy();
+
+    // Last posted sample
+    private final float[] mLastValues;
+    private final int[] mLastDirections;
+    private final int[] mLastStates;
+    private long mLastTimestamp;
+    private boolean mHasPosted = false;
+
+    SKChangeDetector(int valueCount, int stateCount) {
+
+        this.mLastValues = new float[valueCount];
+        this.mLastDirections = new int[valueCount];
+        this.mLastStates = new int[stateCount];
+    }
+
+    void setChangePolicy(SKChangePolicy changePolicy) {
+        mChangePolicy = new SKChangePolicy(changePolicy);
+    }
+
+    /** Forgets the last posted sample, so that the next sample is posted. */
+    void reset() {
+        mHasPosted = false;
+    }
+
+    /** Returns true if the sample should be posted, and remembers it as the last posted sample. */
+    boolean shouldPost(long timestamp, float[] values, int[] states) {
+
+        if (mHasPosted) {
+
+            long interval = timestamp - mLastTimestamp;
+
+            if (interval < mChangePolicy.getMinimumInterval()) {
+                return false;
+            }
+
+            long heartbeatInterval = mChangePolicy.getHeartbeatInterval();
+            boolean heartbeat = (heartbeatInterval > 0 && interval >= heartbeatInterval);
+
+            if (!heartbeat && !hasChanged(values, states)) {
+                return false;
+            }
+        }
+
+        // Remember the posted sample
+        for (int i = 0; i < mLastValues.length; i++) {
+
+            float change = values[i] - mLastValues[i];
+
+            if (change != 0) {
+                mLastDirections[i] = (change > 0) ? 1 : -1;
+            }
+
+            mLastValues[i] = values[i];
+        }
+
+        for (int i = 0; i < mLastStates.length; i++) {
+            mLastStates[i] = states[i];
+        }
+
+        mLastTimestamp = timestamp;
+        mHasPosted = true;
+
+        return true;
+    }
+
+    private boolean hasChanged(float[] values, int[] states) {
+
+        for (int i = 0; i < mLastStates.length; i++) {
+            if (states[i] != mLastStates[i]) {
+                return true;
+            }
+        }
+
+        for (int i = 0; i < mLastValues.length; i++) {
+
+            float change = values[i] - mLastValues[i];
+            float threshold = Math.max(mChangePolicy.getAbsoluteDeadband(), mChangePolicy.getRelativeDeadband() * Math.abs(mLastValues[i]));
+
+            // Reversing the direction also needs the hysteresis
+            int direction = (change > 0) ? 1 : -1;
+
+            if (mLastDirections[i] != 0 && direction != mLastDirections[i]) {
+                threshold += mChangePolicy.getHysteresis();
+            }
+
+            if (Math.abs(change) > threshold) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+}
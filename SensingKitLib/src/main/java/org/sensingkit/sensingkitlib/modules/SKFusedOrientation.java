@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.modules;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.configuration.SKConfiguration;
+import org.sensingkit.sensingkitlib.configuration.SKFusedOrientationConfiguration;
+import org.sensingkit.sensingkitlib.data.SKAbstractData;
+import org.sensingkit.sensingkitlib.data.SKFusedOrientationData;
+import org.sensingkit.sensingkitlib.dsp.SKMahonyFilter;
+
+/**
+ * Orientation of the device fused from the accelerometer, gyroscope and magnetometer with a
+ * Mahony filter (see SKMahonyFilter), as an alternative to the rotation vector sensor.
+ *
+ * Each sensor is registered once through SKSensorEventHub. The sensor events are copied into
+ * a preallocated ring buffer and the filter runs on a background thread, one update per
+ * gyroscope event, without allocations. Data are posted from that thread. The magnetometer is
+ * optional: without it, the azimuth is relative to the start and drifts slowly.
+ */
+public class SKFusedOrientation extends SKAbstractSensorModule {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKFusedOrientation";
+
+    private static final int ACCELEROMETER = 0;
+    private static final int GYROSCOPE = 1;
+    private static final int MAGNETOMETER = 2;
+
+    private static final int QUEUE_CAPACITY = 256;
+    private static final float MAX_TIME_STEP = 0.1f;  // s
+
+    private final SensorListener mAccelerometerListener = new SensorListener(ACCELEROMETER);
+    private final SensorListener mGyroscopeListener = new SensorListener(GYROSCOPE);
+    private final SensorListener mMagnetometerListener = new SensorListener(MAGNETOMETER);
+
+    private volatile SKFusedOrientationConfiguration mConfiguration = new SKFusedOrientationConfiguration();
+    private boolean mMagnetometerRegistered;
+
+    // Events from the sensor thread to the fusion thread
+    private final Object mLock = new Object();
+    private final int[] mQueueSensors = new int[QUEUE_CAPACITY];
+    private final long[] mQueueTimestamps = new long[QUEUE_CAPACITY];
+    private final float[] mQueueValues = new float[QUEUE_CAPACITY * 3];
+    private int mQueueHead;
+    private int mQueueSize;
+    private long mDroppedEventCount;
+
+    // Incremented by every start and stop. A fusion thread ends once the generation it was started
+    // with has passed, so a thread of a previous start never takes events of the next one.
+    private volatile int mGeneration;
+    private Thread mFusionThread;
+
+    private class SensorListener implements SensorEventListener {
+
+        private final int mSensor;
+
+        SensorListener(int sensor) {
+            this.mSensor = sensor;
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+            // Ignore
+        }
+
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            enqueue(mSensor, event.timestamp, event.values);
+        }
+    }
+
+    public SKFusedOrientation(final Context context) {
+        super(context, SKSensorModuleType.FUSED_ORIENTATION);
+    }
+
+    @Override
+    public void setConfiguration(SKConfiguration configuration) throws SKException {
+
+        if (!(configuration instanceof SKFusedOrientationConfiguration)) {
+            throw new SKException(TAG, "Configuration is not an SKFusedOrientationConfiguration.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        SKFusedOrientationConfiguration newConfiguration = ((SKFusedOrientationConfiguration) configuration).copy();
+
+        // Gains are picked up by the fusion thread, a new rate needs a new registration
+        if (isSensing() && newConfiguration.getSamplingInterval() != mConfiguration.getSamplingInterval()) {
+            stopSensing();
+            mConfiguration = newConfiguration;
+            startSensing();
+        }
+        else {
+            mConfiguration = newConfiguration;
+        }
+    }
+
+    @Override
+    public SKConfiguration getConfiguration() {
+        return mConfiguration.copy();
+    }
+
+    /** Returns the number of sensor events that were dropped because the fusion thread fell behind. */
+    public long getDroppedEventCount() {
+
+        synchronized (mLock) {
+            return mDroppedEventCount;
+        }
+    }
+
+    @Override
+    public void startSensing() throws SKException {
+
+        this.isSensing = true;
+
+        final int generation;
+
+        synchronized (mLock) {
+            mQueueHead = 0;
+            mQueueSize = 0;
+            generation = ++mGeneration;
+            mLock.notifyAll();
+        }
+
+        mFusionThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runFusion(generation);
+            }
+        }, TAG);
+        mFusionThread.start();
+
+        // Delay in microseconds
+        int delay = (int) Math.min(mConfiguration.getSamplingInterval() * 1000, Integer.MAX_VALUE);
+
+        if (!SKSensorEventHub.registerListener(mApplicationContext, Sensor.TYPE_GYROSCOPE, delay, mGyroscopeListener) ||
+                !SKSensorEventHub.registerListener(mApplicationContext, Sensor.TYPE_ACCELEROMETER, delay, mAccelerometerListener)) {
+
+            stopSensing();
+            throw new SKException(TAG, "SensorModule '" + getSensorName() + "' could not be started.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mMagnetometerRegistered = SKSensorEventHub.registerListener(mApplicationContext, Sensor.TYPE_MAGNETIC_FIELD, delay, mMagnetometerListener);
+    }
+
+    @Override
+    public void stopSensing() {
+
+        SKSensorEventHub.unregisterListener(Sensor.TYPE_GYROSCOPE, mGyroscopeListener);
+        SKSensorEventHub.unregisterListener(Sensor.TYPE_ACCELEROMETER, mAccelerometerListener);
+
+        if (mMagnetometerRegistered) {
+            SKSensorEventHub.unregisterListener(Sensor.TYPE_MAGNETIC_FIELD, mMagnetometerListener);
+            mMagnetometerRegistered = false;
+        }
+
+        // Stop the fusion thread, it discards the remaining events
+        synchronized (mLock) {
+            mGeneration++;
+            mLock.notifyAll();
+        }
+
+        mFusionThread = null;
+
+        this.isSensing = false;
+    }
+
+    @Override
+    protected boolean shouldPostSensorData(SKAbstractData data) {
+
+        // Always post sensor data
+        return true;
+    }
+
+    //region Sensor thread
+
+    private void enqueue(int sensor, long timestamp, float[] values) {
+
+        synchronized (mLock) {
+
+            if (mQueueSize == QUEUE_CAPACITY) {
+                mDroppedEventCount++;
+                return;
+            }
+
+            int index = (mQueueHead + mQueueSize) % QUEUE_CAPACITY;
+            mQueueSensors[index] = sensor;
+            mQueueTimestamps[index] = timestamp;
+            mQueueValues[index * 3] = values[0];
+            mQueueValues[index * 3 + 1] = values[1];
+            mQueueValues[index * 3 + 2] = values[2];
+
+            // Wake up the fusion thread
+            if (mQueueSize++ == 0) {
+                mLock.notifyAll();
+            }
+        }
+    }
+
+    //endregion
+
+    //region Fusion thread
+
+    private void runFusion(int generation) {
+
+        SKMahonyFilter filter = new SKMahonyFilter();
+        SKFusedOrientationConfiguration appliedConfiguration = null;
+
+        float[] acceleration = new float[3];
+        float[] magneticField = new float[3];
+        float[] quaternion = new float[4];
+        boolean hasAcceleration = false;
+
+        long lastGyroscopeTimestamp = 0;
+        long nextPostTimestamp = 0;
+
+        while (true) {
+
+            int sensor;
+            long timestamp;
+            float x;
+            float y;
+            float z;
+
+            synchronized (mLock) {
+
+                while (generation == mGeneration && mQueueSize == 0) {
+                    try {
+                        mLock.wait();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                }
+
+                if (generation != mGeneration) {
+                    return;
+                }
+
+                sensor = mQueueSensors[mQueueHead];
+                timestamp = mQueueTimestamps[mQueueHead];
+                x = mQueueValues[mQueueHead * 3];
+                y = mQueueValues[mQueueHead * 3 + 1];
+                z = mQueueValues[mQueueHead * 3 + 2];
+
+                mQueueHead = (mQueueHead + 1) % QUEUE_CAPACITY;
+                mQueueSize--;
+            }
+
+            switch (sensor) {
+
+                case ACCELEROMETER:
+                    acceleration[0] = x;
+                    acceleration[1] = y;
+                    acceleration[2] = z;
+                    hasAcceleration = true;
+                    break;
+
+                case MAGNETOMETER:
+                    magneticField[0] = x;
+                    magneticField[1] = y;
+                    magneticField[2] = z;
+                    break;
+
+                case GYROSCOPE:
+
+                    // Gains may have changed
+                    SKFusedOrientationConfiguration configuration = mConfiguration;
+
+                    if (configuration != appliedConfiguration) {
+                        filter.setProportionalGain(configuration.getGain());
+                        filter.setIntegralGain(configuration.getBiasEstimationGain());
+                        filter.setBiasEstimationEnabled(configuration.isBiasEstimationEnabled());
+                        appliedConfiguration = configuration;
+                    }
+
+                    if (!hasAcceleration) {
+                        break;
+                    }
+
+                    // Event timestamps are in ns
+                    float dt = (lastGyroscopeTimestamp == 0) ? 0 : (timestamp - lastGyroscopeTimestamp) / 1e9f;
+                    lastGyroscopeTimestamp = timestamp;
+
+                    if (dt < 0 || dt > MAX_TIME_STEP) {
+                        dt = 0;
+                    }
+
+                    filter.update(x, y, z,
+                            acceleration[0], acceleration[1], acceleration[2],
+                            magneticField[0], magneticField[1], magneticField[2], dt);
+
+                    // Post on a schedule of the sampling interval, tolerating the jitter of the events
+                    long samplingInterval = configuration.getSamplingInterval() * 1000000L;
+
+                    if (!filter.isInitialized() || timestamp < nextPostTimestamp - samplingInterval / 2) {
+                        break;
+                    }
+
+                    nextPostTimestamp = (timestamp - nextPostTimestamp < samplingInterval) ? nextPostTimestamp + samplingInterval : timestamp + samplingInterval;
+                    filter.getQuaternion(quaternion);
+
+                    // Rotation vector convention: w >= 0
+                    float sign = (quaternion[0] < 0) ? -1 : 1;
+
+                    // Stopped while the event was processed
+                    if (generation != mGeneration) {
+                        return;
+                    }
+
+                    // Submit sensor data object
+                    submitSensorData(new SKFusedOrientationData(System.currentTimeMillis(),
+                            sign * quaternion[1], sign * quaternion[2], sign * quaternion[3], sign * quaternion[0]));
+                    break;
+            }
+        }
+    }
+
+    //endregion
+
+}
@@ -25,7 +25,10 @@ import android.content.Context;
 import android.hardware.SensorEvent;
 
 import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
 import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.configuration.SKConfiguration;
+import org.sensingkit.sensingkitlib.configuration.SKLightConfiguration;
 import org.sensingkit.sensingkitlib.data.SKAbstractData;
 import org.sensingkit.sensingkitlib.data.SKLightData;
 
@@ -34,12 +37,30 @@ public class SKLight extends SKAbstractNativeSensorModule {
     @SuppressWarnings("unused")
     private static final String TAG = "SKLight";
 
-    private float lastLightSensed = Float.MAX_VALUE;
+    private SKLightConfiguration mConfiguration = new SKLightConfiguration();
+    private final SKChangeDetector mChangeDetector = new SKChangeDetector(1, 0);
+    private final float[] mValues = new float[1];
 
     public SKLight(final Context context) throws SKException {
         super(context, SKSensorModuleType.LIGHT);
     }
 
+    @Override
+    public void setConfiguration(SKConfiguration configuration) throws SKException {
+
+        if (!(configuration instanceof SKLightConfiguration)) {
+            throw new SKException(TAG, "Configuration is not an SKLightConfiguration.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mConfiguration = ((SKLightConfiguration) configuration).copy();
+        mChangeDetector.setChangePolicy(mConfiguration.getChangePolicy());
+    }
+
+    @Override
+    public SKConfiguration getConfiguration() {
+        return mConfiguration.copy();
+    }
+
     @Override
     protected SKAbstractData buildData(SensorEvent event)
     {
@@ -49,17 +70,10 @@ public class SKLight extends SKAbstractNativeSensorModule {
     @Override
     protected boolean shouldPostSensorData(SKAbstractData data) {
 
-        // Only post when light value changes
-
-        float light = ((SKLightData)data).getLight();
-
-        boolean shouldPost = (lastLightSensed != light);
-
-        if (shouldPost) {
-            this.lastLightSensed = light;
-        }
+        // Only post significant changes of the light value (see SKChangePolicy)
+        mValues[0] = ((SKLightData)data).getLight();
 
-        return shouldPost;
+        return mChangeDetector.shouldPost(data.getTimestamp(), mValues, null);
     }
 
     public void stopSensing() {
@@ -67,7 +81,7 @@ public class SKLight extends SKAbstractNativeSensorModule {
         super.stopSensing();
 
         // Clear last sensed values
-        lastLightSensed = Float.MAX_VALUE;
+        mChangeDetector.reset();
     }
 
 }
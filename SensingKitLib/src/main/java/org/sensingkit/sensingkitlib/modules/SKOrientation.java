@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.modules;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.configuration.SKConfiguration;
+import org.sensingkit.sensingkitlib.configuration.SKOrientationConfiguration;
+import org.sensingkit.sensingkitlib.data.SKAbstractData;
+import org.sensingkit.sensingkitlib.data.SKOrientationData;
+import org.sensingkit.sensingkitlib.dsp.SKRotationMath;
+
+/**
+ * Orientation of the device (quaternion, azimuth / pitch / roll and rotation matrix),
+ * derived from the rotation vector sensor.
+ *
+ * The math runs on scratch arrays of the module, and only for the events that are posted
+ * (see SKOrientationConfiguration.setSamplingInterval()).
+ */
+public class SKOrientation extends SKAbstractSensorModule {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKOrientation";
+
+    private final SensorEventListener mSensorEventListener;
+    private SKOrientationConfiguration mConfiguration = new SKOrientationConfiguration();
+
+    // Scratch
+    private final float[] mQuaternion = new float[4];
+    private final float[] mRotationMatrix = new float[9];
+    private final float[] mOrientation = new float[3];
+
+    // Timestamp (ns) at which the next event is due
+    private long mNextEventTimestamp = Long.MIN_VALUE;
+
+    public SKOrientation(final Context context) {
+        super(context, SKSensorModuleType.ORIENTATION);
+
+        mSensorEventListener = new SensorEventListener() {
+
+            @Override
+            public void onAccuracyChanged(Sensor sensor, int accuracy) {
+                // Ignore
+            }
+
+            @Override
+            public void onSensorChanged(SensorEvent event) {
+
+                // Post one event per sampling interval (event timestamps are in ns). Events up to half
+                // an interval early are accepted, so that jitter of the sensor does not drop them.
+                long samplingInterval = mConfiguration.getSamplingInterval() * 1000000L;
+
+                if (mNextEventTimestamp != Long.MIN_VALUE && event.timestamp < mNextEventTimestamp - samplingInterval / 2) {
+                    return;
+                }
+
+                // Keep the schedule without drift, but start over after a gap
+                if (mNextEventTimestamp == Long.MIN_VALUE || event.timestamp - mNextEventTimestamp >= samplingInterval) {
+                    mNextEventTimestamp = event.timestamp + samplingInterval;
+                }
+                else {
+                    mNextEventTimestamp += samplingInterval;
+                }
+
+                // Build the data object
+                SKAbstractData data = buildData(event);
+
+                // Submit sensor data object
+                submitSensorData(data);
+            }
+        };
+    }
+
+    @Override
+    public void setConfiguration(SKConfiguration configuration) throws SKException {
+
+        if (!(configuration instanceof SKOrientationConfiguration)) {
+            throw new SKException(TAG, "Configuration is not an SKOrientationConfiguration.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        boolean wasSensing = isSensing();
+
+        // Register again, at the new rate
+        if (wasSensing) {
+            stopSensing();
+        }
+
+        mConfiguration = ((SKOrientationConfiguration) configuration).copy();
+
+        if (wasSensing) {
+            startSensing();
+        }
+    }
+
+    @Override
+    public SKConfiguration getConfiguration() {
+        return mConfiguration.copy();
+    }
+
+    @Override
+    public void startSensing() throws SKException {
+
+        this.isSensing = true;
+
+        mNextEventTimestamp = Long.MIN_VALUE;
+
+        // Delay in microseconds
+        int delay = (int) Math.min(mConfiguration.getSamplingInterval() * 1000, Integer.MAX_VALUE);
+
+        if (!SKSensorEventHub.registerListener(mApplicationContext, Sensor.TYPE_ROTATION_VECTOR, delay, mSensorEventListener)) {
+            this.isSensing = false;
+            throw new SKException(TAG, "SensorModule '" + getSensorName() + "' could not be started.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+    }
+
+    @Override
+    public void stopSensing() {
+
+        SKSensorEventHub.unregisterListener(Sensor.TYPE_ROTATION_VECTOR, mSensorEventListener);
+
+        this.isSensing = false;
+    }
+
+    private SKAbstractData buildData(SensorEvent event) {
+
+        SKRotationMath.quaternionFromRotationVector(event.values, event.values.length, mQuaternion);
+        SKRotationMath.rotationMatrixFromQuaternion(mQuaternion, mRotationMatrix);
+        SKRotationMath.orientationFromRotationMatrix(mRotationMatrix, mOrientation);
+
+        return new SKOrientationData(System.currentTimeMillis(), mQuaternion, mOrientation, mRotationMatrix);
+    }
+
+    @Override
+    protected boolean shouldPostSensorData(SKAbstractData data) {
+
+        // Always post sensor data
+        return true;
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.modules;
+
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.data.SKAbstractData;
+
+/**
+ * A sensor module that is not backed by any hardware sensor. Data are injected
+ * by a replay source and delivered to the subscribed SKSensorDataListeners through
+ * the same dispatch path that the hardware modules use.
+ */
+public class SKReplaySensorModule extends SKAbstractSensorModule {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKReplaySensorModule";
+
+    public SKReplaySensorModule(final SKSensorModuleType sensorModuleType) {
+
+        // No Context is needed, so the module can also run on a plain JVM
+        super(null, sensorModuleType);
+    }
+
+    @Override
+    public void startSensing() {
+
+        this.isSensing = true;
+    }
+
+    @Override
+    public void stopSensing() {
+
+        this.isSensing = false;
+    }
+
+    public void replaySensorData(SKAbstractData data) {
+
+        // Only deliver while sensing, same as the hardware modules
+        if (isSensing) {
+            submitSensorData(data);
+        }
+    }
+
+    @Override
+    protected boolean shouldPostSensorData(SKAbstractData data) {
+
+        // Recorded data were already filtered when they were sensed
+        return true;
+    }
+
+}
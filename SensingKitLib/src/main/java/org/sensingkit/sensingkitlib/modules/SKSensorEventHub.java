@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.modules;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.util.SparseArray;
+
+import java.util.Arrays;
+
+/**
+ * Shares a single SensorManager registration per sensor type between the modules that derive
+ * their data from the same hardware sensor (e.g. the software step detector and step counter).
+ *
+ * Registrations are reference counted: the sensor is registered with the first listener and
+ * unregistered with the last one. The sensor runs at the fastest delay that any listener asked
+ * for. Events are delivered to the listeners in the thread of the registration (main thread).
+ */
+final class SKSensorEventHub {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKSensorEventHub";
+
+    private static final SparseArray<Registration> sRegistrations = new SparseArray<>();
+
+    private static class Registration implements SensorEventListener {
+
+        final SensorManager sensorManager;
+        final Sensor sensor;
+        int delay;
+
+        // Copy on write, so that listeners can be changed while an event is delivered
+        volatile SensorEventListener[] listeners = new SensorEventListener[0];
+        volatile int[] delays = new int[0];
+
+        Registration(SensorManager sensorManager, Sensor sensor) {
+            this.sensorManager = sensorManager;
+            this.sensor = sensor;
+        }
+
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+
+            for (SensorEventListener listener : listeners) {
+                listener.onSensorChanged(event);
+            }
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+
+            for (SensorEventListener listener : listeners) {
+                listener.onAccuracyChanged(sensor, accuracy);
+            }
+        }
+    }
+
+    private SKSensorEventHub() {
+    }
+
+    /**
+     * Registers a listener to the default sensor of the type, with a SensorManager delay
+     * (SENSOR_DELAY_* or microseconds). Returns false if the sensor could not be registered.
+     */
+    static synchronized boolean registerListener(Context context, int sensorType, int delay, SensorEventListener listener) {
+
+        delay = toMicroseconds(delay);
+        Registration registration = sRegistrations.get(sensorType);
+
+        if (registration == null) {
+
+            SensorManager sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+            Sensor sensor = (sensorManager != null) ? sensorManager.getDefaultSensor(sensorType) : null;
+
+            if (sensor == null) {
+                return false;
+            }
+
+            registration = new Registration(sensorManager, sensor);
+            registration.delay = delay;
+
+            if (!sensorManager.registerListener(registration, sensor, delay)) {
+                return false;
+            }
+
+            sRegistrations.put(sensorType, registration);
+        }
+        else if (delay < registration.delay) {
+
+            // Re-register at the faster delay, or keep the current one if that fails
+            registration.sensorManager.unregisterListener(registration);
+
+            if (!registration.sensorManager.registerListener(registration, registration.sensor, delay)) {
+                registration.sensorManager.registerListener(registration, registration.sensor, registration.delay);
+                return false;
+            }
+
+            registration.delay = delay;
+        }
+
+        if (Arrays.asList(registration.listeners).contains(listener)) {
+            return true;
+        }
+
+        int count = registration.listeners.length;
+        SensorEventListener[] listeners = Arrays.copyOf(registration.listeners, count + 1);
+        int[] delays = Arrays.copyOf(registration.delays, count + 1);
+        listeners[count] = listener;
+        delays[count] = delay;
+
+        registration.delays = delays;
+        registration.listeners = listeners;
+
+        return true;
+    }
+
+    /** SENSOR_DELAY_* constants as microseconds, so that they can be compared with custom delays. */
+    private static int toMicroseconds(int delay) {
+
+        switch (delay) {
+
+            case SensorManager.SENSOR_DELAY_FASTEST:
+                return 0;
+
+            case SensorManager.SENSOR_DELAY_GAME:
+                return 20000;
+
+            case SensorManager.SENSOR_DELAY_UI:
+                return 66667;
+
+            case SensorManager.SENSOR_DELAY_NORMAL:
+                return 200000;
+
+            default:
+                return delay;
+        }
+    }
+
+    static synchronized void unregisterListener(int sensorType, SensorEventListener listener) {
+
+        Registration registration = sRegistrations.get(sensorType);
+
+        if (registration == null) {
+            return;
+        }
+
+        int index = Arrays.asList(registration.listeners).indexOf(listener);
+
+        if (index < 0) {
+            return;
+        }
+
+        int count = registration.listeners.length - 1;
+
+        // Last listener
+        if (count == 0) {
+            registration.sensorManager.unregisterListener(registration);
+            sRegistrations.remove(sensorType);
+            return;
+        }
+
+        SensorEventListener[] listeners = new SensorEventListener[count];
+        int[] delays = new int[count];
+        int fastestDelay = Integer.MAX_VALUE;
+
+        for (int i = 0, j = 0; i <= count; i++) {
+
+            if (i != index) {
+                listeners[j] = registration.listeners[i];
+                delays[j] = registration.delays[i];
+                fastestDelay = Math.min(fastestDelay, delays[j]);
+                j++;
+            }
+        }
+
+        registration.delays = delays;
+        registration.listeners = listeners;
+
+        // Slow down if the fastest listener has gone
+        if (fastestDelay > registration.delay) {
+            registration.sensorManager.unregisterListener(registration);
+            registration.delay = fastestDelay;
+            registration.sensorManager.registerListener(registration, registration.sensor, fastestDelay);
+        }
+    }
+
+}
@@ -24,6 +24,7 @@ package org.sensingkit.sensingkitlib.modules;
 import org.sensingkit.sensingkitlib.SKException;
 import org.sensingkit.sensingkitlib.SKSensorDataListener;
 import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.configuration.SKConfiguration;
 
 @SuppressWarnings("unused")
 public interface SKSensorModuleInterface {
@@ -34,6 +35,9 @@ public interface SKSensorModuleInterface {
     void stopSensing();
     boolean isSensing();
 
+    void setConfiguration(SKConfiguration configuration) throws SKException;
+    SKConfiguration getConfiguration();
+
     void subscribeSensorDataListener(SKSensorDataListener callback) throws SKException;
     void unsubscribeSensorDataListener(SKSensorDataListener callback) throws SKException;
     void unsubscribeAllSensorDataListeners() throws SKException;
@@ -85,6 +85,12 @@ public final class SKSensorModuleUtilities {
             case BLUETOOTH:
                 return "Bluetooth";
 
+            case ORIENTATION:
+                return "Orientation";
+
+            case FUSED_ORIENTATION:
+                return "Fused Orientation";
+
             default:
                 throw new SKException(TAG, "Unknown SensorModule", SKExceptionErrorCode.UNKNOWN_ERROR);
         }
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.modules;
+
+import android.content.Context;
+
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.data.SKAbstractData;
+import org.sensingkit.sensingkitlib.data.SKStepDetectorData;
+
+/**
+ * STEP_DETECTOR for devices without a step detector sensor. Steps are detected from the Accelerometer.
+ */
+public class SKSoftwareStepDetector extends SKAbstractSoftwareStepModule {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKSoftwareStepDetector";
+
+    public SKSoftwareStepDetector(final Context context) {
+        super(context, SKSensorModuleType.STEP_DETECTOR);
+    }
+
+    @Override
+    protected void onStepDetected(long timestamp) {
+        submitSensorData(new SKStepDetectorData(timestamp));
+    }
+
+    @Override
+    protected boolean shouldPostSensorData(SKAbstractData data) {
+
+        // Always post sensor data
+        return true;
+    }
+
+}
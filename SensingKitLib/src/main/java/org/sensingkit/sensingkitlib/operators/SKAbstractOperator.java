@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.operators;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.SKSensorDataListener;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.data.SKSensorData;
+
+import java.util.ArrayList;
+
+/**
+ * Base class of the stream operators. An operator is subscribed to a sensor module (or to
+ * another operator) like any other SKSensorDataListener, and posts the data it derives to
+ * its own listeners.
+ */
+public abstract class SKAbstractOperator implements SKSensorDataListener {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKAbstractOperator";
+
+    private final ArrayList<SKSensorDataListener> mSensorDataListeners = new ArrayList<>();
+
+    public synchronized void subscribeSensorDataListener(SKSensorDataListener callback) throws SKException {
+
+        // Register the callback
+        if (this.mSensorDataListeners.contains(callback)) {
+            throw new SKException(TAG, "SKSensorDataListener already registered.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        this.mSensorDataListeners.add(callback);
+    }
+
+    public synchronized void unsubscribeSensorDataListener(SKSensorDataListener callback) throws SKException {
+
+        // Unregister the callback
+        if (!this.mSensorDataListeners.remove(callback)) {
+            throw new SKException(TAG, "SKSensorDataListener is not registered.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+    }
+
+    public synchronized void unsubscribeAllSensorDataListeners() {
+        this.mSensorDataListeners.clear();
+    }
+
+    /** Posts derived data to the listeners, in the thread that called onDataReceived. */
+    protected synchronized void submitSensorData(SKSensorModuleType moduleType, SKSensorData data) {
+
+        // CallBack with data as parameter
+        for (SKSensorDataListener callback : mSensorDataListeners) {
+            callback.onDataReceived(moduleType, data);
+        }
+    }
+
+}
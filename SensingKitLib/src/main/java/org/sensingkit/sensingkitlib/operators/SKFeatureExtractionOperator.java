@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.operators;
+
+import android.util.Log;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.data.SKAbstractData;
+import org.sensingkit.sensingkitlib.data.SKFeatureVectorData;
+import org.sensingkit.sensingkitlib.data.SKSensorData;
+import org.sensingkit.sensingkitlib.dsp.SKFeatureExtractor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Extracts activity-recognition features (see SKFeatureExtractor) from overlapping windows
+ * of x, y, z data, such as the data of the Accelerometer or the Gyroscope, and posts them as
+ * SKFeatureVectorData.
+ *
+ * Samples are kept in a primitive ring buffer. Every 'hop' samples, the last 'windowSize'
+ * samples are copied into one of two preallocated window buffers and the features are
+ * extracted in a background thread, so the sensor thread only copies samples. If both window
+ * buffers are still busy, the window is dropped (see getDroppedWindowCount()). Windows of an
+ * earlier start are discarded, also when they are still running after a restart.
+ * Use one instance per sensor module.
+ */
+public class SKFeatureExtractionOperator extends SKAbstractOperator {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKFeatureExtractionOperator";
+
+    public static final int DEFAULT_WINDOW_SIZE = 128;
+    public static final int DEFAULT_HOP = 64;
+
+    private static final int TOTAL_WINDOW_BUFFERS = 2;
+
+    private class Window implements Runnable {
+
+        final float[] x = new float[mWindowSize];
+        final float[] y = new float[mWindowSize];
+        final float[] z = new float[mWindowSize];
+        SKSensorModuleType moduleType;
+        long startTimestamp;
+        long timestamp;
+        int generation;
+
+        @Override
+        public void run() {
+            extractInBackground(this);
+        }
+    }
+
+    private final int mWindowSize;
+    private final int mHop;
+
+    // Ring buffer of the last windowSize samples
+    private final float[] mX;
+    private final float[] mY;
+    private final float[] mZ;
+    private final long[] mTimestamps;
+    private int mPosition = 0;
+    private int mCount = 0;
+    private int mSinceLastWindow = 0;
+
+    private final ArrayBlockingQueue<Window> mFreeWindows = new ArrayBlockingQueue<>(TOTAL_WINDOW_BUFFERS);
+    private ExecutorService mExecutor;
+    private long mDroppedWindows = 0;
+
+    // Incremented by each start and stop, so that windows of an earlier start are discarded
+    private volatile int mGeneration;
+
+    // Used by one background thread at a time, locked by mFeatureExtractor
+    private final SKFeatureExtractor mFeatureExtractor;
+    private final double[] mFeatures = new double[SKFeatureExtractor.TOTAL_FEATURES];
+
+    public SKFeatureExtractionOperator() throws SKException {
+        this(DEFAULT_WINDOW_SIZE, DEFAULT_HOP);
+    }
+
+    /** A hop smaller than windowSize makes the windows overlap (e.g. 50% with hop = windowSize / 2). */
+    public SKFeatureExtractionOperator(int windowSize, int hop) throws SKException {
+
+        if (windowSize < 2) {
+            throw new SKException(TAG, "Window size must be at least 2.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        if (hop < 1 || hop > windowSize) {
+            throw new SKException(TAG, "Hop must be between 1 and the window size.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        this.mWindowSize = windowSize;
+        this.mHop = hop;
+
+        this.mX = new float[windowSize];
+        this.mY = new float[windowSize];
+        this.mZ = new float[windowSize];
+        this.mTimestamps = new long[windowSize];
+
+        for (int i = 0; i < TOTAL_WINDOW_BUFFERS; i++) {
+            mFreeWindows.add(new Window());
+        }
+
+        this.mFeatureExtractor = new SKFeatureExtractor(windowSize);
+    }
+
+    //region Lifecycle
+
+    public synchronized void start() throws SKException {
+
+        if (mExecutor != null) {
+            throw new SKException(TAG, "FeatureExtractionOperator is already started.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mGeneration++;
+        mExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    /** Stops the background thread and discards the samples of the current window, and the windows that are waiting. */
+    public synchronized void stop() {
+
+        mGeneration++;
+
+        if (mExecutor != null) {
+
+            // Window buffers that will not run can be reused
+            for (Runnable window : mExecutor.shutdownNow()) {
+                mFreeWindows.offer((Window) window);
+            }
+
+            mExecutor = null;
+        }
+
+        mCount = 0;
+        mSinceLastWindow = 0;
+    }
+
+    //endregion
+
+    public synchronized long getDroppedWindowCount() {
+        return mDroppedWindows;
+    }
+
+    @Override
+    public synchronized void onDataReceived(SKSensorModuleType moduleType, SKSensorData sensorData) {
+
+        if (mExecutor == null || !(sensorData instanceof SKAbstractData)) {
+            return;
+        }
+
+        double x = SKValueExtractors.X.getValue(sensorData);
+
+        if (Double.isNaN(x)) {
+            return;
+        }
+
+        mX[mPosition] = (float) x;
+        mY[mPosition] = (float) SKValueExtractors.Y.getValue(sensorData);
+        mZ[mPosition] = (float) SKValueExtractors.Z.getValue(sensorData);
+        mTimestamps[mPosition] = ((SKAbstractData) sensorData).getTimestamp();
+
+        mPosition = (mPosition + 1) % mWindowSize;
+        mCount = Math.min(mCount + 1, mWindowSize);
+        mSinceLastWindow++;
+
+        if (mCount == mWindowSize && mSinceLastWindow >= mHop) {
+            mSinceLastWindow = 0;
+            submitWindow(moduleType);
+        }
+    }
+
+    private void submitWindow(SKSensorModuleType moduleType) {
+
+        Window window = mFreeWindows.poll();
+
+        if (window == null) {
+            mDroppedWindows++;
+            Log.w(TAG, "Feature extraction is too slow, dropping a window.");
+            return;
+        }
+
+        // Unroll the ring buffer, oldest sample first (mPosition points to the oldest)
+        int tail = mWindowSize - mPosition;
+
+        System.arraycopy(mX, mPosition, window.x, 0, tail);
+        System.arraycopy(mX, 0, window.x, tail, mPosition);
+        System.arraycopy(mY, mPosition, window.y, 0, tail);
+        System.arraycopy(mY, 0, window.y, tail, mPosition);
+        System.arraycopy(mZ, mPosition, window.z, 0, tail);
+        System.arraycopy(mZ, 0, window.z, tail, mPosition);
+
+        window.moduleType = moduleType;
+        window.startTimestamp = mTimestamps[mPosition];
+        window.timestamp = mTimestamps[(mPosition + mWindowSize - 1) % mWindowSize];
+        window.generation = mGeneration;
+
+        mExecutor.execute(window);
+    }
+
+    private void extractInBackground(Window window) {
+
+        long duration = window.timestamp - window.startTimestamp;
+        double samplingRate = (duration > 0) ? (mWindowSize - 1) * 1000.0 / duration : 0;
+        SKFeatureVectorData data = null;
+
+        // The thread of an earlier start can still be running after a restart
+        synchronized (mFeatureExtractor) {
+
+            if (window.generation == mGeneration) {
+                mFeatureExtractor.extract(window.x, window.y, window.z, mWindowSize, samplingRate, mFeatures);
+                data = new SKFeatureVectorData(window.moduleType, window.startTimestamp, window.timestamp, mFeatures.clone());
+            }
+        }
+
+        SKSensorModuleType moduleType = window.moduleType;
+
+        // Window buffer can be reused
+        mFreeWindows.offer(window);
+
+        if (data != null) {
+            submitSensorData(moduleType, data);
+        }
+    }
+
+}
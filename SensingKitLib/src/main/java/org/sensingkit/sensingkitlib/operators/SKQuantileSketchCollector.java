@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.operators;
+
+import org.sensingkit.sensingkitlib.SKSensorDataListener;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.data.SKSensorData;
+import org.sensingkit.sensingkitlib.dsp.SKQuantileSketch;
+
+/**
+ * Collects the distribution of a value of a sensor module (e.g. the magnitude of the
+ * Accelerometer or the lux of Light) in a quantile sketch, with a fixed amount of memory.
+ *
+ * The collector is subscribed to a sensor module (or an operator) like any other
+ * SKSensorDataListener. Sketches returned by getSketch() and snapshotAndReset() are copies
+ * that can be serialized for upload and merged with the sketches of other sessions or devices.
+ */
+public class SKQuantileSketchCollector implements SKSensorDataListener {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKQuantileSketchCollector";
+
+    private final SKValueExtractor mValueExtractor;
+    private SKQuantileSketch mSketch;
+
+    public SKQuantileSketchCollector(SKValueExtractor valueExtractor) {
+        this(valueExtractor, SKQuantileSketch.DEFAULT_K);
+    }
+
+    public SKQuantileSketchCollector(SKValueExtractor valueExtractor, int k) {
+        this.mValueExtractor = valueExtractor;
+        this.mSketch = new SKQuantileSketch(k);
+    }
+
+    @Override
+    public synchronized void onDataReceived(SKSensorModuleType moduleType, SKSensorData sensorData) {
+
+        // NaN values are ignored by the sketch
+        mSketch.add(mValueExtractor.getValue(sensorData));
+    }
+
+    /** Returns the value at the quantile q (e.g. 0.95 for p95) of the values collected so far. */
+    public synchronized double getQuantile(double q) {
+        return mSketch.getQuantile(q);
+    }
+
+    public synchronized long getCount() {
+        return mSketch.getCount();
+    }
+
+    /** Returns a copy of the sketch. */
+    public synchronized SKQuantileSketch getSketch() {
+        return new SKQuantileSketch(mSketch);
+    }
+
+    /** Returns the sketch and starts a new one (e.g. at the end of a day). */
+    public synchronized SKQuantileSketch snapshotAndReset() {
+
+        SKQuantileSketch sketch = mSketch;
+        mSketch = new SKQuantileSketch(sketch.getK());
+
+        return sketch;
+    }
+
+    /** Adds the values of another sketch (e.g. of a previous session) to the collected ones. */
+    public synchronized void merge(SKQuantileSketch sketch) {
+        mSketch.merge(sketch);
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.operators;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.data.SKAbstractData;
+import org.sensingkit.sensingkitlib.data.SKResampledData;
+import org.sensingkit.sensingkitlib.data.SKSensorData;
+import org.sensingkit.sensingkitlib.dsp.SKResampler;
+
+/**
+ * Resamples the values of a sensor module to a fixed rate (see SKResampler) and posts them in
+ * blocks of SKResampledData, with one column per value extractor.
+ *
+ * A block is posted when it holds the samples of the maximum latency, or when the input
+ * resumes after a gap. While input samples keep arriving, a sample is therefore posted at most
+ * the maximum latency (plus one or two input intervals for the interpolation, and the delay of
+ * the anti-aliasing filter) after it was taken. The operator has no timer: if the input
+ * stalls, a partial block stays pending until the next input sample, so call flush() when the
+ * sensor module stops (or on a timer of the app, if the latency must stay bounded). Each block has its own columns, so listeners can
+ * keep them.
+ */
+public class SKResamplingOperator extends SKAbstractOperator implements SKResampler.OnSampleListener {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKResamplingOperator";
+
+    public static final long DEFAULT_MAX_LATENCY = 250;  // ms
+
+    private final SKValueExtractor[] mValueExtractors;
+    private final SKResampler mResampler;
+    private final float[] mValues;
+
+    private SKSensorModuleType mModuleType;
+    private int mBlockSize;
+
+    // Current block
+    private float[][] mColumns;
+    private int mCount;
+    private double mStartTimestamp;
+
+    /** Output rate in Hz. Samples are low-pass filtered before resampling. */
+    public SKResamplingOperator(double outputRate, SKResampler.Interpolation interpolation, SKValueExtractor... valueExtractors) {
+        this(outputRate, interpolation, true, valueExtractors);
+    }
+
+    public SKResamplingOperator(double outputRate, SKResampler.Interpolation interpolation, boolean antiAliasing, SKValueExtractor... valueExtractors) {
+
+        this.mValueExtractors = valueExtractors;
+        this.mResampler = new SKResampler(valueExtractors.length, outputRate, interpolation, antiAliasing);
+        this.mValues = new float[valueExtractors.length];
+        this.mBlockSize = blockSizeForLatency(DEFAULT_MAX_LATENCY);
+    }
+
+    //region Configuration
+
+    /** Sets the longest time (in ms) that resampled samples are kept before they are posted. */
+    public synchronized void setMaxLatency(long maxLatency) throws SKException {
+
+        if (maxLatency <= 0) {
+            throw new SKException(TAG, "Maximum latency must be positive.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        flush();
+        mBlockSize = blockSizeForLatency(maxLatency);
+    }
+
+    /** Sets the longest time between two input samples (in ms) that is interpolated. */
+    public synchronized void setMaxGap(long maxGap) throws SKException {
+
+        if (maxGap <= 0) {
+            throw new SKException(TAG, "Maximum gap must be positive.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mResampler.setMaxGap(maxGap);
+    }
+
+    private int blockSizeForLatency(long maxLatency) {
+        return Math.max(1, (int) (maxLatency / mResampler.getPeriod()));
+    }
+
+    //endregion
+
+    @Override
+    public synchronized void onDataReceived(SKSensorModuleType moduleType, SKSensorData sensorData) {
+
+        if (!(sensorData instanceof SKAbstractData)) {
+            return;
+        }
+
+        for (int i = 0; i < mValueExtractors.length; i++) {
+
+            double value = mValueExtractors[i].getValue(sensorData);
+
+            if (Double.isNaN(value)) {
+                return;
+            }
+
+            mValues[i] = (float) value;
+        }
+
+        mModuleType = moduleType;
+        mResampler.process(((SKAbstractData) sensorData).getTimestamp(), mValues, this);
+    }
+
+    @Override
+    public void onSample(double timestamp, float[] values) {
+
+        // The stream restarted after a gap
+        if (mCount > 0 && Math.abs(timestamp - (mStartTimestamp + mCount * mResampler.getPeriod())) > mResampler.getPeriod() / 2) {
+            flush();
+        }
+
+        if (mCount == 0) {
+            mColumns = new float[values.length][mBlockSize];
+            mStartTimestamp = timestamp;
+        }
+
+        for (int channel = 0; channel < values.length; channel++) {
+            mColumns[channel][mCount] = values[channel];
+        }
+
+        mCount++;
+
+        if (mCount == mBlockSize) {
+            flush();
+        }
+    }
+
+    /** Posts the samples of a partially filled block. */
+    public synchronized void flush() {
+
+        if (mCount == 0) {
+            return;
+        }
+
+        SKResampledData data = new SKResampledData(mModuleType, mStartTimestamp, mResampler.getPeriod(), mCount, mColumns);
+        mColumns = null;
+        mCount = 0;
+
+        submitSensorData(mModuleType, data);
+    }
+
+    /** Discards the samples that have not been posted and restarts the stream. */
+    public synchronized void reset() {
+        mResampler.reset();
+        mColumns = null;
+        mCount = 0;
+    }
+
+}
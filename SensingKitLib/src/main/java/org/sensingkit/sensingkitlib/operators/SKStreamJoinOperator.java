@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.operators;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.data.SKAbstractData;
+import org.sensingkit.sensingkitlib.data.SKJoinedData;
+import org.sensingkit.sensingkitlib.data.SKSensorData;
+
+import java.util.Arrays;
+
+/**
+ * Joins the samples of several sensor modules by time and posts them as SKJoinedData.
+ *
+ * The first sensor module drives the join: each of its samples is posted together with the
+ * values of the other modules at its timestamp, taken from the nearest sample or interpolated
+ * between the samples around it, if they are within the tolerance. A sample is posted once all
+ * other modules have delivered a sample at or after its timestamp.
+ *
+ * Each module is buffered in a ring buffer of primitive arrays with a fixed capacity. A module
+ * is lagging when a sample of the first module has waited for it for longer than the maximum
+ * lag (or when the buffer of the first module is full). The sample is then resolved without
+ * the lagging module: it is either dropped or posted with NaN values for that module, as set
+ * by the lag policy.
+ */
+public class SKStreamJoinOperator extends SKAbstractOperator {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKStreamJoinOperator";
+
+    public enum Alignment {
+        NEAREST,
+        INTERPOLATED
+    }
+
+    public enum LagPolicy {
+        DROP,
+        EMIT_PARTIAL
+    }
+
+    public static final long DEFAULT_TOLERANCE = 20;   // ms
+    public static final long DEFAULT_MAX_LAG = 200;    // ms
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final int WAIT = 0;
+    private static final int READY = 1;
+    private static final int MISSING = 2;
+
+    private final SKSensorModuleType[] mModuleTypes;
+    private final SKValueExtractor[] mValueExtractors;
+    private final Alignment mAlignment;
+    private final Stream[] mStreams;
+    private final float[] mValues;
+    private final float[][] mAligned;
+
+    private long mTolerance = DEFAULT_TOLERANCE;
+    private long mMaxLag = DEFAULT_MAX_LAG;
+    private LagPolicy mLagPolicy = LagPolicy.EMIT_PARTIAL;
+
+    private long mDroppedCount;
+    private final long[] mLaggingCounts;
+
+    /** Ring buffer of the samples of a module, in timestamp order. */
+    private static class Stream {
+
+        final int mask;
+        final long[] timestamps;
+        final float[][] values;
+        long head;
+        long tail;
+
+        Stream(int capacity, int channels) {
+            this.mask = capacity - 1;
+            this.timestamps = new long[capacity];
+            this.values = new float[capacity][channels];
+        }
+
+        int size() {
+            return (int) (tail - head);
+        }
+
+        boolean isFull() {
+            return size() == timestamps.length;
+        }
+
+        long timestamp(long sequence) {
+            return timestamps[(int) (sequence & mask)];
+        }
+
+        float[] values(long sequence) {
+            return values[(int) (sequence & mask)];
+        }
+    }
+
+    /** Joins the x, y, z values of the sensor modules (e.g. Accelerometer, Gyroscope, Magnetometer). */
+    public SKStreamJoinOperator(Alignment alignment, SKSensorModuleType... moduleTypes) {
+        this(alignment, DEFAULT_CAPACITY, moduleTypes, SKValueExtractors.X, SKValueExtractors.Y, SKValueExtractors.Z);
+    }
+
+    /** Capacity is the number of samples buffered per module (at most 2^30), rounded up to a power of two. */
+    public SKStreamJoinOperator(Alignment alignment, int capacity, SKSensorModuleType[] moduleTypes, SKValueExtractor... valueExtractors) {
+
+        if (moduleTypes.length < 2) {
+            throw new IllegalArgumentException("At least two sensor modules are needed for a join.");
+        }
+
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 2 and 2^30.");
+        }
+
+        this.mModuleTypes = moduleTypes.clone();
+        this.mValueExtractors = valueExtractors;
+        this.mAlignment = alignment;
+        this.mStreams = new Stream[moduleTypes.length];
+        this.mLaggingCounts = new long[moduleTypes.length];
+        this.mValues = new float[valueExtractors.length];
+        this.mAligned = new float[moduleTypes.length][valueExtractors.length];
+
+        int ringCapacity = Integer.highestOneBit(capacity - 1) << 1;
+
+        for (int i = 0; i < moduleTypes.length; i++) {
+            mStreams[i] = new Stream(ringCapacity, valueExtractors.length);
+        }
+    }
+
+    //region Configuration
+
+    /** Sets the largest time difference (in ms) between a sample and the samples joined to it. */
+    public synchronized void setTolerance(long tolerance) throws SKException {
+
+        if (tolerance < 0) {
+            throw new SKException(TAG, "Tolerance cannot be negative.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mTolerance = tolerance;
+    }
+
+    /** Sets how long (in ms of the first module) a sample waits for a lagging module. */
+    public synchronized void setMaxLag(long maxLag) throws SKException {
+
+        if (maxLag < 0) {
+            throw new SKException(TAG, "Maximum lag cannot be negative.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mMaxLag = maxLag;
+    }
+
+    public synchronized void setLagPolicy(LagPolicy lagPolicy) {
+        mLagPolicy = lagPolicy;
+    }
+
+    //endregion
+
+    //region Statistics
+
+    /** Returns the number of samples of the first module that were dropped. */
+    public synchronized long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /** Returns the number of samples that were resolved without the module because it was lagging. */
+    public synchronized long getLaggingCount(SKSensorModuleType moduleType) {
+
+        int index = indexOf(moduleType);
+        return (index < 0) ? 0 : mLaggingCounts[index];
+    }
+
+    //endregion
+
+    @Override
+    public synchronized void onDataReceived(SKSensorModuleType moduleType, SKSensorData sensorData) {
+
+        int index = indexOf(moduleType);
+
+        if (index < 0 || !(sensorData instanceof SKAbstractData)) {
+            return;
+        }
+
+        Stream stream = mStreams[index];
+        long timestamp = ((SKAbstractData) sensorData).getTimestamp();
+
+        // Samples out of order are dropped
+        if (stream.size() > 0 && timestamp <= stream.timestamp(stream.tail - 1)) {
+            return;
+        }
+
+        for (int channel = 0; channel < mValueExtractors.length; channel++) {
+
+            double value = mValueExtractors[channel].getValue(sensorData);
+
+            if (Double.isNaN(value)) {
+                return;
+            }
+
+            mValues[channel] = (float) value;
+        }
+
+        // Full buffer: the oldest sample of the first module is resolved without waiting
+        if (stream.isFull()) {
+
+            if (index == 0) {
+                join(true);
+            }
+            else {
+                stream.head++;
+            }
+        }
+
+        System.arraycopy(mValues, 0, stream.values(stream.tail), 0, mValues.length);
+        stream.timestamps[(int) (stream.tail & stream.mask)] = timestamp;
+        stream.tail++;
+
+        // Post the samples of the first module that can be joined
+        while (mStreams[0].size() > 0 && join(false)) {
+            // Continue with the next one
+        }
+    }
+
+    /** Discards all buffered samples. */
+    public synchronized void reset() {
+
+        for (Stream stream : mStreams) {
+            stream.head = stream.tail;
+        }
+    }
+
+    private int indexOf(SKSensorModuleType moduleType) {
+
+        for (int i = 0; i < mModuleTypes.length; i++) {
+            if (mModuleTypes[i] == moduleType) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Joins the oldest sample of the first module. Returns false if it has to wait for
+     * another module, unless force is true.
+     */
+    private boolean join(boolean force) {
+
+        Stream first = mStreams[0];
+        long timestamp = first.timestamp(first.head);
+
+        // Lagging modules are resolved as missing
+        boolean lagging = force || (first.timestamp(first.tail - 1) - timestamp > mMaxLag);
+
+        // Aligned into scratch, the posted values are only allocated once the sample is posted
+        boolean missing = false;
+
+        for (int i = 1; i < mStreams.length; i++) {
+
+            int status = align(i, timestamp, lagging, mAligned[i]);
+
+            if (status == WAIT) {
+                return false;
+            }
+
+            if (status == MISSING) {
+                Arrays.fill(mAligned[i], Float.NaN);
+                missing = true;
+            }
+        }
+
+        System.arraycopy(first.values(first.head), 0, mAligned[0], 0, mAligned[0].length);
+
+        first.head++;
+
+        // Samples before the last one at or before the timestamp are not needed anymore
+        for (int i = 1; i < mStreams.length; i++) {
+
+            Stream stream = mStreams[i];
+
+            while (stream.size() >= 2 && stream.timestamp(stream.head + 1) <= timestamp) {
+                stream.head++;
+            }
+        }
+
+        if (missing && mLagPolicy == LagPolicy.DROP) {
+            mDroppedCount++;
+            return true;
+        }
+
+        float[][] values = new float[mAligned.length][];
+
+        for (int i = 0; i < mAligned.length; i++) {
+            values[i] = mAligned[i].clone();
+        }
+
+        submitSensorData(mModuleTypes[0], new SKJoinedData(timestamp, mModuleTypes, values));
+        return true;
+    }
+
+    /**
+     * Aligns a module to the timestamp. Returns WAIT if it has no sample at or after it yet,
+     * unless it is lagging. A lagging module is aligned to its last sample (nearest alignment).
+     */
+    private int align(int index, long timestamp, boolean lagging, float[] destination) {
+
+        Stream stream = mStreams[index];
+
+        // First sample at or after the timestamp
+        long after = stream.head;
+
+        while (after < stream.tail && stream.timestamp(after) < timestamp) {
+            after++;
+        }
+
+        if (after == stream.tail) {
+
+            if (!lagging) {
+                return WAIT;
+            }
+
+            mLaggingCounts[index]++;
+
+            if (mAlignment == Alignment.NEAREST && stream.size() > 0 && timestamp - stream.timestamp(stream.tail - 1) <= mTolerance) {
+                System.arraycopy(stream.values(stream.tail - 1), 0, destination, 0, destination.length);
+                return READY;
+            }
+
+            return MISSING;
+        }
+
+        long afterDistance = stream.timestamp(after) - timestamp;
+        boolean hasBefore = (after > stream.head);
+        long beforeDistance = hasBefore ? timestamp - stream.timestamp(after - 1) : Long.MAX_VALUE;
+
+        if (mAlignment == Alignment.NEAREST || afterDistance == 0) {
+
+            long sequence = (beforeDistance < afterDistance) ? after - 1 : after;
+
+            if (Math.min(beforeDistance, afterDistance) > mTolerance) {
+                return MISSING;
+            }
+
+            System.arraycopy(stream.values(sequence), 0, destination, 0, destination.length);
+            return READY;
+        }
+
+        // Interpolated: both samples around the timestamp must be within the tolerance
+        if (!hasBefore || beforeDistance > mTolerance || afterDistance > mTolerance) {
+            return MISSING;
+        }
+
+        float[] before = stream.values(after - 1);
+        float[] next = stream.values(after);
+        float fraction = (float) beforeDistance / (beforeDistance + afterDistance);
+
+        for (int channel = 0; channel < destination.length; channel++) {
+            destination[channel] = before[channel] + (next[channel] - before[channel]) * fraction;
+        }
+
+        return READY;
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.operators;
+
+import org.sensingkit.sensingkitlib.data.SKAccelerometerData;
+import org.sensingkit.sensingkitlib.data.SKAmbientTemperatureData;
+import org.sensingkit.sensingkitlib.data.SKAudioLevelData;
+import org.sensingkit.sensingkitlib.data.SKGravityData;
+import org.sensingkit.sensingkitlib.data.SKGyroscopeData;
+import org.sensingkit.sensingkitlib.data.SKLightData;
+import org.sensingkit.sensingkitlib.data.SKLinearAccelerationData;
+import org.sensingkit.sensingkitlib.data.SKMagnetometerData;
+import org.sensingkit.sensingkitlib.data.SKRotationData;
+import org.sensingkit.sensingkitlib.data.SKSensorData;
+
+/**
+ * Value extractors for the x, y, z data of the motion sensor modules
+ * (Accelerometer, Gravity, Linear Acceleration, Gyroscope, Magnetometer and Rotation)
+ * and for the value of the single value sensor modules (Light, Audio Level and
+ * Ambient Temperature). Data objects of other sensor modules are ignored.
+ */
+public final class SKValueExtractors {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKValueExtractors";
+
+    private static final int AXIS_X = 0;
+    private static final int AXIS_Y = 1;
+    private static final int AXIS_Z = 2;
+
+    public static final SKValueExtractor X = new SKValueExtractor() {
+        @Override
+        public double getValue(SKSensorData sensorData) {
+            return getAxis(sensorData, AXIS_X);
+        }
+    };
+
+    public static final SKValueExtractor Y = new SKValueExtractor() {
+        @Override
+        public double getValue(SKSensorData sensorData) {
+            return getAxis(sensorData, AXIS_Y);
+        }
+    };
+
+    public static final SKValueExtractor Z = new SKValueExtractor() {
+        @Override
+        public double getValue(SKSensorData sensorData) {
+            return getAxis(sensorData, AXIS_Z);
+        }
+    };
+
+    /** Euclidean norm of x, y and z. */
+    public static final SKValueExtractor MAGNITUDE = new SKValueExtractor() {
+        @Override
+        public double getValue(SKSensorData sensorData) {
+
+            double x = getAxis(sensorData, AXIS_X);
+            double y = getAxis(sensorData, AXIS_Y);
+            double z = getAxis(sensorData, AXIS_Z);
+
+            return Math.sqrt(x * x + y * y + z * z);
+        }
+    };
+
+    /** Light (lux), Audio Level or Ambient Temperature (degrees Celsius). */
+    public static final SKValueExtractor VALUE = new SKValueExtractor() {
+        @Override
+        public double getValue(SKSensorData sensorData) {
+
+            if (sensorData instanceof SKLightData) {
+                return ((SKLightData) sensorData).getLight();
+            }
+            else if (sensorData instanceof SKAudioLevelData) {
+                return ((SKAudioLevelData) sensorData).getLevel();
+            }
+            else if (sensorData instanceof SKAmbientTemperatureData) {
+                return ((SKAmbientTemperatureData) sensorData).getTemperature();
+            }
+
+            return Double.NaN;
+        }
+    };
+
+    private SKValueExtractors() {
+    }
+
+    private static double getAxis(SKSensorData sensorData, int axis) {
+
+        if (sensorData instanceof SKAccelerometerData) {
+            SKAccelerometerData data = (SKAccelerometerData) sensorData;
+            return select(axis, data.getX(), data.getY(), data.getZ());
+        }
+        else if (sensorData instanceof SKGravityData) {
+            SKGravityData data = (SKGravityData) sensorData;
+            return select(axis, data.getX(), data.getY(), data.getZ());
+        }
+        else if (sensorData instanceof SKLinearAccelerationData) {
+            SKLinearAccelerationData data = (SKLinearAccelerationData) sensorData;
+            return select(axis, data.getX(), data.getY(), data.getZ());
+        }
+        else if (sensorData instanceof SKGyroscopeData) {
+            SKGyroscopeData data = (SKGyroscopeData) sensorData;
+            return select(axis, data.getX(), data.getY(), data.getZ());
+        }
+        else if (sensorData instanceof SKMagnetometerData) {
+            SKMagnetometerData data = (SKMagnetometerData) sensorData;
+            return select(axis, data.getX(), data.getY(), data.getZ());
+        }
+        else if (sensorData instanceof SKRotationData) {
+            SKRotationData data = (SKRotationData) sensorData;
+            return select(axis, data.getX(), data.getY(), data.getZ());
+        }
+
+        return Double.NaN;
+    }
+
+    private static double select(int axis, float x, float y, float z) {
+
+        switch (axis) {
+
+            case AXIS_X:
+                return x;
+
+            case AXIS_Y:
+                return y;
+
+            default:
+                return z;
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.operators;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+
+/**
+ * Describes the window of an operator.
+ *
+ * A sliding window always holds the last samples and produces a result for every sample.
+ * A tumbling window produces one result when it is full and then starts over empty.
+ * The size is either a number of samples or a duration in milliseconds.
+ */
+public final class SKWindow {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKWindow";
+
+    /** Largest sliding window by count, as its samples are kept in a ring buffer with a power of two capacity. */
+    public static final int MAX_SLIDING_COUNT = (1 << 30) - 1;
+
+    public enum Type {
+        SLIDING,
+        TUMBLING
+    }
+
+    public enum Unit {
+        COUNT,
+        TIME
+    }
+
+    private final Type mType;
+    private final Unit mUnit;
+    private final long mSize;
+
+    private SKWindow(Type type, Unit unit, long size) throws SKException {
+
+        if (size <= 0) {
+            throw new SKException(TAG, "Window size must be positive.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        if (unit == Unit.COUNT && size > (type == Type.SLIDING ? MAX_SLIDING_COUNT : Integer.MAX_VALUE)) {
+            throw new SKException(TAG, "Window size is too large.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        this.mType = type;
+        this.mUnit = unit;
+        this.mSize = size;
+    }
+
+    public static SKWindow slidingByCount(int samples) throws SKException {
+        return new SKWindow(Type.SLIDING, Unit.COUNT, samples);
+    }
+
+    public static SKWindow slidingByTime(long duration) throws SKException {
+        return new SKWindow(Type.SLIDING, Unit.TIME, duration);
+    }
+
+    public static SKWindow tumblingByCount(int samples) throws SKException {
+        return new SKWindow(Type.TUMBLING, Unit.COUNT, samples);
+    }
+
+    public static SKWindow tumblingByTime(long duration) throws SKException {
+        return new SKWindow(Type.TUMBLING, Unit.TIME, duration);
+    }
+
+    public Type getType() {
+        return mType;
+    }
+
+    public Unit getUnit() {
+        return mUnit;
+    }
+
+    /** Returns the number of samples (Unit.COUNT) or the duration in milliseconds (Unit.TIME). */
+    public long getSize() {
+        return mSize;
+    }
+
+}
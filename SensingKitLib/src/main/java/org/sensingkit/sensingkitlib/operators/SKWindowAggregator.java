@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.operators;
+
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.data.SKAbstractData;
+import org.sensingkit.sensingkitlib.data.SKSensorData;
+import org.sensingkit.sensingkitlib.data.SKWindowAggregateData;
+
+/**
+ * Computes the mean, variance, min, max and energy of a value over a window and posts them
+ * as SKWindowAggregateData.
+ *
+ * All statistics are maintained incrementally in O(1) amortized time per sample: mean and
+ * variance with Welford's algorithm (also when a sample leaves a sliding window), and min and
+ * max with monotonic deques over the samples of the window. Sliding windows keep their samples
+ * in primitive ring buffers that only grow when a time window holds more samples than before.
+ */
+public class SKWindowAggregator extends SKAbstractOperator {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKWindowAggregator";
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final SKValueExtractor mValueExtractor;
+    private final SKWindow mWindow;
+    private final boolean mSliding;
+    private final boolean mByTime;
+    private final long mSize;
+
+    private SKSensorModuleType mModuleType;
+
+    // Welford
+    private int mCount;
+    private double mMean;
+    private double mM2;
+
+    // Tumbling window
+    private double mMin;
+    private double mMax;
+    private long mFirstTimestamp;
+    private long mLastTimestamp;
+    private long mWindowStart = Long.MIN_VALUE;
+
+    // Sliding window: samples by sequence number, index is (sequence & mMask)
+    private int mMask;
+    private long[] mTimestamps;
+    private double[] mValues;
+    private long mFirstSequence;
+    private long mNextSequence;
+
+    // Sliding window: sequence numbers with increasing values (min) and decreasing values (max)
+    private long[] mMinDeque;
+    private long mMinHead;
+    private long mMinTail;
+    private long[] mMaxDeque;
+    private long mMaxHead;
+    private long mMaxTail;
+
+    public SKWindowAggregator(SKValueExtractor valueExtractor, SKWindow window) {
+
+        this.mValueExtractor = valueExtractor;
+        this.mWindow = window;
+        this.mSliding = (window.getType() == SKWindow.Type.SLIDING);
+        this.mByTime = (window.getUnit() == SKWindow.Unit.TIME);
+        this.mSize = window.getSize();
+
+        if (mSliding) {
+            int capacity = INITIAL_CAPACITY;
+
+            // Count windows hold at most size + 1 samples and never grow (size is at most MAX_SLIDING_COUNT)
+            if (!mByTime) {
+                capacity = Integer.highestOneBit((int) mSize) << 1;
+            }
+
+            allocate(capacity);
+        }
+
+        clear();
+    }
+
+    public SKWindow getWindow() {
+        return mWindow;
+    }
+
+    @Override
+    public synchronized void onDataReceived(SKSensorModuleType moduleType, SKSensorData sensorData) {
+
+        double value = mValueExtractor.getValue(sensorData);
+
+        if (Double.isNaN(value) || !(sensorData instanceof SKAbstractData)) {
+            return;
+        }
+
+        mModuleType = moduleType;
+        long timestamp = ((SKAbstractData) sensorData).getTimestamp();
+
+        if (mSliding) {
+            addToSlidingWindow(timestamp, value);
+        }
+        else {
+            addToTumblingWindow(timestamp, value);
+        }
+    }
+
+    /** Posts the result of a partially filled tumbling window and starts a new one. */
+    public synchronized void flush() {
+
+        if (!mSliding && mCount > 0) {
+            submitResult(mFirstTimestamp, mLastTimestamp, mMin, mMax);
+            clear();
+        }
+    }
+
+    /** Discards all samples of the window. */
+    public synchronized void reset() {
+        clear();
+        mWindowStart = Long.MIN_VALUE;
+    }
+
+    //region Sliding window
+
+    private void addToSlidingWindow(long timestamp, double value) {
+
+        if (mNextSequence - mFirstSequence == mTimestamps.length) {
+            grow();
+        }
+
+        long sequence = mNextSequence++;
+        int index = (int) (sequence & mMask);
+        mTimestamps[index] = timestamp;
+        mValues[index] = value;
+        add(value);
+
+        // Monotonic deques: drop the samples that cannot be the min (or max) anymore
+        while (mMinTail > mMinHead && mValues[(int) (mMinDeque[(int) ((mMinTail - 1) & mMask)] & mMask)] >= value) {
+            mMinTail--;
+        }
+        mMinDeque[(int) (mMinTail++ & mMask)] = sequence;
+
+        while (mMaxTail > mMaxHead && mValues[(int) (mMaxDeque[(int) ((mMaxTail - 1) & mMask)] & mMask)] <= value) {
+            mMaxTail--;
+        }
+        mMaxDeque[(int) (mMaxTail++ & mMask)] = sequence;
+
+        // Evict the samples that left the window
+        if (mByTime) {
+            long from = timestamp - mSize;
+
+            while (mTimestamps[(int) (mFirstSequence & mMask)] <= from) {
+                evictFirst();
+            }
+        }
+        else {
+            while (mNextSequence - mFirstSequence > mSize) {
+                evictFirst();
+            }
+        }
+
+        double min = mValues[(int) (mMinDeque[(int) (mMinHead & mMask)] & mMask)];
+        double max = mValues[(int) (mMaxDeque[(int) (mMaxHead & mMask)] & mMask)];
+
+        submitResult(mTimestamps[(int) (mFirstSequence & mMask)], timestamp, min, max);
+    }
+
+    private void evictFirst() {
+
+        long sequence = mFirstSequence++;
+        remove(mValues[(int) (sequence & mMask)]);
+
+        if (mMinDeque[(int) (mMinHead & mMask)] == sequence) {
+            mMinHead++;
+        }
+
+        if (mMaxDeque[(int) (mMaxHead & mMask)] == sequence) {
+            mMaxHead++;
+        }
+    }
+
+    private void allocate(int capacity) {
+
+        mMask = capacity - 1;
+        mTimestamps = new long[capacity];
+        mValues = new double[capacity];
+        mMinDeque = new long[capacity];
+        mMaxDeque = new long[capacity];
+    }
+
+    private void grow() {
+
+        long[] timestamps = mTimestamps;
+        double[] values = mValues;
+        long[] minDeque = mMinDeque;
+        long[] maxDeque = mMaxDeque;
+        int oldMask = mMask;
+
+        allocate(timestamps.length * 2);
+
+        // Entries keep their sequence numbers, only their index changes
+        for (long sequence = mFirstSequence; sequence < mNextSequence; sequence++) {
+            mTimestamps[(int) (sequence & mMask)] = timestamps[(int) (sequence & oldMask)];
+            mValues[(int) (sequence & mMask)] = values[(int) (sequence & oldMask)];
+        }
+
+        for (long position = mMinHead; position < mMinTail; position++) {
+            mMinDeque[(int) (position & mMask)] = minDeque[(int) (position & oldMask)];
+        }
+
+        for (long position = mMaxHead; position < mMaxTail; position++) {
+            mMaxDeque[(int) (position & mMask)] = maxDeque[(int) (position & oldMask)];
+        }
+    }
+
+    //endregion
+
+    //region Tumbling window
+
+    private void addToTumblingWindow(long timestamp, double value) {
+
+        if (mByTime) {
+
+            // First window starts with the first sample, the next ones are aligned to it
+            if (mWindowStart == Long.MIN_VALUE) {
+                mWindowStart = timestamp;
+            }
+            else if (timestamp >= mWindowStart + mSize) {
+                flush();
+                mWindowStart += ((timestamp - mWindowStart) / mSize) * mSize;
+            }
+        }
+
+        if (mCount == 0) {
+            mFirstTimestamp = timestamp;
+            mMin = value;
+            mMax = value;
+        }
+        else {
+            mMin = Math.min(mMin, value);
+            mMax = Math.max(mMax, value);
+        }
+
+        mLastTimestamp = timestamp;
+        add(value);
+
+        if (!mByTime && mCount == mSize) {
+            flush();
+        }
+    }
+
+    //endregion
+
+    //region Welford
+
+    private void add(double value) {
+
+        mCount++;
+        double delta = value - mMean;
+        mMean += delta / mCount;
+        mM2 += delta * (value - mMean);
+    }
+
+    private void remove(double value) {
+
+        if (mCount == 1) {
+            mCount = 0;
+            mMean = 0;
+            mM2 = 0;
+            return;
+        }
+
+        mCount--;
+        double delta = value - mMean;
+        mMean -= delta / mCount;
+        mM2 = Math.max(mM2 - delta * (value - mMean), 0);
+    }
+
+    //endregion
+
+    private void clear() {
+
+        mCount = 0;
+        mMean = 0;
+        mM2 = 0;
+
+        mFirstSequence = mNextSequence = 0;
+        mMinHead = mMinTail = 0;
+        mMaxHead = mMaxTail = 0;
+    }
+
+    private void submitResult(long startTimestamp, long timestamp, double min, double max) {
+
+        double variance = mM2 / mCount;
+        double energy = variance + mMean * mMean;
+
+        submitSensorData(mModuleType, new SKWindowAggregateData(mModuleType, startTimestamp, timestamp, mCount, mMean, variance, min, max, energy));
+    }
+
+}
@@ -0,0 +1,576 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.replay;
+
+import android.os.BatteryManager;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.data.SKAbstractData;
+import org.sensingkit.sensingkitlib.data.SKAccelerometerData;
+import org.sensingkit.sensingkitlib.data.SKActivityData;
+import org.sensingkit.sensingkitlib.data.SKAmbientTemperatureData;
+import org.sensingkit.sensingkitlib.data.SKAudioChunkData;
+import org.sensingkit.sensingkitlib.data.SKAudioLevelData;
+import org.sensingkit.sensingkitlib.data.SKAudioOnsetData;
+import org.sensingkit.sensingkitlib.data.SKAudioSpectrumData;
+import org.sensingkit.sensingkitlib.data.SKBatteryData;
+import org.sensingkit.sensingkitlib.data.SKBluetoothData;
+import org.sensingkit.sensingkitlib.data.SKBluetoothDeviceData;
+import org.sensingkit.sensingkitlib.data.SKFusedOrientationData;
+import org.sensingkit.sensingkitlib.data.SKGravityData;
+import org.sensingkit.sensingkitlib.data.SKGyroscopeData;
+import org.sensingkit.sensingkitlib.data.SKLightData;
+import org.sensingkit.sensingkitlib.data.SKLinearAccelerationData;
+import org.sensingkit.sensingkitlib.data.SKMagnetometerData;
+import org.sensingkit.sensingkitlib.data.SKOrientationData;
+import org.sensingkit.sensingkitlib.data.SKRotationData;
+import org.sensingkit.sensingkitlib.data.SKScreenStatusData;
+import org.sensingkit.sensingkitlib.data.SKStepCounterData;
+import org.sensingkit.sensingkitlib.data.SKStepDetectorData;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Reads data recorded in the format produced by SKSensorData.getDataInCSV(), one sample per line.
+ *
+ * A recorded session is a directory that holds, for each sensor module, either a single
+ * '<module>.csv' file or a '<module>' directory with one or more CSV segment files whose
+ * names sort in recording order. The module name is the lower case SKSensorModuleType name
+ * (e.g. 'accelerometer' or 'linear_acceleration').
+ */
+public class SKCSVSessionReader implements SKSessionReader {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKCSVSessionReader";
+
+    private static final String FILE_EXTENSION = ".csv";
+
+    private final SKSensorModuleType mModuleType;
+    private final File[] mSegments;
+
+    private int mSegmentIndex = 0;
+    private BufferedReader mReader;
+
+    // Bluetooth data span multiple lines, so the first line of the next scan is kept here
+    private String mPendingLine;
+
+    public SKCSVSessionReader(SKSensorModuleType moduleType, File... segments) throws SKException {
+
+        if (!isSensorModuleSupported(moduleType)) {
+            throw new SKException(TAG, "SensorModule '" + moduleType + "' cannot be replayed from CSV.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        this.mModuleType = moduleType;
+        this.mSegments = segments;
+    }
+
+    public static ArrayList<SKSessionReader> openSession(File sessionDirectory) throws SKException {
+
+        if (sessionDirectory == null || !sessionDirectory.isDirectory()) {
+            throw new SKException(TAG, "Session directory does not exist.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        ArrayList<SKSessionReader> readers = new ArrayList<>();
+
+        for (SKSensorModuleType moduleType : SKSensorModuleType.values()) {
+
+            if (!isSensorModuleSupported(moduleType)) {
+                continue;
+            }
+
+            String name = getSessionName(moduleType);
+
+            File file = new File(sessionDirectory, name + FILE_EXTENSION);
+            File directory = new File(sessionDirectory, name);
+
+            if (file.isFile()) {
+                readers.add(new SKCSVSessionReader(moduleType, file));
+            }
+            else if (directory.isDirectory()) {
+                File[] segments = listSegments(directory);
+
+                if (segments.length > 0) {
+                    readers.add(new SKCSVSessionReader(moduleType, segments));
+                }
+            }
+        }
+
+        if (readers.isEmpty()) {
+            throw new SKException(TAG, "Session directory does not contain any recorded data.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        return readers;
+    }
+
+    public static String getSessionName(SKSensorModuleType moduleType) {
+        return moduleType.name().toLowerCase(Locale.US);
+    }
+
+    public static boolean isSensorModuleSupported(SKSensorModuleType moduleType) {
+
+        switch (moduleType) {
+
+            case LOCATION:  // Location is not exported as CSV fields
+                return false;
+
+            default:
+                return true;
+        }
+    }
+
+    private static File[] listSegments(File directory) {
+
+        File[] files = directory.listFiles();
+
+        if (files == null) {
+            return new File[0];
+        }
+
+        ArrayList<File> segments = new ArrayList<>(files.length);
+
+        for (File file : files) {
+            if (file.isFile() && file.getName().endsWith(FILE_EXTENSION)) {
+                segments.add(file);
+            }
+        }
+
+        File[] sorted = segments.toArray(new File[segments.size()]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    @Override
+    public SKSensorModuleType getSensorModuleType() {
+        return mModuleType;
+    }
+
+    @Override
+    public SKAbstractData readNext() throws IOException {
+
+        String line = readLine();
+
+        if (line == null) {
+            return null;
+        }
+
+        String[] fields = split(line);
+
+        switch (mModuleType) {
+
+            case ACCELEROMETER:
+                return new SKAccelerometerData(parseLong(fields, 0), parseFloat(fields, 1), parseFloat(fields, 2), parseFloat(fields, 3));
+
+            case GRAVITY:
+                return new SKGravityData(parseLong(fields, 0), parseFloat(fields, 1), parseFloat(fields, 2), parseFloat(fields, 3));
+
+            case LINEAR_ACCELERATION:
+                return new SKLinearAccelerationData(parseLong(fields, 0), parseFloat(fields, 1), parseFloat(fields, 2), parseFloat(fields, 3));
+
+            case GYROSCOPE:
+                return new SKGyroscopeData(parseLong(fields, 0), parseFloat(fields, 1), parseFloat(fields, 2), parseFloat(fields, 3));
+
+            case MAGNETOMETER:
+                return new SKMagnetometerData(parseLong(fields, 0), parseFloat(fields, 1), parseFloat(fields, 2), parseFloat(fields, 3));
+
+            case ROTATION:
+                if (fields.length >= 6) {
+                    return new SKRotationData(parseLong(fields, 0), parseFloat(fields, 1), parseFloat(fields, 2), parseFloat(fields, 3), parseFloat(fields, 4), parseFloat(fields, 5));
+                }
+                else {
+                    return new SKRotationData(parseLong(fields, 0), parseFloat(fields, 1), parseFloat(fields, 2), parseFloat(fields, 3));
+                }
+
+            case AMBIENT_TEMPERATURE:
+                return new SKAmbientTemperatureData(parseLong(fields, 0), parseFloat(fields, 1));
+
+            case STEP_DETECTOR:
+                return new SKStepDetectorData(parseLong(fields, 0));
+
+            case STEP_COUNTER:
+                return new SKStepCounterData(parseLong(fields, 0), parseFloat(fields, 1));
+
+            case LIGHT:
+                return new SKLightData(parseLong(fields, 0), parseFloat(fields, 1));
+
+            case ACTIVITY:
+                return new SKActivityData(parseLong(fields, 0), parseInt(fields, 1), parseInt(fields, 3));
+
+            case BATTERY:
+                return buildBatteryData(fields);
+
+            case SCREEN_STATUS:
+                return new SKScreenStatusData(parseLong(fields, 0), parseScreenStatus(field(fields, 1)));
+
+            case AUDIO_LEVEL:
+
+                // Onsets and spectra are tagged in the second field, levels are not
+                if (SKAudioOnsetData.CSV_TAG.equals(field(fields, 1))) {
+                    return new SKAudioOnsetData(parseLong(fields, 0), parseLong(fields, 2), parseInt(fields, 3), parseFloat(fields, 4), parseFloat(fields, 5));
+                }
+                else if (SKAudioSpectrumData.CSV_TAG.equals(fields[1])) {
+                    return buildAudioSpectrumData(fields);
+                }
+                else if (fields.length == 6) {
+                    return new SKAudioLevelData(parseLong(fields, 0), parseInt(fields, 1), parseFloat(fields, 2), parseFloat(fields, 3), parseFloat(fields, 4), parseInt(fields, 5) != 0);
+                }
+                else if (fields.length == 5) {
+                    return new SKAudioLevelData(parseLong(fields, 0), parseInt(fields, 1), parseFloat(fields, 2), parseFloat(fields, 3), parseFloat(fields, 4));
+                }
+                else if (fields.length == 2) {
+                    return new SKAudioLevelData(parseLong(fields, 0), parseInt(fields, 1));
+                }
+                else {
+                    throw new IOException("Unknown Audio Level line with " + fields.length + " fields.");
+                }
+
+            case BLUETOOTH:
+                return buildBluetoothData(line);
+
+            case AUDIO_RECORDER:
+                return buildAudioChunkData(line);
+
+            case ORIENTATION:
+                return buildOrientationData(fields);
+
+            case FUSED_ORIENTATION:
+                return new SKFusedOrientationData(parseLong(fields, 0), parseFloat(fields, 1), parseFloat(fields, 2), parseFloat(fields, 3), parseFloat(fields, 4));
+
+            default:
+                throw new IOException("Unsupported SensorModule '" + mModuleType + "'.");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        mPendingLine = null;
+
+        if (mReader != null) {
+            mReader.close();
+            mReader = null;
+        }
+
+        // Skip all remaining segments
+        mSegmentIndex = mSegments.length;
+    }
+
+    private String readLine() throws IOException {
+
+        if (mPendingLine != null) {
+            String line = mPendingLine;
+            mPendingLine = null;
+            return line;
+        }
+
+        while (true) {
+
+            if (mReader == null) {
+
+                if (mSegmentIndex >= mSegments.length) {
+                    return null;
+                }
+
+                mReader = new BufferedReader(new InputStreamReader(new FileInputStream(mSegments[mSegmentIndex++]), "UTF-8"));
+            }
+
+            String line = mReader.readLine();
+
+            if (line == null) {
+                mReader.close();
+                mReader = null;
+            }
+            else if (line.length() > 0) {
+                return line;
+            }
+        }
+    }
+
+    private SKAbstractData buildBluetoothData(String line) throws IOException {
+
+        // Each line holds one device, prefixed with the timestamp of the scan
+        long timestamp = parseLong(split(line), 0);
+
+        ArrayList<SKBluetoothDeviceData> devices = new ArrayList<>();
+        devices.add(buildBluetoothDeviceData(line));
+
+        String nextLine;
+
+        while ((nextLine = readLine()) != null) {
+
+            if (parseLong(split(nextLine), 0) != timestamp) {
+                mPendingLine = nextLine;
+                break;
+            }
+
+            devices.add(buildBluetoothDeviceData(nextLine));
+        }
+
+        return new SKBluetoothData(timestamp, devices);
+    }
+
+    private static SKOrientationData buildOrientationData(String[] fields) throws IOException {
+
+        // timestamp, quaternion (w, x, y, z), azimuth, pitch, roll, rotation matrix (9)
+        float[] quaternion = new float[4];
+        float[] orientation = new float[3];
+        float[] rotationMatrix = new float[9];
+
+        for (int i = 0; i < quaternion.length; i++) {
+            quaternion[i] = parseFloat(fields, 1 + i);
+        }
+
+        for (int i = 0; i < orientation.length; i++) {
+            orientation[i] = parseFloat(fields, 5 + i);
+        }
+
+        for (int i = 0; i < rotationMatrix.length; i++) {
+            rotationMatrix[i] = parseFloat(fields, 8 + i);
+        }
+
+        return new SKOrientationData(parseLong(fields, 0), quaternion, orientation, rotationMatrix);
+    }
+
+    private static SKAudioSpectrumData buildAudioSpectrumData(String[] fields) throws IOException {
+
+        // timestamp, tag, energy, centroid, rolloff, flatness, dominant frequency, band energies
+        float[] bandEnergies = new float[Math.max(fields.length - 7, 0)];
+
+        for (int i = 0; i < bandEnergies.length; i++) {
+            bandEnergies[i] = parseFloat(fields, 7 + i);
+        }
+
+        return new SKAudioSpectrumData(parseLong(fields, 0), parseFloat(fields, 2), parseFloat(fields, 3),
+                parseFloat(fields, 4), parseFloat(fields, 5), parseFloat(fields, 6), bandEnergies);
+    }
+
+    private static SKAudioChunkData buildAudioChunkData(String line) throws IOException {
+
+        // Format is timestamp,startTimestamp,size,path where the path may contain commas
+        int first = line.indexOf(',');
+        int second = line.indexOf(',', first + 1);
+        int third = line.indexOf(',', second + 1);
+
+        if (first < 0 || second < 0 || third < 0) {
+            throw new IOException("Malformed Audio Recorder line: " + line);
+        }
+
+        String[] fields = {line.substring(0, first), line.substring(first + 1, second), line.substring(second + 1, third)};
+
+        return new SKAudioChunkData(parseLong(fields, 0), parseLong(fields, 1), parseLong(fields, 2), new File(line.substring(third + 1)));
+    }
+
+    private static SKBluetoothDeviceData buildBluetoothDeviceData(String line) throws IOException {
+
+        // Format is scanTimestamp,timestamp,name,address,rssi where the name may contain commas
+        int first = line.indexOf(',');
+        int second = line.indexOf(',', first + 1);
+        int last = line.lastIndexOf(',');
+        int secondLast = line.lastIndexOf(',', last - 1);
+
+        if (first < 0 || second < 0 || secondLast <= second) {
+            throw new IOException("Malformed Bluetooth line: " + line);
+        }
+
+        try {
+            long timestamp = Long.parseLong(line.substring(first + 1, second));
+            String name = line.substring(second + 1, secondLast);
+            String address = line.substring(secondLast + 1, last);
+            int rssi = Integer.parseInt(line.substring(last + 1));
+
+            return new SKBluetoothDeviceData(timestamp, name, address, rssi);
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Malformed Bluetooth line: " + line);
+        }
+    }
+
+    private static SKAbstractData buildBatteryData(String[] fields) throws IOException {
+
+        // Level is exported as a ratio, so restore it with a scale of 100
+        long timestamp = parseLong(fields, 0);
+        int level = Math.round(parseFloat(fields, 1) * 100);
+        int temperature = parseInt(fields, 2);
+        int voltage = parseInt(fields, 3);
+        int plugged = parsePlugged(field(fields, 4));
+        int status = parseBatteryStatus(field(fields, 5));
+        int health = parseBatteryHealth(field(fields, 6));
+
+        return new SKBatteryData(timestamp, level, 100, temperature, voltage, plugged, status, health);
+    }
+
+    private static int parseScreenStatus(String status) {
+
+        switch (status) {
+
+            case "screen off":
+                return SKScreenStatusData.SCREEN_OFF;
+
+            case "screen on":
+                return SKScreenStatusData.SCREEN_ON;
+
+            default:
+                return SKScreenStatusData.SCREEN_UNKNOWN;
+        }
+    }
+
+    private static int parsePlugged(String plugged) {
+
+        switch (plugged) {
+
+            case "usb":
+                return BatteryManager.BATTERY_PLUGGED_USB;
+
+            case "ac":
+                return BatteryManager.BATTERY_PLUGGED_AC;
+
+            case "wireless":
+                return BatteryManager.BATTERY_PLUGGED_WIRELESS;
+
+            default:
+                return 0;
+        }
+    }
+
+    private static int parseBatteryStatus(String status) {
+
+        switch (status) {
+
+            case "charging":
+                return BatteryManager.BATTERY_STATUS_CHARGING;
+
+            case "discharging":
+                return BatteryManager.BATTERY_STATUS_DISCHARGING;
+
+            case "full":
+                return BatteryManager.BATTERY_STATUS_FULL;
+
+            case "not Charging":
+                return BatteryManager.BATTERY_STATUS_NOT_CHARGING;
+
+            default:
+                return BatteryManager.BATTERY_STATUS_UNKNOWN;
+        }
+    }
+
+    private static int parseBatteryHealth(String health) {
+
+        switch (health) {
+
+            case "cold":
+                return BatteryManager.BATTERY_HEALTH_COLD;
+
+            case "dead":
+                return BatteryManager.BATTERY_HEALTH_DEAD;
+
+            case "good":
+                return BatteryManager.BATTERY_HEALTH_GOOD;
+
+            case "over heat":
+                return BatteryManager.BATTERY_HEALTH_OVERHEAT;
+
+            case "over voltage":
+                return BatteryManager.BATTERY_HEALTH_OVER_VOLTAGE;
+
+            case "failure":
+                return BatteryManager.BATTERY_HEALTH_UNSPECIFIED_FAILURE;
+
+            default:
+                return BatteryManager.BATTERY_HEALTH_UNKNOWN;
+        }
+    }
+
+    //region Field parsing methods
+
+    private static String[] split(String line) {
+
+        // Count the fields first so that only one array is allocated
+        int count = 1;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == ',') {
+                count++;
+            }
+        }
+
+        String[] fields = new String[count];
+
+        int start = 0;
+        for (int i = 0; i < count - 1; i++) {
+            int end = line.indexOf(',', start);
+            fields[i] = line.substring(start, end);
+            start = end + 1;
+        }
+        fields[count - 1] = line.substring(start);
+
+        return fields;
+    }
+
+    private static String field(String[] fields, int index) throws IOException {
+
+        if (index >= fields.length) {
+            throw new IOException("Missing CSV field at index " + index + ".");
+        }
+
+        return fields[index];
+    }
+
+    private static long parseLong(String[] fields, int index) throws IOException {
+
+        try {
+            return Long.parseLong(field(fields, index));
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Malformed CSV field '" + fields[index] + "'.");
+        }
+    }
+
+    private static int parseInt(String[] fields, int index) throws IOException {
+
+        try {
+            return Integer.parseInt(field(fields, index));
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Malformed CSV field '" + fields[index] + "'.");
+        }
+    }
+
+    private static float parseFloat(String[] fields, int index) throws IOException {
+
+        try {
+            return Float.parseFloat(field(fields, index));
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Malformed CSV field '" + fields[index] + "'.");
+        }
+    }
+
+    //endregion
+
+}
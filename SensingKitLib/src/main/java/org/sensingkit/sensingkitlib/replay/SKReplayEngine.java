@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.replay;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.SKSensorDataListener;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.data.SKAbstractData;
+import org.sensingkit.sensingkitlib.modules.SKReplaySensorModule;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Replays a recorded session to the subscribed SKSensorDataListeners.
+ *
+ * Samples of all recorded sensor modules are merged by timestamp, so listeners observe
+ * the same inter-module ordering as during the recording. The replay can run in real
+ * time, N times faster (or slower) than real time, or as fast as possible.
+ * No Android service is used, so sessions can also be replayed on a plain JVM.
+ * The session readers are closed when the replay ends, so each engine replays its session once:
+ * a second start() or replay() throws an SKException.
+ */
+public class SKReplayEngine {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKReplayEngine";
+
+    public static final float SPEED_REALTIME = 1.0f;
+    public static final float SPEED_AS_FAST_AS_POSSIBLE = 0.0f;
+
+    public interface OnReplayFinishedListener {
+
+        /** Called when the replay has ended. Error is null if the whole session was replayed. */
+        void onReplayFinished(long samplesReplayed, Exception error);
+    }
+
+    private final SKSessionReader[] mReaders;
+    private final SKReplaySensorModule[] mSensorModules;
+    private final SKAbstractData[] mNextData;
+
+    private volatile float mSpeed = SPEED_REALTIME;
+    private volatile boolean isReplaying = false;
+    private volatile boolean mStopRequested = false;
+    private boolean hasReplayed = false;
+
+    private Thread mReplayThread;
+    private OnReplayFinishedListener mOnReplayFinishedListener;
+
+    public SKReplayEngine(List<SKSessionReader> readers) throws SKException {
+
+        if (readers == null || readers.isEmpty()) {
+            throw new SKException(TAG, "At least one SKSessionReader is required.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mReaders = readers.toArray(new SKSessionReader[readers.size()]);
+        mSensorModules = new SKReplaySensorModule[SKSensorModuleType.values().length];
+        mNextData = new SKAbstractData[mReaders.length];
+
+        for (SKSessionReader reader : mReaders) {
+
+            int sensorIndex = reader.getSensorModuleType().ordinal();
+
+            if (mSensorModules[sensorIndex] != null) {
+                throw new SKException(TAG, "SensorModule '" + reader.getSensorModuleType() + "' is recorded more than once.", SKExceptionErrorCode.UNKNOWN_ERROR);
+            }
+
+            mSensorModules[sensorIndex] = new SKReplaySensorModule(reader.getSensorModuleType());
+        }
+    }
+
+    public static SKReplayEngine fromCSVSession(File sessionDirectory) throws SKException {
+        return new SKReplayEngine(SKCSVSessionReader.openSession(sessionDirectory));
+    }
+
+    //region Configuration
+
+    /**
+     * Sets the replay speed as a multiple of real time (e.g. 2 replays twice as fast).
+     * Use SPEED_AS_FAST_AS_POSSIBLE to deliver the samples without any delay.
+     */
+    public void setSpeed(float speed) throws SKException {
+
+        if (speed < 0 || Float.isNaN(speed) || Float.isInfinite(speed)) {
+            throw new SKException(TAG, "Replay speed must be a positive number.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mSpeed = speed;
+    }
+
+    public float getSpeed() {
+        return mSpeed;
+    }
+
+    public void setOnReplayFinishedListener(OnReplayFinishedListener listener) {
+        mOnReplayFinishedListener = listener;
+    }
+
+    public boolean isSensorModuleRecorded(SKSensorModuleType moduleType) {
+        return mSensorModules[moduleType.ordinal()] != null;
+    }
+
+    //endregion
+
+    //region Listeners
+
+    public void subscribeSensorDataListener(SKSensorModuleType moduleType, SKSensorDataListener dataListener) throws SKException {
+        getSensorModule(moduleType).subscribeSensorDataListener(dataListener);
+    }
+
+    public void unsubscribeSensorDataListener(SKSensorModuleType moduleType, SKSensorDataListener dataListener) throws SKException {
+        getSensorModule(moduleType).unsubscribeSensorDataListener(dataListener);
+    }
+
+    public void unsubscribeAllSensorDataListeners(SKSensorModuleType moduleType) throws SKException {
+        getSensorModule(moduleType).unsubscribeAllSensorDataListeners();
+    }
+
+    private SKReplaySensorModule getSensorModule(SKSensorModuleType moduleType) throws SKException {
+
+        SKReplaySensorModule sensorModule = mSensorModules[moduleType.ordinal()];
+
+        if (sensorModule == null) {
+            throw new SKException(TAG, "SensorModule '" + moduleType + "' is not part of the recorded session.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        return sensorModule;
+    }
+
+    //endregion
+
+    //region Replay
+
+    public boolean isReplaying() {
+        return isReplaying;
+    }
+
+    /**
+     * Starts the replay in a background thread. The OnReplayFinishedListener is called from that thread.
+     */
+    public synchronized void start() throws SKException {
+
+        prepareReplay();
+
+        mReplayThread = new Thread(new Runnable() {
+            public void run() {
+
+                long samples = 0;
+                Exception error = null;
+
+                try {
+                    samples = runReplay();
+                }
+                catch (IOException | InterruptedException e) {
+                    error = e;
+                }
+
+                OnReplayFinishedListener listener = mOnReplayFinishedListener;
+
+                if (listener != null) {
+                    listener.onReplayFinished(samples, error);
+                }
+            }
+        }, TAG);
+
+        mReplayThread.start();
+    }
+
+    /**
+     * Stops a replay started with start() and waits until the replay thread has finished.
+     */
+    public void stop() throws InterruptedException {
+
+        Thread thread;
+
+        synchronized (this) {
+            thread = mReplayThread;
+            mReplayThread = null;
+        }
+
+        if (thread != null) {
+            mStopRequested = true;
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    /**
+     * Replays the whole session in the calling thread and returns the number of samples delivered.
+     */
+    public long replay() throws SKException, IOException, InterruptedException {
+
+        synchronized (this) {
+            prepareReplay();
+        }
+
+        return runReplay();
+    }
+
+    private void prepareReplay() throws SKException {
+
+        if (isReplaying) {
+            throw new SKException(TAG, "Session is already replaying.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        if (hasReplayed) {
+            throw new SKException(TAG, "Session has already been replayed.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        hasReplayed = true;
+        isReplaying = true;
+    }
+
+    private long runReplay() throws IOException, InterruptedException {
+
+        long samples = 0;
+
+        try {
+            startSensorModules();
+
+            // Read the first sample of every module
+            for (int i = 0; i < mReaders.length; i++) {
+                mNextData[i] = mReaders[i].readNext();
+            }
+
+            long firstTimestamp = Long.MIN_VALUE;
+            long startNanoTime = System.nanoTime();
+
+            while (!mStopRequested) {
+
+                // Pick the module with the earliest pending sample (readers are few, a linear scan is enough)
+                int next = -1;
+
+                for (int i = 0; i < mNextData.length; i++) {
+                    if (mNextData[i] != null && (next == -1 || mNextData[i].getTimestamp() < mNextData[next].getTimestamp())) {
+                        next = i;
+                    }
+                }
+
+                if (next == -1) {
+                    break;  // All modules have ended
+                }
+
+                SKAbstractData data = mNextData[next];
+
+                if (firstTimestamp == Long.MIN_VALUE) {
+                    firstTimestamp = data.getTimestamp();
+                }
+
+                waitUntilDue(data.getTimestamp() - firstTimestamp, startNanoTime);
+
+                mSensorModules[data.getSensorModuleType().ordinal()].replaySensorData(data);
+                samples++;
+
+                mNextData[next] = mReaders[next].readNext();
+            }
+        }
+        catch (InterruptedException e) {
+
+            // Interrupted by stop(), this is not an error
+            if (!mStopRequested) {
+                throw e;
+            }
+        }
+        finally {
+            stopSensorModules();
+            closeReaders();
+
+            isReplaying = false;
+        }
+
+        return samples;
+    }
+
+    private void waitUntilDue(long elapsedMillis, long startNanoTime) throws InterruptedException {
+
+        float speed = mSpeed;
+
+        if (speed == SPEED_AS_FAST_AS_POSSIBLE) {
+            return;
+        }
+
+        long dueNanoTime = startNanoTime + (long) (elapsedMillis * 1000000L / (double) speed);
+        long remaining = dueNanoTime - System.nanoTime();
+
+        if (remaining > 0) {
+            Thread.sleep(remaining / 1000000L, (int) (remaining % 1000000L));
+        }
+    }
+
+    private void startSensorModules() {
+
+        for (SKReplaySensorModule sensorModule : mSensorModules) {
+            if (sensorModule != null) {
+                sensorModule.startSensing();
+            }
+        }
+    }
+
+    private void stopSensorModules() {
+
+        for (SKReplaySensorModule sensorModule : mSensorModules) {
+            if (sensorModule != null) {
+                sensorModule.stopSensing();
+            }
+        }
+    }
+
+    private void closeReaders() {
+
+        for (int i = 0; i < mReaders.length; i++) {
+
+            mNextData[i] = null;
+
+            try {
+                mReaders[i].close();
+            }
+            catch (IOException e) {
+                // Ignore, the replay has already finished
+            }
+        }
+    }
+
+    //endregion
+
+}
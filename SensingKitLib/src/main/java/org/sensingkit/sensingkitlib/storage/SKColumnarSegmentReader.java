@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.storage;
+
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.sensingkit.sensingkitlib.storage.SKColumnarSegmentWriter.*;
+
+/**
+ * Reads segment files written by SKColumnarSegmentWriter.
+ *
+ * Only the footer is read when the file is opened. Block statistics can then be used to skip
+ * blocks, and each column of a block is read and decoded on its own.
+ */
+public class SKColumnarSegmentReader {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKColumnarSegmentReader";
+
+    private static final int TRAILER_SIZE = 12;
+
+    // Offset, rows, min/max timestamp, min/max of each value column, encoding and length of each column
+    private static final int BLOCK_FOOTER_SIZE = 8 + 4 + 8 + 8 + (TOTAL_COLUMNS - COLUMN_X) * 8 + TOTAL_COLUMNS * 5;
+
+    private final RandomAccessFile mFile;
+    private final SKSensorModuleType mModuleType;
+
+    private final int mBlockCount;
+    private final long[] mBlockOffsets;
+    private final int[] mBlockRows;
+    private final long[] mMinTimestamps;
+    private final long[] mMaxTimestamps;
+    private final float[][] mMinValues;
+    private final float[][] mMaxValues;
+    private final int[][] mEncodings;
+    private final int[][] mLengths;
+
+    private final SKVarIntBuffer mBuffer = new SKVarIntBuffer();
+
+    public SKColumnarSegmentReader(File file) throws IOException {
+
+        mFile = new RandomAccessFile(file, "r");
+
+        try {
+            if (mFile.readInt() != MAGIC || mFile.readByte() != VERSION) {
+                throw new IOException("File '" + file + "' is not a columnar segment.");
+            }
+
+            mModuleType = SKSensorModuleType.valueOf(mFile.readUTF());
+
+            // Trailer
+            long trailerOffset = mFile.length() - TRAILER_SIZE;
+
+            if (trailerOffset < mFile.getFilePointer()) {
+                throw new IOException("Columnar segment '" + file + "' is incomplete.");
+            }
+
+            mFile.seek(trailerOffset);
+            long footerOffset = mFile.readLong();
+
+            if (mFile.readInt() != MAGIC) {
+                throw new IOException("Columnar segment '" + file + "' is incomplete.");
+            }
+
+            if (footerOffset < 0 || footerOffset > trailerOffset - 4) {
+                throw new IOException("Columnar segment '" + file + "' has an invalid footer offset.");
+            }
+
+            // Footer, which must fit before the trailer
+            mFile.seek(footerOffset);
+            mBlockCount = mFile.readInt();
+
+            if (mBlockCount < 0 || mBlockCount > (trailerOffset - footerOffset - 4) / BLOCK_FOOTER_SIZE) {
+                throw new IOException("Columnar segment '" + file + "' has an invalid block count.");
+            }
+
+            mBlockOffsets = new long[mBlockCount];
+            mBlockRows = new int[mBlockCount];
+            mMinTimestamps = new long[mBlockCount];
+            mMaxTimestamps = new long[mBlockCount];
+            mMinValues = new float[TOTAL_COLUMNS][mBlockCount];
+            mMaxValues = new float[TOTAL_COLUMNS][mBlockCount];
+            mEncodings = new int[TOTAL_COLUMNS][mBlockCount];
+            mLengths = new int[TOTAL_COLUMNS][mBlockCount];
+
+            for (int block = 0; block < mBlockCount; block++) {
+
+                mBlockOffsets[block] = mFile.readLong();
+                mBlockRows[block] = mFile.readInt();
+                mMinTimestamps[block] = mFile.readLong();
+                mMaxTimestamps[block] = mFile.readLong();
+
+                for (int column = COLUMN_X; column < TOTAL_COLUMNS; column++) {
+                    mMinValues[column][block] = mFile.readFloat();
+                    mMaxValues[column][block] = mFile.readFloat();
+                }
+
+                for (int column = 0; column < TOTAL_COLUMNS; column++) {
+                    mEncodings[column][block] = mFile.readByte();
+                    mLengths[column][block] = mFile.readInt();
+                }
+            }
+        }
+        catch (IOException | IllegalArgumentException e) {
+            mFile.close();
+            throw (e instanceof IOException) ? (IOException) e : new IOException(e.getMessage());
+        }
+    }
+
+    public SKSensorModuleType getSensorModuleType() {
+        return mModuleType;
+    }
+
+    //region Block statistics
+
+    public int getBlockCount() {
+        return mBlockCount;
+    }
+
+    public int getRowCount(int block) {
+        return mBlockRows[block];
+    }
+
+    public long getMinTimestamp(int block) {
+        return mMinTimestamps[block];
+    }
+
+    public long getMaxTimestamp(int block) {
+        return mMaxTimestamps[block];
+    }
+
+    /**
+     * Returns the minimum finite value of the COLUMN_X, COLUMN_Y or COLUMN_Z column in the block,
+     * or positive infinity if the column has no finite values.
+     */
+    public float getMinValue(int block, int column) {
+        return mMinValues[column][block];
+    }
+
+    /**
+     * Returns the maximum finite value of the COLUMN_X, COLUMN_Y or COLUMN_Z column in the block,
+     * or negative infinity if the column has no finite values.
+     */
+    public float getMaxValue(int block, int column) {
+        return mMaxValues[column][block];
+    }
+
+    /** Returns true if the block may hold samples with a timestamp between from and to (inclusive). */
+    public boolean overlapsTimeRange(int block, long from, long to) {
+        return mMinTimestamps[block] <= to && mMaxTimestamps[block] >= from;
+    }
+
+    /** Returns true if the block may hold values of the column between min and max (inclusive). */
+    public boolean overlapsValueRange(int block, int column, float min, float max) {
+        return mMinValues[column][block] <= max && mMaxValues[column][block] >= min;
+    }
+
+    //endregion
+
+    //region Column reading
+
+    /** Reads the timestamps of the block into destination and returns the number of rows. */
+    public int readTimestamps(int block, long[] destination) throws IOException {
+
+        int rows = mBlockRows[block];
+        readColumnBytes(block, COLUMN_TIMESTAMP);
+
+        boolean deltaOfDelta = (mEncodings[COLUMN_TIMESTAMP][block] == ENCODING_DELTA_OF_DELTA);
+
+        long previous = 0;
+        long previousDelta = 0;
+
+        for (int i = 0; i < rows; i++) {
+
+            long delta = mBuffer.readSignedVarLong();
+
+            if (deltaOfDelta && i >= 2) {
+                delta += previousDelta;
+            }
+
+            previous += delta;
+            previousDelta = delta;
+            destination[i] = previous;
+        }
+
+        return rows;
+    }
+
+    /** Reads the COLUMN_X, COLUMN_Y or COLUMN_Z values of the block into destination and returns the number of rows. */
+    public int readColumn(int block, int column, float[] destination) throws IOException {
+
+        if (column == COLUMN_TIMESTAMP) {
+            throw new IllegalArgumentException("Use readTimestamps() for the timestamp column.");
+        }
+
+        int rows = mBlockRows[block];
+        readColumnBytes(block, column);
+
+        switch (mEncodings[column][block]) {
+
+            case ENCODING_CONSTANT:
+                float value = Float.intBitsToFloat(mBuffer.readRawInt());
+
+                for (int i = 0; i < rows; i++) {
+                    destination[i] = value;
+                }
+                break;
+
+            case ENCODING_RAW:
+                for (int i = 0; i < rows; i++) {
+                    destination[i] = Float.intBitsToFloat(mBuffer.readRawInt());
+                }
+                break;
+
+            case ENCODING_XOR:
+                int previous = 0;
+
+                for (int i = 0; i < rows; i++) {
+                    previous ^= (int) mBuffer.readVarLong();
+                    destination[i] = Float.intBitsToFloat(previous);
+                }
+                break;
+
+            default:
+                throw new IOException("Unknown column encoding " + mEncodings[column][block] + ".");
+        }
+
+        return rows;
+    }
+
+    private void readColumnBytes(int block, int column) throws IOException {
+
+        long offset = mBlockOffsets[block];
+
+        for (int previousColumn = 0; previousColumn < column; previousColumn++) {
+            offset += mLengths[previousColumn][block];
+        }
+
+        int length = mLengths[column][block];
+
+        mBuffer.prepareForRead(length);
+        mFile.seek(offset);
+        mFile.readFully(mBuffer.array(), 0, length);
+    }
+
+    //endregion
+
+    public void close() throws IOException {
+        mFile.close();
+    }
+
+}
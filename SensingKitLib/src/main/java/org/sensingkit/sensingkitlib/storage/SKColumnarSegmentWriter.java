@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.storage;
+
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes x, y, z samples into a column-oriented segment file.
+ *
+ * Samples are grouped in blocks. Within a block the timestamp, x, y and z columns are stored
+ * one after the other, each with the smallest of its candidate encodings. A footer holds the
+ * offset, row count, per-column min/max statistics and encodings of every block, so readers
+ * can skip blocks by their statistics and read only the columns they need. NaN and infinite
+ * values are stored, but are not part of the min/max statistics.
+ *
+ * File layout (big endian):
+ * header:  magic, version, module name, block size
+ * blocks:  timestamp column, x column, y column, z column
+ * footer:  block count, then per block: offset, rows, min/max of each column, encoding and length of each column
+ * trailer: footer offset, magic
+ */
+public class SKColumnarSegmentWriter {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKColumnarSegmentWriter";
+
+    public static final String SEGMENT_EXTENSION = ".skc";
+
+    public static final int COLUMN_TIMESTAMP = 0;
+    public static final int COLUMN_X = 1;
+    public static final int COLUMN_Y = 2;
+    public static final int COLUMN_Z = 3;
+
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    static final int MAGIC = 0x534B4331;  // "SKC1"
+    static final int VERSION = 1;
+    static final int TOTAL_COLUMNS = 4;
+
+    // Timestamp encodings
+    static final int ENCODING_DELTA = 0;
+    static final int ENCODING_DELTA_OF_DELTA = 1;
+
+    // Value encodings
+    static final int ENCODING_CONSTANT = 2;
+    static final int ENCODING_RAW = 3;
+    static final int ENCODING_XOR = 4;
+
+    private final DataOutputStream mOutput;
+    private final ByteArrayOutputStream mFooterBytes = new ByteArrayOutputStream();
+    private final DataOutputStream mFooter = new DataOutputStream(mFooterBytes);
+
+    private final long[] mTimestamps;
+    private final float[][] mValues;
+    private int mRows = 0;
+    private int mBlockCount = 0;
+
+    // Scratch buffers, reused for every column of every block
+    private final SKVarIntBuffer mCandidate = new SKVarIntBuffer();
+    private final SKVarIntBuffer mBest = new SKVarIntBuffer();
+
+    public SKColumnarSegmentWriter(File file, SKSensorModuleType moduleType, int blockSize) throws IOException {
+
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+
+        mTimestamps = new long[blockSize];
+        mValues = new float[TOTAL_COLUMNS - 1][blockSize];
+
+        mOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        mOutput.writeInt(MAGIC);
+        mOutput.writeByte(VERSION);
+        mOutput.writeUTF(moduleType.name());
+        mOutput.writeInt(blockSize);
+    }
+
+    public void append(long timestamp, float x, float y, float z) throws IOException {
+
+        mTimestamps[mRows] = timestamp;
+        mValues[0][mRows] = x;
+        mValues[1][mRows] = y;
+        mValues[2][mRows] = z;
+        mRows++;
+
+        if (mRows == mTimestamps.length) {
+            writeBlock();
+        }
+    }
+
+    public void close() throws IOException {
+
+        if (mRows > 0) {
+            writeBlock();
+        }
+
+        long footerOffset = mOutput.size();
+
+        mOutput.writeInt(mBlockCount);
+        mFooterBytes.writeTo(mOutput);
+        mOutput.writeLong(footerOffset);
+        mOutput.writeInt(MAGIC);
+        mOutput.close();
+    }
+
+    private void writeBlock() throws IOException {
+
+        mFooter.writeLong(mOutput.size());
+        mFooter.writeInt(mRows);
+
+        // Statistics
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+
+        for (int i = 0; i < mRows; i++) {
+            minTimestamp = Math.min(minTimestamp, mTimestamps[i]);
+            maxTimestamp = Math.max(maxTimestamp, mTimestamps[i]);
+        }
+
+        mFooter.writeLong(minTimestamp);
+        mFooter.writeLong(maxTimestamp);
+
+        for (float[] values : mValues) {
+
+            // Stays inverted (min > max) if the block has no finite values
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+
+            for (int i = 0; i < mRows; i++) {
+
+                float value = values[i];
+
+                // A single NaN would turn min and max into NaN
+                if (Float.isNaN(value) || Float.isInfinite(value)) {
+                    continue;
+                }
+
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+
+            mFooter.writeFloat(min);
+            mFooter.writeFloat(max);
+        }
+
+        // Columns
+        writeTimestampColumn();
+
+        for (float[] values : mValues) {
+            writeValueColumn(values);
+        }
+
+        mRows = 0;
+        mBlockCount++;
+    }
+
+    private void writeTimestampColumn() throws IOException {
+
+        int bestEncoding = ENCODING_DELTA;
+        encodeTimestamps(mBest, ENCODING_DELTA);
+
+        encodeTimestamps(mCandidate, ENCODING_DELTA_OF_DELTA);
+
+        if (mCandidate.length() < mBest.length()) {
+            bestEncoding = ENCODING_DELTA_OF_DELTA;
+            mBest.copyFrom(mCandidate);
+        }
+
+        writeColumn(bestEncoding);
+    }
+
+    private void writeValueColumn(float[] values) throws IOException {
+
+        boolean constant = true;
+
+        for (int i = 1; i < mRows && constant; i++) {
+            constant = (Float.floatToRawIntBits(values[i]) == Float.floatToRawIntBits(values[0]));
+        }
+
+        int bestEncoding;
+
+        if (constant) {
+            bestEncoding = ENCODING_CONSTANT;
+            mBest.reset();
+            mBest.writeRawInt(Float.floatToRawIntBits(values[0]));
+        }
+        else {
+            bestEncoding = ENCODING_RAW;
+            encodeValues(mBest, values, ENCODING_RAW);
+
+            encodeValues(mCandidate, values, ENCODING_XOR);
+
+            if (mCandidate.length() < mBest.length()) {
+                bestEncoding = ENCODING_XOR;
+                mBest.copyFrom(mCandidate);
+            }
+        }
+
+        writeColumn(bestEncoding);
+    }
+
+    private void writeColumn(int encoding) throws IOException {
+
+        mFooter.writeByte(encoding);
+        mFooter.writeInt(mBest.length());
+
+        mOutput.write(mBest.array(), 0, mBest.length());
+    }
+
+    private void encodeTimestamps(SKVarIntBuffer buffer, int encoding) {
+
+        buffer.reset();
+
+        long previous = 0;
+        long previousDelta = 0;
+
+        for (int i = 0; i < mRows; i++) {
+
+            long delta = mTimestamps[i] - previous;
+
+            // The first value and the first delta are always stored as deltas
+            if (encoding == ENCODING_DELTA || i < 2) {
+                buffer.writeSignedVarLong(delta);
+            }
+            else {
+                buffer.writeSignedVarLong(delta - previousDelta);
+            }
+
+            previous = mTimestamps[i];
+            previousDelta = delta;
+        }
+    }
+
+    private void encodeValues(SKVarIntBuffer buffer, float[] values, int encoding) {
+
+        buffer.reset();
+
+        int previous = 0;
+
+        for (int i = 0; i < mRows; i++) {
+
+            int bits = Float.floatToRawIntBits(values[i]);
+
+            if (encoding == ENCODING_RAW) {
+                buffer.writeRawInt(bits);
+            }
+            else {
+                // Close values share sign, exponent and high mantissa bits, so their XOR is small
+                buffer.writeVarLong((bits ^ previous) & 0xFFFFFFFFL);
+            }
+
+            previous = bits;
+        }
+    }
+
+}
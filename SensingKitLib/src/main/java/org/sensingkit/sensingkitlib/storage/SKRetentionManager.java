@@ -0,0 +1,713 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.storage;
+
+import android.util.Log;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the segments recorded by an SKSegmentRecorder within per-module and global byte
+ * quotas and within a maximum age.
+ *
+ * Segment sizes are tracked in an in-memory catalogue that is built with a single directory
+ * scan when the manager starts and is then updated from the segment-closed events, so quota
+ * checks never scan the directories. Eviction removes the oldest segments first, or (with
+ * DOWNSAMPLE_OLDEST) first downsamples the oldest segments and only removes segments that have
+ * already been downsampled. Only the CSV segments of the continuous x, y, z sensor modules are
+ * downsampled, by averaging consecutive samples; segments of event sensor modules (e.g.
+ * Battery, Location or the tagged rows of Audio Level) are always evicted whole, as thinning
+ * them out would leave events that never happened. All work runs incrementally in a
+ * background thread.
+ * Set the SKSegmentCompactor of the segments (see setSegmentCompactor) to keep the catalogue
+ * up to date when segments are compacted. Segments that are waiting to be compacted, or being
+ * compacted, are then never downsampled or evicted, and a compacted segment whose original
+ * has been evicted in the meantime is deleted.
+ */
+public class SKRetentionManager implements SKSegmentRecorder.OnSegmentClosedListener, SKSegmentCompactor.OnSegmentCompactedListener {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKRetentionManager";
+
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private static final int DEFAULT_DOWNSAMPLE_FACTOR = 4;
+    private static final int DEFAULT_MAX_SEGMENTS_PER_PASS = 16;
+    private static final long DEFAULT_CHECK_INTERVAL = 60 * 60 * 1000;
+
+    public enum EvictionPolicy {
+        EVICT_OLDEST,
+        DOWNSAMPLE_OLDEST
+    }
+
+    private static class Segment {
+
+        File file;
+        final SKSensorModuleType moduleType;
+        final long startTimestamp;
+        long size;
+        boolean downsampled;
+
+        Segment(File file, SKSensorModuleType moduleType, long startTimestamp, long size) {
+            this.file = file;
+            this.moduleType = moduleType;
+            this.startTimestamp = startTimestamp;
+            this.size = size;
+        }
+    }
+
+    private final File mDirectory;
+
+    // Catalogue, oldest segment first. Only modified from the background thread.
+    private final ArrayDeque<Segment>[] mSegments;
+    private final long[] mSensorModuleBytes;
+    private volatile long mTotalBytes;
+
+    private final long[] mSensorModuleQuotas;
+    private volatile long mGlobalQuota = UNLIMITED;
+    private volatile long mMaxAge = UNLIMITED;
+    private volatile EvictionPolicy mEvictionPolicy = EvictionPolicy.EVICT_OLDEST;
+    private volatile int mDownsampleFactor = DEFAULT_DOWNSAMPLE_FACTOR;
+    private volatile int mMaxSegmentsPerPass = DEFAULT_MAX_SEGMENTS_PER_PASS;
+    private volatile long mCheckInterval = DEFAULT_CHECK_INTERVAL;
+
+    private volatile SKSegmentCompactor mSegmentCompactor;
+
+    private ScheduledExecutorService mExecutor;
+    private boolean mEnforcementScheduled;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SKRetentionManager(File directory) throws SKException {
+
+        if (directory == null) {
+            throw new SKException(TAG, "Directory cannot be null.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        int totalSensorModules = SKSensorModuleType.values().length;
+
+        this.mDirectory = directory;
+        this.mSegments = new ArrayDeque[totalSensorModules];
+        this.mSensorModuleBytes = new long[totalSensorModules];
+        this.mSensorModuleQuotas = new long[totalSensorModules];
+
+        for (int i = 0; i < totalSensorModules; i++) {
+            mSegments[i] = new ArrayDeque<>();
+            mSensorModuleQuotas[i] = UNLIMITED;
+        }
+    }
+
+    public SKRetentionManager(SKSegmentRecorder recorder) throws SKException {
+        this(recorder.getDirectory());
+
+        recorder.addOnSegmentClosedListener(this);
+    }
+
+    //region Configuration
+
+    public void setGlobalQuota(long bytes) throws SKException {
+        mGlobalQuota = checkLimit(bytes);
+        scheduleEnforcement();
+    }
+
+    public void setSensorModuleQuota(SKSensorModuleType moduleType, long bytes) throws SKException {
+
+        long quota = checkLimit(bytes);
+
+        synchronized (mSensorModuleQuotas) {
+            mSensorModuleQuotas[moduleType.ordinal()] = quota;
+        }
+
+        scheduleEnforcement();
+    }
+
+    /** Sets the maximum age of a segment in milliseconds, measured from its start timestamp. */
+    public void setMaxAge(long maxAge) throws SKException {
+        mMaxAge = checkLimit(maxAge);
+        scheduleEnforcement();
+    }
+
+    public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+        mEvictionPolicy = evictionPolicy;
+    }
+
+    /** Sets how many consecutive samples are averaged into one when a segment is downsampled. */
+    public void setDownsampleFactor(int downsampleFactor) throws SKException {
+
+        if (downsampleFactor < 2) {
+            throw new SKException(TAG, "Downsample factor must be at least 2.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mDownsampleFactor = downsampleFactor;
+    }
+
+    /** Limits the segments that are evicted or downsampled in one pass, so other background work is not delayed. */
+    public void setMaxSegmentsPerPass(int maxSegmentsPerPass) throws SKException {
+
+        if (maxSegmentsPerPass < 1) {
+            throw new SKException(TAG, "At least one segment must be processed per pass.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mMaxSegmentsPerPass = maxSegmentsPerPass;
+    }
+
+    /** Coordinates with the compactor of the segments, and keeps the catalogue up to date when segments are compacted. */
+    public void setSegmentCompactor(SKSegmentCompactor compactor) {
+
+        SKSegmentCompactor previousCompactor = mSegmentCompactor;
+
+        if (previousCompactor != null) {
+            previousCompactor.removeOnSegmentCompactedListener(this);
+        }
+
+        mSegmentCompactor = compactor;
+
+        if (compactor != null) {
+            compactor.addOnSegmentCompactedListener(this);
+        }
+    }
+
+    /** Sets how often the segments are checked for their age. Takes effect the next time the manager starts. */
+    public void setCheckInterval(long checkInterval) throws SKException {
+        mCheckInterval = checkLimit(checkInterval);
+    }
+
+    private static long checkLimit(long limit) throws SKException {
+
+        if (limit <= 0) {
+            throw new SKException(TAG, "Limit must be positive.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        return limit;
+    }
+
+    //endregion
+
+    //region Lifecycle
+
+    public synchronized void start() throws SKException {
+
+        if (mExecutor != null) {
+            throw new SKException(TAG, "RetentionManager is already started.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                buildCatalogue();
+            }
+        });
+
+        mExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                enforce();
+            }
+        }, 0, mCheckInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+            mExecutor = null;
+        }
+
+        mEnforcementScheduled = false;
+    }
+
+    public boolean isStarted() {
+        return mExecutor != null;
+    }
+
+    public long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    public long getSensorModuleBytes(SKSensorModuleType moduleType) {
+
+        synchronized (mSensorModuleBytes) {
+            return mSensorModuleBytes[moduleType.ordinal()];
+        }
+    }
+
+    //endregion
+
+    @Override
+    public void onSegmentClosed(final SKSensorModuleType moduleType, final File segment) {
+
+        final long size = segment.length();
+
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                addSegment(moduleType, segment, size);
+                enforce();
+            }
+        });
+    }
+
+    @Override
+    public void onSegmentCompacted(final SKSensorModuleType moduleType, final File segment, final File compactedSegment) {
+
+        final long size = compactedSegment.length();
+
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                replaceSegment(moduleType, segment, compactedSegment, size);
+                enforce();
+            }
+        });
+    }
+
+    private synchronized void execute(Runnable runnable) {
+
+        if (mExecutor != null) {
+            mExecutor.execute(runnable);
+        }
+    }
+
+    private synchronized void scheduleEnforcement() {
+
+        if (mExecutor == null || mEnforcementScheduled) {
+            return;
+        }
+
+        mEnforcementScheduled = true;
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                enforce();
+            }
+        });
+    }
+
+    //region Catalogue (background thread only)
+
+    private void buildCatalogue() {
+
+        // Start from an empty catalogue, the manager may have been restarted
+        for (SKSensorModuleType moduleType : SKSensorModuleType.values()) {
+            mSegments[moduleType.ordinal()].clear();
+        }
+
+        synchronized (mSensorModuleBytes) {
+            Arrays.fill(mSensorModuleBytes, 0);
+            mTotalBytes = 0;
+        }
+
+        for (SKSensorModuleType moduleType : SKSensorModuleType.values()) {
+
+            File[] files = SKSegmentRecorder.getSensorModuleDirectory(mDirectory, moduleType).listFiles();
+
+            if (files == null) {
+                continue;
+            }
+
+            Arrays.sort(files);
+
+            for (File file : files) {
+                if (file.isFile() && SKSegmentRecorder.getSegmentStartTimestamp(file) >= 0) {
+                    addSegment(moduleType, file, file.length());
+                }
+            }
+        }
+    }
+
+    private void addSegment(SKSensorModuleType moduleType, File file, long size) {
+
+        long startTimestamp = SKSegmentRecorder.getSegmentStartTimestamp(file);
+
+        if (startTimestamp < 0) {
+            startTimestamp = file.lastModified();
+        }
+
+        ArrayDeque<Segment> segments = mSegments[moduleType.ordinal()];
+        ArrayDeque<Segment> newerSegments = new ArrayDeque<>();
+
+        // Segments are normally closed in order, only a late replacement has newer segments after it
+        while (!segments.isEmpty() && segments.peekLast().startTimestamp > startTimestamp) {
+            newerSegments.push(segments.pollLast());
+        }
+
+        segments.addLast(new Segment(file, moduleType, startTimestamp, size));
+        segments.addAll(newerSegments);
+        updateSize(moduleType, size);
+    }
+
+    private void replaceSegment(SKSensorModuleType moduleType, File file, File replacement, long size) {
+
+        Segment original = findSegment(moduleType, file);
+
+        // Already found by the directory scan of a restart
+        if (findSegment(moduleType, replacement) != null) {
+
+            if (original != null) {
+                removeSegment(original);
+            }
+
+            return;
+        }
+
+        // The original segment has been evicted while it was compacted
+        if (original == null) {
+
+            if (!replacement.delete() && replacement.exists()) {
+                Log.w(TAG, "Segment '" + replacement + "' could not be deleted.");
+            }
+
+            return;
+        }
+
+        updateSize(moduleType, size - original.size);
+        original.file = replacement;
+        original.size = size;
+    }
+
+    private Segment findSegment(SKSensorModuleType moduleType, File file) {
+
+        for (Segment segment : mSegments[moduleType.ordinal()]) {
+            if (segment.file.equals(file)) {
+                return segment;
+            }
+        }
+
+        return null;
+    }
+
+    private void removeSegment(Segment segment) {
+
+        mSegments[segment.moduleType.ordinal()].remove(segment);
+        updateSize(segment.moduleType, -segment.size);
+    }
+
+    private void updateSize(SKSensorModuleType moduleType, long delta) {
+
+        synchronized (mSensorModuleBytes) {
+            mSensorModuleBytes[moduleType.ordinal()] += delta;
+            mTotalBytes += delta;
+        }
+    }
+
+    //endregion
+
+    //region Enforcement (background thread only)
+
+    private void enforce() {
+
+        synchronized (this) {
+            mEnforcementScheduled = false;
+        }
+
+        int budget = mMaxSegmentsPerPass;
+
+        // Expire old segments
+        long maxAge = mMaxAge;
+
+        if (maxAge != UNLIMITED) {
+
+            long oldestAllowed = System.currentTimeMillis() - maxAge;
+
+            for (ArrayDeque<Segment> segments : mSegments) {
+
+                // Stop at a segment that is being compacted, it is checked again when it has been
+                while (budget > 0 && !segments.isEmpty() && segments.peekFirst().startTimestamp < oldestAllowed &&
+                        evict(segments.peekFirst())) {
+                    budget--;
+                }
+            }
+        }
+
+        // Enforce the quota of each sensor module
+        for (SKSensorModuleType moduleType : SKSensorModuleType.values()) {
+
+            while (budget > 0 && getSensorModuleBytes(moduleType) > getSensorModuleQuota(moduleType) && reclaim(moduleType)) {
+                budget--;
+            }
+        }
+
+        // Enforce the global quota, starting from the module that holds the oldest segment
+        while (budget > 0 && mTotalBytes > mGlobalQuota) {
+
+            SKSensorModuleType moduleType = getModuleWithOldestSegment();
+
+            if (moduleType == null || !reclaim(moduleType)) {
+                break;
+            }
+
+            budget--;
+        }
+
+        // Continue in a new pass, so that newly closed segments are not delayed
+        if (budget == 0 && isOverLimits()) {
+            scheduleEnforcement();
+        }
+    }
+
+    private long getSensorModuleQuota(SKSensorModuleType moduleType) {
+
+        synchronized (mSensorModuleQuotas) {
+            return mSensorModuleQuotas[moduleType.ordinal()];
+        }
+    }
+
+    private boolean isOverLimits() {
+
+        if (mTotalBytes > mGlobalQuota) {
+            return true;
+        }
+
+        for (SKSensorModuleType moduleType : SKSensorModuleType.values()) {
+            if (getSensorModuleBytes(moduleType) > getSensorModuleQuota(moduleType)) {
+                return true;
+            }
+        }
+
+        // Segments older than maxAge are picked up by the next periodic check
+        return false;
+    }
+
+    private SKSensorModuleType getModuleWithOldestSegment() {
+
+        Segment oldest = null;
+
+        for (ArrayDeque<Segment> segments : mSegments) {
+
+            Segment first = segments.peekFirst();
+
+            if (first != null && (oldest == null || first.startTimestamp < oldest.startTimestamp)) {
+                oldest = first;
+            }
+        }
+
+        return (oldest != null) ? oldest.moduleType : null;
+    }
+
+    /**
+     * Frees space of a sensor module by downsampling or evicting its oldest segment that is not
+     * being compacted. Returns false if nothing is left.
+     */
+    private boolean reclaim(SKSensorModuleType moduleType) {
+
+        ArrayDeque<Segment> segments = mSegments[moduleType.ordinal()];
+
+        if (mEvictionPolicy == EvictionPolicy.DOWNSAMPLE_OLDEST && canDownsample(moduleType)) {
+
+            // Only CSV segments can be downsampled, compacted segments are evicted
+            for (Segment segment : segments) {
+                if (!segment.downsampled && segment.file.getName().endsWith(SKSegmentRecorder.SEGMENT_EXTENSION) &&
+                        downsample(segment)) {
+                    return true;
+                }
+            }
+        }
+
+        for (Segment segment : segments) {
+            if (evict(segment)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /** Returns false if the segment is being compacted and has not been evicted. */
+    private boolean evict(Segment segment) {
+
+        if (!lockSegment(segment)) {
+            return false;
+        }
+
+        try {
+            if (!segment.file.delete() && segment.file.exists()) {
+                Log.w(TAG, "Segment '" + segment.file + "' could not be deleted.");
+            }
+
+            removeSegment(segment);
+        }
+        finally {
+            unlockSegment(segment);
+        }
+
+        return true;
+    }
+
+    /** Keeps the compactor away from a segment while it is modified or deleted. Returns false if it is being compacted. */
+    private boolean lockSegment(Segment segment) {
+
+        SKSegmentCompactor compactor = mSegmentCompactor;
+        return compactor == null || compactor.lockSegment(segment.file);
+    }
+
+    private void unlockSegment(Segment segment) {
+
+        SKSegmentCompactor compactor = mSegmentCompactor;
+
+        if (compactor != null) {
+            compactor.unlockSegment(segment.file);
+        }
+    }
+
+    private static boolean canDownsample(SKSensorModuleType moduleType) {
+
+        switch (moduleType) {
+
+            // Continuous timestamp,x,y,z samples
+            case ACCELEROMETER:
+            case GRAVITY:
+            case LINEAR_ACCELERATION:
+            case GYROSCOPE:
+            case MAGNETOMETER:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    /** Returns false if the segment is being compacted and has not been downsampled. */
+    private boolean downsample(Segment segment) {
+
+        if (!lockSegment(segment)) {
+            return false;
+        }
+
+        int factor = mDownsampleFactor;
+        File downsampled = new File(segment.file.getPath() + ".tmp");
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(segment.file), "UTF-8"));
+
+            try {
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(downsampled), "UTF-8"));
+
+                try {
+                    String line;
+                    int count = 0;
+                    long timestamp = 0;
+                    double x = 0;
+                    double y = 0;
+                    double z = 0;
+
+                    // Average every factor samples, and the remaining ones at the end
+                    while (true) {
+
+                        line = reader.readLine();
+
+                        if (line != null && line.length() == 0) {
+                            continue;
+                        }
+
+                        if (line == null || count == factor) {
+
+                            if (count > 0) {
+                                writer.write(String.format(Locale.US, "%d,%f,%f,%f\n",
+                                        timestamp / count, x / count, y / count, z / count));
+                            }
+
+                            count = 0;
+                            timestamp = 0;
+                            x = 0;
+                            y = 0;
+                            z = 0;
+                        }
+
+                        if (line == null) {
+                            break;
+                        }
+
+                        int first = line.indexOf(',');
+                        int second = line.indexOf(',', first + 1);
+                        int third = line.indexOf(',', second + 1);
+
+                        if (first < 0 || second < 0 || third < 0) {
+                            throw new IOException("Malformed line: " + line);
+                        }
+
+                        try {
+                            timestamp += Long.parseLong(line.substring(0, first));
+                            x += Float.parseFloat(line.substring(first + 1, second));
+                            y += Float.parseFloat(line.substring(second + 1, third));
+                            z += Float.parseFloat(line.substring(third + 1));
+                        }
+                        catch (NumberFormatException e) {
+                            throw new IOException("Malformed line: " + line);
+                        }
+
+                        count++;
+                    }
+                }
+                finally {
+                    writer.close();
+                }
+            }
+            finally {
+                reader.close();
+            }
+
+            if (!downsampled.renameTo(segment.file)) {
+                throw new IOException("Downsampled segment could not be renamed.");
+            }
+
+            long size = segment.file.length();
+            updateSize(segment.moduleType, size - segment.size);
+
+            segment.size = size;
+            segment.downsampled = true;
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Segment '" + segment.file + "' could not be downsampled, evicting it instead.", e);
+
+            //noinspection ResultOfMethodCallIgnored
+            downsampled.delete();
+            evict(segment);
+        }
+        finally {
+            unlockSegment(segment);
+        }
+
+        return true;
+    }
+
+    //endregion
+
+}
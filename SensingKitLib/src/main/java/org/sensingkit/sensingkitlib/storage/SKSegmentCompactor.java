@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.storage;
+
+import android.util.Log;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Converts closed CSV segments of the x, y, z sensor modules into columnar segment files
+ * (see SKColumnarSegmentWriter) in a background thread. The CSV segment is deleted once
+ * its columnar segment has been written.
+ *
+ * Segments that are waiting to be compacted, or being compacted, cannot be locked by other
+ * background work on the same files (see SKRetentionManager), and locked segments are not
+ * compacted.
+ */
+public class SKSegmentCompactor implements SKSegmentRecorder.OnSegmentClosedListener {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKSegmentCompactor";
+
+    public interface OnSegmentCompactedListener {
+
+        /** Called from the background thread after segment has been replaced by compactedSegment. */
+        void onSegmentCompacted(SKSensorModuleType moduleType, File segment, File compactedSegment);
+    }
+
+    private final ArrayList<OnSegmentCompactedListener> mOnSegmentCompactedListeners = new ArrayList<>();
+
+    // Segments waiting to be compacted or being compacted, and segments locked by others
+    private final HashSet<File> mPendingSegments = new HashSet<>();
+    private final HashSet<File> mLockedSegments = new HashSet<>();
+
+    private int mBlockSize = SKColumnarSegmentWriter.DEFAULT_BLOCK_SIZE;
+    private ExecutorService mExecutor;
+
+    public SKSegmentCompactor() {
+    }
+
+    public SKSegmentCompactor(SKSegmentRecorder recorder) {
+        recorder.addOnSegmentClosedListener(this);
+    }
+
+    public static boolean isSensorModuleSupported(SKSensorModuleType moduleType) {
+
+        switch (moduleType) {
+
+            case ACCELEROMETER:
+            case GRAVITY:
+            case LINEAR_ACCELERATION:
+            case GYROSCOPE:
+            case MAGNETOMETER:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    //region Configuration
+
+    public synchronized void setBlockSize(int blockSize) throws SKException {
+
+        if (blockSize <= 0) {
+            throw new SKException(TAG, "Block size must be positive.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mBlockSize = blockSize;
+    }
+
+    public synchronized void addOnSegmentCompactedListener(OnSegmentCompactedListener listener) {
+
+        if (!mOnSegmentCompactedListeners.contains(listener)) {
+            mOnSegmentCompactedListeners.add(listener);
+        }
+    }
+
+    public synchronized void removeOnSegmentCompactedListener(OnSegmentCompactedListener listener) {
+        mOnSegmentCompactedListeners.remove(listener);
+    }
+
+    //endregion
+
+    //region Lifecycle
+
+    public synchronized void start() throws SKException {
+
+        if (mExecutor != null) {
+            throw new SKException(TAG, "SegmentCompactor is already started.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    /** Stops the compactor. Segments that are waiting to be compacted stay in CSV. */
+    public synchronized void stop() {
+
+        if (mExecutor == null) {
+            return;
+        }
+
+        // The segment being compacted stays pending until its compaction ends
+        for (Runnable runnable : mExecutor.shutdownNow()) {
+            mPendingSegments.remove(((CompactionTask) runnable).segment);
+        }
+
+        mExecutor = null;
+    }
+
+    //endregion
+
+    //region Locking
+
+    /**
+     * Locks a segment, so that it is not compacted while it is modified or deleted by the
+     * caller. Returns false if the segment is waiting to be compacted or being compacted.
+     */
+    public synchronized boolean lockSegment(File segment) {
+
+        if (mPendingSegments.contains(segment)) {
+            return false;
+        }
+
+        mLockedSegments.add(segment);
+        return true;
+    }
+
+    public synchronized void unlockSegment(File segment) {
+        mLockedSegments.remove(segment);
+    }
+
+    //endregion
+
+    @Override
+    public synchronized void onSegmentClosed(SKSensorModuleType moduleType, File segment) {
+
+        if (mExecutor == null || !isSensorModuleSupported(moduleType) || mLockedSegments.contains(segment)) {
+            return;
+        }
+
+        mPendingSegments.add(segment);
+        mExecutor.execute(new CompactionTask(moduleType, segment));
+    }
+
+    private class CompactionTask implements Runnable {
+
+        final SKSensorModuleType moduleType;
+        final File segment;
+
+        CompactionTask(SKSensorModuleType moduleType, File segment) {
+            this.moduleType = moduleType;
+            this.segment = segment;
+        }
+
+        @Override
+        public void run() {
+
+            try {
+                compactInBackground(moduleType, segment);
+            }
+            finally {
+                synchronized (SKSegmentCompactor.this) {
+                    mPendingSegments.remove(segment);
+                }
+            }
+        }
+    }
+
+    private void compactInBackground(SKSensorModuleType moduleType, File segment) {
+
+        int blockSize;
+        OnSegmentCompactedListener[] listeners;
+
+        synchronized (this) {
+            blockSize = mBlockSize;
+            listeners = mOnSegmentCompactedListeners.toArray(new OnSegmentCompactedListener[mOnSegmentCompactedListeners.size()]);
+        }
+
+        File compactedSegment;
+
+        try {
+            compactedSegment = compact(moduleType, segment, blockSize);
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Segment '" + segment + "' could not be compacted.", e);
+            return;
+        }
+
+        for (OnSegmentCompactedListener listener : listeners) {
+            listener.onSegmentCompacted(moduleType, segment, compactedSegment);
+        }
+    }
+
+    /**
+     * Converts a CSV segment into a columnar segment next to it and deletes the CSV segment.
+     * Runs in the calling thread.
+     */
+    public static File compact(SKSensorModuleType moduleType, File segment, int blockSize) throws IOException {
+
+        if (!isSensorModuleSupported(moduleType)) {
+            throw new IOException("SensorModule '" + moduleType + "' cannot be compacted.");
+        }
+
+        String name = segment.getName();
+        int extension = name.lastIndexOf('.');
+        String baseName = (extension > 0) ? name.substring(0, extension) : name;
+
+        File compactedSegment = new File(segment.getParentFile(), baseName + SKColumnarSegmentWriter.SEGMENT_EXTENSION);
+        File temporarySegment = new File(segment.getParentFile(), baseName + SKColumnarSegmentWriter.SEGMENT_EXTENSION + ".tmp");
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(segment), "UTF-8"));
+
+        try {
+            SKColumnarSegmentWriter writer = new SKColumnarSegmentWriter(temporarySegment, moduleType, blockSize);
+
+            try {
+                String line;
+
+                // Lines are timestamp,x,y,z
+                while ((line = reader.readLine()) != null) {
+
+                    if (line.length() == 0) {
+                        continue;
+                    }
+
+                    int first = line.indexOf(',');
+                    int second = line.indexOf(',', first + 1);
+                    int third = line.indexOf(',', second + 1);
+
+                    if (first < 0 || second < 0 || third < 0) {
+                        throw new IOException("Malformed line: " + line);
+                    }
+
+                    writer.append(Long.parseLong(line.substring(0, first)),
+                            Float.parseFloat(line.substring(first + 1, second)),
+                            Float.parseFloat(line.substring(second + 1, third)),
+                            Float.parseFloat(line.substring(third + 1)));
+                }
+            }
+            finally {
+                writer.close();
+            }
+        }
+        catch (IOException | NumberFormatException e) {
+
+            //noinspection ResultOfMethodCallIgnored
+            temporarySegment.delete();
+            throw (e instanceof IOException) ? (IOException) e : new IOException(e.getMessage());
+        }
+        finally {
+            reader.close();
+        }
+
+        if (!temporarySegment.renameTo(compactedSegment)) {
+
+            //noinspection ResultOfMethodCallIgnored
+            temporarySegment.delete();
+            throw new IOException("Columnar segment '" + compactedSegment + "' could not be created.");
+        }
+
+        if (!segment.delete()) {
+            Log.w(TAG, "Segment '" + segment + "' could not be deleted after compaction.");
+        }
+
+        return compactedSegment;
+    }
+
+}
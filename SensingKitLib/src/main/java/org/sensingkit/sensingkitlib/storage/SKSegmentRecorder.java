@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.storage;
+
+import android.util.Log;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.SKSensorDataListener;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.data.SKAbstractData;
+import org.sensingkit.sensingkitlib.data.SKSensorData;
+import org.sensingkit.sensingkitlib.replay.SKCSVSessionReader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Records the data of subscribed sensor modules into rotating CSV segment files.
+ *
+ * Segments are written to '<directory>/<module>/<start timestamp>.csv', the layout that
+ * SKCSVSessionReader reads, and are closed when they exceed a size or duration limit.
+ * A segment is never reopened: if a segment with the same start timestamp already exists
+ * (e.g. after two rotations within a millisecond), the name is moved to the next free
+ * millisecond.
+ * Registered OnSegmentClosedListeners are notified about every closed segment.
+ */
+public class SKSegmentRecorder implements SKSensorDataListener {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKSegmentRecorder";
+
+    public static final String SEGMENT_EXTENSION = ".csv";
+
+    private static final long DEFAULT_MAX_SEGMENT_BYTES = 4 * 1024 * 1024;
+    private static final long DEFAULT_MAX_SEGMENT_DURATION = 15 * 60 * 1000;
+
+    public interface OnSegmentClosedListener {
+
+        /** Called from the recording thread, so implementations should return quickly. */
+        void onSegmentClosed(SKSensorModuleType moduleType, File segment);
+    }
+
+    private static class Segment {
+
+        final File file;
+        final Writer writer;
+        final long startTimestamp;
+        long bytesWritten;
+
+        Segment(File file, Writer writer, long startTimestamp) {
+            this.file = file;
+            this.writer = writer;
+            this.startTimestamp = startTimestamp;
+        }
+    }
+
+    private final File mDirectory;
+    private final Segment[] mOpenSegments;
+    private final ArrayList<OnSegmentClosedListener> mOnSegmentClosedListeners = new ArrayList<>();
+
+    private long mMaxSegmentBytes = DEFAULT_MAX_SEGMENT_BYTES;
+    private long mMaxSegmentDuration = DEFAULT_MAX_SEGMENT_DURATION;
+
+    public SKSegmentRecorder(File directory) throws SKException {
+
+        if (directory == null || (!directory.isDirectory() && !directory.mkdirs())) {
+            throw new SKException(TAG, "Recording directory could not be created.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        this.mDirectory = directory;
+        this.mOpenSegments = new Segment[SKSensorModuleType.values().length];
+    }
+
+    public static File getSensorModuleDirectory(File directory, SKSensorModuleType moduleType) {
+        return new File(directory, SKCSVSessionReader.getSessionName(moduleType));
+    }
+
+    /** Parses the start timestamp from a segment file name, or returns -1 if it is not a segment. */
+    public static long getSegmentStartTimestamp(File segment) {
+
+        String name = segment.getName();
+        int extension = name.lastIndexOf('.');
+
+        if (extension <= 0) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(name.substring(0, extension));
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    //region Configuration
+
+    public synchronized void setMaxSegmentBytes(long maxSegmentBytes) throws SKException {
+
+        if (maxSegmentBytes <= 0) {
+            throw new SKException(TAG, "Maximum segment size must be positive.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        this.mMaxSegmentBytes = maxSegmentBytes;
+    }
+
+    public synchronized void setMaxSegmentDuration(long maxSegmentDuration) throws SKException {
+
+        if (maxSegmentDuration <= 0) {
+            throw new SKException(TAG, "Maximum segment duration must be positive.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        this.mMaxSegmentDuration = maxSegmentDuration;
+    }
+
+    public synchronized void addOnSegmentClosedListener(OnSegmentClosedListener listener) {
+
+        if (!mOnSegmentClosedListeners.contains(listener)) {
+            mOnSegmentClosedListeners.add(listener);
+        }
+    }
+
+    public synchronized void removeOnSegmentClosedListener(OnSegmentClosedListener listener) {
+        mOnSegmentClosedListeners.remove(listener);
+    }
+
+    //endregion
+
+    @Override
+    public synchronized void onDataReceived(final SKSensorModuleType moduleType, final SKSensorData sensorData) {
+
+        long timestamp = ((SKAbstractData) sensorData).getTimestamp();
+        int sensorIndex = moduleType.ordinal();
+
+        try {
+            Segment segment = mOpenSegments[sensorIndex];
+
+            // Rotate when the segment has become too old
+            if (segment != null && timestamp - segment.startTimestamp >= mMaxSegmentDuration) {
+                closeSegment(moduleType);
+                segment = null;
+            }
+
+            if (segment == null) {
+                segment = openSegment(moduleType, timestamp);
+                mOpenSegments[sensorIndex] = segment;
+            }
+
+            String line = sensorData.getDataInCSV();
+            segment.writer.write(line);
+            segment.writer.write('\n');
+            segment.bytesWritten += line.length() + 1;
+
+            // Rotate when the segment has become too large
+            if (segment.bytesWritten >= mMaxSegmentBytes) {
+                closeSegment(moduleType);
+            }
+        }
+        catch (IOException e) {
+            Log.e(TAG, "Data of sensor '" + moduleType + "' could not be recorded.", e);
+            discardSegment(moduleType);
+        }
+    }
+
+    /** Closes all open segments. Recording continues with new segments if more data are received. */
+    public synchronized void close() {
+
+        for (SKSensorModuleType moduleType : SKSensorModuleType.values()) {
+
+            if (mOpenSegments[moduleType.ordinal()] != null) {
+
+                try {
+                    closeSegment(moduleType);
+                }
+                catch (IOException e) {
+                    Log.e(TAG, "Segment of sensor '" + moduleType + "' could not be closed.", e);
+                    discardSegment(moduleType);
+                }
+            }
+        }
+    }
+
+    private Segment openSegment(SKSensorModuleType moduleType, long timestamp) throws IOException {
+
+        File directory = getSensorModuleDirectory(mDirectory, moduleType);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Directory '" + directory + "' could not be created.");
+        }
+
+        File file = createSegmentFile(directory, timestamp);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+
+        return new Segment(file, writer, timestamp);
+    }
+
+    private static File createSegmentFile(File directory, long timestamp) throws IOException {
+
+        for (long nameTimestamp = timestamp; ; nameTimestamp++) {
+
+            // Zero padded, so that segment names sort in recording order
+            String baseName = String.format(Locale.US, "%013d", nameTimestamp);
+            File file = new File(directory, baseName + SEGMENT_EXTENSION);
+
+            // Skip names that are taken, also by a segment that has been compacted since
+            if (!new File(directory, baseName + SKColumnarSegmentWriter.SEGMENT_EXTENSION).exists() && file.createNewFile()) {
+                return file;
+            }
+        }
+    }
+
+    private void closeSegment(SKSensorModuleType moduleType) throws IOException {
+
+        Segment segment = mOpenSegments[moduleType.ordinal()];
+        mOpenSegments[moduleType.ordinal()] = null;
+
+        segment.writer.close();
+
+        for (OnSegmentClosedListener listener : mOnSegmentClosedListeners) {
+            listener.onSegmentClosed(moduleType, segment.file);
+        }
+    }
+
+    private void discardSegment(SKSensorModuleType moduleType) {
+
+        Segment segment = mOpenSegments[moduleType.ordinal()];
+        mOpenSegments[moduleType.ordinal()] = null;
+
+        if (segment != null) {
+            try {
+                segment.writer.close();
+            }
+            catch (IOException e) {
+                // Ignore, the segment is discarded anyway
+            }
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.storage;
+
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with variable-length integer encoding, reused across blocks.
+ */
+class SKVarIntBuffer {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKVarIntBuffer";
+
+    private byte[] mBuffer = new byte[4096];
+    private int mLength = 0;
+    private int mPosition = 0;
+
+    void reset() {
+        mLength = 0;
+        mPosition = 0;
+    }
+
+    int length() {
+        return mLength;
+    }
+
+    byte[] array() {
+        return mBuffer;
+    }
+
+    /** Prepares the buffer to be filled externally with length bytes, e.g. with readFully. */
+    void prepareForRead(int length) {
+        ensureCapacity(length);
+        mLength = length;
+        mPosition = 0;
+    }
+
+    void copyFrom(SKVarIntBuffer other) {
+        ensureCapacity(other.mLength);
+        System.arraycopy(other.mBuffer, 0, mBuffer, 0, other.mLength);
+        mLength = other.mLength;
+        mPosition = 0;
+    }
+
+    //region Writing
+
+    void writeVarLong(long value) {
+
+        ensureCapacity(mLength + 10);
+
+        while ((value & ~0x7FL) != 0) {
+            mBuffer[mLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        mBuffer[mLength++] = (byte) value;
+    }
+
+    void writeSignedVarLong(long value) {
+
+        // ZigZag, so that small negative values are also short
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeRawInt(int value) {
+
+        ensureCapacity(mLength + 4);
+
+        mBuffer[mLength++] = (byte) (value >>> 24);
+        mBuffer[mLength++] = (byte) (value >>> 16);
+        mBuffer[mLength++] = (byte) (value >>> 8);
+        mBuffer[mLength++] = (byte) value;
+    }
+
+    //endregion
+
+    //region Reading
+
+    long readVarLong() {
+
+        long value = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = mBuffer[mPosition++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+
+        return value;
+    }
+
+    long readSignedVarLong() {
+
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    int readRawInt() {
+
+        int value = ((mBuffer[mPosition] & 0xFF) << 24) |
+                    ((mBuffer[mPosition + 1] & 0xFF) << 16) |
+                    ((mBuffer[mPosition + 2] & 0xFF) << 8) |
+                    (mBuffer[mPosition + 3] & 0xFF);
+
+        mPosition += 4;
+        return value;
+    }
+
+    //endregion
+
+    private void ensureCapacity(int capacity) {
+
+        if (capacity > mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, Math.max(capacity, mBuffer.length * 2));
+        }
+    }
+
+}
@@ -0,0 +1,685 @@
+/*
+ * Copyright (c) 2015. Queen Mary University of London
+ * Kleomenis Katevas, k.katevas@qmul.ac.uk
+ *
+ * This file is part of SensingKit-Android library.
+ * For more information, please visit http://www.sensingkit.org
+ *
+ * SensingKit-Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SensingKit-Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SensingKit-Android.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.sensingkit.sensingkitlib.upload;
+
+import android.util.Log;
+
+import org.sensingkit.sensingkitlib.SKException;
+import org.sensingkit.sensingkitlib.SKExceptionErrorCode;
+import org.sensingkit.sensingkitlib.SKSensorDataListener;
+import org.sensingkit.sensingkitlib.SKSensorModuleType;
+import org.sensingkit.sensingkitlib.data.SKAudioChunkData;
+import org.sensingkit.sensingkitlib.data.SKSensorData;
+import org.sensingkit.sensingkitlib.replay.SKCSVSessionReader;
+import org.sensingkit.sensingkitlib.storage.SKSegmentCompactor;
+import org.sensingkit.sensingkitlib.storage.SKSegmentRecorder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+
+/**
+ * Uploads closed segments to an HTTP endpoint in compressed chunks.
+ *
+ * Each segment is split into fixed-size chunks that are deflate-compressed and POSTed one
+ * after the other, together with the SHA-256 hash of the uncompressed chunk. The index of the
+ * last acknowledged chunk is stored in a state file, together with the length and modification
+ * time of the segment, so an interrupted upload resumes from the next chunk, also after the
+ * app has been restarted. A segment that has changed since (e.g. it has been downsampled) is
+ * uploaded again from its first chunk. Failed requests are retried with exponential backoff,
+ * except for client errors (4xx other than 408 and 429), which fail the upload of the segment:
+ * its state file is then kept with the .failed extension for inspection, and not resumed. Segments are uploaded by a bounded number of threads, and each thread
+ * uses buffers from a fixed pool, so at most 'concurrency' chunks are held in memory.
+ *
+ * Every request carries these headers:
+ * X-SensingKit-Sensor, X-SensingKit-Segment, X-SensingKit-Segment-Length, X-SensingKit-Chunk,
+ * X-SensingKit-Chunks and X-SensingKit-Chunk-SHA256. Any 2xx response (or 409 Conflict, for a
+ * chunk the collector already has) acknowledges the chunk.
+ *
+ * Subscribed to the Audio Recorder sensor module, the uploader also uploads each audio chunk
+ * once it is complete.
+ */
+public class SKSegmentUploader implements SKSegmentRecorder.OnSegmentClosedListener, SKSegmentCompactor.OnSegmentCompactedListener, SKSensorDataListener {
+
+    @SuppressWarnings("unused")
+    private static final String TAG = "SKSegmentUploader";
+
+    private static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+    private static final int DEFAULT_CONCURRENCY = 2;
+    private static final long DEFAULT_INITIAL_BACKOFF = 1000;
+    private static final long DEFAULT_MAX_BACKOFF = 5 * 60 * 1000;
+    private static final int CONNECT_TIMEOUT = 15 * 1000;
+    private static final int READ_TIMEOUT = 30 * 1000;
+
+    private static final String STATE_EXTENSION = ".upload";
+    private static final String FAILED_STATE_EXTENSION = ".failed";
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    public interface OnSegmentUploadedListener {
+
+        /** Called from an upload thread once the last chunk of the segment has been acknowledged. */
+        void onSegmentUploaded(SKSensorModuleType moduleType, File segment);
+    }
+
+    private class UploadTask implements Runnable {
+
+        final File stateFile;
+        final ArrayBlockingQueue<ChunkBuffers> bufferPool;
+
+        UploadTask(File stateFile, ArrayBlockingQueue<ChunkBuffers> bufferPool) {
+            this.stateFile = stateFile;
+            this.bufferPool = bufferPool;
+        }
+
+        @Override
+        public void run() {
+            upload(stateFile, bufferPool);
+        }
+    }
+
+    private static class ChunkBuffers {
+
+        final byte[] chunk;
+        final byte[] compressed;
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        final MessageDigest digest;
+
+        ChunkBuffers(int chunkSize) throws NoSuchAlgorithmException {
+            chunk = new byte[chunkSize];
+            compressed = new byte[chunkSize + (chunkSize >> 7) + 64];  // Worst case of deflate
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+    }
+
+    private final URL mEndpoint;
+    private final File mStateDirectory;
+    private final ArrayList<OnSegmentUploadedListener> mOnSegmentUploadedListeners = new ArrayList<>();
+    private final Random mRandom = new Random();
+
+    private int mChunkSize = DEFAULT_CHUNK_SIZE;
+    private int mConcurrency = DEFAULT_CONCURRENCY;
+    private long mInitialBackoff = DEFAULT_INITIAL_BACKOFF;
+    private long mMaxBackoff = DEFAULT_MAX_BACKOFF;
+    private boolean mDeleteAfterUpload = false;
+    private boolean mUploadCompactedSegments = false;
+
+    private ExecutorService mExecutor;
+    private ArrayBlockingQueue<ChunkBuffers> mBufferPool;
+
+    // State files of the uploads that are queued or running, also in threads of a previous start
+    private final HashSet<File> mActiveUploads = new HashSet<>();
+
+    public SKSegmentUploader(URL endpoint, File stateDirectory) throws SKException {
+
+        if (endpoint == null) {
+            throw new SKException(TAG, "Endpoint cannot be null.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        if (stateDirectory == null || (!stateDirectory.isDirectory() && !stateDirectory.mkdirs())) {
+            throw new SKException(TAG, "State directory could not be created.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        this.mEndpoint = endpoint;
+        this.mStateDirectory = stateDirectory;
+    }
+
+    //region Configuration
+
+    public synchronized void setChunkSize(int chunkSize) throws SKException {
+        checkNotStarted();
+
+        if (chunkSize < 1024) {
+            throw new SKException(TAG, "Chunk size must be at least 1 KB.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mChunkSize = chunkSize;
+    }
+
+    /** Sets how many segments are uploaded in parallel, which is also the maximum number of chunks in memory. */
+    public synchronized void setConcurrency(int concurrency) throws SKException {
+        checkNotStarted();
+
+        if (concurrency < 1) {
+            throw new SKException(TAG, "Concurrency must be at least 1.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mConcurrency = concurrency;
+    }
+
+    public synchronized void setBackoff(long initialBackoff, long maxBackoff) throws SKException {
+
+        if (initialBackoff <= 0 || maxBackoff < initialBackoff) {
+            throw new SKException(TAG, "Backoff must be positive and not exceed the maximum backoff.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mInitialBackoff = initialBackoff;
+        mMaxBackoff = maxBackoff;
+    }
+
+    public synchronized void setDeleteAfterUpload(boolean deleteAfterUpload) {
+        mDeleteAfterUpload = deleteAfterUpload;
+    }
+
+    /**
+     * When set, segments of the modules that SKSegmentCompactor supports are only uploaded
+     * once they have been compacted. Register the uploader with both the recorder and the compactor.
+     */
+    public synchronized void setUploadCompactedSegments(boolean uploadCompactedSegments) {
+        mUploadCompactedSegments = uploadCompactedSegments;
+    }
+
+    public synchronized void addOnSegmentUploadedListener(OnSegmentUploadedListener listener) {
+
+        if (!mOnSegmentUploadedListeners.contains(listener)) {
+            mOnSegmentUploadedListeners.add(listener);
+        }
+    }
+
+    public synchronized void removeOnSegmentUploadedListener(OnSegmentUploadedListener listener) {
+        mOnSegmentUploadedListeners.remove(listener);
+    }
+
+    private void checkNotStarted() throws SKException {
+
+        if (mExecutor != null) {
+            throw new SKException(TAG, "SegmentUploader is already started.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+    }
+
+    //endregion
+
+    //region Lifecycle
+
+    /** Starts the upload threads and resumes the uploads that were pending when the uploader was stopped. */
+    public synchronized void start() throws SKException {
+        checkNotStarted();
+
+        mBufferPool = new ArrayBlockingQueue<>(mConcurrency);
+
+        try {
+            for (int i = 0; i < mConcurrency; i++) {
+                mBufferPool.add(new ChunkBuffers(mChunkSize));
+            }
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new SKException(TAG, "SHA-256 is not supported.", SKExceptionErrorCode.UNKNOWN_ERROR);
+        }
+
+        mExecutor = Executors.newFixedThreadPool(mConcurrency);
+
+        // Resume pending uploads
+        File[] stateFiles = mStateDirectory.listFiles();
+
+        if (stateFiles != null) {
+            for (File stateFile : stateFiles) {
+                if (stateFile.getName().endsWith(STATE_EXTENSION)) {
+                    submit(stateFile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the uploader. Unfinished uploads resume from their last acknowledged chunk on the next start.
+     * Does not wait for the upload threads: a request in progress finishes (or times out) in the
+     * background, and its segment is not uploaded again until that thread has ended.
+     */
+    public synchronized void stop() {
+
+        if (mExecutor != null) {
+
+            // Uploads that have not started yet will not run
+            for (Runnable task : mExecutor.shutdownNow()) {
+                mActiveUploads.remove(((UploadTask) task).stateFile);
+            }
+
+            mExecutor = null;
+        }
+
+        // Buffers still in use are released by their upload thread
+        if (mBufferPool != null) {
+            for (ChunkBuffers buffers : mBufferPool) {
+                buffers.deflater.end();
+            }
+            mBufferPool = null;
+        }
+    }
+
+    //endregion
+
+    @Override
+    public synchronized void onSegmentClosed(SKSensorModuleType moduleType, File segment) {
+
+        if (mUploadCompactedSegments && SKSegmentCompactor.isSensorModuleSupported(moduleType)) {
+            return;  // Will be uploaded once compacted
+        }
+
+        enqueueSegment(moduleType, segment);
+    }
+
+    @Override
+    public synchronized void onSegmentCompacted(SKSensorModuleType moduleType, File segment, File compactedSegment) {
+
+        if (mUploadCompactedSegments) {
+            enqueueSegment(moduleType, compactedSegment);
+        }
+    }
+
+    @Override
+    public void onDataReceived(SKSensorModuleType moduleType, SKSensorData sensorData) {
+
+        if (sensorData instanceof SKAudioChunkData) {
+            enqueueSegment(moduleType, ((SKAudioChunkData) sensorData).getFile());
+        }
+    }
+
+    /** Queues a segment for upload. The upload survives restarts of the uploader. */
+    public synchronized void enqueueSegment(SKSensorModuleType moduleType, File segment) {
+
+        File stateFile = getStateFile(moduleType, segment);
+
+        if (mActiveUploads.contains(stateFile)) {
+            return;  // Already being uploaded
+        }
+
+        try {
+            writeState(stateFile, moduleType, segment, segment.length(), segment.lastModified(), -1);
+        }
+        catch (IOException e) {
+            Log.e(TAG, "Upload of segment '" + segment + "' could not be queued.", e);
+            return;
+        }
+
+        if (mExecutor != null) {
+            submit(stateFile);
+        }
+    }
+
+    private void submit(File stateFile) {
+
+        // Still uploaded by a thread of a previous start, which resubmits it when it ends
+        if (!mActiveUploads.add(stateFile)) {
+            return;
+        }
+
+        mExecutor.execute(new UploadTask(stateFile, mBufferPool));
+    }
+
+    private synchronized void endUpload(File stateFile, ArrayBlockingQueue<ChunkBuffers> bufferPool, ChunkBuffers buffers) {
+
+        mActiveUploads.remove(stateFile);
+        boolean stopped = (bufferPool != mBufferPool);
+
+        if (buffers != null) {
+            if (stopped) {
+                buffers.deflater.end();
+            }
+            else {
+                bufferPool.offer(buffers);
+            }
+        }
+
+        // Interrupted by a stop, but the uploader has been started again in the meantime
+        if (stopped && mExecutor != null && stateFile.exists()) {
+            submit(stateFile);
+        }
+    }
+
+    //region Upload (upload threads)
+
+    private void upload(File stateFile, ArrayBlockingQueue<ChunkBuffers> bufferPool) {
+
+        ChunkBuffers buffers = null;
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(stateFile), "UTF-8"));
+            File segment;
+            SKSensorModuleType moduleType;
+            int lastAcknowledged;
+            long length = -1;
+            long lastModified = -1;
+
+            try {
+                segment = new File(reader.readLine());
+                moduleType = SKSensorModuleType.valueOf(reader.readLine());
+                lastAcknowledged = Integer.parseInt(reader.readLine());
+
+                // Not in the state of earlier versions, which then starts again
+                String line = reader.readLine();
+
+                if (line != null) {
+                    length = Long.parseLong(line);
+                    lastModified = Long.parseLong(reader.readLine());
+                }
+            }
+            finally {
+                reader.close();
+            }
+
+            buffers = bufferPool.take();
+            uploadSegment(stateFile, moduleType, segment, length, lastModified, lastAcknowledged, buffers);
+        }
+        catch (InterruptedException e) {
+            // Stopped, the upload resumes on the next start
+        }
+        catch (FileNotFoundException e) {
+            Log.w(TAG, "Segment of '" + stateFile + "' does not exist anymore, skipping its upload.");
+
+            //noinspection ResultOfMethodCallIgnored
+            stateFile.delete();
+        }
+        catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Upload state '" + stateFile + "' is invalid, skipping its upload.", e);
+
+            //noinspection ResultOfMethodCallIgnored
+            stateFile.delete();
+        }
+        finally {
+            endUpload(stateFile, bufferPool, buffers);
+        }
+    }
+
+    private void uploadSegment(File stateFile, SKSensorModuleType moduleType, File segment, long stateLength, long stateLastModified,
+                               int lastAcknowledged, ChunkBuffers buffers) throws IOException, InterruptedException {
+
+        boolean complete = false;
+
+        while (!complete) {
+
+            long lastModified = segment.lastModified();
+            RandomAccessFile file = new RandomAccessFile(segment, "r");
+
+            try {
+                long length = file.length();
+                int chunkSize = buffers.chunk.length;
+                int chunks = (int) ((length + chunkSize - 1) / chunkSize);
+
+                // Chunks of another version of the segment cannot be combined, start again
+                if (length != stateLength || lastModified != stateLastModified) {
+
+                    if (lastAcknowledged >= 0) {
+                        Log.w(TAG, "Segment '" + segment + "' has changed, uploading it again from the first chunk.");
+                    }
+
+                    stateLength = length;
+                    stateLastModified = lastModified;
+                    lastAcknowledged = -1;
+                    writeState(stateFile, moduleType, segment, length, lastModified, -1);
+                }
+
+                complete = true;
+
+                for (int index = lastAcknowledged + 1; index < chunks; index++) {
+
+                    // Changed while it was uploaded
+                    if (segment.length() != length || segment.lastModified() != lastModified) {
+                        complete = false;
+                        break;
+                    }
+
+                    // Read and compress the chunk
+                    int size = (int) Math.min(chunkSize, length - (long) index * chunkSize);
+
+                    file.seek((long) index * chunkSize);
+                    file.readFully(buffers.chunk, 0, size);
+
+                    int compressedSize = compress(buffers, size);
+                    String hash = hash(buffers, size);
+
+                    // Post it until it is acknowledged, or rejected
+                    int attempt = 0;
+                    int responseCode;
+
+                    while (!isAcknowledged(responseCode = postChunk(moduleType, segment, length, index, chunks, hash, buffers.compressed, compressedSize))) {
+
+                        if (isRejected(responseCode)) {
+                            failUpload(stateFile, segment, index, responseCode);
+                            return;
+                        }
+
+                        backoff(attempt++);
+                    }
+
+                    writeState(stateFile, moduleType, segment, length, lastModified, index);
+                    lastAcknowledged = index;
+                }
+            }
+            finally {
+                file.close();
+            }
+        }
+
+        // Done
+        //noinspection ResultOfMethodCallIgnored
+        stateFile.delete();
+
+        OnSegmentUploadedListener[] listeners;
+        boolean deleteAfterUpload;
+
+        synchronized (this) {
+            listeners = mOnSegmentUploadedListeners.toArray(new OnSegmentUploadedListener[mOnSegmentUploadedListeners.size()]);
+            deleteAfterUpload = mDeleteAfterUpload;
+        }
+
+        for (OnSegmentUploadedListener listener : listeners) {
+            listener.onSegmentUploaded(moduleType, segment);
+        }
+
+        if (deleteAfterUpload && !segment.delete()) {
+            Log.w(TAG, "Segment '" + segment + "' could not be deleted after upload.");
+        }
+    }
+
+    private static int compress(ChunkBuffers buffers, int size) {
+
+        Deflater deflater = buffers.deflater;
+        deflater.reset();
+        deflater.setInput(buffers.chunk, 0, size);
+        deflater.finish();
+
+        int compressedSize = 0;
+
+        while (!deflater.finished()) {
+            compressedSize += deflater.deflate(buffers.compressed, compressedSize, buffers.compressed.length - compressedSize);
+        }
+
+        return compressedSize;
+    }
+
+    private static String hash(ChunkBuffers buffers, int size) {
+
+        buffers.digest.reset();
+        buffers.digest.update(buffers.chunk, 0, size);
+        byte[] hash = buffers.digest.digest();
+
+        char[] hex = new char[hash.length * 2];
+        String digits = "0123456789abcdef";
+
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = digits.charAt((hash[i] >> 4) & 0xF);
+            hex[i * 2 + 1] = digits.charAt(hash[i] & 0xF);
+        }
+
+        return new String(hex);
+    }
+
+    /** Returns the response code of the collector, or -1 if there was no response. */
+    private int postChunk(SKSensorModuleType moduleType, File segment, long length, int index, int chunks, String hash, byte[] body, int bodySize) throws InterruptedException {
+
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+        }
+
+        HttpURLConnection connection = null;
+
+        try {
+            connection = (HttpURLConnection) mEndpoint.openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setFixedLengthStreamingMode(bodySize);
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            connection.setRequestProperty("Content-Encoding", "deflate");
+            connection.setRequestProperty("X-SensingKit-Sensor", SKCSVSessionReader.getSessionName(moduleType));
+            connection.setRequestProperty("X-SensingKit-Segment", segment.getName());
+            connection.setRequestProperty("X-SensingKit-Segment-Length", Long.toString(length));
+            connection.setRequestProperty("X-SensingKit-Chunk", Integer.toString(index));
+            connection.setRequestProperty("X-SensingKit-Chunks", Integer.toString(chunks));
+            connection.setRequestProperty("X-SensingKit-Chunk-SHA256", hash);
+
+            OutputStream outputStream = connection.getOutputStream();
+            outputStream.write(body, 0, bodySize);
+            outputStream.close();
+
+            int responseCode = connection.getResponseCode();
+
+            // Drain the response, so that the connection can be reused
+            InputStream inputStream = (responseCode < 400) ? connection.getInputStream() : connection.getErrorStream();
+
+            if (inputStream != null) {
+                byte[] drain = new byte[256];
+
+                //noinspection StatementWithEmptyBody
+                while (inputStream.read(drain) != -1);
+                inputStream.close();
+            }
+
+            return responseCode;
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Chunk " + index + " of segment '" + segment + "' could not be uploaded.", e);
+            return -1;
+        }
+        finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static boolean isAcknowledged(int responseCode) {
+        return (responseCode >= 200 && responseCode < 300) || responseCode == HttpURLConnection.HTTP_CONFLICT;
+    }
+
+    /** Returns true for client errors, which are not resolved by retrying the same request. */
+    private static boolean isRejected(int responseCode) {
+        return responseCode >= 400 && responseCode < 500 &&
+                responseCode != HttpURLConnection.HTTP_CLIENT_TIMEOUT && responseCode != HTTP_TOO_MANY_REQUESTS;
+    }
+
+    /** Keeps the state of a rejected upload for inspection, where it is not resumed. */
+    private static void failUpload(File stateFile, File segment, int index, int responseCode) {
+
+        Log.e(TAG, "Chunk " + index + " of segment '" + segment + "' was rejected with HTTP " + responseCode + ", the upload has failed.");
+
+        File failedStateFile = new File(stateFile.getPath().substring(0, stateFile.getPath().length() - STATE_EXTENSION.length()) + FAILED_STATE_EXTENSION);
+
+        if (!stateFile.renameTo(failedStateFile)) {
+
+            //noinspection ResultOfMethodCallIgnored
+            stateFile.delete();
+        }
+    }
+
+    private void backoff(int attempt) throws InterruptedException {
+
+        long initialBackoff;
+        long maxBackoff;
+
+        synchronized (this) {
+            initialBackoff = mInitialBackoff;
+            maxBackoff = mMaxBackoff;
+        }
+
+        // Exponential, with jitter so that devices do not retry in lockstep
+        long delay = initialBackoff << Math.min(attempt, 30);
+
+        if (delay <= 0 || delay > maxBackoff) {
+            delay = maxBackoff;
+        }
+
+        delay = delay / 2 + (long) (mRandom.nextDouble() * (delay / 2));
+
+        Thread.sleep(delay);
+    }
+
+    //endregion
+
+    //region State
+
+    private File getStateFile(SKSensorModuleType moduleType, File segment) {
+        return new File(mStateDirectory, SKCSVSessionReader.getSessionName(moduleType) + "-" + segment.getName() + STATE_EXTENSION);
+    }
+
+    private static void writeState(File stateFile, SKSensorModuleType moduleType, File segment, long length, long lastModified,
+                                   int lastAcknowledged) throws IOException {
+
+        File temporaryFile = new File(stateFile.getPath() + ".tmp");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(temporaryFile), "UTF-8");
+
+        try {
+            writer.write(segment.getAbsolutePath());
+            writer.write('\n');
+            writer.write(moduleType.name());
+            writer.write('\n');
+            writer.write(Integer.toString(lastAcknowledged));
+            writer.write('\n');
+            writer.write(Long.toString(length));
+            writer.write('\n');
+            writer.write(Long.toString(lastModified));
+            writer.write('\n');
+        }
+        finally {
+            writer.close();
+        }
+
+        // Replace the state atomically, so that a crash never leaves a partial state
+        if (!temporaryFile.renameTo(stateFile)) {
+            throw new IOException("Upload state '" + stateFile + "' could not be written.");
+        }
+    }
+
+    //endregion
+
+}